@@ -0,0 +1,19 @@
+package org.artificers.ingest.bench;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** Runs the JMH benchmarks, adding the gc profiler unless another profiler was requested. */
+public final class Benchmarks {
+  private Benchmarks() {}
+
+  public static void main(String[] args) throws Exception {
+    List<String> jmhArgs = new ArrayList<>(Arrays.asList(args));
+    if (!jmhArgs.contains("-prof") && !jmhArgs.contains("-l") && !jmhArgs.contains("-h")) {
+      jmhArgs.add("-prof");
+      jmhArgs.add("gc");
+    }
+    org.openjdk.jmh.Main.main(jmhArgs.toArray(String[]::new));
+  }
+}
@@ -0,0 +1,363 @@
+package org.artificers.ingest.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import org.artificers.ingest.csv.ConfigurableCsvReader;
+import org.artificers.ingest.di.JdbcUrl;
+import org.artificers.ingest.model.ResolvedAccount;
+import org.artificers.ingest.model.TransactionBatch;
+import org.artificers.ingest.model.TransactionRecord;
+import org.artificers.ingest.service.TransactionRepository;
+import org.artificers.ingest.validation.BasicTransactionValidator;
+import org.jooq.DSLContext;
+import org.jooq.SQLDialect;
+import org.jooq.conf.RenderNameStyle;
+import org.jooq.conf.RenderQuotedNames;
+import org.jooq.conf.Settings;
+import org.jooq.impl.DSL;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+/**
+ * Pushes one synthetic dataset through each {@link TransactionRepository} write path and reports
+ * rows/sec, per-commit p50/p99 latency and, on PostgreSQL, WAL bytes. Every run gets fresh tables
+ * in a scratch schema, so it never touches ingested data.
+ */
+@Command(
+    name = "persistence-bench",
+    description = "Compare transaction write strategies on H2 and PostgreSQL",
+    mixinStandardHelpOptions = true)
+public final class PersistenceBenchmark implements Callable<Integer> {
+  static final String SCHEMA = "ingest_bench";
+  private static final long ACCOUNT_ID = 1L;
+
+  enum Database {
+    H2,
+    POSTGRES
+  }
+
+  enum Strategy {
+    ROW,
+    BATCH,
+    COPY,
+    /** {@code COPY} encoded straight from {@link TransactionBatch} columns. */
+    COLUMNS
+  }
+
+  enum Workload {
+    /** Every row is new. */
+    FRESH,
+    /** The dataset is already present, so every row conflicts. */
+    DUPLICATE
+  }
+
+  @Option(
+      names = "--db",
+      split = ",",
+      defaultValue = "H2",
+      description = "Databases: ${COMPLETION-CANDIDATES} (default: ${DEFAULT-VALUE})")
+  List<Database> databases;
+
+  @Option(
+      names = "--url",
+      description = "PostgreSQL JDBC URL (default: DB_URL, else the docker-compose database)")
+  String url;
+
+  @Option(names = "--rows", defaultValue = "100000", description = "Rows per run")
+  int rows;
+
+  @Option(names = "--commit-rows", defaultValue = "1000", description = "Rows per transaction")
+  int commitRows;
+
+  @Option(
+      names = "--batch-size",
+      split = ",",
+      defaultValue = "100,500,1000",
+      description = "Rows per multi-row INSERT for BATCH (default: ${DEFAULT-VALUE})")
+  List<Integer> batchSizes;
+
+  @Option(
+      names = "--strategy",
+      split = ",",
+      defaultValue = "ROW,BATCH,COPY,COLUMNS",
+      description = "Write paths: ${COMPLETION-CANDIDATES} (default: ${DEFAULT-VALUE})")
+  List<Strategy> strategies;
+
+  @Option(
+      names = "--workload",
+      split = ",",
+      defaultValue = "FRESH,DUPLICATE",
+      description = "Workloads: ${COMPLETION-CANDIDATES} (default: ${DEFAULT-VALUE})")
+  List<Workload> workloads;
+
+  @Option(names = "--seed", defaultValue = "42", description = "Synthetic data seed")
+  long seed;
+
+  private final TransactionRepository repository = new TransactionRepository();
+
+  public static void main(String[] args) {
+    CommandLine cmd = new CommandLine(new PersistenceBenchmark());
+    cmd.setCaseInsensitiveEnumValuesAllowed(true);
+    System.exit(cmd.execute(args));
+  }
+
+  @Override
+  public Integer call() throws Exception {
+    List<TransactionRecord> dataset = dataset();
+    System.out.printf(
+        "%-8s %-9s %-10s %8s %12s %10s %10s %14s%n",
+        "db", "workload", "strategy", "rows", "rows/sec", "p50_ms", "p99_ms", "wal_bytes");
+    for (Database db : databases) {
+      try (Connection conn = connect(db)) {
+        DSLContext ctx = DSL.using(conn, dialect(db), settings());
+        for (Workload workload : workloads) {
+          for (Strategy strategy : strategies) {
+            // H2 runs only ROW: the multi-row paths bind text[] casts H2 cannot parse, and jOOQ's
+            // H2 MERGE emulation of a multi-row upsert overflows the stack at these sizes.
+            if (strategy != Strategy.ROW && db != Database.POSTGRES) {
+              continue;
+            }
+            for (int batchSize : strategy == Strategy.BATCH ? batchSizes : List.of(0)) {
+              Result r = run(ctx, db, workload, strategy, batchSize, dataset);
+              System.out.printf(
+                  Locale.ROOT,
+                  "%-8s %-9s %-10s %8d %12.0f %10.2f %10.2f %14s%n",
+                  db,
+                  workload,
+                  strategy == Strategy.BATCH ? "BATCH/" + batchSize : strategy,
+                  r.rows(),
+                  r.rowsPerSecond(),
+                  r.p50Millis(),
+                  r.p99Millis(),
+                  r.walBytes() < 0 ? "-" : Long.toString(r.walBytes()));
+            }
+          }
+        }
+        if (db == Database.POSTGRES) {
+          ctx.execute("drop schema if exists " + SCHEMA + " cascade");
+        }
+      }
+    }
+    return 0;
+  }
+
+  private Result run(
+      DSLContext ctx,
+      Database db,
+      Workload workload,
+      Strategy strategy,
+      int batchSize,
+      List<TransactionRecord> dataset) {
+    resetSchema(ctx, db);
+    ResolvedAccount account = new ResolvedAccount(ACCOUNT_ID, "ch", "1234");
+    if (workload == Workload.DUPLICATE) {
+      Strategy preload = db == Database.POSTGRES ? Strategy.BATCH : Strategy.ROW;
+      ctx.transaction(
+          conf ->
+              write(
+                  DSL.using(conf),
+                  preload,
+                  TransactionRepository.MAX_BATCH_ROWS,
+                  dataset,
+                  account));
+    }
+    // Parsing yields one batch per file; build the column chunks up front so only writes are timed.
+    List<List<TransactionRecord>> chunks = new ArrayList<>();
+    for (int from = 0; from < dataset.size(); from += commitRows) {
+      List<TransactionRecord> chunk =
+          dataset.subList(from, Math.min(dataset.size(), from + commitRows));
+      chunks.add(strategy == Strategy.COLUMNS ? TransactionBatch.of("1234", chunk) : chunk);
+    }
+    long walBefore = walPosition(ctx, db);
+    long[] commits = new long[chunks.size()];
+    long written = 0;
+    long start = System.nanoTime();
+    for (int i = 0; i < chunks.size(); i++) {
+      List<TransactionRecord> chunk = chunks.get(i);
+      long t0 = System.nanoTime();
+      written +=
+          ctx.transactionResult(
+              conf -> write(DSL.using(conf), strategy, batchSize, chunk, account));
+      commits[i] = System.nanoTime() - t0;
+    }
+    long elapsed = System.nanoTime() - start;
+    long walBytes = walBefore < 0 ? -1 : walPosition(ctx, db) - walBefore;
+    long expected = workload == Workload.FRESH ? dataset.size() : 0;
+    if (written != expected) {
+      throw new IllegalStateException(
+          strategy + " wrote " + written + " rows for " + workload + ", expected " + expected);
+    }
+    Arrays.sort(commits);
+    return new Result(
+        dataset.size(), elapsed, percentile(commits, 0.50), percentile(commits, 0.99), walBytes);
+  }
+
+  private int write(
+      DSLContext ctx,
+      Strategy strategy,
+      int batchSize,
+      List<TransactionRecord> chunk,
+      ResolvedAccount account) {
+    return switch (strategy) {
+      case ROW -> {
+        // Resolve each header list once per chunk, as IngestService does per file.
+        Map<List<String>, Long> schemas = new HashMap<>();
+        int n = 0;
+        for (TransactionRecord t : chunk) {
+          long schema =
+              schemas.computeIfAbsent(t.rawHeaders(), h -> repository.sourceSchema(ctx, h));
+          if (repository.upsert(ctx, t, account, schema)) {
+            n++;
+          }
+        }
+        yield n;
+      }
+      case BATCH -> repository.insertBatch(ctx, chunk, account, batchSize);
+      case COPY, COLUMNS -> repository.copyInsert(ctx, chunk, account);
+    };
+  }
+
+  private List<TransactionRecord> dataset() throws Exception {
+    ObjectMapper mapper = new ObjectMapper();
+    ConfigurableCsvReader reader;
+    try (InputStream in = getClass().getResourceAsStream("/mappings/ch.json")) {
+      reader =
+          new ConfigurableCsvReader(
+              new BasicTransactionValidator(),
+              mapper.readValue(in, ConfigurableCsvReader.Mapping.class));
+    }
+    Path file = Files.createTempFile("persistence-bench-", ".csv");
+    try (Reader r = Files.newBufferedReader(SyntheticCsv.write(file, "ch", rows, seed))) {
+      // Synthetic rows can repeat; keep one per hash so FRESH really writes every row.
+      List<TransactionRecord> parsed = reader.read(file, r, "1234");
+      Set<String> seen = new HashSet<>();
+      List<TransactionRecord> unique = new ArrayList<>(parsed.size());
+      for (TransactionRecord t : parsed) {
+        if (seen.add(t.hash())) {
+          unique.add(t);
+        }
+      }
+      return unique;
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  private Connection connect(Database db) throws Exception {
+    if (db == Database.H2) {
+      return DriverManager.getConnection(
+          "jdbc:h2:mem:persistence_bench;MODE=PostgreSQL;DB_CLOSE_DELAY=-1", "sa", "");
+    }
+    String jdbcUrl = url != null ? url : System.getenv("DB_URL");
+    if (jdbcUrl == null) {
+      jdbcUrl = "jdbc:postgresql://localhost:15432/ingest";
+    }
+    return DriverManager.getConnection(
+        JdbcUrl.from(jdbcUrl),
+        System.getenv().getOrDefault("DB_USER", "ingest"),
+        System.getenv().getOrDefault("DB_PASSWORD", "ingest"));
+  }
+
+  private static void resetSchema(DSLContext ctx, Database db) {
+    if (db == Database.POSTGRES) {
+      ctx.execute("drop schema if exists " + SCHEMA + " cascade");
+      ctx.execute("create schema " + SCHEMA);
+      ctx.execute("set search_path to " + SCHEMA);
+      ctx.execute(
+          "create table accounts (id bigserial primary key, institution text not null,"
+              + " external_id text not null, display_name text not null)");
+      ctx.execute(
+          "create table source_schemas (id bigserial primary key, headers text[] not null unique,"
+              + " created_at timestamptz default now())");
+      ctx.execute(
+          "create table transactions (id bigserial primary key, account_id bigint not null"
+              + " references accounts (id), occurred_at timestamptz, posted_at timestamptz,"
+              + " amount_cents bigint not null, currency text not null default 'USD', merchant"
+              + " text, category text, memo text, txn_type text, hash bytea not null,"
+              + " source_schema_id bigint not null references source_schemas (id), raw_values"
+              + " text[] not null, created_at timestamptz default now())");
+    } else {
+      ctx.execute("drop schema if exists " + SCHEMA + " cascade");
+      ctx.execute("create schema " + SCHEMA);
+      ctx.execute("set schema " + SCHEMA);
+      ctx.execute(
+          "create table accounts (id bigserial primary key, institution varchar not null,"
+              + " external_id varchar not null, display_name varchar not null)");
+      ctx.execute(
+          "create table source_schemas (id bigserial primary key, headers varchar array not null"
+              + " unique, created_at timestamp with time zone default current_timestamp)");
+      ctx.execute(
+          "create table transactions (id bigserial primary key, account_id bigint not null"
+              + " references accounts (id), occurred_at timestamp with time zone, posted_at"
+              + " timestamp with time zone, amount_cents bigint not null, currency varchar not null"
+              + " default 'USD', merchant varchar, merchant_canonical varchar, unified_category"
+              + " varchar, category varchar, memo varchar, txn_type varchar, hash bytea not null,"
+              + " source_schema_id bigint not null references source_schemas (id), raw_values"
+              + " varchar array not null, created_at timestamp with time zone default"
+              + " current_timestamp)");
+    }
+    ctx.execute(
+        "create unique index transactions_account_hash_idx on transactions (account_id, hash)");
+    ctx.execute(
+        "insert into accounts (id, institution, external_id, display_name) values ("
+            + ACCOUNT_ID
+            + ", 'ch', '1234', 'bench')");
+  }
+
+  /** Current WAL insert position in bytes, or -1 where the database has no WAL to inspect. */
+  private static long walPosition(DSLContext ctx, Database db) {
+    if (db != Database.POSTGRES) {
+      return -1;
+    }
+    return ctx.fetchValue(
+        DSL.field("pg_wal_lsn_diff(pg_current_wal_insert_lsn(), '0/0')::bigint", Long.class));
+  }
+
+  private static SQLDialect dialect(Database db) {
+    return db == Database.POSTGRES ? SQLDialect.POSTGRES : SQLDialect.H2;
+  }
+
+  private static Settings settings() {
+    return new Settings()
+        .withRenderQuotedNames(RenderQuotedNames.NEVER)
+        .withRenderNameStyle(RenderNameStyle.LOWER)
+        .withRenderSchema(false);
+  }
+
+  static long percentile(long[] sorted, double p) {
+    if (sorted.length == 0) {
+      return 0;
+    }
+    int idx = (int) Math.ceil(p * sorted.length) - 1;
+    return sorted[Math.max(0, Math.min(sorted.length - 1, idx))];
+  }
+
+  record Result(long rows, long elapsedNanos, long p50Nanos, long p99Nanos, long walBytes) {
+    double rowsPerSecond() {
+      return elapsedNanos == 0 ? 0 : rows * 1e9 / elapsedNanos;
+    }
+
+    double p50Millis() {
+      return p50Nanos / 1e6;
+    }
+
+    double p99Millis() {
+      return p99Nanos / 1e6;
+    }
+  }
+}
@@ -0,0 +1,40 @@
+package org.artificers.ingest.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import org.artificers.ingest.csv.ConfigurableCsvReader;
+import org.artificers.ingest.tools.StatementGenerator;
+
+/**
+ * Writes deterministic statement files for the bundled mappings with {@link StatementGenerator}.
+ * The ch files use US dates so the readers' date fallback path is exercised as with real exports.
+ */
+public final class SyntheticCsv {
+  private SyntheticCsv() {}
+
+  public static Path write(Path file, String institution, int rows, long seed) throws IOException {
+    ConfigurableCsvReader.Mapping mapping;
+    try (InputStream in =
+        SyntheticCsv.class.getResourceAsStream("/mappings/" + institution + ".json")) {
+      if (in == null) {
+        throw new IllegalArgumentException("No bundled mapping for " + institution);
+      }
+      mapping = new ObjectMapper().readValue(in, ConfigurableCsvReader.Mapping.class);
+    }
+    String datePattern = "ch".equals(institution) ? "MM/dd/yyyy" : "yyyy-MM-dd";
+    StatementGenerator generator =
+        new StatementGenerator(
+            mapping,
+            new StatementGenerator.Settings(
+                seed, LocalDate.of(2020, 1, 1), 5, 0.1, 0, datePattern));
+    try (BufferedWriter out = Files.newBufferedWriter(file)) {
+      generator.write(out, 0, rows);
+    }
+    return file;
+  }
+}
@@ -0,0 +1,393 @@
+package org.artificers.ingest.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.artificers.ingest.config.DbConfig;
+import org.artificers.ingest.config.IngestConfig;
+import org.artificers.ingest.csv.ConfigurableCsvReader;
+import org.artificers.ingest.di.DaggerIngestComponent;
+import org.artificers.ingest.di.IngestComponent;
+import org.artificers.ingest.service.DirectoryWatchService;
+import org.artificers.ingest.service.HashGenerator;
+import org.artificers.ingest.tools.StatementGenerator;
+import org.artificers.ingest.validation.BasicTransactionValidator;
+import org.artificers.jooq.tables.Accounts;
+import org.artificers.jooq.tables.DailyAccountTotals;
+import org.artificers.jooq.tables.MonthlyCategoryTotals;
+import org.artificers.jooq.tables.Transactions;
+import org.jooq.DSLContext;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+/**
+ * End-to-end soak of watch mode: the production {@link DirectoryWatchService} wiring watches a temp
+ * directory against a real PostgreSQL while statement files are dropped into it at a fixed rate.
+ * For each file it records when the file's rows became visible in {@code transactions} and when the
+ * file reached {@code processed/}, then reports latency percentiles and every file that got stuck
+ * in the watch directory, failed, or was moved without its rows.
+ *
+ * <p>Files are generated up front with {@link StatementGenerator} over disjoint row ranges and
+ * dropped with an atomic move, so the drop rate is not bounded by generation speed. Visibility is
+ * checked on the hash of each file's last row; a file's rows commit in one transaction. All rows go
+ * to one soak account whose transactions are deleted before and after the run.
+ */
+@Command(
+    name = "watch-soak",
+    description = "Soak the directory watcher and report drop-to-commit latency",
+    mixinStandardHelpOptions = true)
+public final class WatchSoak implements Callable<Integer> {
+  @Option(
+      names = "--url",
+      description = "PostgreSQL JDBC URL (default: DB_URL, else the docker-compose database)")
+  String url;
+
+  @Option(names = "--files", defaultValue = "200", description = "Files to drop")
+  int files;
+
+  @Option(
+      names = "--rate",
+      defaultValue = "10",
+      description = "Files dropped per second (default: ${DEFAULT-VALUE})")
+  double rate;
+
+  @Option(
+      names = "--size-mix",
+      split = ",",
+      defaultValue = "50:70,1000:25,20000:5",
+      description = "Rows per file and relative weight (default: ${DEFAULT-VALUE})")
+  List<String> sizeMix;
+
+  @Option(
+      names = "--institution",
+      defaultValue = "ch",
+      description = "Bundled mapping the files use (default: ${DEFAULT-VALUE})")
+  String institution;
+
+  @Option(
+      names = "--account",
+      defaultValue = "9999",
+      description = "Last four digits of the soak account (default: ${DEFAULT-VALUE})")
+  String account;
+
+  @Option(
+      names = "--timeout",
+      defaultValue = "120",
+      description = "Seconds to wait after the last drop before declaring files stuck")
+  int timeoutSeconds;
+
+  @Option(
+      names = "--poll-ms",
+      defaultValue = "20",
+      description = "Interval for checking visibility and processed/ (default: ${DEFAULT-VALUE})")
+  int pollMillis;
+
+  @Option(names = "--seed", defaultValue = "42", description = "Synthetic data seed")
+  long seed;
+
+  @Option(names = "--keep", description = "Keep the soak account's rows and the temp directories")
+  boolean keep;
+
+  public static void main(String[] args) {
+    System.exit(new CommandLine(new WatchSoak()).execute(args));
+  }
+
+  @Override
+  public Integer call() throws Exception {
+    if (!account.matches("\\d{4}")) {
+      throw new IllegalArgumentException("--account must be four digits");
+    }
+    Path root = Files.createTempDirectory("watch-soak-");
+    Path staging = Files.createDirectories(root.resolve("staging"));
+    Path watchDir = Files.createDirectories(root.resolve("incoming"));
+    List<Drop> drops = generate(staging);
+
+    String jdbcUrl = url != null ? url : System.getenv("DB_URL");
+    if (jdbcUrl == null) {
+      jdbcUrl = "jdbc:postgresql://localhost:15432/ingest";
+    }
+    DbConfig db =
+        new DbConfig(
+            jdbcUrl,
+            System.getenv().getOrDefault("DB_USER", "ingest"),
+            System.getenv().getOrDefault("DB_PASSWORD", "ingest"));
+    IngestComponent component =
+        DaggerIngestComponent.builder()
+            .dbConfig(db)
+            .ingestConfig(new IngestConfig(watchDir, root.resolve("config")))
+            .build();
+    Report report;
+    try (var ignore = component.dataSourceCloseable()) {
+      DSLContext dsl = component.dslContext();
+      deleteSoakRows(dsl);
+      DirectoryWatchService watch = component.directoryWatchService();
+      watch.start();
+      try {
+        report = run(dsl, watchDir, drops);
+      } finally {
+        watch.stop();
+        if (!keep) {
+          deleteSoakRows(dsl);
+        }
+      }
+    }
+    print(drops, report);
+    if (!keep) {
+      try (Stream<Path> paths = Files.walk(root)) {
+        paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+      }
+    } else {
+      System.out.printf("kept files under %s%n", root);
+    }
+    return report.stuck().isEmpty() && report.missed().isEmpty() && report.failed().isEmpty()
+        ? 0
+        : 1;
+  }
+
+  private Report run(DSLContext dsl, Path watchDir, List<Drop> drops) throws Exception {
+    Path processed = watchDir.resolve("processed");
+    Path error = watchDir.resolve("error");
+    long intervalNanos = (long) (1e9 / rate);
+    List<Drop> pending = new ArrayList<>();
+    long start = System.nanoTime();
+    long lastDrop = start;
+    int next = 0;
+    while (next < drops.size() || !pending.isEmpty()) {
+      long now = System.nanoTime();
+      while (next < drops.size() && now - start >= next * intervalNanos) {
+        Drop d = drops.get(next++);
+        Files.move(d.staged, watchDir.resolve(d.name), StandardCopyOption.ATOMIC_MOVE);
+        d.droppedAt = System.nanoTime();
+        lastDrop = d.droppedAt;
+        pending.add(d);
+        now = System.nanoTime();
+      }
+      poll(dsl, processed, error, pending);
+      if (next == drops.size() && now - lastDrop > TimeUnit.SECONDS.toNanos(timeoutSeconds)) {
+        break;
+      }
+      Thread.sleep(pollMillis);
+    }
+    long elapsed = System.nanoTime() - start;
+    Report report = new Report(elapsed);
+    for (Drop d : pending) {
+      if (Files.exists(watchDir.resolve(d.name))) {
+        report.stuck().add(d);
+      } else if (d.failedAt == 0) {
+        report.missed().add(d);
+      }
+    }
+    drops.stream().filter(d -> d.failedAt != 0).forEach(report.failed()::add);
+    return report;
+  }
+
+  private void poll(DSLContext dsl, Path processed, Path error, List<Drop> pending) {
+    if (pending.isEmpty()) {
+      return;
+    }
+    Map<String, Drop> bySentinel = new HashMap<>();
+    for (Drop d : pending) {
+      if (d.visibleAt == 0) {
+        bySentinel.put(d.sentinel, d);
+      }
+    }
+    if (!bySentinel.isEmpty()) {
+      Transactions t = Transactions.TRANSACTIONS;
+      List<byte[]> visible =
+          dsl.select(t.HASH)
+              .from(t)
+              .where(t.ACCOUNT_ID.eq(soakAccount(dsl)))
+              .and(t.HASH.in(bySentinel.keySet().stream().map(HashGenerator::digest).toList()))
+              .fetch(t.HASH);
+      long now = System.nanoTime();
+      visible.forEach(h -> bySentinel.get(HexFormat.of().formatHex(h)).visibleAt = now);
+    }
+    long now = System.nanoTime();
+    for (Drop d : pending) {
+      if (d.processedAt == 0 && Files.exists(processed.resolve(d.name))) {
+        d.processedAt = now;
+      } else if (d.failedAt == 0 && Files.exists(error.resolve(d.name))) {
+        d.failedAt = now;
+      }
+    }
+    pending.removeIf(d -> (d.processedAt != 0 && d.visibleAt != 0) || d.failedAt != 0);
+  }
+
+  private List<Drop> generate(Path staging) throws IOException {
+    ObjectMapper mapper = new ObjectMapper();
+    ConfigurableCsvReader.Mapping mapping;
+    try (InputStream in = getClass().getResourceAsStream("/mappings/" + institution + ".json")) {
+      if (in == null) {
+        throw new IllegalArgumentException("No bundled mapping for " + institution);
+      }
+      mapping = mapper.readValue(in, ConfigurableCsvReader.Mapping.class);
+    }
+    ConfigurableCsvReader reader =
+        new ConfigurableCsvReader(new BasicTransactionValidator(), mapping);
+    StatementGenerator generator =
+        new StatementGenerator(mapping, new StatementGenerator.Settings(seed));
+    int[] sizes = new int[sizeMix.size()];
+    int[] weights = new int[sizeMix.size()];
+    int total = 0;
+    for (int i = 0; i < sizes.length; i++) {
+      String[] parts = sizeMix.get(i).split(":");
+      sizes[i] = Integer.parseInt(parts[0].trim());
+      weights[i] = parts.length > 1 ? Integer.parseInt(parts[1].trim()) : 1;
+      total += weights[i];
+    }
+    Random random = new Random(seed);
+    List<Drop> drops = new ArrayList<>(files);
+    long index = 0;
+    for (int f = 0; f < files; f++) {
+      int pick = random.nextInt(total);
+      int s = 0;
+      while (pick >= weights[s]) {
+        pick -= weights[s++];
+      }
+      int rows = sizes[s];
+      String name = String.format("%s%s-soak-%05d.csv", institution, account, f);
+      Path staged = staging.resolve(name);
+      try (BufferedWriter w = Files.newBufferedWriter(staged)) {
+        generator.write(w, index, rows);
+      }
+      // The last row's hash marks the file's commit; parse just that row to get it.
+      StringWriter last = new StringWriter();
+      generator.write(last, index + rows - 1, 1);
+      String sentinel =
+          reader.read(staged, new StringReader(last.toString()), account).get(0).hash();
+      drops.add(new Drop(name, staged, rows, sentinel));
+      index += rows;
+    }
+    System.out.printf("generated %d files with %d rows under %s%n", files, index, staging);
+    return drops;
+  }
+
+  private Long soakAccount(DSLContext dsl) {
+    return dsl.select(Accounts.ACCOUNTS.ID)
+        .from(Accounts.ACCOUNTS)
+        .where(Accounts.ACCOUNTS.INSTITUTION.eq(institution))
+        .and(Accounts.ACCOUNTS.EXTERNAL_ID.eq(account))
+        .fetchOne(Accounts.ACCOUNTS.ID);
+  }
+
+  private void deleteSoakRows(DSLContext dsl) {
+    Long id = soakAccount(dsl);
+    if (id != null) {
+      dsl.deleteFrom(Transactions.TRANSACTIONS)
+          .where(Transactions.TRANSACTIONS.ACCOUNT_ID.eq(id))
+          .execute();
+      dsl.deleteFrom(DailyAccountTotals.DAILY_ACCOUNT_TOTALS)
+          .where(DailyAccountTotals.DAILY_ACCOUNT_TOTALS.ACCOUNT_ID.eq(id))
+          .execute();
+      dsl.deleteFrom(MonthlyCategoryTotals.MONTHLY_CATEGORY_TOTALS)
+          .where(MonthlyCategoryTotals.MONTHLY_CATEGORY_TOTALS.ACCOUNT_ID.eq(id))
+          .execute();
+    }
+  }
+
+  /** One dropped file; timestamps are {@link System#nanoTime()} values, 0 until observed. */
+  static final class Drop {
+    final String name;
+    final Path staged;
+    final int rows;
+    final String sentinel;
+    long droppedAt;
+    long visibleAt;
+    long processedAt;
+    long failedAt;
+
+    Drop(String name, Path staged, int rows, String sentinel) {
+      this.name = name;
+      this.staged = staged;
+      this.rows = rows;
+      this.sentinel = sentinel;
+    }
+  }
+
+  /** Files that did not complete, by how they failed. */
+  record Report(long elapsedNanos, List<Drop> stuck, List<Drop> missed, List<Drop> failed) {
+    Report(long elapsedNanos) {
+      this(elapsedNanos, new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+    }
+  }
+
+  private void print(List<Drop> drops, Report report) {
+    long rows = 0;
+    List<Long> visible = new ArrayList<>();
+    List<Long> processed = new ArrayList<>();
+    List<Long> endToEnd = new ArrayList<>();
+    for (Drop d : drops) {
+      if (d.visibleAt != 0) {
+        visible.add(d.visibleAt - d.droppedAt);
+      }
+      if (d.processedAt != 0) {
+        processed.add(d.processedAt - d.droppedAt);
+      }
+      if (d.visibleAt != 0 && d.processedAt != 0) {
+        endToEnd.add(Math.max(d.visibleAt, d.processedAt) - d.droppedAt);
+        rows += d.rows;
+      }
+    }
+    double seconds = report.elapsedNanos() / 1e9;
+    System.out.printf(
+        Locale.ROOT,
+        "files=%d rate=%.1f/s completed=%d rows=%d elapsed_s=%.1f rows_per_sec=%.0f poll_ms=%d%n",
+        drops.size(),
+        rate,
+        endToEnd.size(),
+        rows,
+        seconds,
+        rows / seconds,
+        pollMillis);
+    System.out.printf(
+        "%-13s %8s %10s %10s %10s %10s%n", "latency", "n", "p50_ms", "p90_ms", "p99_ms", "max_ms");
+    line("rows_visible", visible);
+    line("processed", processed);
+    line("end_to_end", endToEnd);
+    System.out.printf(
+        "stuck=%d missed=%d failed=%d%n",
+        report.stuck().size(), report.missed().size(), report.failed().size());
+    report
+        .stuck()
+        .forEach(d -> System.out.printf("stuck %s (still in the watch directory)%n", d.name));
+    report
+        .missed()
+        .forEach(
+            d ->
+                System.out.printf(
+                    "missed %s (visible=%b processed=%b)%n",
+                    d.name, d.visibleAt != 0, d.processedAt != 0));
+    report.failed().forEach(d -> System.out.printf("failed %s (moved to error/)%n", d.name));
+  }
+
+  private static void line(String label, List<Long> nanos) {
+    long[] sorted = nanos.stream().mapToLong(Long::longValue).sorted().toArray();
+    System.out.printf(
+        Locale.ROOT,
+        "%-13s %8d %10.1f %10.1f %10.1f %10.1f%n",
+        label,
+        sorted.length,
+        PersistenceBenchmark.percentile(sorted, 0.50) / 1e6,
+        PersistenceBenchmark.percentile(sorted, 0.90) / 1e6,
+        PersistenceBenchmark.percentile(sorted, 0.99) / 1e6,
+        PersistenceBenchmark.percentile(sorted, 1.0) / 1e6);
+  }
+}
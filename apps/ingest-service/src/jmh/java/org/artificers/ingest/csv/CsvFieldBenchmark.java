@@ -0,0 +1,99 @@
+package org.artificers.ingest.csv;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import org.artificers.ingest.metrics.IngestMetrics;
+import org.artificers.ingest.metrics.MetricsRegistry;
+import org.artificers.ingest.model.Money;
+import org.artificers.ingest.model.TransactionRecord;
+import org.artificers.ingest.service.HashGenerator;
+import org.artificers.ingest.validation.BasicTransactionValidator;
+import org.artificers.ingest.validation.TransactionValidator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Per-field costs inside the CSV reader: headers, amounts, timestamps, row building, hashing. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CsvFieldBenchmark {
+  private static final String[] CH_HEADER = {
+    "Transaction Date", "Post Date", "Description", "Category", "Type", "Amount", "Memo"
+  };
+  private static final String[] CO_HEADER = {
+    "Transaction Date", "Posted Date", "Card No.", "Description", "Category", "Debit", "Credit"
+  };
+
+  private final BaseCsvReader csv = new BaseCsvReader() {};
+  private final TransactionValidator validator = new BasicTransactionValidator();
+  private final IngestMetrics metrics = new IngestMetrics(new MetricsRegistry());
+  private final Money money = new Money(-1862, "USD");
+  private final Instant occurredAt = Instant.parse("2025-04-27T00:00:00Z");
+
+  @Benchmark
+  public void normalizeHeaders(Blackhole bh) {
+    for (String h : CH_HEADER) {
+      bh.consume(csv.normalize(h));
+    }
+    for (String h : CO_HEADER) {
+      bh.consume(csv.normalize(h));
+    }
+  }
+
+  @Benchmark
+  public long parseAmount() {
+    return csv.parseAmount("-18.62");
+  }
+
+  @Benchmark
+  public long parseAmountWithGrouping() {
+    return csv.parseAmount("1,234.56");
+  }
+
+  @Benchmark
+  public Instant parseTimestampIso() {
+    return csv.parseTimestamp("2025-04-30", null);
+  }
+
+  /** US dates fall through two failed parses before matching; the ch mapping takes this path. */
+  @Benchmark
+  public Instant parseTimestampUsFallback() {
+    return csv.parseTimestamp("04/30/2025", null);
+  }
+
+  @Benchmark
+  public TransactionRecord buildRow() {
+    RowBuilder b = new RowBuilder("1234", validator, metrics);
+    b.raw("transaction_date", "04/27/2025");
+    b.occurredAt(occurredAt);
+    b.raw("post_date", "04/29/2025");
+    b.postedAt(occurredAt);
+    b.raw("description", "JetBrains Americas INC");
+    b.merchant("JetBrains Americas INC");
+    b.raw("category", "Shopping");
+    b.category("Shopping");
+    b.raw("type", "Sale");
+    b.type("Sale");
+    b.raw("amount", "-18.62");
+    b.addAmount(-1862);
+    b.raw("memo", "");
+    b.memo("");
+    return b.build();
+  }
+
+  @Benchmark
+  public String sha256() {
+    return HashGenerator.sha256("1234", money, occurredAt, "JetBrains Americas INC");
+  }
+}
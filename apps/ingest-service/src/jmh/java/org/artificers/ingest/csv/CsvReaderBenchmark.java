@@ -0,0 +1,90 @@
+package org.artificers.ingest.csv;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.artificers.ingest.bench.SyntheticCsv;
+import org.artificers.ingest.model.TransactionRecord;
+import org.artificers.ingest.validation.BasicTransactionValidator;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * End-to-end {@link ConfigurableCsvReader#read} over synthetic statements using the bundled
+ * mappings. The {@code rows} aux counter reports parsed rows per second. The 10M-row files hold
+ * every parsed record in memory, hence the large heap; pass {@code -p rows=10000,1000000} on
+ * smaller machines.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(
+    value = 1,
+    jvmArgsAppend = {"-Xms2g", "-Xmx16g"})
+public class CsvReaderBenchmark {
+  @Param({"ch", "co"})
+  String institution;
+
+  @Param({"10000", "1000000", "10000000"})
+  int rows;
+
+  private ConfigurableCsvReader reader;
+  private Path file;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    ObjectMapper mapper = new ObjectMapper();
+    try (InputStream in = getClass().getResourceAsStream("/mappings/" + institution + ".json")) {
+      ConfigurableCsvReader.Mapping mapping =
+          mapper.readValue(in, ConfigurableCsvReader.Mapping.class);
+      reader = new ConfigurableCsvReader(new BasicTransactionValidator(), mapping);
+    }
+    file = Files.createTempFile("bench-" + institution + "-" + rows + "-", ".csv");
+    SyntheticCsv.write(file, institution, rows, 42L);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(file);
+  }
+
+  @Benchmark
+  public List<TransactionRecord> read(RowCounter counter) throws IOException {
+    try (Reader r = Files.newBufferedReader(file)) {
+      List<TransactionRecord> txs = reader.read(file, r, "1234");
+      counter.rows += txs.size();
+      return txs;
+    }
+  }
+
+  /** Rows parsed per invocation, reported by JMH as a rate. */
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  @State(Scope.Thread)
+  public static class RowCounter {
+    public long rows;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      rows = 0;
+    }
+  }
+}
@@ -0,0 +1,71 @@
+package org.artificers.ingest.app;
+
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+import org.artificers.ingest.query.TransactionExporter;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+/** {@code ingest export}: writes {@code transactions_view} with a {@link TransactionExporter}. */
+@Command(
+    name = "export",
+    description =
+        "Write transactions_view to gzip-compressed CSV or NDJSON, one file per account and month",
+    mixinStandardHelpOptions = true)
+public final class ExportCommand implements Callable<Integer> {
+  @Option(names = "--out", required = true, description = "Directory to write into")
+  Path out;
+
+  @Option(
+      names = "--format",
+      defaultValue = "csv",
+      description = "csv or ndjson (default: ${DEFAULT-VALUE})")
+  TransactionExporter.Format format;
+
+  @Option(
+      names = "--workers",
+      defaultValue = "1",
+      description = "Accounts exported in parallel (default: ${DEFAULT-VALUE})")
+  int workers;
+
+  private final TransactionExporter exporter;
+  private final PrintStream stdout;
+
+  public ExportCommand(TransactionExporter exporter, PrintStream stdout) {
+    this.exporter = exporter;
+    this.stdout = stdout;
+  }
+
+  @Override
+  public Integer call() throws Exception {
+    long start = System.nanoTime();
+    TransactionExporter.Summary total =
+        exporter.export(
+            out,
+            format,
+            workers,
+            (account, s) -> {
+              synchronized (stdout) {
+                stdout.printf(
+                    "account %d: %d rows in %d files, %s%n",
+                    account, s.rows(), s.files(), sizes(s));
+              }
+            });
+    double seconds = Math.max(System.nanoTime() - start, 1) / 1e9;
+    stdout.printf(
+        "exported %d rows in %d files, %s in %.1f s (%.0f rows/s, %.1f MB/s uncompressed)%n",
+        total.rows(),
+        total.files(),
+        sizes(total),
+        seconds,
+        total.rows() / seconds,
+        total.rawBytes() / seconds / 1e6);
+    return 0;
+  }
+
+  private static String sizes(TransactionExporter.Summary s) {
+    return String.format(
+        "%.1f MB written (%.1f MB uncompressed)", s.bytes() / 1e6, s.rawBytes() / 1e6);
+  }
+}
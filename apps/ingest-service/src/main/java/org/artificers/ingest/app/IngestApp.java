@@ -2,16 +2,30 @@ package org.artificers.ingest.app;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.net.InetAddress;
 import java.nio.file.Path;
+import java.time.Duration;
 import java.util.concurrent.Callable;
 import org.artificers.ingest.config.DbConfig;
 import org.artificers.ingest.config.IngestConfig;
+import org.artificers.ingest.csv.StringDictionary;
 import org.artificers.ingest.di.DaggerIngestComponent;
 import org.artificers.ingest.di.IngestComponent;
+import org.artificers.ingest.jfr.JfrRecording;
+import org.artificers.ingest.metrics.MetricsHttpServer;
+import org.artificers.ingest.metrics.MetricsMBean;
+import org.artificers.ingest.metrics.MetricsRegistry;
+import org.artificers.ingest.query.QueryHttpServer;
+import org.artificers.ingest.query.TransactionExporter;
+import org.artificers.ingest.query.TransactionQueryService;
 import org.artificers.ingest.service.AccountShorthandParser;
 import org.artificers.ingest.service.DirectoryWatchService;
 import org.artificers.ingest.service.FileIngestionService;
 import org.artificers.ingest.service.IngestService;
+import org.artificers.ingest.service.MaterializedViewRefresher;
+import org.artificers.ingest.service.TransactionPartitionManager;
+import org.artificers.ingest.service.TransferMatcher;
+import org.jooq.DSLContext;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import picocli.CommandLine;
@@ -36,27 +50,47 @@ public final class IngestApp implements Callable<Integer> {
   @Option(names = "--input", description = "Directory to scan")
   Path input;
 
+  @Option(
+      names = "--jfr",
+      arity = "0..1",
+      fallbackValue = "ingest.jfr",
+      description = "Record a JFR flight recording to this file (default: ${FALLBACK-VALUE})")
+  Path jfr;
+
   private final IngestService service;
   private final FileIngestionService fileService;
   private final DirectoryWatchService watchService;
   private final IngestConfig config;
   private final AccountShorthandParser shorthandParser;
+  private final TransactionPartitionManager partitions;
 
   public IngestApp(
       IngestService service,
       FileIngestionService fileService,
       DirectoryWatchService watchService,
       IngestConfig config,
-      AccountShorthandParser shorthandParser) {
+      AccountShorthandParser shorthandParser,
+      TransactionPartitionManager partitions) {
     this.service = service;
     this.fileService = fileService;
     this.watchService = watchService;
     this.config = config;
     this.shorthandParser = shorthandParser;
+    this.partitions = partitions;
   }
 
   @Override
   public Integer call() throws Exception {
+    if (jfr == null) {
+      return run();
+    }
+    try (JfrRecording recording = JfrRecording.start(jfr)) {
+      log.info("Recording JFR events to {}", recording.destination());
+      return run();
+    }
+  }
+
+  private Integer run() throws Exception {
     if (file != null) {
       String shorthand = shorthandParser.extract(file);
       if (shorthand != null) {
@@ -75,7 +109,10 @@ public final class IngestApp implements Callable<Integer> {
       fileService.scanAndIngest(dir);
       return 0;
     }
-    try (DirectoryWatchService watch = watchService) {
+    // Only the long-running watch keeps partitions in shape; one-shot runs leave them alone.
+    try (DirectoryWatchService watch = watchService;
+        TransactionPartitionManager maintenance = partitions) {
+      maintenance.start(TransactionPartitionManager.DEFAULT_INTERVAL);
       watch.start();
       Thread.currentThread().join();
     }
@@ -92,10 +129,56 @@ public final class IngestApp implements Callable<Integer> {
             System.getenv()
                 .getOrDefault(
                     "INGEST_CONFIG_DIR", System.getProperty("user.home") + "/.config/ingest"));
+    double auditSampleRate =
+        Double.parseDouble(System.getenv().getOrDefault("INGEST_AUDIT_SAMPLE_RATE", "0"));
+    StringDictionary.Scope internScope =
+        StringDictionary.Scope.valueOf(
+            System.getenv().getOrDefault("INGEST_INTERN_SCOPE", "file").trim().toUpperCase());
+    int internMaxEntries =
+        Integer.parseInt(
+            System.getenv()
+                .getOrDefault(
+                    "INGEST_INTERN_MAX_ENTRIES",
+                    Integer.toString(StringDictionary.DEFAULT_MAX_ENTRIES)));
+    long maxBufferBytes =
+        Long.parseLong(System.getenv().getOrDefault("INGEST_MAX_BUFFER_MB", "0")) * 1024 * 1024;
+    Duration viewRefreshDebounce =
+        Duration.ofMillis(
+            Long.parseLong(
+                System.getenv()
+                    .getOrDefault(
+                        "INGEST_VIEW_REFRESH_DEBOUNCE_MS",
+                        Long.toString(MaterializedViewRefresher.DEFAULT_DEBOUNCE.toMillis()))));
+    int partitionMonthsAhead =
+        Integer.parseInt(
+            System.getenv()
+                .getOrDefault(
+                    "INGEST_PARTITION_MONTHS_AHEAD",
+                    Integer.toString(TransactionPartitionManager.DEFAULT_MONTHS_AHEAD)));
+    int partitionRetainMonths =
+        Integer.parseInt(System.getenv().getOrDefault("INGEST_PARTITION_RETAIN_MONTHS", "0"));
+    Duration transferWindow =
+        Duration.ofDays(
+            Long.parseLong(
+                System.getenv()
+                    .getOrDefault(
+                        "INGEST_TRANSFER_WINDOW_DAYS",
+                        Long.toString(TransferMatcher.DEFAULT_WINDOW.toDays()))));
     log.info("Starting with DB_URL={} DB_USER={}", sanitize(rawUrl), user);
 
     DbConfig dbCfg = new DbConfig(rawUrl, user, password);
-    IngestConfig cfg = new IngestConfig(ingestDir, configDir);
+    IngestConfig cfg =
+        new IngestConfig(
+            ingestDir,
+            configDir,
+            auditSampleRate,
+            internScope,
+            internMaxEntries,
+            maxBufferBytes,
+            viewRefreshDebounce,
+            partitionMonthsAhead,
+            partitionRetainMonths,
+            transferWindow);
 
     IngestComponent component =
         DaggerIngestComponent.builder().dbConfig(dbCfg).ingestConfig(cfg).build();
@@ -110,16 +193,65 @@ public final class IngestApp implements Callable<Integer> {
                     log.warn("Error closing datasource", e);
                   }
                 }));
+    startMetrics(component.metricsRegistry(), System.getenv("INGEST_METRICS_PORT"));
+    startQuery(
+        component.dslContext(),
+        System.getenv("INGEST_QUERY_PORT"),
+        System.getenv("INGEST_QUERY_BIND"));
     IngestService service = component.ingestService();
     FileIngestionService fileService = component.fileIngestionService();
     DirectoryWatchService watch = component.directoryWatchService();
     AccountShorthandParser parser = component.accountShorthandParser();
-    CommandLine cmd = new CommandLine(new IngestApp(service, fileService, watch, cfg, parser));
+    TransactionPartitionManager partitions = component.transactionPartitionManager();
+    CommandLine cmd =
+        new CommandLine(new IngestApp(service, fileService, watch, cfg, parser, partitions));
+    cmd.addSubcommand(
+        new ExportCommand(new TransactionExporter(component.dslContext()), System.out));
     cmd.setCaseInsensitiveEnumValuesAllowed(true);
     int code = cmd.execute(args);
+    // Scan and single-file runs return here; refresh what they changed before exiting.
+    component.materializedViewRefresher().close();
     System.exit(code);
   }
 
+  private static void startMetrics(MetricsRegistry registry, String port) {
+    try {
+      MetricsMBean.register(registry);
+    } catch (Exception e) {
+      log.warn("Failed to register metrics MBean", e);
+    }
+    if (port == null || port.isBlank()) {
+      return;
+    }
+    try {
+      MetricsHttpServer server = MetricsHttpServer.start(Integer.parseInt(port.trim()), registry);
+      Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+      log.info("Serving Prometheus metrics on port {}", server.port());
+    } catch (IOException | NumberFormatException e) {
+      log.warn("Failed to start metrics listener on port {}", port, e);
+    }
+  }
+
+  private static void startQuery(DSLContext dsl, String port, String bind) {
+    if (port == null || port.isBlank()) {
+      return;
+    }
+    try {
+      // Loopback unless INGEST_QUERY_BIND names a wider address, e.g. 0.0.0.0 inside a container.
+      InetAddress address =
+          bind == null || bind.isBlank()
+              ? InetAddress.getLoopbackAddress()
+              : InetAddress.getByName(bind.trim());
+      QueryHttpServer server =
+          QueryHttpServer.start(
+              address, Integer.parseInt(port.trim()), new TransactionQueryService(dsl));
+      Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+      log.info("Serving transaction queries on {}", server.address());
+    } catch (IOException | NumberFormatException e) {
+      log.warn("Failed to start transaction query listener on port {}", port, e);
+    }
+  }
+
   public static String sanitize(String url) {
     if (url == null) {
       return "";
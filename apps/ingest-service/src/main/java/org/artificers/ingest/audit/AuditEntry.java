@@ -0,0 +1,11 @@
+package org.artificers.ingest.audit;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Immutable payload passed as a log argument to the audit logger. Serialization happens in {@link
+ * AuditJsonLayout} on the appender thread, never on the thread that logged it.
+ */
+public interface AuditEntry {
+  void write(ObjectNode node);
+}
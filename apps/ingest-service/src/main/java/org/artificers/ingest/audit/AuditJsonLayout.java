@@ -0,0 +1,35 @@
+package org.artificers.ingest.audit;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.CoreConstants;
+import ch.qos.logback.core.LayoutBase;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.time.Instant;
+
+/** Renders audit events as one JSON object per line, expanding {@link AuditEntry} arguments. */
+public class AuditJsonLayout extends LayoutBase<ILoggingEvent> {
+  private final ObjectMapper mapper = new ObjectMapper();
+
+  @Override
+  public String doLayout(ILoggingEvent event) {
+    ObjectNode node = mapper.createObjectNode();
+    node.put("ts", Instant.ofEpochMilli(event.getTimeStamp()).toString());
+    node.put("event", event.getMessage());
+    Object[] args = event.getArgumentArray();
+    if (args != null) {
+      for (Object arg : args) {
+        if (arg instanceof AuditEntry entry) {
+          entry.write(node);
+        }
+      }
+    }
+    try {
+      return mapper.writeValueAsString(node) + CoreConstants.LINE_SEPARATOR;
+    } catch (JsonProcessingException e) {
+      addError("Failed to serialize audit event " + event.getMessage(), e);
+      return CoreConstants.EMPTY_STRING;
+    }
+  }
+}
@@ -0,0 +1,116 @@
+package org.artificers.ingest.audit;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.util.RawValue;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.Objects;
+import org.artificers.ingest.metrics.Counter;
+import org.artificers.ingest.metrics.MetricsRegistry;
+import org.artificers.ingest.model.IngestRun;
+import org.artificers.ingest.model.TransactionRecord;
+import org.artificers.ingest.service.IngestRunListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Structured audit channel on the {@value #LOGGER} logger. A summary line is written for every
+ * file; individual rows only for the configured sample, chosen by hash so re-ingesting a file
+ * audits the same rows. Entries are handed to logback unformatted; the async appender configured in
+ * {@code logback.xml} serializes them off the ingest thread and drops them when its queue is full.
+ */
+public class AuditLog implements IngestRunListener {
+  public static final String LOGGER = "org.artificers.ingest.audit";
+  private static final Logger audit = LoggerFactory.getLogger(LOGGER);
+  private static final int BUCKETS = 10_000;
+
+  private final int threshold;
+  private final Counter sampledRows;
+
+  public AuditLog(double sampleRate, MetricsRegistry registry) {
+    this.threshold = (int) Math.round(sampleRate * BUCKETS);
+    this.sampledRows =
+        registry.counter("ingest_audit_rows", "Transactions written to the audit log");
+  }
+
+  public boolean sampled(TransactionRecord t) {
+    return threshold >= BUCKETS || (threshold > 0 && bucket(t.hash()) < threshold);
+  }
+
+  /** Fibonacci-mixes the hash so near-identical strings still spread evenly across buckets. */
+  private static int bucket(String hash) {
+    long mixed = Integer.toUnsignedLong(Objects.hashCode(hash) * 0x9E3779B9);
+    return (int) ((mixed * BUCKETS) >>> 32);
+  }
+
+  @Override
+  public void onTransactionsParsed(Path file, String shorthand, List<TransactionRecord> txs) {
+    if (threshold == 0 || !audit.isInfoEnabled()) {
+      return;
+    }
+    String fileName = String.valueOf(file.getFileName());
+    long written = 0;
+    for (TransactionRecord t : txs) {
+      if (sampled(t)) {
+        audit.info("transaction", new RowEntry(fileName, shorthand, t));
+        written++;
+      }
+    }
+    sampledRows.add(written);
+  }
+
+  @Override
+  public void onRunCompleted(IngestRun run) {
+    audit.info("file", new FileEntry(run));
+  }
+
+  record RowEntry(String file, String shorthand, TransactionRecord t) implements AuditEntry {
+    @Override
+    public void write(ObjectNode node) {
+      node.put("file", file);
+      node.put("shorthand", shorthand);
+      node.put("hash", t.hash());
+      node.put("occurred_at", instant(t.occurredAt()));
+      node.put("posted_at", instant(t.postedAt()));
+      if (t.amount() != null) {
+        node.put("amount_cents", t.amount().cents());
+        node.put("currency", t.amount().currency());
+      }
+      node.put("merchant", t.merchant());
+      node.put("category", t.category());
+      node.put("type", t.type());
+      node.put("memo", t.memo());
+      if (t.rawJson() != null) {
+        node.putRawValue("raw", new RawValue(t.rawJson()));
+      }
+    }
+  }
+
+  record FileEntry(IngestRun run) implements AuditEntry {
+    @Override
+    public void write(ObjectNode node) {
+      node.put("file", run.fileName());
+      node.put("shorthand", run.shorthand());
+      node.put("institution", run.institution());
+      node.put("account_id", run.accountId());
+      node.put("outcome", run.outcome());
+      node.put("rows_read", run.rowsRead());
+      node.put("rows_inserted", run.rowsInserted());
+      node.put("rows_duplicate", run.rowsDuplicate());
+      node.put("rows_rejected", run.rowsRejected());
+      node.put("bytes", run.bytes());
+      if (run.rowsSpilled() > 0) {
+        node.put("rows_spilled", run.rowsSpilled());
+        node.put("spill_bytes", run.spillBytes());
+        node.put("spill_ms", run.spillTime().toMillis());
+      }
+      node.put("total_ms", run.totalTime().toMillis());
+      node.put("error", run.error());
+    }
+  }
+
+  private static String instant(Instant i) {
+    return i == null ? null : i.toString();
+  }
+}
@@ -1,6 +1,75 @@
 package org.artificers.ingest.config;
 
 import java.nio.file.Path;
+import java.time.Duration;
+import org.artificers.ingest.csv.StringDictionary;
+import org.artificers.ingest.service.MaterializedViewRefresher;
+import org.artificers.ingest.service.TransactionPartitionManager;
+import org.artificers.ingest.service.TransferMatcher;
 
-/** Immutable application paths configuration. */
-public record IngestConfig(Path ingestDir, Path configDir) {}
+/**
+ * Immutable application configuration.
+ *
+ * @param auditSampleRate fraction (0..1) of parsed rows written to the audit log; 0 disables
+ *     per-row audit while per-file summaries are still written
+ * @param internScope lifetime of the dictionaries canonicalizing merchant, category, type and
+ *     currency values during parse
+ * @param internMaxEntries bound on values per column in each dictionary
+ * @param maxBufferBytes heap budget for one file's parsed rows before they spill to disk; 0 keeps
+ *     every row in memory
+ * @param viewRefreshDebounce quiet period after the last ingest before materialized views refresh
+ * @param partitionMonthsAhead months after the current one that get a transactions partition ahead
+ *     of time
+ * @param partitionRetainMonths months of transactions partitions kept attached; 0 keeps all
+ * @param transferWindow how far apart the two sides of a transfer between accounts may occur
+ */
+public record IngestConfig(
+    Path ingestDir,
+    Path configDir,
+    double auditSampleRate,
+    StringDictionary.Scope internScope,
+    int internMaxEntries,
+    long maxBufferBytes,
+    Duration viewRefreshDebounce,
+    int partitionMonthsAhead,
+    int partitionRetainMonths,
+    Duration transferWindow) {
+  public IngestConfig {
+    if (!(auditSampleRate >= 0 && auditSampleRate <= 1)) {
+      throw new IllegalArgumentException("auditSampleRate must be between 0 and 1");
+    }
+    if (internMaxEntries < 1) {
+      throw new IllegalArgumentException("internMaxEntries must be positive");
+    }
+    if (maxBufferBytes < 0) {
+      throw new IllegalArgumentException("maxBufferBytes must not be negative");
+    }
+    if (viewRefreshDebounce.isNegative()) {
+      throw new IllegalArgumentException("viewRefreshDebounce must not be negative");
+    }
+    if (partitionMonthsAhead < 0 || partitionRetainMonths < 0) {
+      throw new IllegalArgumentException("partition month counts must not be negative");
+    }
+    if (transferWindow.isNegative()) {
+      throw new IllegalArgumentException("transferWindow must not be negative");
+    }
+  }
+
+  public IngestConfig(Path ingestDir, Path configDir, double auditSampleRate) {
+    this(
+        ingestDir,
+        configDir,
+        auditSampleRate,
+        StringDictionary.Scope.FILE,
+        StringDictionary.DEFAULT_MAX_ENTRIES,
+        0,
+        MaterializedViewRefresher.DEFAULT_DEBOUNCE,
+        TransactionPartitionManager.DEFAULT_MONTHS_AHEAD,
+        0,
+        TransferMatcher.DEFAULT_WINDOW);
+  }
+
+  public IngestConfig(Path ingestDir, Path configDir) {
+    this(ingestDir, configDir, 0);
+  }
+}
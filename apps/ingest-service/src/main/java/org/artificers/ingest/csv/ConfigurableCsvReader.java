@@ -1,29 +1,62 @@
 package org.artificers.ingest.csv;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.opencsv.CSVReader;
 import com.opencsv.exceptions.CsvException;
 import java.io.IOException;
 import java.io.Reader;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.function.Consumer;
+import org.artificers.ingest.metrics.IngestMetrics;
+import org.artificers.ingest.metrics.MetricsRegistry;
+import org.artificers.ingest.model.TransactionBatch;
 import org.artificers.ingest.model.TransactionRecord;
 import org.artificers.ingest.validation.TransactionValidator;
 
 public class ConfigurableCsvReader extends BaseCsvReader implements TransactionCsvReader {
+  /** Columns whose values repeat across rows and are worth canonicalizing. */
+  private static final Set<FieldTarget> INTERNED =
+      EnumSet.of(
+          FieldTarget.CURRENCY, FieldTarget.MERCHANT, FieldTarget.CATEGORY, FieldTarget.TYPE);
+
   private final String institution;
   private final Map<String, FieldSpec> fields;
-  private final ObjectMapper mapper;
   private final TransactionValidator validator;
   private final Map<FieldTarget, FieldHandler> handlers;
+  private final IngestMetrics metrics;
+  private final StringDictionary.Scope internScope;
+  private final int internMaxEntries;
+  private final Map<FieldTarget, StringDictionary> processDictionaries;
+
+  public ConfigurableCsvReader(TransactionValidator validator, Mapping mapping) {
+    this(validator, mapping, new IngestMetrics(new MetricsRegistry()));
+  }
+
+  public ConfigurableCsvReader(
+      TransactionValidator validator, Mapping mapping, IngestMetrics metrics) {
+    this(
+        validator,
+        mapping,
+        metrics,
+        StringDictionary.Scope.FILE,
+        StringDictionary.DEFAULT_MAX_ENTRIES);
+  }
 
   public ConfigurableCsvReader(
-      ObjectMapper mapper, TransactionValidator validator, Mapping mapping) {
-    this.mapper = mapper;
+      TransactionValidator validator,
+      Mapping mapping,
+      IngestMetrics metrics,
+      StringDictionary.Scope internScope,
+      int internMaxEntries) {
     this.validator = validator;
+    this.metrics = metrics;
     this.institution = mapping.institution();
     this.fields = mapping.fields();
     this.handlers = initHandlers();
+    this.internScope = internScope;
+    this.internMaxEntries = internMaxEntries;
+    this.processDictionaries =
+        internScope == StringDictionary.Scope.PROCESS ? dictionaries() : Map.of();
   }
 
   @Override
@@ -33,22 +66,47 @@ public class ConfigurableCsvReader extends BaseCsvReader implements TransactionC
 
   @Override
   public List<TransactionRecord> read(Path file, Reader reader, String accountId) {
+    TransactionBatch.Builder batch = TransactionBatch.builder(accountId);
+    read(file, reader, accountId, batch::add);
+    return batch.build();
+  }
+
+  @Override
+  public void read(
+      Path file, Reader reader, String accountId, Consumer<? super TransactionRecord> sink) {
     try (CSVReader csv = new CSVReader(reader)) {
-      List<String[]> rows = csv.readAll();
-      String[] header = Arrays.stream(rows.remove(0)).map(this::normalize).toArray(String[]::new);
-      return rows.stream().map(r -> mapRow(accountId, header, r)).toList();
+      String[] first = csv.readNext();
+      if (first == null) {
+        return;
+      }
+      String[] header = Arrays.stream(first).map(this::normalize).toArray(String[]::new);
+      Map<FieldTarget, StringDictionary> dictionaries =
+          internScope == StringDictionary.Scope.FILE ? dictionaries() : processDictionaries;
+      for (String[] r = csv.readNext(); r != null; r = csv.readNext()) {
+        sink.accept(mapRow(accountId, header, r, dictionaries));
+      }
     } catch (IOException | CsvException e) {
       throw new RuntimeException(e);
     }
   }
 
-  private TransactionRecord mapRow(String accountId, String[] header, String[] row) {
-    RowBuilder builder = new RowBuilder(accountId, mapper, validator);
+  private TransactionRecord mapRow(
+      String accountId,
+      String[] header,
+      String[] row,
+      Map<FieldTarget, StringDictionary> dictionaries) {
+    RowBuilder builder = new RowBuilder(accountId, validator, metrics);
     for (int i = 0; i < header.length && i < row.length; i++) {
       String h = header[i];
       String v = row[i];
-      builder.raw(h, v);
       FieldSpec spec = fields.get(h);
+      if (spec != null) {
+        StringDictionary dictionary = dictionaries.get(spec.target());
+        if (dictionary != null) {
+          v = dictionary.canonical(v);
+        }
+      }
+      builder.raw(h, v);
       if (spec != null) {
         FieldHandler handler = handlers.get(spec.target());
         if (handler != null) {
@@ -59,6 +117,24 @@ public class ConfigurableCsvReader extends BaseCsvReader implements TransactionC
     return builder.build();
   }
 
+  /** One dictionary per interned column, or none when interning is off. */
+  private Map<FieldTarget, StringDictionary> dictionaries() {
+    if (internScope == StringDictionary.Scope.OFF) {
+      return Map.of();
+    }
+    Map<FieldTarget, StringDictionary> map = new EnumMap<>(FieldTarget.class);
+    for (FieldTarget target : INTERNED) {
+      String column = target.name().toLowerCase();
+      map.put(
+          target,
+          new StringDictionary(
+              internMaxEntries,
+              metrics.dictionaryLookups(column, true),
+              metrics.dictionaryLookups(column, false)));
+    }
+    return map;
+  }
+
   public record Mapping(String institution, Map<String, FieldSpec> fields) {}
 
   public record FieldSpec(FieldTarget target, String type, String format) {}
@@ -1,18 +1,22 @@
 package org.artificers.ingest.csv;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import java.time.Instant;
+import org.artificers.ingest.metrics.IngestMetrics;
+import org.artificers.ingest.metrics.IngestStage;
+import org.artificers.ingest.metrics.StageTimer;
 import org.artificers.ingest.model.GenericTransaction;
 import org.artificers.ingest.model.TransactionRecord;
 import org.artificers.ingest.validation.TransactionValidator;
 
 class RowBuilder {
   private final TransactionValidator validator;
+  private final IngestMetrics metrics;
   private GenericTransaction.Builder builder;
 
-  RowBuilder(String accountId, ObjectMapper mapper, TransactionValidator validator) {
+  RowBuilder(String accountId, TransactionValidator validator, IngestMetrics metrics) {
     this.validator = validator;
-    this.builder = new GenericTransaction.Builder(accountId, mapper);
+    this.metrics = metrics;
+    this.builder = new GenericTransaction.Builder(accountId);
   }
 
   void occurredAt(Instant v) {
@@ -52,8 +56,14 @@ class RowBuilder {
   }
 
   TransactionRecord build() {
-    TransactionRecord tx = builder.build();
-    validator.validate(tx);
+    String hash;
+    try (StageTimer ignored = metrics.start(IngestStage.HASH)) {
+      hash = builder.hash();
+    }
+    TransactionRecord tx = builder.build(hash);
+    try (StageTimer ignored = metrics.start(IngestStage.VALIDATE)) {
+      validator.validate(tx);
+    }
     return tx;
   }
 }
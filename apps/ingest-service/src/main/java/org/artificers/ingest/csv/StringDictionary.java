@@ -0,0 +1,60 @@
+package org.artificers.ingest.csv;
+
+import java.util.concurrent.ConcurrentHashMap;
+import org.artificers.ingest.metrics.Counter;
+
+/**
+ * Canonicalizes repeated cell values so equal strings parsed from statements share one instance.
+ * Holds at most {@code maxEntries} values; once full, unseen values are returned as given, so a
+ * high-cardinality column cannot grow it without bound.
+ */
+public final class StringDictionary {
+  /** Default bound on entries per column. */
+  public static final int DEFAULT_MAX_ENTRIES = 4_096;
+
+  /** Lifetime of a dictionary. */
+  public enum Scope {
+    /** No canonicalization. */
+    OFF,
+    /** A fresh dictionary per parsed file. */
+    FILE,
+    /** One bounded dictionary per reader shared by every file it parses. */
+    PROCESS
+  }
+
+  private final ConcurrentHashMap<String, String> values = new ConcurrentHashMap<>();
+  private final int maxEntries;
+  private final Counter hits;
+  private final Counter misses;
+
+  public StringDictionary(int maxEntries, Counter hits, Counter misses) {
+    if (maxEntries < 1) {
+      throw new IllegalArgumentException("maxEntries must be positive");
+    }
+    this.maxEntries = maxEntries;
+    this.hits = hits;
+    this.misses = misses;
+  }
+
+  /** Returns the shared instance equal to {@code value}, adding it if there is room. */
+  public String canonical(String value) {
+    if (value == null) {
+      return null;
+    }
+    String existing = values.get(value);
+    if (existing != null) {
+      hits.increment();
+      return existing;
+    }
+    misses.increment();
+    if (values.size() >= maxEntries) {
+      return value;
+    }
+    existing = values.putIfAbsent(value, value);
+    return existing == null ? value : existing;
+  }
+
+  public int size() {
+    return values.size();
+  }
+}
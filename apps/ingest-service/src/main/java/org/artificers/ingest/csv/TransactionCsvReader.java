@@ -3,6 +3,7 @@ package org.artificers.ingest.csv;
 import java.io.Reader;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.function.Consumer;
 import org.artificers.ingest.model.TransactionRecord;
 
 public interface TransactionCsvReader {
@@ -14,4 +15,13 @@ public interface TransactionCsvReader {
    * should be applied to every transaction rather than parsed from the CSV contents.
    */
   List<TransactionRecord> read(Path file, Reader reader, String accountId);
+
+  /**
+   * Like {@link #read(Path, Reader, String)} but hands each transaction to {@code sink} as it is
+   * parsed, so callers can bound how many rows they hold. The default parses the whole file first.
+   */
+  default void read(
+      Path file, Reader reader, String accountId, Consumer<? super TransactionRecord> sink) {
+    read(file, reader, accountId).forEach(sink);
+  }
 }
@@ -9,9 +9,11 @@ import java.io.UncheckedIOException;
 import java.util.Set;
 import java.util.stream.Collectors;
 import javax.inject.Singleton;
+import org.artificers.ingest.config.IngestConfig;
 import org.artificers.ingest.csv.ConfigurableCsvReader;
 import org.artificers.ingest.csv.MappingFileLocator;
 import org.artificers.ingest.csv.TransactionCsvReader;
+import org.artificers.ingest.metrics.IngestMetrics;
 import org.artificers.ingest.validation.TransactionValidator;
 
 /** Module for CSV reader configuration. */
@@ -20,11 +22,18 @@ public final class CsvReaderModule {
   @Provides
   @Singleton
   @ElementsIntoSet
-  static Set<TransactionCsvReader> csvReaders(ObjectMapper mapper, TransactionValidator validator) {
+  static Set<TransactionCsvReader> csvReaders(
+      ObjectMapper mapper,
+      TransactionValidator validator,
+      IngestMetrics metrics,
+      IngestConfig cfg) {
     try {
       return new MappingFileLocator(mapper)
           .locate().stream()
-              .map(m -> new ConfigurableCsvReader(mapper, validator, m))
+              .map(
+                  m ->
+                      new ConfigurableCsvReader(
+                          validator, m, metrics, cfg.internScope(), cfg.internMaxEntries()))
               .collect(Collectors.toUnmodifiableSet());
     } catch (IOException e) {
       throw new UncheckedIOException("Failed to load CSV mappings", e);
@@ -7,6 +7,8 @@ import java.io.Closeable;
 import javax.inject.Singleton;
 import org.artificers.ingest.app.IngestApp;
 import org.artificers.ingest.config.DbConfig;
+import org.artificers.ingest.metrics.HikariMetricsTrackerFactory;
+import org.artificers.ingest.metrics.MetricsRegistry;
 import org.jooq.DSLContext;
 import org.jooq.SQLDialect;
 import org.jooq.conf.RenderNameStyle;
@@ -29,13 +31,14 @@ public interface DataModule {
 
   @Provides
   @Singleton
-  static HikariDataSource dataSource(DbConfig cfg) {
+  static HikariDataSource dataSource(DbConfig cfg, MetricsRegistry metrics) {
     LOG.info(
         "Initializing datasource with url={} user={}", IngestApp.sanitize(cfg.url()), cfg.user());
     HikariDataSource ds = new HikariDataSource();
     ds.setJdbcUrl(JdbcUrl.from(cfg.url()));
     ds.setUsername(cfg.user());
     ds.setPassword(cfg.password());
+    ds.setMetricsTrackerFactory(new HikariMetricsTrackerFactory(metrics));
     return ds;
   }
 
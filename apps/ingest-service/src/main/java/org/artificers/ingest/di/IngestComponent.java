@@ -3,19 +3,29 @@ package org.artificers.ingest.di;
 import dagger.BindsInstance;
 import dagger.Component;
 import java.io.Closeable;
+import java.util.Set;
 import javax.inject.Singleton;
 import org.artificers.ingest.cli.NewAccountCli;
 import org.artificers.ingest.config.DbConfig;
 import org.artificers.ingest.config.IngestConfig;
+import org.artificers.ingest.csv.TransactionCsvReader;
+import org.artificers.ingest.metrics.MetricsRegistry;
 import org.artificers.ingest.service.AccountShorthandParser;
 import org.artificers.ingest.service.DirectoryWatchService;
+import org.artificers.ingest.service.DuplicateDetector;
 import org.artificers.ingest.service.FileIngestionService;
 import org.artificers.ingest.service.IngestService;
+import org.artificers.ingest.service.MaterializedViewRefresher;
+import org.artificers.ingest.service.ReceiptMatcher;
+import org.artificers.ingest.service.TransactionPartitionManager;
+import org.artificers.ingest.service.TransactionRepository;
+import org.artificers.ingest.service.TransferMatcher;
 import org.jooq.DSLContext;
 
 /** Dagger component assembling ingest services. */
 @Singleton
-@Component(modules = {DataModule.class, CsvReaderModule.class, ServiceModule.class})
+@Component(
+    modules = {DataModule.class, CsvReaderModule.class, ServiceModule.class, MetricsModule.class})
 public interface IngestComponent {
   IngestService ingestService();
 
@@ -27,10 +37,26 @@ public interface IngestComponent {
 
   AccountShorthandParser accountShorthandParser();
 
+  Set<TransactionCsvReader> csvReaders();
+
   Closeable dataSourceCloseable();
 
   DSLContext dslContext();
 
+  MetricsRegistry metricsRegistry();
+
+  DuplicateDetector duplicateDetector();
+
+  MaterializedViewRefresher materializedViewRefresher();
+
+  ReceiptMatcher receiptMatcher();
+
+  TransactionPartitionManager transactionPartitionManager();
+
+  TransactionRepository transactionRepository();
+
+  TransferMatcher transferMatcher();
+
   @Component.Builder
   interface Builder {
     @BindsInstance
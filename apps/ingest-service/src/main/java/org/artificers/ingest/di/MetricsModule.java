@@ -0,0 +1,23 @@
+package org.artificers.ingest.di;
+
+import dagger.Module;
+import dagger.Provides;
+import javax.inject.Singleton;
+import org.artificers.ingest.metrics.IngestMetrics;
+import org.artificers.ingest.metrics.MetricsRegistry;
+
+/** Module providing the process-wide metrics registry. */
+@Module
+public interface MetricsModule {
+  @Provides
+  @Singleton
+  static MetricsRegistry metricsRegistry() {
+    return new MetricsRegistry();
+  }
+
+  @Provides
+  @Singleton
+  static IngestMetrics ingestMetrics(MetricsRegistry registry) {
+    return new IngestMetrics(registry);
+  }
+}
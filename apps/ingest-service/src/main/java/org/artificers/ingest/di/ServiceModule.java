@@ -3,16 +3,24 @@ package org.artificers.ingest.di;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import dagger.Module;
 import dagger.Provides;
+import dagger.multibindings.IntoSet;
 import java.io.IOException;
 import java.nio.file.FileSystems;
+import java.nio.file.Path;
 import java.nio.file.WatchService;
+import java.time.Clock;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import javax.inject.Singleton;
+import org.artificers.ingest.audit.AuditLog;
 import org.artificers.ingest.cli.NewAccountCli;
 import org.artificers.ingest.config.IngestConfig;
 import org.artificers.ingest.csv.TransactionCsvReader;
+import org.artificers.ingest.metrics.IngestMetrics;
+import org.artificers.ingest.metrics.MetricsRegistry;
+import org.artificers.ingest.rules.Categorizer;
+import org.artificers.ingest.rules.MerchantNormalizer;
 import org.artificers.ingest.service.*;
 import org.artificers.ingest.validation.BasicTransactionValidator;
 import org.artificers.ingest.validation.TransactionValidator;
@@ -47,14 +55,103 @@ public interface ServiceModule {
 
   @Provides
   @Singleton
-  static TransactionRepository transactionRepository() {
-    return new TransactionRepository();
+  static MerchantNormalizer merchantNormalizer(IngestConfig cfg, ObjectMapper mapper) {
+    return new MerchantNormalizer(cfg.configDir().resolve(MerchantNormalizer.FILE_NAME), mapper);
   }
 
   @Provides
   @Singleton
-  static MaterializedViewRefresher materializedViewRefresher(DSLContext dsl) {
-    return new MaterializedViewRefresher(dsl);
+  static Categorizer categorizer(IngestConfig cfg, ObjectMapper mapper) {
+    return new Categorizer(cfg.configDir().resolve(Categorizer.FILE_NAME), mapper);
+  }
+
+  @Provides
+  @Singleton
+  static TransactionRepository transactionRepository(
+      MerchantNormalizer merchants, Categorizer categories) {
+    return new TransactionRepository(new SourceSchemaRepository(), merchants, categories);
+  }
+
+  @Provides
+  @Singleton
+  static RollupRepository rollupRepository() {
+    return new RollupRepository();
+  }
+
+  @Provides
+  @Singleton
+  static MaterializedViewRefresher materializedViewRefresher(
+      DSLContext dsl, IngestConfig cfg, MetricsRegistry registry) {
+    return new MaterializedViewRefresher(
+        dsl, MaterializedViewRefresher.DEFAULT_VIEWS, cfg.viewRefreshDebounce(), registry);
+  }
+
+  @Provides
+  @Singleton
+  static TransactionPartitionManager transactionPartitionManager(
+      DSLContext dsl, IngestConfig cfg, MetricsRegistry registry) {
+    return new TransactionPartitionManager(
+        dsl, cfg.partitionMonthsAhead(), cfg.partitionRetainMonths(), Clock.systemUTC(), registry);
+  }
+
+  @Provides
+  @Singleton
+  static IngestRunRepository ingestRunRepository(DSLContext dsl) {
+    return new IngestRunRepository(dsl);
+  }
+
+  @Provides
+  @IntoSet
+  static IngestRunListener ingestRunLedger(IngestRunRepository repository) {
+    return repository;
+  }
+
+  @Provides
+  @Singleton
+  static TransferMatcher transferMatcher(DSLContext dsl, IngestConfig cfg) {
+    return new TransferMatcher(dsl, cfg.transferWindow());
+  }
+
+  @Provides
+  @IntoSet
+  static IngestRunListener transferRunListener(TransferMatcher matcher) {
+    return matcher;
+  }
+
+  @Provides
+  @Singleton
+  static ReceiptMatcher receiptMatcher(DSLContext dsl) {
+    return new ReceiptMatcher(dsl);
+  }
+
+  @Provides
+  @IntoSet
+  static IngestRunListener receiptRunListener(ReceiptMatcher matcher) {
+    return matcher;
+  }
+
+  @Provides
+  @Singleton
+  static DuplicateDetector duplicateDetector(DSLContext dsl) {
+    return new DuplicateDetector(dsl);
+  }
+
+  @Provides
+  @IntoSet
+  static IngestRunListener duplicateRunListener(DuplicateDetector detector) {
+    return detector;
+  }
+
+  @Provides
+  @Singleton
+  static AuditLog auditLog(IngestConfig cfg, MetricsRegistry registry) {
+    return new AuditLog(cfg.auditSampleRate(), registry);
+  }
+
+  @Provides
+  @IntoSet
+  static IngestRunListener auditRunListener(AuditLog audit) {
+    return audit;
   }
 
   @Provides
@@ -65,8 +162,23 @@ public interface ServiceModule {
       AccountShorthandParser parser,
       Set<TransactionCsvReader> readers,
       TransactionRepository repo,
-      MaterializedViewRefresher refresher) {
-    return new IngestService(dsl, resolver, parser, readers, repo, refresher);
+      RollupRepository rollups,
+      MaterializedViewRefresher refresher,
+      IngestMetrics metrics,
+      Set<IngestRunListener> runListeners,
+      IngestConfig cfg) {
+    return new IngestService(
+        dsl,
+        resolver,
+        parser,
+        readers,
+        repo,
+        rollups,
+        refresher,
+        metrics,
+        runListeners,
+        cfg.maxBufferBytes(),
+        Path.of(System.getProperty("java.io.tmpdir")));
   }
 
   @Provides
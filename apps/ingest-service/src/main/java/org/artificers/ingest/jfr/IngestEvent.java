@@ -0,0 +1,60 @@
+package org.artificers.ingest.jfr;
+
+import java.nio.file.Path;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+/**
+ * Common fields for ingest JFR events so GC, allocation and socket waits can be correlated with the
+ * statement file being processed.
+ */
+@Category({"Ingest"})
+@StackTrace(false)
+public abstract class IngestEvent extends Event {
+  public static final String SUCCESS = "success";
+  public static final String FAILURE = "failure";
+
+  @Label("File")
+  @Description("Statement file name")
+  String fileName;
+
+  @Label("Shorthand")
+  @Description("Account shorthand derived from the file name")
+  String shorthand;
+
+  @Label("Rows")
+  long rowCount;
+
+  @Label("Bytes")
+  @DataAmount(DataAmount.BYTES)
+  long bytes;
+
+  @Label("Outcome")
+  String outcome;
+
+  /** Sets the file and shorthand and starts the event timer. */
+  public IngestEvent start(Path file, String shorthand) {
+    this.fileName = file == null ? null : String.valueOf(file.getFileName());
+    this.shorthand = shorthand;
+    begin();
+    return this;
+  }
+
+  public void rows(long rowCount) {
+    this.rowCount = rowCount;
+  }
+
+  public void bytes(long bytes) {
+    this.bytes = bytes;
+  }
+
+  /** Records the outcome and commits the event if it is enabled and above its threshold. */
+  public void finish(String outcome) {
+    this.outcome = outcome;
+    commit();
+  }
+}
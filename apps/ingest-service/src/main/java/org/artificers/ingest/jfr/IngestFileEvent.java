@@ -0,0 +1,10 @@
+package org.artificers.ingest.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.artificers.ingest.IngestFile")
+@Label("Ingest File")
+@Description("Whole-file ingest from read to view refresh")
+public final class IngestFileEvent extends IngestEvent {}
@@ -0,0 +1,67 @@
+package org.artificers.ingest.jfr;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.HashMap;
+import java.util.Map;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+/**
+ * Flight recording started from the CLI. The shipped {@code /jfr/ingest.jfc} profile is layered on
+ * top of the JDK {@code default} configuration so ingest events sit alongside GC, allocation and
+ * socket I/O samples.
+ */
+public final class JfrRecording implements AutoCloseable {
+  static final String PROFILE = "/jfr/ingest.jfc";
+
+  private final Recording recording;
+
+  private JfrRecording(Recording recording) {
+    this.recording = recording;
+  }
+
+  /** Starts a recording that is written to {@code destination} on close or JVM exit. */
+  public static JfrRecording start(Path destination) throws IOException {
+    Recording recording = new Recording(settings());
+    recording.setName("ingest");
+    recording.setToDisk(true);
+    recording.setDumpOnExit(true);
+    recording.setDestination(destination);
+    recording.start();
+    return new JfrRecording(recording);
+  }
+
+  static Map<String, String> settings() throws IOException {
+    try {
+      Map<String, String> settings =
+          new HashMap<>(Configuration.getConfiguration("default").getSettings());
+      try (InputStream in = JfrRecording.class.getResourceAsStream(PROFILE)) {
+        if (in == null) {
+          throw new IOException(PROFILE + " resource missing");
+        }
+        try (Reader r = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+          settings.putAll(Configuration.create(r).getSettings());
+        }
+      }
+      return settings;
+    } catch (ParseException e) {
+      throw new IOException("Invalid JFR configuration", e);
+    }
+  }
+
+  public Path destination() {
+    return recording.getDestination();
+  }
+
+  @Override
+  public void close() {
+    recording.stop();
+    recording.close();
+  }
+}
@@ -0,0 +1,10 @@
+package org.artificers.ingest.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.artificers.ingest.ParseTransactions")
+@Label("Parse Transactions")
+@Description("Reading and parsing a statement file into transactions")
+public final class ParseTransactionsEvent extends IngestEvent {}
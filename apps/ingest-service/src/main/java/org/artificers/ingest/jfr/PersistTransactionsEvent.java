@@ -0,0 +1,10 @@
+package org.artificers.ingest.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.artificers.ingest.PersistTransactions")
+@Label("Persist Transactions")
+@Description("Transaction writing parsed rows to the database")
+public final class PersistTransactionsEvent extends IngestEvent {}
@@ -0,0 +1,10 @@
+package org.artificers.ingest.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.artificers.ingest.ViewRefresh")
+@Label("View Refresh")
+@Description("Refreshing derived views after an ingest")
+public final class ViewRefreshEvent extends IngestEvent {}
@@ -0,0 +1,10 @@
+package org.artificers.ingest.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("org.artificers.ingest.WatchDispatch")
+@Label("Watch Dispatch")
+@Description("Directory-watch hand-off of a created file to ingestion")
+public final class WatchDispatchEvent extends IngestEvent {}
@@ -0,0 +1,23 @@
+package org.artificers.ingest.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/** Monotonically increasing counter. */
+public final class Counter {
+  private final LongAdder value = new LongAdder();
+
+  public void increment() {
+    value.increment();
+  }
+
+  public void add(long amount) {
+    if (amount < 0) {
+      throw new IllegalArgumentException("Counter cannot decrease");
+    }
+    value.add(amount);
+  }
+
+  public long value() {
+    return value.sum();
+  }
+}
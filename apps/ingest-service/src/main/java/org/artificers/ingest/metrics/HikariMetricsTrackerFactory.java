@@ -0,0 +1,75 @@
+package org.artificers.ingest.metrics;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+/** Publishes HikariCP pool gauges and connection acquire/usage timings into a registry. */
+public final class HikariMetricsTrackerFactory implements MetricsTrackerFactory {
+  private final MetricsRegistry registry;
+
+  public HikariMetricsTrackerFactory(MetricsRegistry registry) {
+    this.registry = registry;
+  }
+
+  @Override
+  public IMetricsTracker create(String poolName, PoolStats stats) {
+    registry.gauge(
+        "hikari_connections_active",
+        "Connections currently in use",
+        stats::getActiveConnections,
+        "pool",
+        poolName);
+    registry.gauge(
+        "hikari_connections_idle",
+        "Idle connections in the pool",
+        stats::getIdleConnections,
+        "pool",
+        poolName);
+    registry.gauge(
+        "hikari_connections_pending",
+        "Threads waiting for a connection",
+        stats::getPendingThreads,
+        "pool",
+        poolName);
+    registry.gauge(
+        "hikari_connections_total",
+        "Total connections in the pool",
+        stats::getTotalConnections,
+        "pool",
+        poolName);
+    Histogram acquire =
+        registry.histogram(
+            "hikari_connection_acquire_seconds",
+            "Time taken to borrow a connection from the pool",
+            Histogram.LATENCY_SECONDS,
+            "pool",
+            poolName);
+    Histogram usage =
+        registry.histogram(
+            "hikari_connection_usage_seconds",
+            "Time a borrowed connection was held before being returned",
+            Histogram.LATENCY_SECONDS,
+            "pool",
+            poolName);
+    Counter timeouts =
+        registry.counter(
+            "hikari_connection_timeouts", "Connection requests that timed out", "pool", poolName);
+    return new IMetricsTracker() {
+      @Override
+      public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+        acquire.observeNanos(elapsedAcquiredNanos);
+      }
+
+      @Override
+      public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+        usage.observe(elapsedBorrowedMillis / 1000.0);
+      }
+
+      @Override
+      public void recordConnectionTimeout() {
+        timeouts.increment();
+      }
+    };
+  }
+}
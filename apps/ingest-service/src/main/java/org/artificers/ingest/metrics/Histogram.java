@@ -0,0 +1,80 @@
+package org.artificers.ingest.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-bucket histogram. Buckets are upper bounds in ascending order; observations larger than the
+ * last bound only count towards the implicit {@code +Inf} bucket.
+ */
+public final class Histogram {
+  /** Latency buckets in seconds, spanning per-row work (µs) up to whole-file ingests. */
+  public static final double[] LATENCY_SECONDS = {
+    0.00001, 0.000025, 0.00005, 0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05,
+    0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60
+  };
+
+  /** Size buckets for per-file row and byte counts. */
+  public static final double[] SIZE = {
+    10, 100, 1_000, 10_000, 100_000, 1_000_000, 10_000_000, 100_000_000, 1_000_000_000
+  };
+
+  private final double[] bounds;
+  private final LongAdder[] counts;
+  private final LongAdder count = new LongAdder();
+  private final DoubleAdder sum = new DoubleAdder();
+
+  public Histogram(double[] bounds) {
+    for (int i = 1; i < bounds.length; i++) {
+      if (bounds[i] <= bounds[i - 1]) {
+        throw new IllegalArgumentException("Bucket bounds must be strictly ascending");
+      }
+    }
+    this.bounds = bounds.clone();
+    this.counts = new LongAdder[bounds.length];
+    for (int i = 0; i < counts.length; i++) {
+      counts[i] = new LongAdder();
+    }
+  }
+
+  public void observe(double value) {
+    int idx = Arrays.binarySearch(bounds, value);
+    if (idx < 0) {
+      idx = -idx - 1;
+    }
+    if (idx < counts.length) {
+      counts[idx].increment();
+    }
+    count.increment();
+    sum.add(value);
+  }
+
+  /** Records a duration measured with {@link System#nanoTime()} in seconds. */
+  public void observeNanos(long nanos) {
+    observe(nanos / 1_000_000_000.0);
+  }
+
+  public long count() {
+    return count.sum();
+  }
+
+  public double sum() {
+    return sum.sum();
+  }
+
+  double[] bounds() {
+    return bounds.clone();
+  }
+
+  /** Cumulative counts per bound, matching the Prometheus {@code le} semantics. */
+  long[] cumulativeCounts() {
+    long[] out = new long[counts.length];
+    long running = 0;
+    for (int i = 0; i < counts.length; i++) {
+      running += counts[i].sum();
+      out[i] = running;
+    }
+    return out;
+  }
+}
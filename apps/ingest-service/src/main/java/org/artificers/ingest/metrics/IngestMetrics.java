@@ -0,0 +1,89 @@
+package org.artificers.ingest.metrics;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/** Ingest-specific view over a {@link MetricsRegistry}. */
+public final class IngestMetrics {
+  private final MetricsRegistry registry;
+  private final Map<IngestStage, Histogram> stages = new EnumMap<>(IngestStage.class);
+  private final Histogram fileRows;
+  private final Histogram fileBytes;
+  private final Counter rows;
+  private final Counter bytes;
+  private final Counter inserted;
+  private final Counter duplicates;
+  private final Counter succeeded;
+  private final Counter failed;
+
+  public IngestMetrics(MetricsRegistry registry) {
+    this.registry = registry;
+    for (IngestStage stage : IngestStage.values()) {
+      stages.put(
+          stage,
+          registry.histogram(
+              "ingest_stage_duration_seconds",
+              "Time spent per ingest stage",
+              Histogram.LATENCY_SECONDS,
+              "stage",
+              stage.label()));
+    }
+    this.fileRows =
+        registry.histogram("ingest_file_rows", "Rows parsed per ingested file", Histogram.SIZE);
+    this.fileBytes =
+        registry.histogram("ingest_file_bytes", "Bytes read per ingested file", Histogram.SIZE);
+    this.rows = registry.counter("ingest_rows", "Rows parsed from statement files");
+    this.bytes = registry.counter("ingest_bytes", "Bytes read from statement files");
+    this.inserted = registry.counter("ingest_rows_inserted", "Rows written to transactions");
+    this.duplicates =
+        registry.counter("ingest_duplicates", "Rows skipped because their hash already existed");
+    this.succeeded =
+        registry.counter("ingest_files", "Files processed by outcome", "outcome", "success");
+    this.failed =
+        registry.counter("ingest_files", "Files processed by outcome", "outcome", "failure");
+  }
+
+  public MetricsRegistry registry() {
+    return registry;
+  }
+
+  /** Starts timing {@code stage}; close the returned timer to record the duration. */
+  public StageTimer start(IngestStage stage) {
+    return new StageTimer(stages.get(stage));
+  }
+
+  public void recordStage(IngestStage stage, long nanos) {
+    stages.get(stage).observeNanos(nanos);
+  }
+
+  public void recordFile(long rowCount, long byteCount) {
+    fileRows.observe(rowCount);
+    fileBytes.observe(byteCount);
+    rows.add(rowCount);
+    bytes.add(byteCount);
+  }
+
+  public void recordWrites(long insertedCount, long duplicateCount) {
+    inserted.add(insertedCount);
+    duplicates.add(duplicateCount);
+  }
+
+  /** Lookups of {@code column} values in the parse-time string dictionary, by hit or miss. */
+  public Counter dictionaryLookups(String column, boolean hit) {
+    return registry.counter(
+        "ingest_dictionary_lookups",
+        "Low-cardinality cell values looked up in the interning dictionary",
+        "column",
+        column,
+        "result",
+        hit ? "hit" : "miss");
+  }
+
+  public void recordSuccess() {
+    succeeded.increment();
+  }
+
+  public void recordFailure() {
+    failed.increment();
+  }
+}
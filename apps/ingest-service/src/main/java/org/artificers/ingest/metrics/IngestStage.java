@@ -0,0 +1,18 @@
+package org.artificers.ingest.metrics;
+
+/** Timed stages of a single file ingest. */
+public enum IngestStage {
+  FILE_READ,
+  CSV_PARSE,
+  HASH,
+  VALIDATE,
+  ACCOUNT_RESOLVE,
+  REPOSITORY_WRITE,
+  ROLLUP_UPDATE,
+  VIEW_REFRESH;
+
+  /** Label value used in exported metrics. */
+  public String label() {
+    return name().toLowerCase();
+  }
+}
@@ -0,0 +1,54 @@
+package org.artificers.ingest.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/** Minimal HTTP listener serving {@code GET /metrics} in the Prometheus text format. */
+public final class MetricsHttpServer implements AutoCloseable {
+  static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+  private final HttpServer server;
+
+  private MetricsHttpServer(HttpServer server) {
+    this.server = server;
+  }
+
+  /** Binds to {@code port} on all interfaces (use 0 for an ephemeral port) and starts serving. */
+  public static MetricsHttpServer start(int port, MetricsRegistry registry) throws IOException {
+    HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+    server.createContext("/metrics", exchange -> handle(exchange, registry));
+    server.start();
+    return new MetricsHttpServer(server);
+  }
+
+  public int port() {
+    return server.getAddress().getPort();
+  }
+
+  private static void handle(HttpExchange exchange, MetricsRegistry registry) throws IOException {
+    try (exchange) {
+      if (!"GET".equals(exchange.getRequestMethod())) {
+        exchange.sendResponseHeaders(405, -1);
+        return;
+      }
+      StringWriter out = new StringWriter();
+      registry.writePrometheus(out);
+      byte[] body = out.toString().getBytes(StandardCharsets.UTF_8);
+      exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+      exchange.sendResponseHeaders(200, body.length);
+      try (OutputStream os = exchange.getResponseBody()) {
+        os.write(body);
+      }
+    }
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+  }
+}
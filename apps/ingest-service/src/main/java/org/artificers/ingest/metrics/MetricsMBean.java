@@ -0,0 +1,89 @@
+package org.artificers.ingest.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+/**
+ * Read-only JMX bridge exposing every registry sample as a {@code double} attribute named after its
+ * Prometheus series.
+ */
+public final class MetricsMBean implements DynamicMBean {
+  public static final String OBJECT_NAME = "org.artificers.ingest:type=Metrics";
+
+  private final MetricsRegistry registry;
+
+  public MetricsMBean(MetricsRegistry registry) {
+    this.registry = registry;
+  }
+
+  /** Registers the bridge with the platform MBean server, replacing a previous registration. */
+  public static void register(MetricsRegistry registry) throws JMException {
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    ObjectName name = new ObjectName(OBJECT_NAME);
+    try {
+      server.registerMBean(new MetricsMBean(registry), name);
+    } catch (InstanceAlreadyExistsException e) {
+      server.unregisterMBean(name);
+      server.registerMBean(new MetricsMBean(registry), name);
+    }
+  }
+
+  @Override
+  public Object getAttribute(String attribute) throws AttributeNotFoundException {
+    Double value = registry.samples().get(attribute);
+    if (value == null) {
+      throw new AttributeNotFoundException(attribute);
+    }
+    return value;
+  }
+
+  @Override
+  public AttributeList getAttributes(String[] attributes) {
+    Map<String, Double> samples = registry.samples();
+    AttributeList list = new AttributeList();
+    for (String a : attributes) {
+      Double value = samples.get(a);
+      if (value != null) {
+        list.add(new Attribute(a, value));
+      }
+    }
+    return list;
+  }
+
+  @Override
+  public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+    throw new AttributeNotFoundException(attribute.getName() + " is read-only");
+  }
+
+  @Override
+  public AttributeList setAttributes(AttributeList attributes) {
+    return new AttributeList();
+  }
+
+  @Override
+  public Object invoke(String actionName, Object[] params, String[] signature)
+      throws ReflectionException {
+    throw new ReflectionException(new NoSuchMethodException(actionName));
+  }
+
+  @Override
+  public MBeanInfo getMBeanInfo() {
+    MBeanAttributeInfo[] attrs =
+        registry.samples().keySet().stream()
+            .map(n -> new MBeanAttributeInfo(n, "double", n, true, false, false))
+            .toArray(MBeanAttributeInfo[]::new);
+    return new MBeanInfo(
+        MetricsMBean.class.getName(), "Ingest service metrics", attrs, null, null, null);
+  }
+}
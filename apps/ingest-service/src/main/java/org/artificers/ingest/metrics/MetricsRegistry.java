@@ -0,0 +1,174 @@
+package org.artificers.ingest.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+
+/**
+ * In-process registry of named counters, gauges and histograms.
+ *
+ * <p>Metrics are grouped into families sharing a name, help text and type; each child within a
+ * family is identified by its label pairs. Registering the same name and labels twice returns the
+ * existing instance so collaborators can look metrics up lazily.
+ */
+public final class MetricsRegistry {
+  private final Map<String, Family> families = new LinkedHashMap<>();
+
+  /** Returns the counter for {@code name} and the given {@code key, value} label pairs. */
+  public Counter counter(String name, String help, String... labels) {
+    return child(name, help, Type.COUNTER, labels, Counter::new);
+  }
+
+  /** Returns the histogram for {@code name} and label pairs, creating it with {@code bounds}. */
+  public Histogram histogram(String name, String help, double[] bounds, String... labels) {
+    return child(name, help, Type.HISTOGRAM, labels, () -> new Histogram(bounds));
+  }
+
+  /** Registers a gauge whose value is sampled from {@code supplier} on every read. */
+  public void gauge(String name, String help, DoubleSupplier supplier, String... labels) {
+    child(name, help, Type.GAUGE, labels, () -> supplier);
+  }
+
+  /** Writes all metrics in the Prometheus text exposition format (version 0.0.4). */
+  public void writePrometheus(Writer out) throws IOException {
+    for (Family family : snapshotFamilies()) {
+      out.write("# HELP " + family.name + " " + escapeHelp(family.help) + "\n");
+      out.write("# TYPE " + family.name + " " + family.type.name().toLowerCase() + "\n");
+      for (Map.Entry<String, Object> e : family.children.entrySet()) {
+        String labels = e.getKey();
+        switch (family.type) {
+          case COUNTER ->
+              sample(out, family.name + "_total", labels, ((Counter) e.getValue()).value());
+          case GAUGE ->
+              sample(out, family.name, labels, ((DoubleSupplier) e.getValue()).getAsDouble());
+          case HISTOGRAM -> writeHistogram(out, family.name, labels, (Histogram) e.getValue());
+        }
+      }
+    }
+  }
+
+  /**
+   * Flattens every sample into {@code name{labels} -> value}, using the same series names as the
+   * Prometheus output. Used by the JMX bridge.
+   */
+  public Map<String, Double> samples() {
+    Map<String, Double> out = new LinkedHashMap<>();
+    for (Family family : snapshotFamilies()) {
+      for (Map.Entry<String, Object> e : family.children.entrySet()) {
+        String labels = e.getKey();
+        switch (family.type) {
+          case COUNTER ->
+              out.put(
+                  series(family.name + "_total", labels),
+                  (double) ((Counter) e.getValue()).value());
+          case GAUGE ->
+              out.put(series(family.name, labels), ((DoubleSupplier) e.getValue()).getAsDouble());
+          case HISTOGRAM -> {
+            Histogram h = (Histogram) e.getValue();
+            out.put(series(family.name + "_count", labels), (double) h.count());
+            out.put(series(family.name + "_sum", labels), h.sum());
+          }
+        }
+      }
+    }
+    return out;
+  }
+
+  private synchronized Family[] snapshotFamilies() {
+    return families.values().stream().map(Family::copy).toArray(Family[]::new);
+  }
+
+  @SuppressWarnings("unchecked")
+  private synchronized <T> T child(
+      String name, String help, Type type, String[] labels, Supplier<T> init) {
+    Family family = families.computeIfAbsent(name, n -> new Family(n, help, type));
+    if (family.type != type) {
+      throw new IllegalArgumentException(
+          "Metric " + name + " already registered as " + family.type.name().toLowerCase());
+    }
+    return (T) family.children.computeIfAbsent(renderLabels(labels), k -> init.get());
+  }
+
+  private static void writeHistogram(Writer out, String name, String labels, Histogram h)
+      throws IOException {
+    double[] bounds = h.bounds();
+    long[] cumulative = h.cumulativeCounts();
+    for (int i = 0; i < bounds.length; i++) {
+      sample(out, name + "_bucket", withLe(labels, formatDouble(bounds[i])), cumulative[i]);
+    }
+    sample(out, name + "_bucket", withLe(labels, "+Inf"), h.count());
+    sample(out, name + "_sum", labels, h.sum());
+    sample(out, name + "_count", labels, h.count());
+  }
+
+  private static void sample(Writer out, String name, String labels, double value)
+      throws IOException {
+    out.write(series(name, labels) + " " + formatDouble(value) + "\n");
+  }
+
+  private static String series(String name, String labels) {
+    return labels.isEmpty() ? name : name + "{" + labels + "}";
+  }
+
+  private static String withLe(String labels, String le) {
+    String bucket = "le=\"" + le + "\"";
+    return labels.isEmpty() ? bucket : labels + "," + bucket;
+  }
+
+  private static String renderLabels(String[] labels) {
+    if (labels.length % 2 != 0) {
+      throw new IllegalArgumentException("Labels must be key/value pairs");
+    }
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < labels.length; i += 2) {
+      if (sb.length() > 0) {
+        sb.append(',');
+      }
+      sb.append(labels[i]).append("=\"").append(escapeLabel(labels[i + 1])).append('"');
+    }
+    return sb.toString();
+  }
+
+  private static String escapeLabel(String v) {
+    return v.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+  }
+
+  private static String escapeHelp(String v) {
+    return v.replace("\\", "\\\\").replace("\n", "\\n");
+  }
+
+  private static String formatDouble(double v) {
+    if (v == Math.rint(v) && !Double.isInfinite(v) && Math.abs(v) < 1e15) {
+      return Long.toString((long) v);
+    }
+    return Double.toString(v);
+  }
+
+  private enum Type {
+    COUNTER,
+    GAUGE,
+    HISTOGRAM
+  }
+
+  private static final class Family {
+    private final String name;
+    private final String help;
+    private final Type type;
+    private final Map<String, Object> children = new LinkedHashMap<>();
+
+    private Family(String name, String help, Type type) {
+      this.name = name;
+      this.help = help;
+      this.type = type;
+    }
+
+    private Family copy() {
+      Family f = new Family(name, help, type);
+      f.children.putAll(children);
+      return f;
+    }
+  }
+}
@@ -0,0 +1,25 @@
+package org.artificers.ingest.metrics;
+
+/**
+ * Measures one execution of an {@link IngestStage}; the duration is recorded on {@link #close()} so
+ * callers can scope timings with try-with-resources.
+ */
+public final class StageTimer implements AutoCloseable {
+  private final Histogram histogram;
+  private final long start;
+
+  StageTimer(Histogram histogram) {
+    this.histogram = histogram;
+    this.start = System.nanoTime();
+  }
+
+  /** Nanoseconds elapsed since the timer started. */
+  public long elapsedNanos() {
+    return System.nanoTime() - start;
+  }
+
+  @Override
+  public void close() {
+    histogram.observeNanos(elapsedNanos());
+  }
+}
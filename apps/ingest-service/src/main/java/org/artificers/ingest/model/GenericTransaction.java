@@ -1,8 +1,10 @@
 package org.artificers.ingest.model;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import org.artificers.ingest.service.HashGenerator;
 
@@ -16,11 +18,18 @@ public record GenericTransaction(
     String type,
     String memo,
     String hash,
-    String rawJson)
+    List<String> rawHeaders,
+    List<String> rawValues)
     implements TransactionRecord {
 
+  public GenericTransaction {
+    if (rawHeaders.size() != rawValues.size()) {
+      throw new IllegalArgumentException(
+          rawHeaders.size() + " raw headers but " + rawValues.size() + " values");
+    }
+  }
+
   public static final class Builder {
-    private final ObjectMapper mapper;
     private final String accountId;
     private final Instant occurredAt;
     private final Instant postedAt;
@@ -31,10 +40,9 @@ public record GenericTransaction(
     private final String memo;
     private final Map<String, String> raw;
 
-    public Builder(String accountId, ObjectMapper mapper) {
+    public Builder(String accountId) {
       this(
           accountId,
-          mapper,
           null,
           null,
           new Money(0, "USD"),
@@ -47,7 +55,6 @@ public record GenericTransaction(
 
     private Builder(
         String accountId,
-        ObjectMapper mapper,
         Instant occurredAt,
         Instant postedAt,
         Money amount,
@@ -57,7 +64,6 @@ public record GenericTransaction(
         String memo,
         Map<String, String> raw) {
       this.accountId = accountId;
-      this.mapper = mapper;
       this.occurredAt = occurredAt;
       this.postedAt = postedAt;
       this.amount = amount;
@@ -69,19 +75,17 @@ public record GenericTransaction(
     }
 
     public Builder withOccurredAt(Instant v) {
-      return new Builder(
-          accountId, mapper, v, postedAt, amount, merchant, category, type, memo, raw);
+      return new Builder(accountId, v, postedAt, amount, merchant, category, type, memo, raw);
     }
 
     public Builder withPostedAt(Instant v) {
-      return new Builder(
-          accountId, mapper, occurredAt, v, amount, merchant, category, type, memo, raw);
+      return new Builder(accountId, occurredAt, v, amount, merchant, category, type, memo, raw);
     }
 
     public Builder addAmount(long cents) {
       Money updated = new Money(this.amount.cents() + cents, this.amount.currency());
       return new Builder(
-          accountId, mapper, occurredAt, postedAt, updated, merchant, category, type, memo, raw);
+          accountId, occurredAt, postedAt, updated, merchant, category, type, memo, raw);
     }
 
     public Builder withCurrency(String currency) {
@@ -90,41 +94,55 @@ public record GenericTransaction(
       }
       Money updated = new Money(this.amount.cents(), currency);
       return new Builder(
-          accountId, mapper, occurredAt, postedAt, updated, merchant, category, type, memo, raw);
+          accountId, occurredAt, postedAt, updated, merchant, category, type, memo, raw);
     }
 
     public Builder withMerchant(String v) {
-      return new Builder(
-          accountId, mapper, occurredAt, postedAt, amount, v, category, type, memo, raw);
+      return new Builder(accountId, occurredAt, postedAt, amount, v, category, type, memo, raw);
     }
 
     public Builder withCategory(String v) {
-      return new Builder(
-          accountId, mapper, occurredAt, postedAt, amount, merchant, v, type, memo, raw);
+      return new Builder(accountId, occurredAt, postedAt, amount, merchant, v, type, memo, raw);
     }
 
     public Builder withType(String v) {
-      return new Builder(
-          accountId, mapper, occurredAt, postedAt, amount, merchant, category, v, memo, raw);
+      return new Builder(accountId, occurredAt, postedAt, amount, merchant, category, v, memo, raw);
     }
 
     public Builder withMemo(String v) {
-      return new Builder(
-          accountId, mapper, occurredAt, postedAt, amount, merchant, category, type, v, raw);
+      return new Builder(accountId, occurredAt, postedAt, amount, merchant, category, type, v, raw);
     }
 
     public Builder withRaw(String h, String v) {
       Map<String, String> updated = new LinkedHashMap<>(raw);
       updated.put(h, v);
       return new Builder(
-          accountId, mapper, occurredAt, postedAt, amount, merchant, category, type, memo, updated);
+          accountId, occurredAt, postedAt, amount, merchant, category, type, memo, updated);
+    }
+
+    /** Dedup hash of the fields accumulated so far. */
+    public String hash() {
+      return HashGenerator.sha256(accountId, amount, occurredAt, merchant);
     }
 
     public GenericTransaction build() {
-      String rawJson = mapper.valueToTree(raw).toString();
-      String hash = HashGenerator.sha256(accountId, amount, occurredAt, merchant);
+      return build(hash());
+    }
+
+    /** Builds the transaction with a hash computed earlier via {@link #hash()}. */
+    public GenericTransaction build(String hash) {
       return new GenericTransaction(
-          accountId, occurredAt, postedAt, amount, merchant, category, type, memo, hash, rawJson);
+          accountId,
+          occurredAt,
+          postedAt,
+          amount,
+          merchant,
+          category,
+          type,
+          memo,
+          hash,
+          List.copyOf(raw.keySet()),
+          Collections.unmodifiableList(new ArrayList<>(raw.values())));
     }
   }
 }
@@ -0,0 +1,47 @@
+package org.artificers.ingest.model;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Immutable summary of one file ingest attempt, successful or not.
+ *
+ * @param rowsSpilled rows written to a spill file because the file exceeded the in-memory budget
+ * @param spillTime time spent writing and re-reading the spill file
+ */
+public record IngestRun(
+    String fileName,
+    String shorthand,
+    String institution,
+    Long accountId,
+    long rowsRead,
+    long rowsInserted,
+    long rowsDuplicate,
+    long rowsRejected,
+    long bytes,
+    Duration readTime,
+    Duration parseTime,
+    Duration persistTime,
+    Duration refreshTime,
+    long rowsSpilled,
+    long spillBytes,
+    Duration spillTime,
+    Instant startedAt,
+    Instant finishedAt,
+    String outcome,
+    String error) {
+
+  public Duration totalTime() {
+    return Duration.between(startedAt, finishedAt);
+  }
+
+  /** Parsed rows per second over the whole run, or 0 when nothing was timed. */
+  public double rowsPerSecond() {
+    long micros = totalTime().toNanos() / 1_000;
+    return micros <= 0 ? 0 : rowsRead * 1_000_000.0 / micros;
+  }
+
+  public boolean succeeded() {
+    return "success".equals(outcome);
+  }
+}
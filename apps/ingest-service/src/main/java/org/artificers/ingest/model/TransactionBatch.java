@@ -0,0 +1,548 @@
+package org.artificers.ingest.model;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * Column-oriented transactions of one account, as parsed from a statement file.
+ *
+ * <p>Timestamps are epoch microseconds (the precision of {@code timestamptz}) and amounts are cents
+ * in primitive arrays. Currency, category, type and merchant are codes into one shared dictionary,
+ * raw header lists are codes into a list of distinct lists, memo and the raw values are UTF-8
+ * ranges of a shared byte buffer, and hashes are 32-byte SHA-256 digests. Writers can read the
+ * columns directly through the indexed accessors; {@link #get(int)} returns a flyweight {@link
+ * TransactionRecord} view for code that works on records.
+ */
+public final class TransactionBatch extends AbstractList<TransactionRecord>
+    implements RandomAccess {
+  /** Column value standing for a missing timestamp. */
+  public static final long NO_TIME = Long.MIN_VALUE;
+
+  /** Length of a SHA-256 digest in the hash column. */
+  public static final int HASH_BYTES = 32;
+
+  /** Approximate heap bytes of one row's fixed-width columns. */
+  private static final int ROW_BYTES = 3 * Long.BYTES + 9 * Integer.BYTES + HASH_BYTES;
+
+  private static final HexFormat HEX = HexFormat.of();
+  private static final int MEMO = 0;
+  private static final int RAW_VALUES = 1;
+
+  private final String accountId;
+  private final int size;
+  private final long[] occurredAt;
+  private final long[] postedAt;
+  private final long[] amountCents;
+  private final int[] currency;
+  private final int[] category;
+  private final int[] type;
+  private final int[] merchant;
+  private final String[] dictionary;
+  private final int[] schema;
+  private final List<List<String>> schemas;
+  private final byte[] hashes;
+  private final int[] textStart;
+  private final int[] textLength;
+  private final byte[] text;
+
+  private TransactionBatch(Builder b) {
+    this.accountId = b.accountId;
+    this.size = b.size;
+    this.occurredAt = Arrays.copyOf(b.occurredAt, size);
+    this.postedAt = Arrays.copyOf(b.postedAt, size);
+    this.amountCents = Arrays.copyOf(b.amountCents, size);
+    this.currency = Arrays.copyOf(b.currency, size);
+    this.category = Arrays.copyOf(b.category, size);
+    this.type = Arrays.copyOf(b.type, size);
+    this.merchant = Arrays.copyOf(b.merchant, size);
+    this.dictionary = b.dictionary.toArray(String[]::new);
+    this.schema = Arrays.copyOf(b.schema, size);
+    this.schemas = List.copyOf(b.schemas);
+    this.hashes = Arrays.copyOf(b.hashes, size * HASH_BYTES);
+    this.textStart = Arrays.copyOf(b.textStart, size * 2);
+    this.textLength = Arrays.copyOf(b.textLength, size * 2);
+    this.text = Arrays.copyOf(b.text, b.textSize);
+  }
+
+  private TransactionBatch(
+      String accountId, int size, String[] dictionary, List<List<String>> schemas, byte[] text) {
+    this.accountId = accountId;
+    this.size = size;
+    this.occurredAt = new long[size];
+    this.postedAt = new long[size];
+    this.amountCents = new long[size];
+    this.currency = new int[size];
+    this.category = new int[size];
+    this.type = new int[size];
+    this.merchant = new int[size];
+    this.dictionary = dictionary;
+    this.schema = new int[size];
+    this.schemas = schemas;
+    this.hashes = new byte[size * HASH_BYTES];
+    this.textStart = new int[size * 2];
+    this.textLength = new int[size * 2];
+    this.text = text;
+  }
+
+  public static Builder builder(String accountId) {
+    return new Builder(accountId);
+  }
+
+  /** Copies {@code records}, which must all belong to {@code accountId}, into a batch. */
+  public static TransactionBatch of(String accountId, List<? extends TransactionRecord> records) {
+    Builder b = builder(accountId);
+    records.forEach(b::add);
+    return b.build();
+  }
+
+  public String accountId() {
+    return accountId;
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public TransactionRecord get(int row) {
+    return new Row(this, checkRow(row));
+  }
+
+  /** Epoch microseconds, or {@link #NO_TIME}. */
+  public long occurredAtMicros(int row) {
+    return occurredAt[row];
+  }
+
+  /** Epoch microseconds, or {@link #NO_TIME}. */
+  public long postedAtMicros(int row) {
+    return postedAt[row];
+  }
+
+  public long amountCents(int row) {
+    return amountCents[row];
+  }
+
+  public String currency(int row) {
+    return lookup(currency[row]);
+  }
+
+  public String category(int row) {
+    return lookup(category[row]);
+  }
+
+  public String type(int row) {
+    return lookup(type[row]);
+  }
+
+  public String merchant(int row) {
+    return lookup(merchant[row]);
+  }
+
+  public String memo(int row) {
+    return text(row, MEMO);
+  }
+
+  /** Index of the row's header list in {@link #rawSchemas()}. */
+  public int rawSchema(int row) {
+    return schema[row];
+  }
+
+  /** The distinct raw header lists of the batch's rows. */
+  public List<List<String>> rawSchemas() {
+    return schemas;
+  }
+
+  public List<String> rawHeaders(int row) {
+    return schemas.get(schema[row]);
+  }
+
+  /** The row's raw values, decoded from the length-prefixed form {@code Builder} stores. */
+  public List<String> rawValues(int row) {
+    int i = row * 2 + RAW_VALUES;
+    int pos = textStart[i];
+    int end = pos + textLength[i];
+    List<String> values = new ArrayList<>(rawHeaders(row).size());
+    while (pos < end) {
+      int len = readInt(text, pos);
+      pos += Integer.BYTES;
+      if (len < 0) {
+        values.add(null);
+      } else {
+        values.add(new String(text, pos, len, StandardCharsets.UTF_8));
+        pos += len;
+      }
+    }
+    return Collections.unmodifiableList(values);
+  }
+
+  /** Lower-case hex of the row's SHA-256 hash, as {@code HashGenerator} produces it. */
+  public String hash(int row) {
+    return HEX.formatHex(hashes, row * HASH_BYTES, (row + 1) * HASH_BYTES);
+  }
+
+  /** Copies the row's 32-byte hash into {@code dst} at {@code offset}. */
+  public void hashBytes(int row, byte[] dst, int offset) {
+    System.arraycopy(hashes, row * HASH_BYTES, dst, offset, HASH_BYTES);
+  }
+
+  /**
+   * Writes the columns in the binary form {@link #readFrom(DataInput)} restores, roughly the
+   * batch's heap footprint. Used to spill parsed rows to disk.
+   */
+  public void writeTo(DataOutput out) throws IOException {
+    out.writeUTF(accountId);
+    out.writeInt(size);
+    out.writeInt(dictionary.length);
+    for (String value : dictionary) {
+      writeBytes(out, value.getBytes(StandardCharsets.UTF_8));
+    }
+    out.writeInt(schemas.size());
+    for (List<String> headers : schemas) {
+      out.writeInt(headers.size());
+      for (String header : headers) {
+        writeBytes(out, header.getBytes(StandardCharsets.UTF_8));
+      }
+    }
+    writeBytes(out, text);
+    for (int i = 0; i < size; i++) {
+      out.writeLong(occurredAt[i]);
+      out.writeLong(postedAt[i]);
+      out.writeLong(amountCents[i]);
+      out.writeInt(currency[i]);
+      out.writeInt(category[i]);
+      out.writeInt(type[i]);
+      out.writeInt(merchant[i]);
+      out.writeInt(schema[i]);
+      out.writeInt(textStart[i * 2]);
+      out.writeInt(textLength[i * 2]);
+      out.writeInt(textStart[i * 2 + 1]);
+      out.writeInt(textLength[i * 2 + 1]);
+    }
+    out.write(hashes, 0, size * HASH_BYTES);
+  }
+
+  /** Reads a batch written by {@link #writeTo(DataOutput)}. */
+  public static TransactionBatch readFrom(DataInput in) throws IOException {
+    String accountId = in.readUTF();
+    int size = in.readInt();
+    String[] dictionary = new String[in.readInt()];
+    for (int i = 0; i < dictionary.length; i++) {
+      dictionary[i] = new String(readBytes(in), StandardCharsets.UTF_8);
+    }
+    List<List<String>> schemas = new ArrayList<>();
+    for (int n = in.readInt(); n > 0; n--) {
+      String[] headers = new String[in.readInt()];
+      for (int i = 0; i < headers.length; i++) {
+        headers[i] = new String(readBytes(in), StandardCharsets.UTF_8);
+      }
+      schemas.add(List.of(headers));
+    }
+    TransactionBatch b =
+        new TransactionBatch(accountId, size, dictionary, List.copyOf(schemas), readBytes(in));
+    for (int i = 0; i < size; i++) {
+      b.occurredAt[i] = in.readLong();
+      b.postedAt[i] = in.readLong();
+      b.amountCents[i] = in.readLong();
+      b.currency[i] = in.readInt();
+      b.category[i] = in.readInt();
+      b.type[i] = in.readInt();
+      b.merchant[i] = in.readInt();
+      b.schema[i] = in.readInt();
+      b.textStart[i * 2] = in.readInt();
+      b.textLength[i * 2] = in.readInt();
+      b.textStart[i * 2 + 1] = in.readInt();
+      b.textLength[i * 2 + 1] = in.readInt();
+    }
+    in.readFully(b.hashes);
+    return b;
+  }
+
+  private static void writeBytes(DataOutput out, byte[] bytes) throws IOException {
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static byte[] readBytes(DataInput in) throws IOException {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return bytes;
+  }
+
+  private static int readInt(byte[] bytes, int pos) {
+    return (bytes[pos] & 0xff) << 24
+        | (bytes[pos + 1] & 0xff) << 16
+        | (bytes[pos + 2] & 0xff) << 8
+        | (bytes[pos + 3] & 0xff);
+  }
+
+  private String lookup(int code) {
+    return code < 0 ? null : dictionary[code];
+  }
+
+  private String text(int row, int column) {
+    int i = row * 2 + column;
+    int len = textLength[i];
+    return len < 0 ? null : new String(text, textStart[i], len, StandardCharsets.UTF_8);
+  }
+
+  private static Instant instant(long micros) {
+    return micros == NO_TIME ? null : Instant.EPOCH.plus(micros, ChronoUnit.MICROS);
+  }
+
+  private int checkRow(int row) {
+    if (row < 0 || row >= size) {
+      throw new IndexOutOfBoundsException("row " + row + " of " + size);
+    }
+    return row;
+  }
+
+  /**
+   * Flyweight view of one row; every accessor reads the batch's columns. Not a record, as a
+   * component-wise {@code hashCode} would hash the whole batch through {@link AbstractList}.
+   */
+  private static final class Row implements TransactionRecord {
+    private final TransactionBatch batch;
+    private final int row;
+
+    private Row(TransactionBatch batch, int row) {
+      this.batch = batch;
+      this.row = row;
+    }
+
+    @Override
+    public String accountId() {
+      return batch.accountId;
+    }
+
+    @Override
+    public Instant occurredAt() {
+      return instant(batch.occurredAt[row]);
+    }
+
+    @Override
+    public Instant postedAt() {
+      return instant(batch.postedAt[row]);
+    }
+
+    @Override
+    public Money amount() {
+      return new Money(batch.amountCents[row], batch.currency(row));
+    }
+
+    @Override
+    public String merchant() {
+      return batch.merchant(row);
+    }
+
+    @Override
+    public String category() {
+      return batch.category(row);
+    }
+
+    @Override
+    public String type() {
+      return batch.type(row);
+    }
+
+    @Override
+    public String memo() {
+      return batch.memo(row);
+    }
+
+    @Override
+    public String hash() {
+      return batch.hash(row);
+    }
+
+    @Override
+    public byte[] hashBytes() {
+      byte[] digest = new byte[HASH_BYTES];
+      batch.hashBytes(row, digest, 0);
+      return digest;
+    }
+
+    @Override
+    public List<String> rawHeaders() {
+      return batch.rawHeaders(row);
+    }
+
+    @Override
+    public List<String> rawValues() {
+      return batch.rawValues(row);
+    }
+  }
+
+  /** Appends rows column by column, growing the arrays as needed. */
+  public static final class Builder {
+    private final String accountId;
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final List<String> dictionary = new ArrayList<>();
+    private final Map<List<String>, Integer> schemaCodes = new HashMap<>();
+    private final List<List<String>> schemas = new ArrayList<>();
+    private int size;
+    private long[] occurredAt = new long[16];
+    private long[] postedAt = new long[16];
+    private long[] amountCents = new long[16];
+    private int[] currency = new int[16];
+    private int[] category = new int[16];
+    private int[] type = new int[16];
+    private int[] merchant = new int[16];
+    private int[] schema = new int[16];
+    private byte[] hashes = new byte[16 * HASH_BYTES];
+    private int[] textStart = new int[32];
+    private int[] textLength = new int[32];
+    private byte[] text = new byte[1024];
+    private int textSize;
+    private long dictionaryBytes;
+
+    private Builder(String accountId) {
+      this.accountId = accountId;
+    }
+
+    /**
+     * Appends {@code t}, which must belong to this batch's account and carry a SHA-256 hex hash.
+     */
+    public Builder add(TransactionRecord t) {
+      if (!accountId.equals(t.accountId())) {
+        throw new IllegalArgumentException(
+            "Transaction for account " + t.accountId() + " added to batch for " + accountId);
+      }
+      byte[] digest = t.hashBytes();
+      ensureCapacity(size + 1);
+      int row = size;
+      occurredAt[row] = micros(t.occurredAt());
+      postedAt[row] = micros(t.postedAt());
+      Money amount = t.amount();
+      amountCents[row] = amount.cents();
+      currency[row] = code(amount.currency());
+      category[row] = code(t.category());
+      type[row] = code(t.type());
+      merchant[row] = code(t.merchant());
+      schema[row] = schemaCode(t.rawHeaders());
+      System.arraycopy(digest, 0, hashes, row * HASH_BYTES, HASH_BYTES);
+      appendText(row * 2 + MEMO, t.memo());
+      appendValues(row * 2 + RAW_VALUES, t.rawValues());
+      size++;
+      return this;
+    }
+
+    public int size() {
+      return size;
+    }
+
+    /** Approximate heap bytes the rows added so far will occupy once built. */
+    public long estimatedBytes() {
+      return (long) size * ROW_BYTES + textSize + dictionaryBytes;
+    }
+
+    public TransactionBatch build() {
+      return new TransactionBatch(this);
+    }
+
+    private int code(String value) {
+      if (value == null) {
+        return -1;
+      }
+      Integer code = codes.get(value);
+      if (code == null) {
+        code = dictionary.size();
+        codes.put(value, code);
+        dictionary.add(value);
+        dictionaryBytes += 64 + 2L * value.length();
+      }
+      return code;
+    }
+
+    private int schemaCode(List<String> headers) {
+      Integer code = schemaCodes.get(headers);
+      if (code == null) {
+        List<String> copy = List.copyOf(headers);
+        code = schemas.size();
+        schemaCodes.put(copy, code);
+        schemas.add(copy);
+        for (String header : copy) {
+          dictionaryBytes += 64 + 2L * header.length();
+        }
+      }
+      return code;
+    }
+
+    /**
+     * Stores the values as one range of 4-byte big-endian lengths (-1 for null) and UTF-8 bytes.
+     */
+    private void appendValues(int slot, List<String> values) {
+      int start = textSize;
+      for (String value : values) {
+        byte[] bytes = value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+        int len = bytes == null ? -1 : bytes.length;
+        reserve(Integer.BYTES + Math.max(len, 0));
+        text[textSize++] = (byte) (len >>> 24);
+        text[textSize++] = (byte) (len >>> 16);
+        text[textSize++] = (byte) (len >>> 8);
+        text[textSize++] = (byte) len;
+        if (bytes != null) {
+          System.arraycopy(bytes, 0, text, textSize, len);
+          textSize += len;
+        }
+      }
+      textStart[slot] = start;
+      textLength[slot] = textSize - start;
+    }
+
+    private void reserve(int bytes) {
+      if (textSize + bytes > text.length) {
+        text = Arrays.copyOf(text, Math.max(text.length * 2, textSize + bytes));
+      }
+    }
+
+    private void appendText(int slot, String value) {
+      if (value == null) {
+        textStart[slot] = textSize;
+        textLength[slot] = -1;
+        return;
+      }
+      byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+      reserve(bytes.length);
+      System.arraycopy(bytes, 0, text, textSize, bytes.length);
+      textStart[slot] = textSize;
+      textLength[slot] = bytes.length;
+      textSize += bytes.length;
+    }
+
+    private void ensureCapacity(int rows) {
+      if (rows <= occurredAt.length) {
+        return;
+      }
+      int n = Math.max(rows, occurredAt.length * 2);
+      occurredAt = Arrays.copyOf(occurredAt, n);
+      postedAt = Arrays.copyOf(postedAt, n);
+      amountCents = Arrays.copyOf(amountCents, n);
+      currency = Arrays.copyOf(currency, n);
+      category = Arrays.copyOf(category, n);
+      type = Arrays.copyOf(type, n);
+      merchant = Arrays.copyOf(merchant, n);
+      schema = Arrays.copyOf(schema, n);
+      hashes = Arrays.copyOf(hashes, n * HASH_BYTES);
+      textStart = Arrays.copyOf(textStart, n * 2);
+      textLength = Arrays.copyOf(textLength, n * 2);
+    }
+
+    private static long micros(Instant instant) {
+      return instant == null ? NO_TIME : ChronoUnit.MICROS.between(Instant.EPOCH, instant);
+    }
+  }
+}
@@ -1,6 +1,10 @@
 package org.artificers.ingest.model;
 
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import java.time.Instant;
+import java.util.List;
+import org.artificers.ingest.service.HashGenerator;
 
 public interface TransactionRecord {
   String accountId();
@@ -19,7 +23,33 @@ public interface TransactionRecord {
 
   String memo();
 
+  /** Lower-case hex SHA-256 dedup hash; see {@code HashGenerator}. */
   String hash();
 
-  String rawJson();
+  /** {@link #hash()} as the 32-byte digest stored in {@code transactions.hash}. */
+  default byte[] hashBytes() {
+    return HashGenerator.digest(hash());
+  }
+
+  /**
+   * Normalized header names of the source file's columns, stored once per list in V15's {@code
+   * source_schemas}.
+   */
+  List<String> rawHeaders();
+
+  /** The row's original values, one per {@link #rawHeaders()} entry. */
+  List<String> rawValues();
+
+  /**
+   * Headers and values as one JSON object, the shape {@code transactions_view.raw_json} rebuilds.
+   */
+  default String rawJson() {
+    List<String> headers = rawHeaders();
+    List<String> values = rawValues();
+    ObjectNode node = JsonNodeFactory.instance.objectNode();
+    for (int i = 0; i < headers.size(); i++) {
+      node.put(headers.get(i), values.get(i));
+    }
+    return node.toString();
+  }
 }
@@ -0,0 +1,156 @@
+package org.artificers.ingest.query;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * HTTP listener serving {@code GET /transactions} as NDJSON from a {@link TransactionQueryService}.
+ * Query parameters: {@code account} (id), {@code from} and {@code to} (ISO date or instant, UTC),
+ * {@code min_cents}, {@code max_cents}, {@code category}, {@code merchant_prefix}, {@code limit} (0
+ * for every row) and {@code after} ({@code <occurred_at>,<id>} of the last row already read). The
+ * response is chunked and written while rows are read, so bad parameters are the only errors
+ * reported with a status code; a failure mid-stream truncates the body.
+ */
+public final class QueryHttpServer implements AutoCloseable {
+  private static final Logger log = LoggerFactory.getLogger(QueryHttpServer.class);
+
+  static final String CONTENT_TYPE = "application/x-ndjson";
+  static final int THREADS = 4;
+
+  private final HttpServer server;
+  private final ExecutorService executor;
+
+  private QueryHttpServer(HttpServer server, ExecutorService executor) {
+    this.server = server;
+    this.executor = executor;
+  }
+
+  /** Binds to {@code port} on the loopback interface (use 0 for an ephemeral port) and starts. */
+  public static QueryHttpServer start(int port, TransactionQueryService service)
+      throws IOException {
+    return start(InetAddress.getLoopbackAddress(), port, service);
+  }
+
+  /** Binds to {@code port} on {@code address}; a wildcard address listens on every interface. */
+  public static QueryHttpServer start(
+      InetAddress address, int port, TransactionQueryService service) throws IOException {
+    HttpServer server = HttpServer.create(new InetSocketAddress(address, port), 0);
+    // Each request holds a pooled connection for as long as the client keeps reading; a few threads
+    // leave the rest of the pool to ingest.
+    ExecutorService executor =
+        Executors.newFixedThreadPool(
+            THREADS,
+            r -> {
+              Thread t = new Thread(r);
+              t.setDaemon(true);
+              t.setName("transaction-query");
+              return t;
+            });
+    server.setExecutor(executor);
+    server.createContext("/transactions", exchange -> handle(exchange, service));
+    server.start();
+    return new QueryHttpServer(server, executor);
+  }
+
+  public InetSocketAddress address() {
+    return server.getAddress();
+  }
+
+  public int port() {
+    return server.getAddress().getPort();
+  }
+
+  private static void handle(HttpExchange exchange, TransactionQueryService service)
+      throws IOException {
+    try (exchange) {
+      if (!"GET".equals(exchange.getRequestMethod())) {
+        exchange.sendResponseHeaders(405, -1);
+        return;
+      }
+      TransactionQuery query;
+      try {
+        query = parse(exchange.getRequestURI().getRawQuery());
+      } catch (IllegalArgumentException | DateTimeException e) {
+        byte[] body = (e.getMessage() + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(400, body.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+          os.write(body);
+        }
+        return;
+      }
+      exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+      exchange.sendResponseHeaders(200, 0);
+      try (OutputStream os = exchange.getResponseBody()) {
+        service.stream(query, os);
+      } catch (IOException | RuntimeException e) {
+        log.warn("Transaction query {} failed mid-stream", exchange.getRequestURI(), e);
+      }
+    }
+  }
+
+  static TransactionQuery parse(String rawQuery) {
+    Map<String, String> params = new HashMap<>();
+    if (rawQuery != null && !rawQuery.isEmpty()) {
+      for (String pair : rawQuery.split("&")) {
+        int eq = pair.indexOf('=');
+        String name = eq < 0 ? pair : pair.substring(0, eq);
+        String value = eq < 0 ? "" : pair.substring(eq + 1);
+        params.put(
+            URLDecoder.decode(name, StandardCharsets.UTF_8),
+            URLDecoder.decode(value, StandardCharsets.UTF_8));
+      }
+    }
+    String limit = params.get("limit");
+    String after = params.get("after");
+    return new TransactionQuery(
+        longParam(params, "account"),
+        instantParam(params, "from"),
+        instantParam(params, "to"),
+        longParam(params, "min_cents"),
+        longParam(params, "max_cents"),
+        params.get("category"),
+        params.get("merchant_prefix"),
+        after == null ? null : TransactionQuery.Key.parse(after),
+        limit == null ? TransactionQuery.DEFAULT_LIMIT : Integer.parseInt(limit));
+  }
+
+  private static Long longParam(Map<String, String> params, String name) {
+    String value = params.get(name);
+    return value == null ? null : Long.parseLong(value);
+  }
+
+  /** {@code 2024-01-31} is that day's UTC midnight; anything else must be an ISO instant. */
+  private static Instant instantParam(Map<String, String> params, String name) {
+    String value = params.get(name);
+    if (value == null) {
+      return null;
+    }
+    if (value.length() == 10) {
+      return LocalDate.parse(value).atStartOfDay(ZoneOffset.UTC).toInstant();
+    }
+    return Instant.parse(value);
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+    executor.shutdownNow();
+  }
+}
@@ -0,0 +1,359 @@
+package org.artificers.ingest.query;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.opencsv.CSVWriter;
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
+import org.jooq.Cursor;
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.Record;
+import org.jooq.impl.DSL;
+import org.jooq.impl.SQLDataType;
+
+/**
+ * Dumps {@code transactions_view} to gzip-compressed CSV or NDJSON files, one per account and UTC
+ * month: {@code <dir>/<account_id>/<yyyy-MM>.<format>.gz}, with undated rows in {@code
+ * undated.<format>.gz}. Each account is read through its own cursor in {@code (occurred_at, id)}
+ * order, so files are written one after another and memory holds one fetch of rows and one
+ * compressor per worker, whatever the size of the table. Existing files are overwritten.
+ */
+public class TransactionExporter {
+  public static final int DEFAULT_FETCH_SIZE = 1000;
+
+  /** Output encodings; CSV starts each file with a header row. */
+  public enum Format {
+    CSV("csv"),
+    NDJSON("ndjson");
+
+    private final String extension;
+
+    Format(String extension) {
+      this.extension = extension;
+    }
+
+    String fileName(String stem) {
+      return stem + "." + extension + ".gz";
+    }
+  }
+
+  /**
+   * What one account, or a whole export, wrote: {@code bytes} on disk, {@code rawBytes} before
+   * gzip.
+   */
+  public record Summary(long rows, int files, long bytes, long rawBytes) {
+    static final Summary NONE = new Summary(0, 0, 0, 0);
+
+    Summary plus(Summary other) {
+      return new Summary(
+          rows + other.rows, files + other.files, bytes + other.bytes, rawBytes + other.rawBytes);
+    }
+  }
+
+  /** Receives each account's summary as it finishes, from the worker that exported it. */
+  public interface Listener {
+    void exported(long accountId, Summary summary);
+  }
+
+  private static final Field<Long> ID = DSL.field("id", SQLDataType.BIGINT);
+  private static final Field<Long> ACCOUNT_ID = DSL.field("account_id", SQLDataType.BIGINT);
+  private static final Field<String> INSTITUTION = DSL.field("institution", SQLDataType.VARCHAR);
+  private static final Field<OffsetDateTime> OCCURRED_AT =
+      DSL.field("occurred_at", SQLDataType.TIMESTAMPWITHTIMEZONE);
+  private static final Field<OffsetDateTime> POSTED_AT =
+      DSL.field("posted_at", SQLDataType.TIMESTAMPWITHTIMEZONE);
+  private static final Field<Long> AMOUNT_CENTS = DSL.field("amount_cents", SQLDataType.BIGINT);
+  private static final Field<String> CURRENCY = DSL.field("currency", SQLDataType.VARCHAR);
+  private static final Field<String> MERCHANT = DSL.field("merchant", SQLDataType.VARCHAR);
+  private static final Field<String> CATEGORY = DSL.field("category", SQLDataType.VARCHAR);
+  private static final Field<String> TXN_TYPE = DSL.field("txn_type", SQLDataType.VARCHAR);
+  private static final Field<String> MEMO = DSL.field("memo", SQLDataType.VARCHAR);
+  private static final Field<String> HASH = DSL.field("hash", SQLDataType.VARCHAR);
+  private static final Field<String> RAW_JSON = DSL.field("raw_json", SQLDataType.VARCHAR);
+  private static final Field<OffsetDateTime> CREATED_AT =
+      DSL.field("created_at", SQLDataType.TIMESTAMPWITHTIMEZONE);
+  private static final List<Field<?>> COLUMNS =
+      List.of(
+          ID,
+          ACCOUNT_ID,
+          INSTITUTION,
+          OCCURRED_AT,
+          POSTED_AT,
+          AMOUNT_CENTS,
+          CURRENCY,
+          MERCHANT,
+          CATEGORY,
+          TXN_TYPE,
+          MEMO,
+          HASH,
+          RAW_JSON,
+          CREATED_AT);
+  private static final JsonFactory JSON = new JsonFactory();
+
+  private final DSLContext dsl;
+  private final int fetchSize;
+
+  public TransactionExporter(DSLContext dsl) {
+    this(dsl, DEFAULT_FETCH_SIZE);
+  }
+
+  public TransactionExporter(DSLContext dsl, int fetchSize) {
+    if (fetchSize < 1) {
+      throw new IllegalArgumentException("fetchSize must be positive");
+    }
+    this.dsl = dsl;
+    this.fetchSize = fetchSize;
+  }
+
+  /**
+   * Exports every account under {@code dir}, {@code workers} accounts at a time. Each worker holds
+   * a pooled connection for the length of an account, so {@code workers} should stay below the pool
+   * size.
+   */
+  public Summary export(Path dir, Format format, int workers, Listener listener)
+      throws IOException, InterruptedException {
+    if (workers < 1) {
+      throw new IllegalArgumentException("workers must be positive");
+    }
+    List<Long> accounts = dsl.select(ID).from(DSL.table("accounts")).orderBy(ID).fetch(ID);
+    ExecutorService executor =
+        Executors.newFixedThreadPool(
+            workers,
+            r -> {
+              Thread t = new Thread(r);
+              t.setDaemon(true);
+              t.setName("transaction-export");
+              return t;
+            });
+    try {
+      List<Future<Summary>> results = new ArrayList<>();
+      for (long account : accounts) {
+        results.add(
+            executor.submit(
+                () -> {
+                  Summary s = exportAccount(dir, format, account);
+                  listener.exported(account, s);
+                  return s;
+                }));
+      }
+      Summary total = Summary.NONE;
+      for (Future<Summary> result : results) {
+        try {
+          total = total.plus(result.get());
+        } catch (ExecutionException e) {
+          if (e.getCause() instanceof UncheckedIOException io) {
+            throw io.getCause();
+          }
+          if (e.getCause() instanceof IOException io) {
+            throw io;
+          }
+          throw new IllegalStateException("Export failed", e.getCause());
+        }
+      }
+      return total;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /** Exports one account's rows; runs in a transaction so the driver honours the fetch size. */
+  Summary exportAccount(Path dir, Format format, long accountId) throws IOException {
+    Path accountDir = dir.resolve(Long.toString(accountId));
+    try {
+      return dsl.transactionResult(
+          conf -> {
+            try (Cursor<Record> cursor =
+                    DSL.using(conf)
+                        .select(COLUMNS)
+                        .from(DSL.table("transactions_view"))
+                        .where(ACCOUNT_ID.eq(accountId))
+                        .orderBy(OCCURRED_AT.asc().nullsLast(), ID)
+                        .fetchSize(fetchSize)
+                        .fetchLazy();
+                FileSink sink = new FileSink(accountDir, format)) {
+              for (Record r : cursor) {
+                sink.write(r);
+              }
+              return sink.summary();
+            } catch (IOException e) {
+              throw new UncheckedIOException(e);
+            }
+          });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  /** Writes rows to the file of their month, closing each file when the month changes. */
+  private static final class FileSink implements AutoCloseable {
+    private final Path dir;
+    private final Format format;
+    private String stem;
+    private Path file;
+    private CountingOutputStream raw;
+    private RowWriter writer;
+    private Summary summary = Summary.NONE;
+    private long rows;
+
+    FileSink(Path dir, Format format) {
+      this.dir = dir;
+      this.format = format;
+    }
+
+    void write(Record r) throws IOException {
+      OffsetDateTime occurredAt = r.get(OCCURRED_AT);
+      String next =
+          occurredAt == null
+              ? "undated"
+              : YearMonth.from(occurredAt.withOffsetSameInstant(ZoneOffset.UTC)).toString();
+      if (!next.equals(stem)) {
+        finish();
+        open(next);
+      }
+      writer.write(r);
+      rows++;
+    }
+
+    Summary summary() throws IOException {
+      finish();
+      return summary;
+    }
+
+    private void open(String next) throws IOException {
+      Files.createDirectories(dir);
+      stem = next;
+      file = dir.resolve(format.fileName(next));
+      raw =
+          new CountingOutputStream(
+              new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(file)), 1 << 16));
+      writer = format == Format.CSV ? new CsvRowWriter(raw) : new NdjsonRowWriter(raw);
+    }
+
+    private void finish() throws IOException {
+      if (writer == null) {
+        return;
+      }
+      writer.close();
+      summary = summary.plus(new Summary(rows, 1, Files.size(file), raw.count));
+      writer = null;
+      rows = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+      finish();
+    }
+  }
+
+  private interface RowWriter extends AutoCloseable {
+    void write(Record r) throws IOException;
+
+    @Override
+    void close() throws IOException;
+  }
+
+  private static final class CsvRowWriter implements RowWriter {
+    private final CSVWriter csv;
+    private final String[] row = new String[COLUMNS.size()];
+
+    CsvRowWriter(OutputStream out) {
+      csv = new CSVWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+      csv.writeNext(COLUMNS.stream().map(Field::getName).toArray(String[]::new), false);
+    }
+
+    @Override
+    public void write(Record r) {
+      for (int i = 0; i < row.length; i++) {
+        row[i] = text(r.get(i));
+      }
+      csv.writeNext(row, false);
+    }
+
+    @Override
+    public void close() throws IOException {
+      csv.close();
+    }
+  }
+
+  private static final class NdjsonRowWriter implements RowWriter {
+    private final JsonGenerator json;
+
+    NdjsonRowWriter(OutputStream out) throws IOException {
+      json = JSON.createGenerator(out, JsonEncoding.UTF8);
+      json.setRootValueSeparator(null);
+    }
+
+    @Override
+    public void write(Record r) throws IOException {
+      json.writeStartObject();
+      for (int i = 0; i < COLUMNS.size(); i++) {
+        Field<?> column = COLUMNS.get(i);
+        Object value = r.get(i);
+        json.writeFieldName(column.getName());
+        if (value == null) {
+          json.writeNull();
+        } else if (value instanceof Long l) {
+          json.writeNumber(l);
+        } else if (column == RAW_JSON) {
+          json.writeRawValue((String) value);
+        } else {
+          json.writeString(text(value));
+        }
+      }
+      json.writeEndObject();
+      json.writeRaw('\n');
+    }
+
+    @Override
+    public void close() throws IOException {
+      json.close();
+    }
+  }
+
+  private static String text(Object value) {
+    if (value instanceof OffsetDateTime t) {
+      return t.toInstant().toString();
+    }
+    return Objects.toString(value, "");
+  }
+
+  private static final class CountingOutputStream extends FilterOutputStream {
+    long count;
+
+    CountingOutputStream(OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      count += len;
+    }
+  }
+}
@@ -0,0 +1,69 @@
+package org.artificers.ingest.query;
+
+import java.time.Instant;
+
+/**
+ * Filters and page bounds for {@link TransactionQueryService}. Every filter is optional ({@code
+ * null}); {@code from} and {@code minCents}/{@code maxCents} are inclusive, {@code to} is
+ * exclusive.
+ *
+ * @param merchantPrefix case-sensitive prefix of {@code merchant}
+ * @param after key of the last row of the previous page; {@code null} starts at the oldest row
+ * @param limit rows per page; 0 streams every matching row
+ */
+public record TransactionQuery(
+    Long accountId,
+    Instant from,
+    Instant to,
+    Long minCents,
+    Long maxCents,
+    String category,
+    String merchantPrefix,
+    Key after,
+    int limit) {
+  public static final int DEFAULT_LIMIT = 1000;
+
+  public TransactionQuery {
+    if (limit < 0) {
+      throw new IllegalArgumentException("limit must not be negative");
+    }
+  }
+
+  /** A query matching every dated row, one {@link #DEFAULT_LIMIT} page at a time. */
+  public static TransactionQuery all() {
+    return new TransactionQuery(null, null, null, null, null, null, null, null, DEFAULT_LIMIT);
+  }
+
+  /** The same filters, resuming after {@code key}. */
+  public TransactionQuery after(Key key) {
+    return new TransactionQuery(
+        accountId, from, to, minCents, maxCents, category, merchantPrefix, key, limit);
+  }
+
+  /**
+   * Position of a row in {@code (occurred_at, id)} order. Its text form, {@code
+   * <occurred_at>,<id>}, is what the HTTP {@code after} parameter takes.
+   */
+  public record Key(Instant occurredAt, long id) {
+    public Key {
+      if (occurredAt == null) {
+        throw new IllegalArgumentException("occurredAt is required");
+      }
+    }
+
+    public static Key parse(String text) {
+      int comma = text.lastIndexOf(',');
+      if (comma < 0) {
+        throw new IllegalArgumentException("Expected <occurred_at>,<id> but got " + text);
+      }
+      return new Key(
+          Instant.parse(text.substring(0, comma).trim()),
+          Long.parseLong(text.substring(comma + 1).trim()));
+    }
+
+    @Override
+    public String toString() {
+      return occurredAt + "," + id;
+    }
+  }
+}
@@ -0,0 +1,165 @@
+package org.artificers.ingest.query;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import org.artificers.jooq.tables.Transactions;
+import org.jooq.Condition;
+import org.jooq.Cursor;
+import org.jooq.DSLContext;
+import org.jooq.Record;
+import org.jooq.SelectLimitStep;
+import org.jooq.impl.DSL;
+
+/**
+ * Read side of {@code transactions}: streams the rows matching a {@link TransactionQuery} as
+ * NDJSON, one object per line, in {@code (occurred_at, id)} order. Pages resume after the key of
+ * the last row written (keyset pagination, served by the V17 indexes) instead of skipping rows with
+ * {@code OFFSET}, and rows are read through a cursor {@code fetchSize} at a time, so memory stays
+ * flat however many rows a page holds. Undated rows have no key and are never returned.
+ */
+public class TransactionQueryService {
+  public static final int DEFAULT_FETCH_SIZE = 500;
+
+  private static final HexFormat HEX = HexFormat.of();
+  private static final JsonFactory JSON = new JsonFactory();
+
+  /** Rows written by one {@link #stream} call and the key to resume after, if any. */
+  public record Page(long rows, TransactionQuery.Key last) {}
+
+  private final DSLContext dsl;
+  private final int fetchSize;
+
+  public TransactionQueryService(DSLContext dsl) {
+    this(dsl, DEFAULT_FETCH_SIZE);
+  }
+
+  public TransactionQueryService(DSLContext dsl, int fetchSize) {
+    if (fetchSize < 1) {
+      throw new IllegalArgumentException("fetchSize must be positive");
+    }
+    this.dsl = dsl;
+    this.fetchSize = fetchSize;
+  }
+
+  /**
+   * Writes the page of rows matching {@code query} to {@code out}, flushing it at the end. Runs in
+   * a transaction because the PostgreSQL driver only honours the fetch size with auto-commit off.
+   */
+  public Page stream(TransactionQuery query, OutputStream out) throws IOException {
+    try {
+      return dsl.transactionResult(conf -> write(DSL.using(conf), query, out));
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  private Page write(DSLContext tx, TransactionQuery query, OutputStream out) {
+    Transactions t = Transactions.TRANSACTIONS;
+    SelectLimitStep<Record> select =
+        tx.select(
+                List.of(
+                    t.ID,
+                    t.ACCOUNT_ID,
+                    t.OCCURRED_AT,
+                    t.POSTED_AT,
+                    t.AMOUNT_CENTS,
+                    t.CURRENCY,
+                    t.MERCHANT,
+                    t.CATEGORY,
+                    t.TXN_TYPE,
+                    t.MEMO,
+                    t.HASH))
+            .from(t)
+            .where(conditions(t, query))
+            .orderBy(t.OCCURRED_AT, t.ID);
+    long rows = 0;
+    TransactionQuery.Key last = null;
+    try (Cursor<Record> cursor =
+            (query.limit() > 0 ? select.limit(query.limit()) : select)
+                .fetchSize(fetchSize)
+                .fetchLazy();
+        JsonGenerator json = JSON.createGenerator(out, JsonEncoding.UTF8)) {
+      json.configure(JsonGenerator.Feature.AUTO_CLOSE_TARGET, false);
+      json.setRootValueSeparator(null);
+      for (Record r : cursor) {
+        OffsetDateTime occurredAt = r.get(t.OCCURRED_AT);
+        long id = r.get(t.ID);
+        json.writeStartObject();
+        json.writeNumberField("id", id);
+        json.writeNumberField("account_id", r.get(t.ACCOUNT_ID));
+        json.writeStringField("occurred_at", occurredAt.toInstant().toString());
+        writeTimestamp(json, "posted_at", r.get(t.POSTED_AT));
+        json.writeNumberField("amount_cents", r.get(t.AMOUNT_CENTS));
+        json.writeStringField("currency", r.get(t.CURRENCY));
+        json.writeStringField("merchant", r.get(t.MERCHANT));
+        json.writeStringField("category", r.get(t.CATEGORY));
+        json.writeStringField("txn_type", r.get(t.TXN_TYPE));
+        json.writeStringField("memo", r.get(t.MEMO));
+        json.writeStringField("hash", HEX.formatHex(r.get(t.HASH)));
+        json.writeEndObject();
+        json.writeRaw('\n');
+        rows++;
+        last = new TransactionQuery.Key(occurredAt.toInstant(), id);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return new Page(rows, last);
+  }
+
+  private static List<Condition> conditions(Transactions t, TransactionQuery query) {
+    List<Condition> where = new ArrayList<>();
+    where.add(t.OCCURRED_AT.isNotNull());
+    if (query.accountId() != null) {
+      where.add(t.ACCOUNT_ID.eq(query.accountId()));
+    }
+    if (query.from() != null) {
+      where.add(t.OCCURRED_AT.ge(utc(query.from())));
+    }
+    if (query.to() != null) {
+      where.add(t.OCCURRED_AT.lt(utc(query.to())));
+    }
+    if (query.minCents() != null) {
+      where.add(t.AMOUNT_CENTS.ge(query.minCents()));
+    }
+    if (query.maxCents() != null) {
+      where.add(t.AMOUNT_CENTS.le(query.maxCents()));
+    }
+    if (query.category() != null) {
+      where.add(t.CATEGORY.eq(query.category()));
+    }
+    if (query.merchantPrefix() != null) {
+      where.add(t.MERCHANT.startsWith(query.merchantPrefix()));
+    }
+    if (query.after() != null) {
+      OffsetDateTime occurredAt = utc(query.after().occurredAt());
+      where.add(DSL.row(t.OCCURRED_AT, t.ID).gt(occurredAt, query.after().id()));
+      // Implied by the row comparison, but only a plain bound lets PostgreSQL prune partitions.
+      where.add(t.OCCURRED_AT.ge(occurredAt));
+    }
+    return where;
+  }
+
+  private static void writeTimestamp(JsonGenerator json, String name, OffsetDateTime value)
+      throws IOException {
+    if (value == null) {
+      json.writeNullField(name);
+    } else {
+      json.writeStringField(name, value.toInstant().toString());
+    }
+  }
+
+  private static OffsetDateTime utc(Instant instant) {
+    return instant.atOffset(ZoneOffset.UTC);
+  }
+}
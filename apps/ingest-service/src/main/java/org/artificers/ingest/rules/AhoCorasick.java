@@ -0,0 +1,141 @@
+package org.artificers.ingest.rules;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.TreeMap;
+
+/**
+ * Aho-Corasick automaton over a fixed keyword list: one left-to-right pass reports every keyword
+ * occurrence in a text, in time linear in the text plus the number of hits however many keywords
+ * there are. Children are kept as sorted {@code char} arrays, so a step is a binary search over at
+ * most the node's fan-out. Immutable and safe to share between threads once built.
+ */
+public final class AhoCorasick {
+  /** Receives a hit: keyword {@code keyword} ends just before {@code end}. */
+  @FunctionalInterface
+  public interface Hits {
+    void hit(int keyword, int end);
+  }
+
+  private final char[][] labels;
+  private final int[][] children;
+  private final int[] fail;
+
+  /** Keyword ending at the node, or -1; the first given wins among duplicates. */
+  private final int[] word;
+
+  /** Nearest node on the failure chain that ends a keyword, or -1. */
+  private final int[] dict;
+
+  private final int[] lengths;
+
+  private AhoCorasick(
+      char[][] labels, int[][] children, int[] fail, int[] word, int[] dict, int[] lengths) {
+    this.labels = labels;
+    this.children = children;
+    this.fail = fail;
+    this.word = word;
+    this.dict = dict;
+    this.lengths = lengths;
+  }
+
+  /** Builds the automaton; keyword {@code i} is reported as {@code i}. Empty keywords never hit. */
+  public static AhoCorasick compile(List<String> keywords) {
+    List<TreeMap<Character, Integer>> trie = new ArrayList<>();
+    List<Integer> words = new ArrayList<>();
+    trie.add(new TreeMap<>());
+    words.add(-1);
+    int[] lengths = new int[keywords.size()];
+    for (int k = 0; k < keywords.size(); k++) {
+      String keyword = keywords.get(k);
+      lengths[k] = keyword.length();
+      if (keyword.isEmpty()) {
+        continue;
+      }
+      int node = 0;
+      for (int i = 0; i < keyword.length(); i++) {
+        Integer next = trie.get(node).get(keyword.charAt(i));
+        if (next == null) {
+          next = trie.size();
+          trie.add(new TreeMap<>());
+          words.add(-1);
+          trie.get(node).put(keyword.charAt(i), next);
+        }
+        node = next;
+      }
+      if (words.get(node) == -1) {
+        words.set(node, k);
+      }
+    }
+
+    int n = trie.size();
+    char[][] labels = new char[n][];
+    int[][] children = new int[n][];
+    int[] word = new int[n];
+    for (int node = 0; node < n; node++) {
+      TreeMap<Character, Integer> edges = trie.get(node);
+      labels[node] = new char[edges.size()];
+      children[node] = new int[edges.size()];
+      int i = 0;
+      for (var e : edges.entrySet()) {
+        labels[node][i] = e.getKey();
+        children[node][i++] = e.getValue();
+      }
+      word[node] = words.get(node);
+    }
+
+    // Breadth-first, so every node's failure target is finished before its children need it
+    int[] fail = new int[n];
+    int[] dict = new int[n];
+    Arrays.fill(dict, -1);
+    Queue<Integer> queue = new ArrayDeque<>();
+    for (int child : children[0]) {
+      queue.add(child);
+    }
+    while (!queue.isEmpty()) {
+      int node = queue.remove();
+      for (int i = 0; i < labels[node].length; i++) {
+        char c = labels[node][i];
+        int child = children[node][i];
+        int f = fail[node];
+        int target;
+        while ((target = step(labels, children, f, c)) < 0 && f != 0) {
+          f = fail[f];
+        }
+        fail[child] = Math.max(target, 0);
+        dict[child] = word[fail[child]] >= 0 ? fail[child] : dict[fail[child]];
+        queue.add(child);
+      }
+    }
+    return new AhoCorasick(labels, children, fail, word, dict, lengths);
+  }
+
+  /** Length of keyword {@code keyword}, so callers can find where a hit starts. */
+  public int length(int keyword) {
+    return lengths[keyword];
+  }
+
+  /** Reports every keyword occurrence in {@code text} in order of end position. */
+  public void match(CharSequence text, Hits hits) {
+    int node = 0;
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      int next;
+      while ((next = step(labels, children, node, c)) < 0 && node != 0) {
+        node = fail[node];
+      }
+      node = Math.max(next, 0);
+      for (int out = word[node] >= 0 ? node : dict[node]; out >= 0; out = dict[out]) {
+        hits.hit(word[out], i + 1);
+      }
+    }
+  }
+
+  private static int step(char[][] labels, int[][] children, int node, char c) {
+    int i = Arrays.binarySearch(labels[node], c);
+    return i < 0 ? -1 : children[node][i];
+  }
+}
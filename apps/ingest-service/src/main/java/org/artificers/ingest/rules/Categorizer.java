@@ -0,0 +1,55 @@
+package org.artificers.ingest.rules;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Categorizes rows with the {@link CategoryRules} compiled from {@value #FILE_NAME} in the config
+ * directory, reloaded like {@link MerchantNormalizer}'s rules: edits apply to rows ingested
+ * afterwards without a restart, an invalid file keeps the previous rules and a missing one means no
+ * rules.
+ */
+public class Categorizer {
+  /** Rule file name under {@code INGEST_CONFIG_DIR}. */
+  public static final String FILE_NAME = "categories.json";
+
+  private final ReloadingFile<CategoryRules> rules;
+
+  public Categorizer(Path file, ObjectMapper mapper) {
+    this(file, mapper, MerchantNormalizer.DEFAULT_CHECK_INTERVAL);
+  }
+
+  /**
+   * @param file rule file, or null for a categorizer without rules
+   */
+  public Categorizer(Path file, ObjectMapper mapper, Duration checkInterval) {
+    this.rules =
+        new ReloadingFile<>(
+            file,
+            "category rules",
+            CategoryRules.EMPTY,
+            in -> CategoryRules.compile(mapper.readValue(in, CategoryRules.RuleFile.class).rules()),
+            CategoryRules::size,
+            checkInterval);
+  }
+
+  /** A categorizer without a rule file, leaving every unified category null. */
+  public static Categorizer none() {
+    return new Categorizer(null, null);
+  }
+
+  /** The rules in force, reloading the file first if it changed and a check is due. */
+  public CategoryRules rules() {
+    return rules.get();
+  }
+
+  /**
+   * Re-reads the file now if it changed since the last load.
+   *
+   * @return whether new rules were loaded
+   */
+  public boolean reload() {
+    return rules.reload();
+  }
+}
@@ -0,0 +1,295 @@
+package org.artificers.ingest.rules;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Category rules compiled into a decision table. Rules are split by institution (a rule without
+ * institutions goes into every one) and each institution's rules are cut into amount bands at every
+ * rule's {@code minCents} and {@code maxCents}; a band lists, in file order, the rules whose amount
+ * range covers it. Categorizing a row is a map lookup and a binary search to find its band, then a
+ * check of the remaining conditions of just that band's rules; the first rule that matches wins.
+ *
+ * <p>Within a rule every given condition must hold and a list matches if any entry does. {@code
+ * merchant} and {@code memo} keywords are matched anywhere in the {@linkplain MerchantRules#fold
+ * folded} text, {@code merchant} against both the statement and the canonical merchant; {@code
+ * bankCategory} and {@code type} compare whole values ignoring case.
+ */
+public final class CategoryRules {
+  /** No rules: every row categorizes to null. */
+  public static final CategoryRules EMPTY = compile(List.of());
+
+  /** One entry of the rule file: rows meeting every given condition get {@code category}. */
+  public record Rule(
+      String category,
+      List<String> institution,
+      List<String> merchant,
+      List<String> memo,
+      List<String> bankCategory,
+      List<String> type,
+      Long minCents,
+      Long maxCents) {
+    public Rule {
+      if (category == null || category.isBlank()) {
+        throw new IllegalArgumentException("Category rule without a category");
+      }
+      if (minCents != null && maxCents != null && minCents > maxCents) {
+        throw new IllegalArgumentException(
+            "Category rule " + category + " has minCents above maxCents");
+      }
+      institution = institution == null ? List.of() : List.copyOf(institution);
+      merchant = merchant == null ? List.of() : List.copyOf(merchant);
+      memo = memo == null ? List.of() : List.copyOf(memo);
+      bankCategory = bankCategory == null ? List.of() : List.copyOf(bankCategory);
+      type = type == null ? List.of() : List.copyOf(type);
+    }
+  }
+
+  /** The rule file: {@code {"rules": [{"category": ..., "institution": [...]}, ...]}}. */
+  public record RuleFile(List<Rule> rules) {
+    public RuleFile {
+      rules = rules == null ? List.of() : List.copyOf(rules);
+    }
+  }
+
+  /** A rule with its keywords folded and values lower-cased for matching. */
+  private record Compiled(
+      String category,
+      String[] merchant,
+      String[] memo,
+      String[] bankCategory,
+      String[] type,
+      long min,
+      long max) {}
+
+  /**
+   * One institution's decision table: band {@code i} holds amounts with exactly {@code i} bounds at
+   * or below them, and lists the indexes of the rules covering it in file order.
+   */
+  private record Table(long[] bounds, int[][] bands, byte[] digest, boolean matchesMerchant) {}
+
+  private final Compiled[] rules;
+  private final Map<String, Table> byInstitution;
+
+  /** Table for institutions no rule names: only the rules without institutions. */
+  private final Table other;
+
+  private CategoryRules(Compiled[] rules, Map<String, Table> byInstitution, Table other) {
+    this.rules = rules;
+    this.byInstitution = byInstitution;
+    this.other = other;
+  }
+
+  /**
+   * Compiles {@code rules}.
+   *
+   * @throws IllegalArgumentException if a rule is invalid
+   */
+  public static CategoryRules compile(List<Rule> rules) {
+    Compiled[] compiled = new Compiled[rules.size()];
+    List<Integer> anywhere = new ArrayList<>();
+    Map<String, List<Integer>> named = new HashMap<>();
+    for (int r = 0; r < rules.size(); r++) {
+      Rule rule = rules.get(r);
+      compiled[r] =
+          new Compiled(
+              rule.category().strip(),
+              rule.merchant().stream().map(MerchantRules::fold).toArray(String[]::new),
+              rule.memo().stream().map(MerchantRules::fold).toArray(String[]::new),
+              rule.bankCategory().stream().map(CategoryRules::lower).toArray(String[]::new),
+              rule.type().stream().map(CategoryRules::lower).toArray(String[]::new),
+              rule.minCents() == null ? Long.MIN_VALUE : rule.minCents(),
+              rule.maxCents() == null ? Long.MAX_VALUE : rule.maxCents());
+      if (rule.institution().isEmpty()) {
+        anywhere.add(r);
+      }
+      for (String i : rule.institution()) {
+        named.computeIfAbsent(lower(i), k -> new ArrayList<>());
+      }
+    }
+    for (int r = 0; r < rules.size(); r++) {
+      Rule rule = rules.get(r);
+      for (var e : named.entrySet()) {
+        if (rule.institution().isEmpty()
+            || rule.institution().stream().anyMatch(i -> lower(i).equals(e.getKey()))) {
+          e.getValue().add(r);
+        }
+      }
+    }
+    Map<String, Table> tables = new HashMap<>();
+    named.forEach((i, members) -> tables.put(i, table(compiled, rules, members)));
+    return new CategoryRules(compiled, Map.copyOf(tables), table(compiled, rules, anywhere));
+  }
+
+  private static Table table(Compiled[] compiled, List<Rule> rules, List<Integer> members) {
+    TreeSet<Long> cuts = new TreeSet<>();
+    for (int r : members) {
+      if (compiled[r].min() != Long.MIN_VALUE) {
+        cuts.add(compiled[r].min());
+      }
+      if (compiled[r].max() != Long.MAX_VALUE) {
+        cuts.add(compiled[r].max() + 1);
+      }
+    }
+    long[] bounds = cuts.stream().mapToLong(Long::longValue).toArray();
+    int[][] bands = new int[bounds.length + 1][];
+    for (int b = 0; b < bands.length; b++) {
+      // Every amount in a band lies on the same side of every bound, so its lowest value decides
+      long low = b == 0 ? Long.MIN_VALUE : bounds[b - 1];
+      bands[b] =
+          members.stream()
+              .mapToInt(Integer::intValue)
+              .filter(r -> compiled[r].min() <= low && low <= compiled[r].max())
+              .toArray();
+    }
+    boolean matchesMerchant = members.stream().anyMatch(r -> compiled[r].merchant().length > 0);
+    return new Table(bounds, bands, digest(rules, members), matchesMerchant);
+  }
+
+  /** SHA-256 over the rules an institution's rows are checked against, in order. */
+  private static byte[] digest(List<Rule> rules, List<Integer> members) {
+    try {
+      MessageDigest md = MessageDigest.getInstance("SHA-256");
+      for (int r : members) {
+        md.update(rules.get(r).toString().getBytes(StandardCharsets.UTF_8));
+        md.update((byte) '\n');
+      }
+      return md.digest();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Unified category for a row, or null when no rule matches.
+   *
+   * @param institution the account's institution code, e.g. {@code ch}
+   * @param canonicalMerchant the row's {@code merchant_canonical}, may be null
+   * @param bankCategory the category the statement gave, may be null
+   */
+  public String categorize(
+      String institution,
+      long amountCents,
+      String merchant,
+      String canonicalMerchant,
+      String bankCategory,
+      String type,
+      String memo) {
+    Table table = table(institution);
+    int b = Arrays.binarySearch(table.bounds(), amountCents);
+    int[] band = table.bands()[b >= 0 ? b + 1 : -b - 1];
+    String foldedMerchant = null;
+    String foldedCanonical = null;
+    String foldedMemo = null;
+    String lowerCategory = null;
+    String lowerType = null;
+    for (int r : band) {
+      Compiled rule = rules[r];
+      if (rule.bankCategory().length > 0) {
+        if (lowerCategory == null) {
+          lowerCategory = lower(bankCategory);
+        }
+        if (!equalsAny(rule.bankCategory(), lowerCategory)) {
+          continue;
+        }
+      }
+      if (rule.type().length > 0) {
+        if (lowerType == null) {
+          lowerType = lower(type);
+        }
+        if (!equalsAny(rule.type(), lowerType)) {
+          continue;
+        }
+      }
+      if (rule.merchant().length > 0) {
+        if (foldedMerchant == null) {
+          foldedMerchant = merchant == null ? "" : MerchantRules.fold(merchant);
+          foldedCanonical = canonicalMerchant == null ? "" : MerchantRules.fold(canonicalMerchant);
+        }
+        if (!containsAny(foldedMerchant, rule.merchant())
+            && !containsAny(foldedCanonical, rule.merchant())) {
+          continue;
+        }
+      }
+      if (rule.memo().length > 0) {
+        if (foldedMemo == null) {
+          foldedMemo = memo == null ? "" : MerchantRules.fold(memo);
+        }
+        if (!containsAny(foldedMemo, rule.memo())) {
+          continue;
+        }
+      }
+      return rule.category();
+    }
+    return null;
+  }
+
+  /**
+   * Digest of the rules rows of {@code institution} are checked against, in order. Equal digests
+   * mean every such row categorizes the same under both rule sets.
+   */
+  public byte[] digest(String institution) {
+    return table(institution).digest().clone();
+  }
+
+  /**
+   * {@link #digest(String)} that also covers the merchant rules when any of the institution's rules
+   * match on the merchant, since those see {@code merchant_canonical} as {@code merchants} set it.
+   * Equal digests mean every such row categorizes the same, even after re-normalizing merchants.
+   */
+  public byte[] digest(String institution, MerchantRules merchants) {
+    Table table = table(institution);
+    if (!table.matchesMerchant()) {
+      return table.digest().clone();
+    }
+    try {
+      MessageDigest md = MessageDigest.getInstance("SHA-256");
+      md.update(table.digest());
+      md.update(merchants.digest());
+      return md.digest();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /** Number of rules compiled. */
+  public int size() {
+    return rules.length;
+  }
+
+  private Table table(String institution) {
+    Table table = institution == null ? null : byInstitution.get(lower(institution));
+    return table == null ? other : table;
+  }
+
+  private static boolean equalsAny(String[] values, String value) {
+    for (String v : values) {
+      if (v.equals(value)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean containsAny(String text, String[] keywords) {
+    for (String k : keywords) {
+      if (text.contains(k)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Lower-cases and trims {@code s}; null becomes the empty string, which no rule value equals. */
+  private static String lower(String s) {
+    return s == null ? "" : s.strip().toLowerCase(Locale.ROOT);
+  }
+}
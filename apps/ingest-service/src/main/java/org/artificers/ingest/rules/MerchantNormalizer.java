@@ -0,0 +1,63 @@
+package org.artificers.ingest.rules;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * Normalizes merchants with the {@link MerchantRules} compiled from {@value #FILE_NAME} in the
+ * config directory. The file is re-read when its modification time or size changes, checked at most
+ * once per {@code checkInterval} by whichever caller gets there first, so edits apply to rows
+ * ingested afterwards without a restart. A file that fails to parse or compile is logged and the
+ * previous rules stay in force; a missing file means no rules.
+ */
+public class MerchantNormalizer {
+  /** Rule file name under {@code INGEST_CONFIG_DIR}. */
+  public static final String FILE_NAME = "merchants.json";
+
+  public static final Duration DEFAULT_CHECK_INTERVAL = Duration.ofSeconds(2);
+
+  private final ReloadingFile<MerchantRules> rules;
+
+  public MerchantNormalizer(Path file, ObjectMapper mapper) {
+    this(file, mapper, DEFAULT_CHECK_INTERVAL);
+  }
+
+  /**
+   * @param file rule file, or null for a normalizer without rules
+   */
+  public MerchantNormalizer(Path file, ObjectMapper mapper, Duration checkInterval) {
+    this.rules =
+        new ReloadingFile<>(
+            file,
+            "merchant rules",
+            MerchantRules.EMPTY,
+            in -> MerchantRules.compile(mapper.readValue(in, MerchantRules.RuleFile.class).rules()),
+            MerchantRules::size,
+            checkInterval);
+  }
+
+  /** A normalizer without a rule file, leaving every canonical merchant null. */
+  public static MerchantNormalizer none() {
+    return new MerchantNormalizer(null, null);
+  }
+
+  /** Canonical merchant for {@code merchant} under the current rules, or null. */
+  public String normalize(String merchant) {
+    return rules().normalize(merchant);
+  }
+
+  /** The rules in force, reloading the file first if it changed and a check is due. */
+  public MerchantRules rules() {
+    return rules.get();
+  }
+
+  /**
+   * Re-reads the file now if it changed since the last load.
+   *
+   * @return whether new rules were loaded
+   */
+  public boolean reload() {
+    return rules.reload();
+  }
+}
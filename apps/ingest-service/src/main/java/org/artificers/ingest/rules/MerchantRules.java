@@ -0,0 +1,205 @@
+package org.artificers.ingest.rules;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Merchant rules compiled for matching. Statement merchants and rule keywords are {@linkplain #fold
+ * folded} (upper-cased, whitespace runs collapsed) and every {@code contains} and {@code prefix}
+ * keyword of every rule goes into one {@link AhoCorasick} automaton, so finding the matching
+ * keywords costs one pass over the merchant regardless of the rule count. The longest matching
+ * keyword wins, ties going to the earlier rule. Only when no keyword matches are the {@code regex}
+ * rules tried, in file order, each anchored at the start of the folded merchant.
+ */
+public final class MerchantRules {
+  /** No rules: every merchant normalizes to null. */
+  public static final MerchantRules EMPTY = compile(List.of());
+
+  /**
+   * One entry of the rule file: statement merchants containing, starting with or (anchored)
+   * matching any of the patterns normalize to {@code merchant}.
+   */
+  public record Rule(
+      String merchant, List<String> contains, List<String> prefix, List<String> regex) {
+    public Rule {
+      if (merchant == null || merchant.isBlank()) {
+        throw new IllegalArgumentException("Merchant rule without a merchant");
+      }
+      contains = contains == null ? List.of() : List.copyOf(contains);
+      prefix = prefix == null ? List.of() : List.copyOf(prefix);
+      regex = regex == null ? List.of() : List.copyOf(regex);
+    }
+  }
+
+  /** The rule file: {@code {"rules": [{"merchant": ..., "contains": [...]}, ...]}}. */
+  public record RuleFile(List<Rule> rules) {
+    public RuleFile {
+      rules = rules == null ? List.of() : List.copyOf(rules);
+    }
+  }
+
+  private record Fallback(Pattern pattern, String merchant) {}
+
+  private final AhoCorasick keywords;
+
+  /** Per keyword: the index of its rule. */
+  private final int[] keywordRule;
+
+  /** Per keyword: whether it must match at the start. */
+  private final boolean[] anchored;
+
+  private final String[] merchants;
+  private final List<Fallback> fallbacks;
+  private final byte[] digest;
+
+  private MerchantRules(
+      AhoCorasick keywords,
+      int[] keywordRule,
+      boolean[] anchored,
+      String[] merchants,
+      List<Fallback> fallbacks,
+      byte[] digest) {
+    this.keywords = keywords;
+    this.keywordRule = keywordRule;
+    this.anchored = anchored;
+    this.merchants = merchants;
+    this.fallbacks = fallbacks;
+    this.digest = digest;
+  }
+
+  /**
+   * Compiles {@code rules}.
+   *
+   * @throws IllegalArgumentException if a regex does not compile
+   */
+  public static MerchantRules compile(List<Rule> rules) {
+    List<String> words = new ArrayList<>();
+    List<Integer> owners = new ArrayList<>();
+    List<Boolean> starts = new ArrayList<>();
+    List<Fallback> fallbacks = new ArrayList<>();
+    String[] merchants = new String[rules.size()];
+    for (int r = 0; r < rules.size(); r++) {
+      Rule rule = rules.get(r);
+      merchants[r] = rule.merchant().strip();
+      for (String k : rule.contains()) {
+        words.add(fold(k));
+        owners.add(r);
+        starts.add(false);
+      }
+      for (String k : rule.prefix()) {
+        words.add(fold(k));
+        owners.add(r);
+        starts.add(true);
+      }
+      for (String regex : rule.regex()) {
+        try {
+          fallbacks.add(
+              new Fallback(
+                  Pattern.compile(regex, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE),
+                  merchants[r]));
+        } catch (PatternSyntaxException e) {
+          throw new IllegalArgumentException(
+              "Bad regex for merchant " + rule.merchant() + ": " + e.getDescription(), e);
+        }
+      }
+    }
+    int[] keywordRule = new int[words.size()];
+    boolean[] anchored = new boolean[words.size()];
+    for (int k = 0; k < keywordRule.length; k++) {
+      keywordRule[k] = owners.get(k);
+      anchored[k] = starts.get(k);
+    }
+    return new MerchantRules(
+        AhoCorasick.compile(words),
+        keywordRule,
+        anchored,
+        merchants,
+        List.copyOf(fallbacks),
+        digest(rules));
+  }
+
+  /** Canonical merchant for a statement merchant, or null when no rule matches. */
+  public String normalize(String merchant) {
+    if (merchant == null) {
+      return null;
+    }
+    String folded = fold(merchant);
+    int[] best = {-1};
+    keywords.match(
+        folded,
+        (k, end) -> {
+          int length = keywords.length(k);
+          if (anchored[k] && end != length) {
+            return;
+          }
+          int b = best[0];
+          if (b < 0
+              || length > keywords.length(b)
+              || (length == keywords.length(b) && keywordRule[k] < keywordRule[b])) {
+            best[0] = k;
+          }
+        });
+    if (best[0] >= 0) {
+      return merchants[keywordRule[best[0]]];
+    }
+    for (Fallback f : fallbacks) {
+      Matcher m = f.pattern().matcher(folded);
+      if (m.lookingAt()) {
+        return f.merchant();
+      }
+    }
+    return null;
+  }
+
+  /** Number of rules compiled. */
+  public int size() {
+    return merchants.length;
+  }
+
+  /**
+   * SHA-256 over the rules in order. Equal digests mean every merchant normalizes the same under
+   * both rule sets.
+   */
+  public byte[] digest() {
+    return digest.clone();
+  }
+
+  private static byte[] digest(List<Rule> rules) {
+    try {
+      MessageDigest md = MessageDigest.getInstance("SHA-256");
+      for (Rule rule : rules) {
+        md.update(rule.toString().getBytes(StandardCharsets.UTF_8));
+        md.update((byte) '\n');
+      }
+      return md.digest();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /** Upper-cases {@code s} and collapses whitespace runs to one space, trimming the ends. */
+  static String fold(String s) {
+    StringBuilder sb = new StringBuilder(s.length());
+    boolean space = false;
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (Character.isWhitespace(c)) {
+        space = sb.length() > 0;
+      } else {
+        if (space) {
+          sb.append(' ');
+          space = false;
+        }
+        sb.append(c);
+      }
+    }
+    return sb.toString().toUpperCase(Locale.ROOT);
+  }
+}
@@ -0,0 +1,115 @@
+package org.artificers.ingest.rules;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.Objects;
+import java.util.function.ToIntFunction;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A config file parsed into {@code T} and re-read when its modification time or size changes,
+ * checked at most once per {@code checkInterval} by whichever caller gets there first. A file that
+ * fails to parse is logged and the previous value stays in force; a missing file means {@code
+ * empty}.
+ */
+final class ReloadingFile<T> {
+  private static final Logger log = LoggerFactory.getLogger(ReloadingFile.class);
+
+  /** Parses the file, throwing {@link IllegalArgumentException} for content that is invalid. */
+  @FunctionalInterface
+  interface Parser<T> {
+    T parse(InputStream in) throws IOException;
+  }
+
+  /** The file state last loaded (or rejected) and the value in force. */
+  private record Loaded<T>(String stamp, T value) {}
+
+  private final Path file;
+  private final String what;
+  private final T empty;
+  private final Parser<T> parser;
+  private final ToIntFunction<T> size;
+  private final long checkNanos;
+  private volatile Loaded<T> loaded;
+  private volatile long nextCheck;
+
+  /**
+   * @param file the file, or null for one that never loads
+   * @param what what the file holds, for log messages, e.g. {@code "merchant rules"}
+   * @param size number of entries in a parsed value, for log messages
+   */
+  ReloadingFile(
+      Path file,
+      String what,
+      T empty,
+      Parser<T> parser,
+      ToIntFunction<T> size,
+      Duration checkInterval) {
+    this.file = file;
+    this.what = what;
+    this.empty = empty;
+    this.parser = parser;
+    this.size = size;
+    this.checkNanos = checkInterval.toNanos();
+    this.loaded = new Loaded<>(null, empty);
+    this.nextCheck = System.nanoTime();
+  }
+
+  /** The value in force, reloading the file first if it changed and a check is due. */
+  T get() {
+    if (file != null && System.nanoTime() - nextCheck >= 0) {
+      reload();
+    }
+    return loaded.value();
+  }
+
+  /**
+   * Re-reads the file now if it changed since the last load.
+   *
+   * @return whether a new value was loaded
+   */
+  synchronized boolean reload() {
+    nextCheck = System.nanoTime() + checkNanos;
+    if (file == null) {
+      return false;
+    }
+    String stamp;
+    try {
+      BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+      stamp = attrs.lastModifiedTime().toMillis() + ":" + attrs.size();
+    } catch (NoSuchFileException e) {
+      stamp = "missing";
+    } catch (IOException e) {
+      log.warn("Cannot stat {} {}", what, file, e);
+      return false;
+    }
+    Loaded<T> current = loaded;
+    if (Objects.equals(stamp, current.stamp())) {
+      return false;
+    }
+    if ("missing".equals(stamp)) {
+      loaded = new Loaded<>(stamp, empty);
+      if (current.stamp() != null) {
+        log.info("{} {} removed; none apply", what, file);
+      }
+      return true;
+    }
+    try (InputStream in = Files.newInputStream(file)) {
+      T value = parser.parse(in);
+      loaded = new Loaded<>(stamp, value);
+      log.info("Loaded {} {} from {}", size.applyAsInt(value), what, file);
+      return true;
+    } catch (IOException | IllegalArgumentException e) {
+      // Remember the stamp so a broken file is reported once, not on every check
+      loaded = new Loaded<>(stamp, current.value());
+      log.warn("Keeping previous {}; {} is invalid", what, file, e);
+      return false;
+    }
+  }
+}
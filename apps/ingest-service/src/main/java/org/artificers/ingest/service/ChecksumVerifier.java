@@ -0,0 +1,191 @@
+package org.artificers.ingest.service;
+
+import java.sql.Connection;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import org.artificers.jooq.tables.TransactionChecksums;
+import org.artificers.jooq.tables.Transactions;
+import org.jooq.Condition;
+import org.jooq.Cursor;
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.Record2;
+import org.jooq.impl.DSL;
+import org.jooq.impl.SQLDataType;
+
+/**
+ * Compares {@code transaction_checksums} (migration V18) with the rows they summarise. By default
+ * only months changed by ingest since they were last verified ({@code updated_at} after {@code
+ * verified_at}) are recomputed, each from its own account and month of {@code transactions}, which
+ * the partitioning and the V17 account index keep to one small range scan. Each month is read in
+ * one repeatable-read transaction, so a concurrent ingest, which updates rows and checksum
+ * together, is either wholly visible or not at all. Months whose partition is {@linkplain
+ * TransactionPartitionManager#detached() detached} keep their checksums but no longer have their
+ * rows in {@code transactions}, so they are skipped.
+ */
+public class ChecksumVerifier {
+  public static final int FETCH_SIZE = 1000;
+
+  /** Count, amount sum and {@linkplain RollupRepository#hashFold hash XOR} of one month's rows. */
+  public record Checksum(long count, long amountCents, long hashXor) {
+    static final Checksum EMPTY = new Checksum(0, 0, 0);
+  }
+
+  /** A month whose stored checksum differs from its rows; {@code stored} is null when missing. */
+  public record Mismatch(long accountId, LocalDate month, Checksum stored, Checksum actual) {}
+
+  /** Months recomputed and those that did not match. */
+  public record Result(int checked, List<Mismatch> mismatches) {}
+
+  private record Key(long accountId, LocalDate month) {
+    static final Comparator<Key> ORDER =
+        Comparator.comparingLong(Key::accountId).thenComparing(Key::month);
+  }
+
+  private final Set<YearMonth> detached;
+
+  /**
+   * @param detached months whose partition is detached, left out of every check
+   */
+  public ChecksumVerifier(Collection<YearMonth> detached) {
+    this.detached = new TreeSet<>(detached);
+  }
+
+  /**
+   * Recomputes pending months, or with {@code all} every month in either table, stamping {@code
+   * verified_at} on those that match. With {@code repair} mismatched checksums are overwritten with
+   * the recomputed values (and deleted when the month has no rows left).
+   */
+  public Result verify(DSLContext ctx, boolean all, boolean repair) {
+    TransactionChecksums c = TransactionChecksums.TRANSACTION_CHECKSUMS;
+    Map<Key, Boolean> months = new TreeMap<>(Key.ORDER);
+    ctx.select(c.ACCOUNT_ID, c.TXN_MONTH)
+        .from(c)
+        .where(all ? DSL.noCondition() : c.VERIFIED_AT.isNull().or(c.UPDATED_AT.gt(c.VERIFIED_AT)))
+        .and(attached(detached))
+        .fetch()
+        .forEach(r -> months.put(new Key(r.value1(), r.value2()), true));
+    if (all) {
+      Transactions t = Transactions.TRANSACTIONS;
+      // Null months map to UNDATED here: drivers disagree on how to read a year-1 date literal
+      Field<LocalDate> month =
+          DSL.field(
+              "cast(date_trunc('month', {0} at time zone 'UTC') as date)",
+              SQLDataType.LOCALDATE, t.OCCURRED_AT);
+      ctx.selectDistinct(t.ACCOUNT_ID, month)
+          .from(t)
+          .fetch()
+          .forEach(
+              r ->
+                  months.putIfAbsent(
+                      new Key(
+                          r.value1(), r.value2() == null ? RollupRepository.UNDATED : r.value2()),
+                      true));
+    }
+    // Rows ingested after a detach sit in transactions_default beside a checksum that also counts
+    // the detached rows; neither side can be compared until the month is attached again.
+    months.keySet().removeIf(k -> detached.contains(YearMonth.from(k.month())));
+    List<Mismatch> mismatches = new ArrayList<>();
+    for (Key key : months.keySet()) {
+      Mismatch m = verify(ctx, key, repair);
+      if (m != null) {
+        mismatches.add(m);
+      }
+    }
+    return new Result(months.size(), List.copyOf(mismatches));
+  }
+
+  private Mismatch verify(DSLContext ctx, Key key, boolean repair) {
+    TransactionChecksums c = TransactionChecksums.TRANSACTION_CHECKSUMS;
+    return ctx.transactionResult(
+        conf -> {
+          DSLContext tx = DSL.using(conf);
+          // Before the first statement, so it applies to this transaction; the pool resets it.
+          tx.connection(
+              conn -> conn.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ));
+          Checksum stored =
+              tx.select(c.TXN_COUNT, c.AMOUNT_CENTS, c.HASH_XOR)
+                  .from(c)
+                  .where(c.ACCOUNT_ID.eq(key.accountId()), c.TXN_MONTH.eq(key.month()))
+                  .fetchOne(r -> new Checksum(r.value1(), r.value2(), r.value3()));
+          Checksum actual = recompute(tx, key);
+          Condition row = c.ACCOUNT_ID.eq(key.accountId()).and(c.TXN_MONTH.eq(key.month()));
+          if (actual.equals(stored) || (stored == null && actual.equals(Checksum.EMPTY))) {
+            tx.update(c).set(c.VERIFIED_AT, DSL.currentOffsetDateTime()).where(row).execute();
+            return null;
+          }
+          if (repair) {
+            if (actual.count() == 0) {
+              tx.deleteFrom(c).where(row).execute();
+            } else if (stored == null) {
+              tx.insertInto(c)
+                  .set(c.ACCOUNT_ID, key.accountId())
+                  .set(c.TXN_MONTH, key.month())
+                  .set(c.TXN_COUNT, actual.count())
+                  .set(c.AMOUNT_CENTS, actual.amountCents())
+                  .set(c.HASH_XOR, actual.hashXor())
+                  .set(c.UPDATED_AT, DSL.currentOffsetDateTime())
+                  .set(c.VERIFIED_AT, DSL.currentOffsetDateTime())
+                  .execute();
+            } else {
+              tx.update(c)
+                  .set(c.TXN_COUNT, actual.count())
+                  .set(c.AMOUNT_CENTS, actual.amountCents())
+                  .set(c.HASH_XOR, actual.hashXor())
+                  .set(c.UPDATED_AT, DSL.currentOffsetDateTime())
+                  .set(c.VERIFIED_AT, DSL.currentOffsetDateTime())
+                  .where(row)
+                  .execute();
+            }
+          }
+          return new Mismatch(key.accountId(), key.month(), stored, actual);
+        });
+  }
+
+  /** {@code transaction_checksums} rows of months outside {@code detached}. */
+  public static Condition attached(Collection<YearMonth> detached) {
+    return detached.isEmpty()
+        ? DSL.noCondition()
+        : TransactionChecksums.TRANSACTION_CHECKSUMS.TXN_MONTH.notIn(
+            detached.stream().map(m -> m.atDay(1)).toList());
+  }
+
+  /** {@code transactions} rows of a checksum month, as a range on the partition key. */
+  static Condition inMonth(LocalDate month) {
+    Transactions t = Transactions.TRANSACTIONS;
+    return month.equals(RollupRepository.UNDATED)
+        ? t.OCCURRED_AT.isNull()
+        : t.OCCURRED_AT
+            .ge(month.atStartOfDay().atOffset(ZoneOffset.UTC))
+            .and(t.OCCURRED_AT.lt(month.plusMonths(1).atStartOfDay().atOffset(ZoneOffset.UTC)));
+  }
+
+  private static Checksum recompute(DSLContext tx, Key key) {
+    Transactions t = Transactions.TRANSACTIONS;
+    long count = 0;
+    long cents = 0;
+    long xor = 0;
+    try (Cursor<Record2<Long, byte[]>> rows =
+        tx.select(t.AMOUNT_CENTS, t.HASH)
+            .from(t)
+            .where(t.ACCOUNT_ID.eq(key.accountId()), inMonth(key.month()))
+            .fetchSize(FETCH_SIZE)
+            .fetchLazy()) {
+      for (Record2<Long, byte[]> r : rows) {
+        count++;
+        cents += r.value1();
+        xor ^= RollupRepository.hashFold(r.value2());
+      }
+    }
+    return new Checksum(count, cents, xor);
+  }
+}
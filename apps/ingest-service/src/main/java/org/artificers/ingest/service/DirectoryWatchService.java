@@ -10,6 +10,8 @@ import java.nio.file.WatchKey;
 import java.nio.file.WatchService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
+import org.artificers.ingest.jfr.IngestEvent;
+import org.artificers.ingest.jfr.WatchDispatchEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -77,10 +79,16 @@ public class DirectoryWatchService implements AutoCloseable {
             Path file = directory.resolve(filename);
             String shorthand = shorthandParser.extract(file);
             if (shorthand != null) {
+              WatchDispatchEvent dispatch = new WatchDispatchEvent();
+              dispatch.start(file, shorthand);
+              String outcome = IngestEvent.FAILURE;
               try {
                 fileService.ingestFile(file, shorthand);
+                outcome = IngestEvent.SUCCESS;
               } catch (IOException e) {
                 log.error("Failed to ingest file {}", file, e);
+              } finally {
+                dispatch.finish(outcome);
               }
             }
           }
@@ -0,0 +1,387 @@
+package org.artificers.ingest.service;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import org.artificers.ingest.model.IngestRun;
+import org.artificers.jooq.tables.DuplicateCandidates;
+import org.artificers.jooq.tables.DuplicateScanState;
+import org.artificers.jooq.tables.Transactions;
+import org.jooq.Cursor;
+import org.jooq.DSLContext;
+import org.jooq.InsertValuesStep7;
+import org.jooq.Record4;
+import org.jooq.Record6;
+import org.jooq.impl.DSL;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Flags transactions that may be one purchase inserted twice into {@code duplicate_candidates} for
+ * review. The dedup hash covers the merchant text and date, so a pending row and its posted row are
+ * both kept when the statement renames the merchant ("SQ *BLUE BOTTLE" becomes "BLUE BOTTLE COFFEE
+ * SF") or moves the date by a day. Two rows are candidates when they are on one account, have the
+ * same amount and currency, occurred at most {@code window} apart and their merchants' character
+ * trigram sets have a Jaccard index of at least {@code minSimilarity}. Nothing is deleted.
+ *
+ * <p>Comparing every pair of rows is avoided twice over. Rows are read once sorted by {@code
+ * (account, currency, amount, occurred_at)}, so only the rows of one account and amount are held at
+ * a time. Within that group each merchant gets a MinHash signature of {@value #BANDS} bands of
+ * {@value #ROWS_PER_BAND} hashes, and rows are bucketed by each band: only rows sharing a bucket
+ * and within the window of each other are compared, which with these bands still finds more than
+ * three quarters of the pairs at a similarity of 0.3 and nearly all at 0.5. Runs are incremental
+ * like the {@link TransferMatcher}: {@code duplicate_scan_state} holds the highest transaction id
+ * already scanned, a run reads the dates within {@code window} of the rows after it, and only pairs
+ * with at least one of those rows are flagged. Undated rows and rows without a merchant are never
+ * flagged.
+ *
+ * <p>Registered as an {@link IngestRunListener}, it scans after every ingest that inserted rows;
+ * {@code duplicate_scan --all} scans the full history, keeping existing candidates and their review
+ * status.
+ */
+public class DuplicateDetector implements IngestRunListener {
+  private static final Logger log = LoggerFactory.getLogger(DuplicateDetector.class);
+
+  public static final Duration DEFAULT_WINDOW = Duration.ofDays(3);
+
+  /** Lowest merchant similarity flagged. */
+  public static final double DEFAULT_MIN_SIMILARITY = 0.3;
+
+  /** LSH bands per signature. */
+  static final int BANDS = 16;
+
+  /** Hashes per LSH band; rows share a bucket when all of them agree. */
+  static final int ROWS_PER_BAND = 2;
+
+  /** Rows fetched per round trip while scanning. */
+  static final int FETCH_SIZE = 5_000;
+
+  /** Candidates per insert statement. */
+  static final int INSERT_CHUNK = 1_000;
+
+  /** Seeds of the MinHash functions, one per hash in a signature. */
+  private static final long[] SEEDS = new long[BANDS * ROWS_PER_BAND];
+
+  static {
+    long seed = 0x2545F4914F6CDD1DL;
+    for (int i = 0; i < SEEDS.length; i++) {
+      seed += 0x9E3779B97F4A7C15L;
+      SEEDS[i] = mix(seed);
+    }
+  }
+
+  /** A transaction as read in scan order. */
+  record Row(
+      long id,
+      long accountId,
+      long amountCents,
+      String currency,
+      OffsetDateTime occurredAt,
+      String merchant) {}
+
+  /** Two rows that may be one purchase; {@code original} has the lower id. */
+  record Candidate(Row original, Row duplicate, double similarity) {}
+
+  /**
+   * What one run did.
+   *
+   * @param newRows transactions after the previous watermark
+   * @param rowsRead transactions scanned
+   * @param flagged new pairs written to {@code duplicate_candidates}
+   */
+  public record Result(long newRows, long rowsRead, int flagged) {}
+
+  private final DSLContext dsl;
+  private final Duration window;
+  private final double minSimilarity;
+
+  public DuplicateDetector(DSLContext dsl) {
+    this(dsl, DEFAULT_WINDOW, DEFAULT_MIN_SIMILARITY);
+  }
+
+  public DuplicateDetector(DSLContext dsl, Duration window, double minSimilarity) {
+    if (window.isNegative()) {
+      throw new IllegalArgumentException("window must not be negative");
+    }
+    if (!(minSimilarity > 0 && minSimilarity <= 1)) {
+      throw new IllegalArgumentException("minSimilarity must be above 0 and at most 1");
+    }
+    this.dsl = dsl;
+    this.window = window;
+    this.minSimilarity = minSimilarity;
+  }
+
+  @Override
+  public void onRunCompleted(IngestRun run) {
+    if (!run.succeeded() || run.rowsInserted() == 0) {
+      return;
+    }
+    long start = System.nanoTime();
+    Result result = scan(dsl);
+    log.info(
+        "Scanned {} new rows of {} for duplicates: {} rows read, {} candidates flagged in {} ms",
+        result.newRows(),
+        run.fileName(),
+        result.rowsRead(),
+        result.flagged(),
+        (System.nanoTime() - start) / 1_000_000);
+  }
+
+  /** Scans the transactions added since the last run, in one transaction with the watermark. */
+  public Result scan(DSLContext ctx) {
+    return ctx.transactionResult(conf -> scan(DSL.using(conf), false));
+  }
+
+  /** Scans every transaction; candidates already flagged keep their review status. */
+  public Result scanAll(DSLContext ctx) {
+    return ctx.transactionResult(conf -> scan(DSL.using(conf), true));
+  }
+
+  private Result scan(DSLContext tx, boolean all) {
+    Transactions t = Transactions.TRANSACTIONS;
+    DuplicateScanState s = DuplicateScanState.DUPLICATE_SCAN_STATE;
+    Long stored =
+        tx.select(s.LAST_TRANSACTION_ID)
+            .from(s)
+            .where(s.ID.eq(1))
+            .forUpdate()
+            .fetchOne(s.LAST_TRANSACTION_ID);
+    if (stored == null) {
+      tx.insertInto(s).set(s.ID, 1).set(s.LAST_TRANSACTION_ID, 0L).onConflictDoNothing().execute();
+    }
+    long after = all || stored == null ? 0 : stored;
+    Record4<Integer, Long, OffsetDateTime, OffsetDateTime> added =
+        tx.select(DSL.count(), DSL.max(t.ID), DSL.min(t.OCCURRED_AT), DSL.max(t.OCCURRED_AT))
+            .from(t)
+            .where(t.ID.gt(after))
+            .fetchOne();
+    long newRows = added.value1();
+    if (newRows == 0) {
+      return new Result(0, 0, 0);
+    }
+    long read = 0;
+    List<Candidate> pending = new ArrayList<>();
+    int[] flagged = {0};
+    if (added.value3() != null) {
+      try (Cursor<Record6<Long, Long, Long, String, OffsetDateTime, String>> cursor =
+          tx.select(t.ID, t.ACCOUNT_ID, t.AMOUNT_CENTS, t.CURRENCY, t.OCCURRED_AT, t.MERCHANT)
+              .from(t)
+              .where(
+                  t.OCCURRED_AT.between(added.value3().minus(window), added.value4().plus(window)),
+                  t.MERCHANT.isNotNull())
+              .orderBy(t.ACCOUNT_ID, t.CURRENCY, t.AMOUNT_CENTS, t.OCCURRED_AT, t.ID)
+              .fetchSize(FETCH_SIZE)
+              .fetchLazy()) {
+        long[] count = {0};
+        Iterator<Row> rows =
+            new Iterator<>() {
+              @Override
+              public boolean hasNext() {
+                return cursor.hasNext();
+              }
+
+              @Override
+              public Row next() {
+                var r = cursor.fetchNext();
+                count[0]++;
+                return new Row(
+                    r.value1(), r.value2(), r.value3(), r.value4(), r.value5(), r.value6());
+              }
+            };
+        detect(
+            rows,
+            window,
+            minSimilarity,
+            after,
+            candidate -> {
+              pending.add(candidate);
+              if (pending.size() == INSERT_CHUNK) {
+                flagged[0] += insert(tx, pending);
+                pending.clear();
+              }
+            });
+        read = count[0];
+      }
+      flagged[0] += insert(tx, pending);
+    }
+    tx.update(s)
+        .set(s.LAST_TRANSACTION_ID, added.value2())
+        .set(s.UPDATED_AT, DSL.currentOffsetDateTime())
+        .where(s.ID.eq(1))
+        .execute();
+    return new Result(newRows, read, flagged[0]);
+  }
+
+  private static int insert(DSLContext tx, List<Candidate> candidates) {
+    if (candidates.isEmpty()) {
+      return 0;
+    }
+    DuplicateCandidates d = DuplicateCandidates.DUPLICATE_CANDIDATES;
+    InsertValuesStep7<?, Long, Long, Long, Long, String, Float, Long> insert =
+        tx.insertInto(
+            d,
+            d.ACCOUNT_ID,
+            d.DUPLICATE_OF_ID,
+            d.TRANSACTION_ID,
+            d.AMOUNT_CENTS,
+            d.CURRENCY,
+            d.SIMILARITY,
+            d.SECONDS_APART);
+    for (Candidate c : candidates) {
+      insert =
+          insert.values(
+              c.original().accountId(),
+              c.original().id(),
+              c.duplicate().id(),
+              c.original().amountCents(),
+              c.original().currency(),
+              (float) c.similarity(),
+              Duration.between(c.original().occurredAt(), c.duplicate().occurredAt()).toSeconds());
+    }
+    return insert.onConflictDoNothing().execute();
+  }
+
+  /**
+   * The scan: {@code rows} must come sorted by account, currency, amount and time. Reports each
+   * pair of rows in one group at most {@code window} apart whose merchants share an LSH bucket and
+   * have a trigram Jaccard index of at least {@code minSimilarity}, skipping pairs of rows with ids
+   * up to {@code after}.
+   */
+  static void detect(
+      Iterator<Row> rows,
+      Duration window,
+      double minSimilarity,
+      long after,
+      Consumer<Candidate> candidates) {
+    List<Row> group = new ArrayList<>();
+    while (rows.hasNext()) {
+      Row row = rows.next();
+      if (!group.isEmpty() && !sameGroup(group.get(0), row)) {
+        detectInGroup(group, window.toSeconds(), minSimilarity, after, candidates);
+        group.clear();
+      }
+      group.add(row);
+    }
+    detectInGroup(group, window.toSeconds(), minSimilarity, after, candidates);
+  }
+
+  private static boolean sameGroup(Row a, Row b) {
+    return a.accountId() == b.accountId()
+        && a.amountCents() == b.amountCents()
+        && a.currency().equals(b.currency());
+  }
+
+  private static void detectInGroup(
+      List<Row> group,
+      long windowSeconds,
+      double minSimilarity,
+      long after,
+      Consumer<Candidate> candidates) {
+    int n = group.size();
+    if (n < 2) {
+      return;
+    }
+    long[][] shingles = new long[n][];
+    long[] seconds = new long[n];
+    Map<String, long[]> signatures = new HashMap<>();
+    // For each band, bucket -> group indexes in time order
+    List<Map<Long, List<Integer>>> bands = new ArrayList<>(BANDS);
+    for (int b = 0; b < BANDS; b++) {
+      bands.add(new HashMap<>());
+    }
+    for (int i = 0; i < n; i++) {
+      Row row = group.get(i);
+      shingles[i] = ReceiptMatcher.trigrams(row.merchant());
+      seconds[i] = row.occurredAt().toEpochSecond();
+      if (shingles[i].length == 0) {
+        continue;
+      }
+      long[] rowShingles = shingles[i];
+      long[] signature = signatures.computeIfAbsent(row.merchant(), m -> signature(rowShingles));
+      for (int b = 0; b < BANDS; b++) {
+        bands.get(b).computeIfAbsent(bandKey(signature, b), k -> new ArrayList<>()).add(i);
+      }
+    }
+    Set<Long> compared = new HashSet<>();
+    for (Map<Long, List<Integer>> buckets : bands) {
+      for (List<Integer> bucket : buckets.values()) {
+        for (int x = 0; x < bucket.size(); x++) {
+          int i = bucket.get(x);
+          for (int y = x + 1; y < bucket.size(); y++) {
+            int j = bucket.get(y);
+            if (seconds[j] - seconds[i] > windowSeconds) {
+              break;
+            }
+            Row a = group.get(i);
+            Row b = group.get(j);
+            if (Math.max(a.id(), b.id()) <= after || !compared.add((long) i * n + j)) {
+              continue;
+            }
+            double similarity = jaccard(shingles[i], shingles[j]);
+            if (similarity >= minSimilarity) {
+              candidates.accept(
+                  a.id() < b.id()
+                      ? new Candidate(a, b, similarity)
+                      : new Candidate(b, a, similarity));
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /** MinHash signature of a non-empty shingle set: per seed, the least hash of any shingle. */
+  static long[] signature(long[] shingles) {
+    long[] signature = new long[SEEDS.length];
+    for (int h = 0; h < SEEDS.length; h++) {
+      long min = Long.MAX_VALUE;
+      for (long shingle : shingles) {
+        min = Math.min(min, mix(shingle ^ SEEDS[h]));
+      }
+      signature[h] = min;
+    }
+    return signature;
+  }
+
+  private static long bandKey(long[] signature, int band) {
+    long key = band;
+    for (int r = band * ROWS_PER_BAND; r < (band + 1) * ROWS_PER_BAND; r++) {
+      key = mix(key * 31 + signature[r]);
+    }
+    return key;
+  }
+
+  /** Jaccard index of two sorted shingle sets. */
+  static double jaccard(long[] a, long[] b) {
+    if (a.length == 0 || b.length == 0) {
+      return 0;
+    }
+    int shared = 0;
+    for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+      if (a[i] == b[j]) {
+        shared++;
+        i++;
+        j++;
+      } else if (a[i] < b[j]) {
+        i++;
+      } else {
+        j++;
+      }
+    }
+    return (double) shared / (a.length + b.length - shared);
+  }
+
+  /** SplitMix64 finalizer. */
+  private static long mix(long z) {
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+}
@@ -1,13 +1,26 @@
 package org.artificers.ingest.service;
 
 import java.time.Instant;
+import java.util.HexFormat;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.artificers.ingest.model.Money;
 
 public final class HashGenerator {
+  /** Length of a digest, as stored in the {@code bytea} {@code transactions.hash} (V16). */
+  public static final int DIGEST_BYTES = 32;
+
+  private static final HexFormat HEX = HexFormat.of();
+
   private HashGenerator() {}
 
+  /** Lower-case hex of {@link #sha256Bytes}. */
   public static String sha256(String accountId, Money amount, Instant occurredAt, String merchant) {
+    return HEX.formatHex(sha256Bytes(accountId, amount, occurredAt, merchant));
+  }
+
+  /** SHA-256 digest of the canonical {@code account|cents|currency|occurredAt|merchant} string. */
+  public static byte[] sha256Bytes(
+      String accountId, Money amount, Instant occurredAt, String merchant) {
     String canonical =
         String.join(
             "|",
@@ -16,7 +29,19 @@ public final class HashGenerator {
             normalize(amount == null ? null : amount.currency()),
             normalize(occurredAt == null ? null : occurredAt.toString()),
             normalize(merchant));
-    return DigestUtils.sha256Hex(canonical);
+    return DigestUtils.sha256(canonical);
+  }
+
+  /**
+   * Parses a hex hash from {@link #sha256} back into its digest.
+   *
+   * @throws IllegalArgumentException if {@code hex} is not {@value #DIGEST_BYTES} hex-encoded bytes
+   */
+  public static byte[] digest(String hex) {
+    if (hex == null || hex.length() != DIGEST_BYTES * 2) {
+      throw new IllegalArgumentException("Expected a SHA-256 hex hash but got " + hex);
+    }
+    return HEX.parseHex(hex);
   }
 
   private static String normalize(String value) {
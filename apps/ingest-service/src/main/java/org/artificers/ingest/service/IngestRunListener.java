@@ -0,0 +1,14 @@
+package org.artificers.ingest.service;
+
+import java.nio.file.Path;
+import java.util.List;
+import org.artificers.ingest.model.IngestRun;
+import org.artificers.ingest.model.TransactionRecord;
+
+/** Notified once per file after {@link IngestService} finishes, whatever the outcome. */
+public interface IngestRunListener {
+  /** Called on the ingest thread once a file has parsed, before anything is persisted. */
+  default void onTransactionsParsed(Path file, String shorthand, List<TransactionRecord> txs) {}
+
+  void onRunCompleted(IngestRun run);
+}
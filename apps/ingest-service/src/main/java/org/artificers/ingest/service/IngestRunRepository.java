@@ -0,0 +1,65 @@
+package org.artificers.ingest.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import org.artificers.ingest.model.IngestRun;
+import org.artificers.jooq.tables.IngestRuns;
+import org.jooq.DSLContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** Persists every {@link IngestRun} to the {@code ingest_runs} ledger. */
+public class IngestRunRepository implements IngestRunListener {
+  private static final Logger log = LoggerFactory.getLogger(IngestRunRepository.class);
+  private final DSLContext dsl;
+
+  public IngestRunRepository(DSLContext dsl) {
+    this.dsl = dsl;
+  }
+
+  @Override
+  public void onRunCompleted(IngestRun run) {
+    try {
+      insert(run);
+    } catch (Exception e) {
+      log.warn("Failed to record ingest run for {}", run.fileName(), e);
+    }
+  }
+
+  public void insert(IngestRun run) {
+    IngestRuns r = IngestRuns.INGEST_RUNS;
+    dsl.insertInto(r)
+        .set(r.FILE_NAME, run.fileName())
+        .set(r.SHORTHAND, run.shorthand())
+        .set(r.INSTITUTION, run.institution())
+        .set(r.ACCOUNT_ID, run.accountId())
+        .set(r.ROWS_READ, run.rowsRead())
+        .set(r.ROWS_INSERTED, run.rowsInserted())
+        .set(r.ROWS_DUPLICATE, run.rowsDuplicate())
+        .set(r.ROWS_REJECTED, run.rowsRejected())
+        .set(r.BYTES, run.bytes())
+        .set(r.READ_MICROS, micros(run.readTime()))
+        .set(r.PARSE_MICROS, micros(run.parseTime()))
+        .set(r.PERSIST_MICROS, micros(run.persistTime()))
+        .set(r.REFRESH_MICROS, micros(run.refreshTime()))
+        .set(r.ROWS_SPILLED, run.rowsSpilled())
+        .set(r.SPILL_BYTES, run.spillBytes())
+        .set(r.SPILL_MICROS, micros(run.spillTime()))
+        .set(r.TOTAL_MICROS, micros(run.totalTime()))
+        .set(r.OUTCOME, run.outcome())
+        .set(r.ERROR, run.error())
+        .set(r.STARTED_AT, toOffsetDateTime(run.startedAt()))
+        .set(r.FINISHED_AT, toOffsetDateTime(run.finishedAt()))
+        .execute();
+  }
+
+  private static long micros(Duration d) {
+    return d.toNanos() / 1_000;
+  }
+
+  private static OffsetDateTime toOffsetDateTime(Instant i) {
+    return OffsetDateTime.ofInstant(i, ZoneOffset.UTC);
+  }
+}
@@ -3,15 +3,27 @@ package org.artificers.ingest.service;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import org.artificers.ingest.csv.TransactionCsvReader;
 import org.artificers.ingest.error.IngestException;
 import org.artificers.ingest.error.TransactionIngestException;
+import org.artificers.ingest.jfr.IngestEvent;
+import org.artificers.ingest.jfr.IngestFileEvent;
+import org.artificers.ingest.jfr.ParseTransactionsEvent;
+import org.artificers.ingest.jfr.PersistTransactionsEvent;
+import org.artificers.ingest.jfr.ViewRefreshEvent;
+import org.artificers.ingest.metrics.IngestMetrics;
+import org.artificers.ingest.metrics.IngestStage;
+import org.artificers.ingest.metrics.StageTimer;
+import org.artificers.ingest.model.IngestRun;
 import org.artificers.ingest.model.ResolvedAccount;
 import org.artificers.ingest.model.TransactionRecord;
 import org.jooq.DSLContext;
@@ -27,70 +39,283 @@ public class IngestService {
   private final AccountShorthandParser shorthandParser;
   private final Map<String, TransactionCsvReader> readers;
   private final TransactionRepository repository;
+  private final RollupRepository rollups;
   private final MaterializedViewRefresher viewRefresher;
+  private final IngestMetrics metrics;
+  private final Set<IngestRunListener> runListeners;
+  private final long maxBufferBytes;
+  private final Path spillDir;
 
+  /**
+   * @param rollups receives the totals of the rows each ingest inserted, in the same transaction
+   * @param maxBufferBytes heap budget for parsed rows awaiting persistence; past it they spill to a
+   *     temp file in {@code spillDir}. 0 keeps every row of a file in memory.
+   */
   public IngestService(
       DSLContext dsl,
       AccountResolver accountResolver,
       AccountShorthandParser shorthandParser,
       Set<TransactionCsvReader> readers,
       TransactionRepository repository,
-      MaterializedViewRefresher viewRefresher) {
+      RollupRepository rollups,
+      MaterializedViewRefresher viewRefresher,
+      IngestMetrics metrics,
+      Set<IngestRunListener> runListeners,
+      long maxBufferBytes,
+      Path spillDir) {
+    if (maxBufferBytes < 0) {
+      throw new IllegalArgumentException("maxBufferBytes must not be negative");
+    }
     this.dsl = dsl;
     this.accountResolver = accountResolver;
     this.shorthandParser = shorthandParser;
     this.readers =
         readers.stream().collect(Collectors.toMap(TransactionCsvReader::institution, r -> r));
     this.repository = repository;
+    this.rollups = rollups;
     this.viewRefresher = viewRefresher;
+    this.metrics = metrics;
+    this.runListeners = runListeners;
+    this.maxBufferBytes = maxBufferBytes;
+    this.spillDir = spillDir;
   }
 
   public void ingestFile(Path file, String shorthand) throws IngestException, IOException {
     log.info("Ingesting file {} for shorthand {}", file, shorthand);
-    AccountShorthandParser.ParsedShorthand ids;
+    IngestFileEvent event = new IngestFileEvent();
+    event.start(file, shorthand);
+    RunTracker run = new RunTracker(file, shorthand);
+    Throwable failure = null;
     try {
-      ids = shorthandParser.parse(shorthand);
-    } catch (IllegalArgumentException e) {
-      throw new IngestException("Invalid account shorthand " + shorthand, e);
+      AccountShorthandParser.ParsedShorthand ids;
+      try {
+        ids = shorthandParser.parse(shorthand);
+      } catch (IllegalArgumentException e) {
+        throw new IngestException("Invalid account shorthand " + shorthand, e);
+      }
+      run.institution(ids.institution());
+      if (maxBufferBytes > 0) {
+        try (SpillingTransactionBuffer buffer =
+            new SpillingTransactionBuffer(
+                ids.externalId(),
+                maxBufferBytes,
+                spillDir,
+                batch -> parsed(file, shorthand, batch))) {
+          try {
+            parseTransactions(file, shorthand, ids, run, buffer);
+            event.rows(run.rowsRead());
+            event.bytes(run.bytes());
+            persistTransactions(file, shorthand, buffer::forEachBatch, run);
+          } finally {
+            run.spilled(buffer.spilledRows(), buffer.spilledBytes(), buffer.spillNanos());
+          }
+        }
+      } else {
+        List<TransactionRecord> txs = parseTransactions(file, shorthand, ids, run);
+        event.rows(run.rowsRead());
+        event.bytes(run.bytes());
+        persistTransactions(file, shorthand, chunk -> chunk.accept(txs), run);
+      }
+      refreshViews(file, shorthand, run);
+      log.info("Successfully ingested {} transactions from {}", run.rowsRead(), file);
+    } catch (IngestException | IOException | RuntimeException | Error e) {
+      failure = e;
+      throw e;
+    } finally {
+      String outcome = failure == null ? IngestEvent.SUCCESS : IngestEvent.FAILURE;
+      if (failure == null) {
+        metrics.recordSuccess();
+      } else {
+        metrics.recordFailure();
+      }
+      event.finish(outcome);
+      completed(run.finish(outcome, failure));
+    }
+  }
+
+  private void parsed(Path file, String shorthand, List<TransactionRecord> txs) {
+    for (IngestRunListener listener : runListeners) {
+      try {
+        listener.onTransactionsParsed(file, shorthand, txs);
+      } catch (RuntimeException e) {
+        log.warn("Ingest run listener {} failed for {}", listener, file, e);
+      }
+    }
+  }
+
+  private void completed(IngestRun run) {
+    for (IngestRunListener listener : runListeners) {
+      try {
+        listener.onRunCompleted(run);
+      } catch (RuntimeException e) {
+        log.warn("Ingest run listener {} failed for {}", listener, run.fileName(), e);
+      }
     }
-    List<TransactionRecord> txs = parseTransactions(file, ids);
-    persistTransactions(shorthand, txs);
-    refreshViews();
-    log.info("Successfully ingested {} transactions from {}", txs.size(), file);
   }
 
   private List<TransactionRecord> parseTransactions(
-      Path file, AccountShorthandParser.ParsedShorthand ids) throws IOException, IngestException {
+      Path file, String shorthand, AccountShorthandParser.ParsedShorthand ids, RunTracker run)
+      throws IOException, IngestException {
+    ParseTransactionsEvent event = new ParseTransactionsEvent();
+    event.start(file, shorthand);
+    String outcome = IngestEvent.FAILURE;
+    try {
+      TransactionCsvReader reader = reader(ids);
+      String csv;
+      long bytes;
+      try (StageTimer t = metrics.start(IngestStage.FILE_READ)) {
+        csv = Files.readString(file);
+        bytes = Files.size(file);
+        run.read(bytes, t.elapsedNanos());
+      }
+      event.bytes(bytes);
+      try (Reader r = new StringReader(csv)) {
+        List<TransactionRecord> txs;
+        try (StageTimer t = metrics.start(IngestStage.CSV_PARSE)) {
+          txs = reader.read(file, r, ids.externalId());
+          run.parsed(txs.size(), t.elapsedNanos());
+        }
+        parsed(event, file, txs.size(), bytes);
+        parsed(file, shorthand, txs);
+        outcome = IngestEvent.SUCCESS;
+        return txs;
+      }
+    } finally {
+      event.finish(outcome);
+    }
+  }
+
+  /**
+   * Parses into {@code buffer}. Files larger than the buffer budget are parsed straight from disk
+   * rather than read into one string first, so their read time is counted as parse time.
+   */
+  private void parseTransactions(
+      Path file,
+      String shorthand,
+      AccountShorthandParser.ParsedShorthand ids,
+      RunTracker run,
+      SpillingTransactionBuffer buffer)
+      throws IOException, IngestException {
+    ParseTransactionsEvent event = new ParseTransactionsEvent();
+    event.start(file, shorthand);
+    String outcome = IngestEvent.FAILURE;
+    try {
+      TransactionCsvReader reader = reader(ids);
+      long bytes = Files.size(file);
+      event.bytes(bytes);
+      Reader r;
+      if (bytes > maxBufferBytes) {
+        r = Files.newBufferedReader(file);
+        run.read(bytes, 0);
+      } else {
+        try (StageTimer t = metrics.start(IngestStage.FILE_READ)) {
+          r = new StringReader(Files.readString(file));
+          run.read(bytes, t.elapsedNanos());
+        }
+      }
+      try (r;
+          StageTimer t = metrics.start(IngestStage.CSV_PARSE)) {
+        reader.read(file, r, ids.externalId(), buffer);
+        buffer.finish();
+        run.parsed(buffer.rows(), t.elapsedNanos());
+      }
+      parsed(event, file, buffer.rows(), bytes);
+      outcome = IngestEvent.SUCCESS;
+    } finally {
+      event.finish(outcome);
+    }
+  }
+
+  private TransactionCsvReader reader(AccountShorthandParser.ParsedShorthand ids)
+      throws IngestException {
     TransactionCsvReader reader = readers.get(ids.institution());
     if (reader == null) {
       throw new IngestException("No reader for institution " + ids.institution());
     }
-    String csv = Files.readString(file);
-    try (Reader r = new StringReader(csv)) {
-      List<TransactionRecord> txs = reader.read(file, r, ids.externalId());
-      if (txs.isEmpty()) {
-        throw new IngestException("No transactions found in " + file);
-      }
-      txs.forEach(t -> log.info("Read transaction: {}", t));
-      return txs;
-    }
+    return reader;
   }
 
-  private void persistTransactions(String shorthand, List<TransactionRecord> txs)
+  private void parsed(ParseTransactionsEvent event, Path file, long rows, long bytes)
       throws IngestException {
+    event.rows(rows);
+    metrics.recordFile(rows, bytes);
+    if (rows == 0) {
+      throw new IngestException("No transactions found in " + file);
+    }
+  }
+
+  private void persistTransactions(Path file, String shorthand, ParsedRows rows, RunTracker run)
+      throws IngestException, IOException {
+    PersistTransactionsEvent event = new PersistTransactionsEvent();
+    event.start(file, shorthand);
+    String outcome = IngestEvent.FAILURE;
+    long start = System.nanoTime();
     try {
-      dsl.transaction(
-          conf -> {
-            DSLContext ctx = DSL.using(conf);
-            ResolvedAccount account = accountResolver.resolve(ctx, shorthand);
-            txs.forEach(t -> repository.upsert(ctx, t, account));
-          });
+      int inserted =
+          dsl.transactionResult(
+              conf -> {
+                DSLContext ctx = DSL.using(conf);
+                ResolvedAccount account;
+                try (StageTimer ignored = metrics.start(IngestStage.ACCOUNT_RESOLVE)) {
+                  account = accountResolver.resolve(ctx, shorthand);
+                }
+                run.account(account);
+                int[] written = {0};
+                RollupRepository.Deltas deltas = new RollupRepository.Deltas();
+                Map<List<String>, Long> schemaIds = new HashMap<>();
+                try {
+                  rows.forEach(
+                      chunk -> {
+                        for (TransactionRecord t : chunk) {
+                          try (StageTimer ignored = metrics.start(IngestStage.REPOSITORY_WRITE)) {
+                            long schema =
+                                schemaIds.computeIfAbsent(
+                                    t.rawHeaders(), h -> repository.sourceSchema(ctx, h));
+                            if (repository.upsert(ctx, t, account, schema)) {
+                              written[0]++;
+                              deltas.add(account.id(), t);
+                            }
+                          }
+                        }
+                      });
+                } catch (IOException e) {
+                  throw new UncheckedIOException(e);
+                }
+                try (StageTimer ignored = metrics.start(IngestStage.ROLLUP_UPDATE)) {
+                  rollups.apply(ctx, deltas);
+                }
+                return written[0];
+              });
+      long duplicates = run.rowsRead() - inserted;
+      metrics.recordWrites(inserted, duplicates);
+      run.persisted(inserted, duplicates, System.nanoTime() - start);
+      event.rows(inserted);
+      outcome = IngestEvent.SUCCESS;
     } catch (TransactionIngestException e) {
       throw new IngestException("Transaction ingest failed for " + e.record(), e);
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    } finally {
+      event.finish(outcome);
+    }
+  }
+
+  private void refreshViews(Path file, String shorthand, RunTracker run) {
+    ViewRefreshEvent event = new ViewRefreshEvent();
+    event.start(file, shorthand);
+    String outcome = IngestEvent.FAILURE;
+    try (StageTimer t = metrics.start(IngestStage.VIEW_REFRESH)) {
+      viewRefresher.requestRefresh("transactions");
+      run.refreshed(t.elapsedNanos());
+      outcome = IngestEvent.SUCCESS;
+    } finally {
+      event.finish(outcome);
     }
   }
 
-  private void refreshViews() {
-    viewRefresher.refreshTransactionsView();
+  /** Rows parsed from one file, handed out in chunks in file order. */
+  @FunctionalInterface
+  private interface ParsedRows {
+    void forEach(Consumer<? super List<TransactionRecord>> chunk) throws IOException;
   }
 }
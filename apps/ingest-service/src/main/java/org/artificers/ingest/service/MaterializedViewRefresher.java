@@ -1,31 +1,345 @@
 package org.artificers.ingest.service;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import org.artificers.ingest.metrics.Counter;
+import org.artificers.ingest.metrics.Histogram;
+import org.artificers.ingest.metrics.MetricsRegistry;
 import org.jooq.DSLContext;
+import org.jooq.Record2;
+import org.jooq.SQLDialect;
 import org.jooq.impl.DSL;
+import org.jooq.impl.SQLDataType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-/** Refreshes materialized views after ingestion. */
-public class MaterializedViewRefresher {
+/**
+ * Coalescing, asynchronous refresher for the materialized views registered with it. Ingests
+ * {@linkplain #requestRefresh(String) report the tables they changed}; every view depending on
+ * them, directly or through another registered view, is marked stale. A refresh runs on a
+ * background thread once no request has arrived for the debounce interval, or at the latest {@value
+ * #MAX_DELAY_FACTOR} intervals after the first pending request, so a burst of ingests costs one
+ * refresh per view. Views refresh in dependency order, {@code CONCURRENTLY} when populated and
+ * covered by a plain unique index. Whether a registered name is a materialized view at all is
+ * looked up in {@code pg_matviews} once and cached; plain views, and every view on a database other
+ * than PostgreSQL, are skipped. A failed lookup fails that refresh, which is retried.
+ */
+public class MaterializedViewRefresher implements AutoCloseable {
   private static final Logger log = LoggerFactory.getLogger(MaterializedViewRefresher.class);
+
+  /** Upper bound on how long a steady stream of requests can postpone a refresh, in intervals. */
+  public static final int MAX_DELAY_FACTOR = 10;
+
+  public static final Duration DEFAULT_DEBOUNCE = Duration.ofSeconds(2);
+
+  /** Views refreshed by the ingest service. {@code transactions_view} is a plain view since V10. */
+  public static final List<View> DEFAULT_VIEWS =
+      List.of(new View("transactions_view", Set.of("transactions", "accounts")));
+
+  /** A registered view and the tables or views it selects from. */
+  public record View(String name, Set<String> dependsOn) {}
+
+  /** What {@code pg_matviews} says about a view. */
+  private record Catalog(boolean materialized, boolean concurrent) {}
+
   private final DSLContext dsl;
+  private final List<View> views;
+  private final long debounceNanos;
+  private final ScheduledExecutorService executor;
+  private final Map<String, Catalog> catalog = new ConcurrentHashMap<>();
+  private final Map<String, Long> staleSince = new LinkedHashMap<>();
+  private final Map<String, Long> refreshing = new LinkedHashMap<>();
+  private final Counter requests;
+  private final Map<String, Counter> refreshed = new LinkedHashMap<>();
+  private final Map<String, Counter> failed = new LinkedHashMap<>();
+  private final Map<String, Histogram> durations = new LinkedHashMap<>();
+  private long lastRequestNanos;
+  private long firstRequestNanos;
+  private ScheduledFuture<?> scheduled;
+  private boolean closed;
 
   public MaterializedViewRefresher(DSLContext dsl) {
+    this(dsl, DEFAULT_VIEWS, DEFAULT_DEBOUNCE, new MetricsRegistry());
+  }
+
+  public MaterializedViewRefresher(
+      DSLContext dsl, List<View> views, Duration debounce, MetricsRegistry registry) {
+    this(
+        dsl,
+        views,
+        debounce,
+        registry,
+        Executors.newSingleThreadScheduledExecutor(
+            r -> {
+              Thread t = new Thread(r);
+              t.setDaemon(true);
+              t.setName("view-refresh");
+              return t;
+            }));
+  }
+
+  MaterializedViewRefresher(
+      DSLContext dsl,
+      List<View> views,
+      Duration debounce,
+      MetricsRegistry registry,
+      ScheduledExecutorService executor) {
     this.dsl = dsl;
+    this.views = dependencyOrder(views);
+    this.debounceNanos = debounce.toNanos();
+    this.executor = executor;
+    this.requests =
+        registry.counter(
+            "ingest_view_refresh_requests", "Refresh requests, before coalescing into refreshes");
+    for (View view : this.views) {
+      String name = view.name();
+      refreshed.put(
+          name,
+          registry.counter(
+              "ingest_view_refreshes",
+              "Materialized view refreshes",
+              "view",
+              name,
+              "outcome",
+              "success"));
+      failed.put(
+          name,
+          registry.counter(
+              "ingest_view_refreshes",
+              "Materialized view refreshes",
+              "view",
+              name,
+              "outcome",
+              "failure"));
+      durations.put(
+          name,
+          registry.histogram(
+              "ingest_view_refresh_duration_seconds",
+              "Time spent refreshing a materialized view",
+              Histogram.LATENCY_SECONDS,
+              "view",
+              name));
+      registry.gauge(
+          "ingest_view_staleness_seconds",
+          "Seconds since the oldest change not yet reflected in the view, 0 when fresh",
+          () -> stalenessSeconds(name),
+          "view",
+          name);
+    }
+  }
+
+  /** Marks every view depending on {@code table} stale and schedules a coalesced refresh. */
+  public synchronized void requestRefresh(String table) {
+    requests.increment();
+    long now = System.nanoTime();
+    boolean marked = false;
+    for (View view : affectedBy(table)) {
+      staleSince.putIfAbsent(view.name(), now);
+      marked = true;
+    }
+    if (!marked || closed) {
+      return;
+    }
+    lastRequestNanos = now;
+    if (scheduled == null) {
+      firstRequestNanos = now;
+      scheduled = executor.schedule(this::fire, debounceNanos, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  /** Seconds since {@code view} first went stale, or 0 when it is fresh. */
+  public synchronized double stalenessSeconds(String view) {
+    long since =
+        Math.min(
+            staleSince.getOrDefault(view, Long.MAX_VALUE),
+            refreshing.getOrDefault(view, Long.MAX_VALUE));
+    return since == Long.MAX_VALUE ? 0 : (System.nanoTime() - since) / 1e9;
+  }
+
+  /** Runs any pending refresh now, on the refresh thread, and waits for it. */
+  public void flush() {
+    synchronized (this) {
+      if (executor.isShutdown()) {
+        return;
+      }
+      if (scheduled != null) {
+        scheduled.cancel(false);
+        scheduled = null;
+      }
+    }
+    try {
+      executor.submit(this::refreshStale).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      log.warn("View refresh failed", e.getCause());
+    }
+  }
+
+  /** Flushes pending refreshes and stops the refresh thread. */
+  @Override
+  public void close() {
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+    }
+    flush();
+    executor.shutdown();
   }
 
-  public void refreshTransactionsView() {
+  private void fire() {
+    synchronized (this) {
+      long now = System.nanoTime();
+      long quietFor = now - lastRequestNanos;
+      long waited = now - firstRequestNanos;
+      if (quietFor < debounceNanos && waited < debounceNanos * MAX_DELAY_FACTOR) {
+        long delay = Math.min(debounceNanos - quietFor, debounceNanos * MAX_DELAY_FACTOR - waited);
+        scheduled = executor.schedule(this::fire, delay, TimeUnit.NANOSECONDS);
+        return;
+      }
+      scheduled = null;
+    }
+    refreshStale();
+  }
+
+  private void refreshStale() {
+    List<View> stale = new ArrayList<>();
+    synchronized (this) {
+      for (View view : views) {
+        Long since = staleSince.remove(view.name());
+        if (since != null) {
+          refreshing.put(view.name(), since);
+          stale.add(view);
+        }
+      }
+    }
+    boolean retry = false;
+    for (View view : stale) {
+      boolean ok = refresh(view);
+      synchronized (this) {
+        long since = refreshing.remove(view.name());
+        if (!ok) {
+          staleSince.merge(view.name(), since, Math::min);
+          retry = true;
+        }
+      }
+    }
+    if (retry) {
+      synchronized (this) {
+        if (scheduled == null && !closed) {
+          firstRequestNanos = lastRequestNanos = System.nanoTime();
+          scheduled =
+              executor.schedule(this::fire, debounceNanos * MAX_DELAY_FACTOR, TimeUnit.NANOSECONDS);
+        }
+      }
+    }
+  }
+
+  private boolean refresh(View view) {
+    String name = view.name();
+    long start = System.nanoTime();
     try {
-      boolean exists =
-          dsl.fetchExists(
-              DSL.selectOne()
-                  .from("pg_matviews")
-                  .where(DSL.field("matviewname").eq("transactions_view")));
-      if (exists) {
-        dsl.execute("REFRESH MATERIALIZED VIEW transactions_view");
+      Catalog info = catalog.computeIfAbsent(name, this::lookup);
+      if (!info.materialized()) {
+        return true;
+      }
+      dsl.execute(
+          "refresh materialized view " + (info.concurrent() ? "concurrently " : "") + "{0}",
+          DSL.name(name));
+      durations.get(name).observeNanos(System.nanoTime() - start);
+      refreshed.get(name).increment();
+      return true;
+    } catch (RuntimeException e) {
+      catalog.remove(name);
+      failed.get(name).increment();
+      log.warn("Failed to refresh materialized view {}", name, e);
+      return false;
+    }
+  }
+
+  /** Reads {@code pg_matviews}; errors propagate so a transient failure is not cached. */
+  private Catalog lookup(String view) {
+    if (dsl.dialect().family() != SQLDialect.POSTGRES) {
+      log.debug("No pg_matviews on {}, not refreshing {}", dsl.dialect(), view);
+      return new Catalog(false, false);
+    }
+    Optional<Record2<Boolean, Boolean>> row =
+        dsl.select(
+                DSL.field("m.ispopulated", SQLDataType.BOOLEAN),
+                DSL.field(
+                    "exists (select 1 from pg_index i where i.indrelid = to_regclass({0})"
+                        + " and i.indisunique and i.indpred is null and i.indexprs is null)",
+                    SQLDataType.BOOLEAN, DSL.field("m.matviewname")))
+            .from("pg_matviews m")
+            .where(DSL.field("m.matviewname").eq(view))
+            .fetchOptional();
+    if (row.isEmpty()) {
+      log.debug("{} is not a materialized view; not refreshing it", view);
+      return new Catalog(false, false);
+    }
+    return new Catalog(true, row.get().value1() && row.get().value2());
+  }
+
+  /** Registered views reading {@code table}, directly or through other registered views. */
+  private List<View> affectedBy(String table) {
+    List<View> affected = new ArrayList<>();
+    Set<String> changed = new HashSet<>(Set.of(table));
+    for (View view : views) {
+      if (view.dependsOn().stream().anyMatch(changed::contains)) {
+        affected.add(view);
+        changed.add(view.name());
+      }
+    }
+    return affected;
+  }
+
+  /** Orders views so each follows the registered views it depends on. */
+  private static List<View> dependencyOrder(List<View> views) {
+    Map<String, View> byName = new LinkedHashMap<>();
+    views.forEach(v -> byName.put(v.name(), v));
+    List<View> ordered = new ArrayList<>();
+    Set<String> visiting = new HashSet<>();
+    Set<String> done = new HashSet<>();
+    for (View view : views) {
+      visit(view, byName, visiting, done, ordered);
+    }
+    return List.copyOf(ordered);
+  }
+
+  private static void visit(
+      View view,
+      Map<String, View> byName,
+      Set<String> visiting,
+      Set<String> done,
+      List<View> ordered) {
+    if (done.contains(view.name())) {
+      return;
+    }
+    if (!visiting.add(view.name())) {
+      throw new IllegalArgumentException("Materialized view dependency cycle at " + view.name());
+    }
+    for (String dependency : view.dependsOn()) {
+      View upstream = byName.get(dependency);
+      if (upstream != null) {
+        visit(upstream, byName, visiting, done, ordered);
       }
-    } catch (Exception e) {
-      log.debug("Skipping materialized view refresh: {}", e.getMessage());
     }
+    visiting.remove(view.name());
+    done.add(view.name());
+    ordered.add(view);
   }
 }
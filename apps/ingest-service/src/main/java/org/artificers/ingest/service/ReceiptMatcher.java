@@ -0,0 +1,422 @@
+package org.artificers.ingest.service;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.IntConsumer;
+import org.artificers.ingest.model.IngestRun;
+import org.artificers.jooq.tables.ReceiptLinks;
+import org.artificers.jooq.tables.Transactions;
+import org.jooq.Condition;
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.InsertValuesStep6;
+import org.jooq.Table;
+import org.jooq.impl.DSL;
+import org.jooq.impl.SQLDataType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Links receipts captured by plutary ({@code receipt_transactions}) to the card transactions they
+ * paid for, in {@code receipt_links}. A receipt matches a debit of the same amount and currency
+ * that occurred within {@code tolerance} of it and whose merchant or canonical merchant is similar
+ * enough to the receipt's; the most similar pairs are taken first, closer times breaking ties, and
+ * each receipt and transaction joins at most one link.
+ *
+ * <p>Each run loads the receipts that have no link yet and the unlinked debits that have one of
+ * their amounts and fall within their dates, then builds an {@link IntervalIndex} over the debits:
+ * each stands for the interval {@code occurred_at ± tolerance}, keyed by currency and amount, and a
+ * receipt probes it for the intervals containing its time. So a receipt is only scored against the
+ * few debits of its exact amount near its date. Retrying every unlinked receipt is what makes runs
+ * incremental in both directions: a new receipt finds an old transaction, and a receipt captured
+ * before its transaction was ingested is linked on the next ingest.
+ *
+ * <p>Registered as an {@link IngestRunListener}, it runs after every ingest that inserted rows;
+ * {@code receipt_match} runs it after receipts are captured. Without the plutary tables it does
+ * nothing.
+ */
+public class ReceiptMatcher implements IngestRunListener {
+  private static final Logger log = LoggerFactory.getLogger(ReceiptMatcher.class);
+
+  public static final Duration DEFAULT_TOLERANCE = Duration.ofDays(2);
+
+  /** Lowest merchant similarity that links a receipt. */
+  public static final double DEFAULT_MIN_SCORE = 0.3;
+
+  /** Links per insert statement. */
+  static final int INSERT_CHUNK = 1_000;
+
+  private static final Table<?> RECEIPTS = DSL.table("receipt_transactions");
+  private static final Field<UUID> RECEIPT_ID = DSL.field("receipt_ingestion_id", SQLDataType.UUID);
+  private static final Field<String> RECEIPT_MERCHANT = DSL.field("merchant", SQLDataType.VARCHAR);
+  private static final Field<Long> RECEIPT_TOTAL =
+      DSL.field("total_amount_cents", SQLDataType.BIGINT);
+  private static final Field<String> RECEIPT_CURRENCY = DSL.field("currency", SQLDataType.VARCHAR);
+  private static final Field<OffsetDateTime> RECEIPT_OCCURRED_AT =
+      DSL.field("occurred_at", SQLDataType.TIMESTAMPWITHTIMEZONE);
+
+  /** A receipt waiting for a link. */
+  record Receipt(
+      UUID id, String merchant, long amountCents, String currency, OffsetDateTime occurredAt) {}
+
+  /** A debit a receipt may belong to; {@code amountCents} is the positive amount spent. */
+  record Card(
+      long id,
+      long accountId,
+      long amountCents,
+      String currency,
+      OffsetDateTime occurredAt,
+      String merchant,
+      String canonicalMerchant) {}
+
+  /** A receipt and debit paired with their merchant similarity. */
+  record Match(Receipt receipt, Card card, double score, long secondsApart) {}
+
+  /**
+   * What one run did.
+   *
+   * @param available whether {@code receipt_transactions} exists
+   * @param receipts unlinked dated receipts read
+   * @param transactions debits indexed
+   * @param candidates pairs of matching amount and time that were scored
+   * @param linked links written
+   */
+  public record Result(
+      boolean available, int receipts, int transactions, int candidates, int linked) {}
+
+  private final DSLContext dsl;
+  private final Duration tolerance;
+  private final double minScore;
+  private volatile boolean reportedMissing;
+
+  public ReceiptMatcher(DSLContext dsl) {
+    this(dsl, DEFAULT_TOLERANCE, DEFAULT_MIN_SCORE);
+  }
+
+  public ReceiptMatcher(DSLContext dsl, Duration tolerance, double minScore) {
+    if (tolerance.isNegative()) {
+      throw new IllegalArgumentException("tolerance must not be negative");
+    }
+    if (!(minScore >= 0 && minScore <= 1)) {
+      throw new IllegalArgumentException("minScore must be between 0 and 1");
+    }
+    this.dsl = dsl;
+    this.tolerance = tolerance;
+    this.minScore = minScore;
+  }
+
+  @Override
+  public void onRunCompleted(IngestRun run) {
+    if (!run.succeeded() || run.rowsInserted() == 0) {
+      return;
+    }
+    long start = System.nanoTime();
+    Result result = match(dsl);
+    if (result.available() && result.receipts() > 0) {
+      log.info(
+          "Receipt matching after {}: {} receipts, {} transactions indexed, {} linked in {} ms",
+          run.fileName(),
+          result.receipts(),
+          result.transactions(),
+          result.linked(),
+          (System.nanoTime() - start) / 1_000_000);
+    }
+  }
+
+  /** Links the unlinked receipts that now have a matching transaction. */
+  public Result match(DSLContext ctx) {
+    if (!receiptsAvailable(ctx)) {
+      if (!reportedMissing) {
+        reportedMissing = true;
+        log.info("receipt_transactions not found; apply the plutary migrations to match receipts");
+      }
+      return new Result(false, 0, 0, 0, 0);
+    }
+    ReceiptLinks l = ReceiptLinks.RECEIPT_LINKS;
+    Condition unlinked =
+        DSL.and(
+            RECEIPT_OCCURRED_AT.isNotNull(),
+            RECEIPT_TOTAL.gt(0L),
+            DSL.notExists(DSL.selectOne().from(l).where(l.RECEIPT_ID.eq(RECEIPT_ID))));
+    List<Receipt> receipts =
+        ctx.select(
+                RECEIPT_ID, RECEIPT_MERCHANT, RECEIPT_TOTAL, RECEIPT_CURRENCY, RECEIPT_OCCURRED_AT)
+            .from(RECEIPTS)
+            .where(unlinked)
+            .fetch(r -> new Receipt(r.value1(), r.value2(), r.value3(), r.value4(), r.value5()));
+    if (receipts.isEmpty()) {
+      return new Result(true, 0, 0, 0, 0);
+    }
+    OffsetDateTime from = receipts.get(0).occurredAt();
+    OffsetDateTime to = from;
+    for (Receipt r : receipts) {
+      from = r.occurredAt().isBefore(from) ? r.occurredAt() : from;
+      to = r.occurredAt().isAfter(to) ? r.occurredAt() : to;
+    }
+    Transactions t = Transactions.TRANSACTIONS;
+    List<Card> cards =
+        ctx.select(
+                t.ID,
+                t.ACCOUNT_ID,
+                t.AMOUNT_CENTS,
+                t.CURRENCY,
+                t.OCCURRED_AT,
+                t.MERCHANT,
+                t.MERCHANT_CANONICAL)
+            .from(t)
+            .where(
+                t.OCCURRED_AT.between(from.minus(tolerance), to.plus(tolerance)),
+                // A semi-join rather than an array of amounts, which is scanned once per row
+                t.AMOUNT_CENTS.in(DSL.select(RECEIPT_TOTAL.neg()).from(RECEIPTS).where(unlinked)),
+                DSL.notExists(DSL.selectOne().from(l).where(l.TRANSACTION_ID.eq(t.ID))))
+            .fetch(
+                r ->
+                    new Card(
+                        r.value1(),
+                        r.value2(),
+                        -r.value3(),
+                        r.value4(),
+                        r.value5(),
+                        r.value6(),
+                        r.value7()));
+    int[] scored = {0};
+    List<Match> matches = pair(receipts, cards, tolerance, minScore, scored);
+    int linked =
+        ctx.transactionResult(
+            conf -> {
+              DSLContext tx = DSL.using(conf);
+              int written = 0;
+              for (int i = 0; i < matches.size(); i += INSERT_CHUNK) {
+                written +=
+                    insert(tx, matches.subList(i, Math.min(matches.size(), i + INSERT_CHUNK)));
+              }
+              return written;
+            });
+    return new Result(true, receipts.size(), cards.size(), scored[0], linked);
+  }
+
+  private static boolean receiptsAvailable(DSLContext ctx) {
+    return ctx.fetchExists(
+        DSL.selectOne()
+            .from(DSL.table("information_schema.tables"))
+            .where(
+                DSL.lower(DSL.field("table_name", SQLDataType.VARCHAR))
+                    .eq("receipt_transactions")));
+  }
+
+  private static int insert(DSLContext tx, List<Match> matches) {
+    if (matches.isEmpty()) {
+      return 0;
+    }
+    ReceiptLinks l = ReceiptLinks.RECEIPT_LINKS;
+    InsertValuesStep6<?, UUID, Long, Long, Long, Float, Long> insert =
+        tx.insertInto(
+            l,
+            l.RECEIPT_ID,
+            l.TRANSACTION_ID,
+            l.ACCOUNT_ID,
+            l.AMOUNT_CENTS,
+            l.MERCHANT_SCORE,
+            l.SECONDS_APART);
+    for (Match m : matches) {
+      insert =
+          insert.values(
+              m.receipt().id(),
+              m.card().id(),
+              m.card().accountId(),
+              -m.card().amountCents(),
+              (float) m.score(),
+              m.secondsApart());
+    }
+    return insert.onConflictDoNothing().execute();
+  }
+
+  /**
+   * Pairs receipts with cards: every card within {@code tolerance} of a receipt with the same
+   * amount and currency is scored, pairs under {@code minScore} are dropped, and the rest are taken
+   * best first, skipping receipts and cards already taken.
+   *
+   * @param scored receives the number of pairs scored in its first element
+   */
+  static List<Match> pair(
+      List<Receipt> receipts, List<Card> cards, Duration tolerance, double minScore, int[] scored) {
+    IntervalIndex index = new IntervalIndex(cards, tolerance);
+    Map<String, long[]> grams = new HashMap<>();
+    List<Match> candidates = new ArrayList<>();
+    for (Receipt r : receipts) {
+      long[] receiptGrams = trigrams(r.merchant());
+      index.probe(
+          r.currency(),
+          r.amountCents(),
+          r.occurredAt(),
+          i -> {
+            Card c = cards.get(i);
+            scored[0]++;
+            double score =
+                Math.max(
+                    similarity(receiptGrams, grams.computeIfAbsent(c.merchant(), m -> trigrams(m))),
+                    similarity(
+                        receiptGrams,
+                        grams.computeIfAbsent(c.canonicalMerchant(), m -> trigrams(m))));
+            if (score >= minScore) {
+              candidates.add(
+                  new Match(
+                      r, c, score, Duration.between(r.occurredAt(), c.occurredAt()).toSeconds()));
+            }
+          });
+    }
+    candidates.sort(
+        Comparator.comparingDouble(Match::score)
+            .reversed()
+            .thenComparingLong(m -> Math.abs(m.secondsApart()))
+            .thenComparingLong(m -> m.card().id()));
+    Set<UUID> receiptsTaken = new HashSet<>();
+    Set<Long> cardsTaken = new HashSet<>();
+    List<Match> matches = new ArrayList<>();
+    for (Match m : candidates) {
+      if (!receiptsTaken.contains(m.receipt().id()) && !cardsTaken.contains(m.card().id())) {
+        receiptsTaken.add(m.receipt().id());
+        cardsTaken.add(m.card().id());
+        matches.add(m);
+      }
+    }
+    return matches;
+  }
+
+  /**
+   * Interval index over cards: card {@code i} covers {@code [occurredAt - tolerance, occurredAt +
+   * tolerance]}, under the key of its currency and amount. All intervals have the same width, so
+   * the ones containing a time {@code x} are exactly those starting in {@code [x - 2 * tolerance,
+   * x]}: with each key's intervals sorted by start, a probe is two binary searches over one
+   * contiguous run.
+   */
+  static final class IntervalIndex {
+    private record Key(String currency, long amountCents) {}
+
+    /** Card indexes sorted by key, then start. */
+    private final int[] order;
+
+    /** Interval starts in epoch seconds, parallel to {@link #order}. */
+    private final long[] starts;
+
+    /** Per key, its {@code [from, to)} run in {@link #order}. */
+    private final Map<Key, int[]> runs = new HashMap<>();
+
+    private final long width;
+
+    IntervalIndex(List<Card> cards, Duration tolerance) {
+      long tol = tolerance.toSeconds();
+      this.width = 2 * tol;
+      Integer[] boxed = new Integer[cards.size()];
+      for (int i = 0; i < boxed.length; i++) {
+        boxed[i] = i;
+      }
+      Arrays.sort(
+          boxed,
+          Comparator.<Integer, String>comparing(i -> cards.get(i).currency())
+              .thenComparingLong(i -> cards.get(i).amountCents())
+              .thenComparingLong(i -> cards.get(i).occurredAt().toEpochSecond()));
+      order = new int[boxed.length];
+      starts = new long[boxed.length];
+      for (int p = 0; p < boxed.length; p++) {
+        Card c = cards.get(boxed[p]);
+        order[p] = boxed[p];
+        starts[p] = c.occurredAt().toEpochSecond() - tol;
+        int[] run = runs.computeIfAbsent(new Key(c.currency(), c.amountCents()), k -> new int[2]);
+        if (run[1] == 0) {
+          run[0] = p;
+        }
+        run[1] = p + 1;
+      }
+    }
+
+    /** Reports the index of every card whose interval under the key contains {@code at}. */
+    void probe(String currency, long amountCents, OffsetDateTime at, IntConsumer cards) {
+      int[] run = runs.get(new Key(currency, amountCents));
+      if (run == null) {
+        return;
+      }
+      long x = at.toEpochSecond();
+      for (int p = lowerBound(run[0], run[1], x - width); p < run[1] && starts[p] <= x; p++) {
+        cards.accept(order[p]);
+      }
+    }
+
+    private int lowerBound(int from, int to, long value) {
+      while (from < to) {
+        int mid = (from + to) >>> 1;
+        if (starts[mid] < value) {
+          from = mid + 1;
+        } else {
+          to = mid;
+        }
+      }
+      return from;
+    }
+  }
+
+  /** Dice coefficient of two sorted trigram sets, 0 when either is empty. */
+  static double similarity(long[] a, long[] b) {
+    if (a.length == 0 || b.length == 0) {
+      return 0;
+    }
+    int shared = 0;
+    for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+      if (a[i] == b[j]) {
+        shared++;
+        i++;
+        j++;
+      } else if (a[i] < b[j]) {
+        i++;
+      } else {
+        j++;
+      }
+    }
+    return 2.0 * shared / (a.length + b.length);
+  }
+
+  /** {@link #similarity(long[], long[])} of two merchant names. */
+  static double similarity(String a, String b) {
+    return similarity(trigrams(a), trigrams(b));
+  }
+
+  /**
+   * Distinct character trigrams of {@code s} upper-cased, with every run of other characters
+   * between letters and digits read as one space and a space added at each end, as sorted packed
+   * longs.
+   */
+  static long[] trigrams(String s) {
+    if (s == null) {
+      return new long[0];
+    }
+    StringBuilder sb = new StringBuilder(s.length() + 2).append(' ');
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (Character.isLetterOrDigit(c)) {
+        sb.append(Character.toUpperCase(c));
+      } else if (sb.charAt(sb.length() - 1) != ' ') {
+        sb.append(' ');
+      }
+    }
+    if (sb.charAt(sb.length() - 1) != ' ') {
+      sb.append(' ');
+    }
+    if (sb.length() < 3) {
+      return new long[0];
+    }
+    long[] grams = new long[sb.length() - 2];
+    for (int i = 0; i < grams.length; i++) {
+      grams[i] = ((long) sb.charAt(i) << 32) | ((long) sb.charAt(i + 1) << 16) | sb.charAt(i + 2);
+    }
+    return Arrays.stream(grams).sorted().distinct().toArray();
+  }
+}
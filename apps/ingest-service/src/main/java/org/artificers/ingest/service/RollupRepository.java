@@ -0,0 +1,313 @@
+package org.artificers.ingest.service;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.artificers.ingest.model.TransactionRecord;
+import org.artificers.jooq.tables.DailyAccountTotals;
+import org.artificers.jooq.tables.MonthlyCategoryTotals;
+import org.artificers.jooq.tables.TransactionChecksums;
+import org.artificers.jooq.tables.Transactions;
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.InsertValuesStep5;
+import org.jooq.InsertValuesStep6;
+import org.jooq.InsertValuesStep7;
+import org.jooq.impl.DSL;
+import org.jooq.impl.SQLDataType;
+
+/**
+ * Maintains {@code daily_account_totals}, {@code monthly_category_totals} and {@code
+ * transaction_checksums}. Ingest collects the rows it actually inserted into {@link Deltas} and
+ * {@linkplain #apply(DSLContext, Deltas) adds} them in the same transaction, so the rollups never
+ * count a duplicate or a rolled-back row. Rows are bucketed by {@code coalesce(occurred_at,
+ * posted_at)} in UTC; rows with neither are left out. Checksums cover every row, bucketed by the
+ * UTC month of {@code occurred_at} (the partition key) with undated rows under {@link #UNDATED}.
+ * {@link #rebuild(DSLContext)} recomputes both totals tables from {@code transactions}; {@link
+ * ChecksumVerifier} checks and repairs the checksums.
+ */
+public class RollupRepository {
+  /** Totals for the category column of rows without one. */
+  public static final String UNCATEGORIZED = "";
+
+  /** Checksum month of rows without {@code occurred_at}. */
+  public static final LocalDate UNDATED = LocalDate.of(1, 1, 1);
+
+  /** Row counts written by {@link #rebuild(DSLContext)}. */
+  public record Rebuilt(int dailyRows, int monthlyRows) {}
+
+  /** Adds {@code deltas} to the rollups; keys are written in sorted order to avoid deadlocks. */
+  public void apply(DSLContext ctx, Deltas deltas) {
+    if (deltas.isEmpty()) {
+      return;
+    }
+    applyDaily(ctx, List.copyOf(deltas.daily.entrySet()));
+    applyMonthly(ctx, List.copyOf(deltas.monthly.entrySet()));
+    applyChecksums(ctx, List.copyOf(deltas.checksums.entrySet()));
+  }
+
+  /**
+   * Checksum month of a row: the first of its UTC {@code occurred_at} month, or {@link #UNDATED}.
+   */
+  public static LocalDate checksumMonth(Instant occurredAt) {
+    return occurredAt == null
+        ? UNDATED
+        : LocalDate.ofInstant(occurredAt, ZoneOffset.UTC).withDayOfMonth(1);
+  }
+
+  /** A row's share of {@code hash_xor}: the first 8 bytes of its hash as a big-endian long. */
+  public static long hashFold(byte[] hash) {
+    long fold = 0;
+    for (int i = 0; i < Long.BYTES; i++) {
+      fold = (fold << 8) | (hash[i] & 0xFF);
+    }
+    return fold;
+  }
+
+  /** Replaces both rollups with totals recomputed from {@code transactions}. */
+  public Rebuilt rebuild(DSLContext ctx) {
+    return ctx.transactionResult(
+        conf -> {
+          DSLContext tx = DSL.using(conf);
+          Transactions t = Transactions.TRANSACTIONS;
+          DailyAccountTotals d = DailyAccountTotals.DAILY_ACCOUNT_TOTALS;
+          MonthlyCategoryTotals m = MonthlyCategoryTotals.MONTHLY_CATEGORY_TOTALS;
+          Field<LocalDate> day =
+              DSL.field(
+                  "cast(coalesce({0}, {1}) at time zone 'UTC' as date)",
+                  SQLDataType.LOCALDATE, t.OCCURRED_AT, t.POSTED_AT);
+          Field<LocalDate> month =
+              DSL.field("cast(date_trunc('month', {0}) as date)", SQLDataType.LOCALDATE, day);
+          Field<String> category = DSL.coalesce(t.CATEGORY, DSL.inline(UNCATEGORIZED));
+          Field<Long> inflow =
+              DSL.coalesce(DSL.sum(t.AMOUNT_CENTS).filterWhere(t.AMOUNT_CENTS.gt(0L)), 0)
+                  .cast(SQLDataType.BIGINT);
+          Field<Long> outflow =
+              DSL.coalesce(DSL.sum(t.AMOUNT_CENTS.neg()).filterWhere(t.AMOUNT_CENTS.lt(0L)), 0)
+                  .cast(SQLDataType.BIGINT);
+          Field<Long> count = DSL.count().cast(SQLDataType.BIGINT);
+
+          tx.deleteFrom(d).execute();
+          tx.deleteFrom(m).execute();
+          int daily =
+              tx.insertInto(
+                      d,
+                      d.ACCOUNT_ID,
+                      d.TXN_DATE,
+                      d.CURRENCY,
+                      d.TXN_COUNT,
+                      d.INFLOW_CENTS,
+                      d.OUTFLOW_CENTS)
+                  .select(
+                      tx.select(t.ACCOUNT_ID, day, t.CURRENCY, count, inflow, outflow)
+                          .from(t)
+                          .where(DSL.coalesce(t.OCCURRED_AT, t.POSTED_AT).isNotNull())
+                          .groupBy(t.ACCOUNT_ID, day, t.CURRENCY))
+                  .execute();
+          int monthly =
+              tx.insertInto(
+                      m,
+                      m.ACCOUNT_ID,
+                      m.TXN_MONTH,
+                      m.CATEGORY,
+                      m.CURRENCY,
+                      m.TXN_COUNT,
+                      m.INFLOW_CENTS,
+                      m.OUTFLOW_CENTS)
+                  .select(
+                      tx.select(t.ACCOUNT_ID, month, category, t.CURRENCY, count, inflow, outflow)
+                          .from(t)
+                          .where(DSL.coalesce(t.OCCURRED_AT, t.POSTED_AT).isNotNull())
+                          .groupBy(t.ACCOUNT_ID, month, category, t.CURRENCY))
+                  .execute();
+          return new Rebuilt(daily, monthly);
+        });
+  }
+
+  private static void applyDaily(DSLContext ctx, List<Map.Entry<DailyKey, Totals>> rows) {
+    DailyAccountTotals d = DailyAccountTotals.DAILY_ACCOUNT_TOTALS;
+    for (int from = 0; from < rows.size(); from += TransactionRepository.MAX_BATCH_ROWS) {
+      InsertValuesStep6<?, Long, LocalDate, String, Long, Long, Long> insert =
+          ctx.insertInto(
+              d,
+              d.ACCOUNT_ID,
+              d.TXN_DATE,
+              d.CURRENCY,
+              d.TXN_COUNT,
+              d.INFLOW_CENTS,
+              d.OUTFLOW_CENTS);
+      for (Map.Entry<DailyKey, Totals> row :
+          rows.subList(from, Math.min(rows.size(), from + TransactionRepository.MAX_BATCH_ROWS))) {
+        DailyKey k = row.getKey();
+        Totals v = row.getValue();
+        insert = insert.values(k.accountId(), k.day(), k.currency(), v.count, v.inflow, v.outflow);
+      }
+      insert
+          .onConflict(d.ACCOUNT_ID, d.TXN_DATE, d.CURRENCY)
+          .doUpdate()
+          .set(d.TXN_COUNT, d.TXN_COUNT.plus(DSL.excluded(d.TXN_COUNT)))
+          .set(d.INFLOW_CENTS, d.INFLOW_CENTS.plus(DSL.excluded(d.INFLOW_CENTS)))
+          .set(d.OUTFLOW_CENTS, d.OUTFLOW_CENTS.plus(DSL.excluded(d.OUTFLOW_CENTS)))
+          .execute();
+    }
+  }
+
+  private static void applyMonthly(DSLContext ctx, List<Map.Entry<MonthlyKey, Totals>> rows) {
+    MonthlyCategoryTotals m = MonthlyCategoryTotals.MONTHLY_CATEGORY_TOTALS;
+    for (int from = 0; from < rows.size(); from += TransactionRepository.MAX_BATCH_ROWS) {
+      InsertValuesStep7<?, Long, LocalDate, String, String, Long, Long, Long> insert =
+          ctx.insertInto(
+              m,
+              m.ACCOUNT_ID,
+              m.TXN_MONTH,
+              m.CATEGORY,
+              m.CURRENCY,
+              m.TXN_COUNT,
+              m.INFLOW_CENTS,
+              m.OUTFLOW_CENTS);
+      for (Map.Entry<MonthlyKey, Totals> row :
+          rows.subList(from, Math.min(rows.size(), from + TransactionRepository.MAX_BATCH_ROWS))) {
+        MonthlyKey k = row.getKey();
+        Totals v = row.getValue();
+        insert =
+            insert.values(
+                k.accountId(), k.month(), k.category(), k.currency(), v.count, v.inflow, v.outflow);
+      }
+      insert
+          .onConflict(m.ACCOUNT_ID, m.TXN_MONTH, m.CATEGORY, m.CURRENCY)
+          .doUpdate()
+          .set(m.TXN_COUNT, m.TXN_COUNT.plus(DSL.excluded(m.TXN_COUNT)))
+          .set(m.INFLOW_CENTS, m.INFLOW_CENTS.plus(DSL.excluded(m.INFLOW_CENTS)))
+          .set(m.OUTFLOW_CENTS, m.OUTFLOW_CENTS.plus(DSL.excluded(m.OUTFLOW_CENTS)))
+          .execute();
+    }
+  }
+
+  private static void applyChecksums(DSLContext ctx, List<Map.Entry<ChecksumKey, Checksum>> rows) {
+    TransactionChecksums c = TransactionChecksums.TRANSACTION_CHECKSUMS;
+    for (int from = 0; from < rows.size(); from += TransactionRepository.MAX_BATCH_ROWS) {
+      InsertValuesStep5<?, Long, LocalDate, Long, Long, Long> insert =
+          ctx.insertInto(c, c.ACCOUNT_ID, c.TXN_MONTH, c.TXN_COUNT, c.AMOUNT_CENTS, c.HASH_XOR);
+      for (Map.Entry<ChecksumKey, Checksum> row :
+          rows.subList(from, Math.min(rows.size(), from + TransactionRepository.MAX_BATCH_ROWS))) {
+        ChecksumKey k = row.getKey();
+        Checksum v = row.getValue();
+        insert = insert.values(k.accountId(), k.month(), v.count, v.cents, v.xor);
+      }
+      insert
+          .onConflict(c.ACCOUNT_ID, c.TXN_MONTH)
+          .doUpdate()
+          .set(c.TXN_COUNT, c.TXN_COUNT.plus(DSL.excluded(c.TXN_COUNT)))
+          .set(c.AMOUNT_CENTS, c.AMOUNT_CENTS.plus(DSL.excluded(c.AMOUNT_CENTS)))
+          .set(c.HASH_XOR, DSL.bitXor(c.HASH_XOR, DSL.excluded(c.HASH_XOR)))
+          .set(c.UPDATED_AT, DSL.currentOffsetDateTime())
+          .execute();
+    }
+  }
+
+  private record DailyKey(long accountId, LocalDate day, String currency) {
+    static final Comparator<DailyKey> ORDER =
+        Comparator.comparingLong(DailyKey::accountId)
+            .thenComparing(DailyKey::day)
+            .thenComparing(DailyKey::currency);
+  }
+
+  private record MonthlyKey(long accountId, LocalDate month, String category, String currency) {
+    static final Comparator<MonthlyKey> ORDER =
+        Comparator.comparingLong(MonthlyKey::accountId)
+            .thenComparing(MonthlyKey::month)
+            .thenComparing(MonthlyKey::category)
+            .thenComparing(MonthlyKey::currency);
+  }
+
+  private record ChecksumKey(long accountId, LocalDate month) {
+    static final Comparator<ChecksumKey> ORDER =
+        Comparator.comparingLong(ChecksumKey::accountId).thenComparing(ChecksumKey::month);
+  }
+
+  private static final class Checksum {
+    long count;
+    long cents;
+    long xor;
+  }
+
+  private static final class Totals {
+    long count;
+    long inflow;
+    long outflow;
+
+    void add(long cents) {
+      count++;
+      if (cents > 0) {
+        inflow += cents;
+      } else {
+        outflow -= cents;
+      }
+    }
+  }
+
+  /** Totals of inserted rows not yet added to the rollups. Not thread-safe. */
+  public static final class Deltas {
+    private final Map<DailyKey, Totals> daily = new TreeMap<>(DailyKey.ORDER);
+    private final Map<MonthlyKey, Totals> monthly = new TreeMap<>(MonthlyKey.ORDER);
+    private final Map<ChecksumKey, Checksum> checksums = new TreeMap<>(ChecksumKey.ORDER);
+    private long rows;
+
+    /** Counts an inserted row of account {@code accountId} (the database id). */
+    public void add(long accountId, TransactionRecord t) {
+      add(
+          accountId,
+          t.occurredAt(),
+          t.postedAt(),
+          t.amount().cents(),
+          t.amount().currency(),
+          t.category(),
+          t.hashBytes());
+    }
+
+    private void add(
+        long accountId,
+        Instant occurredAt,
+        Instant postedAt,
+        long cents,
+        String currency,
+        String category,
+        byte[] hash) {
+      Checksum checksum =
+          checksums.computeIfAbsent(
+              new ChecksumKey(accountId, checksumMonth(occurredAt)), k -> new Checksum());
+      checksum.count++;
+      checksum.cents += cents;
+      checksum.xor ^= hashFold(hash);
+      Instant at = occurredAt != null ? occurredAt : postedAt;
+      if (at == null) {
+        return;
+      }
+      LocalDate day = LocalDate.ofInstant(at, ZoneOffset.UTC);
+      daily.computeIfAbsent(new DailyKey(accountId, day, currency), k -> new Totals()).add(cents);
+      monthly
+          .computeIfAbsent(
+              new MonthlyKey(
+                  accountId,
+                  day.withDayOfMonth(1),
+                  category == null ? UNCATEGORIZED : category,
+                  currency),
+              k -> new Totals())
+          .add(cents);
+      rows++;
+    }
+
+    /** Rows counted so far, excluding those without a date. */
+    public long rows() {
+      return rows;
+    }
+
+    public boolean isEmpty() {
+      return checksums.isEmpty();
+    }
+  }
+}
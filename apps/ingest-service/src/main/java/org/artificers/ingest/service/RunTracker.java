@@ -0,0 +1,101 @@
+package org.artificers.ingest.service;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import org.artificers.ingest.model.IngestRun;
+import org.artificers.ingest.model.ResolvedAccount;
+
+/** Mutable accumulator for a single ingest, frozen into an {@link IngestRun} when it ends. */
+final class RunTracker {
+  private final String fileName;
+  private final String shorthand;
+  private final Instant startedAt;
+  private String institution;
+  private Long accountId;
+  private long rowsRead;
+  private long rowsInserted;
+  private long rowsDuplicate;
+  private long bytes;
+  private long readNanos;
+  private long parseNanos;
+  private long persistNanos;
+  private long refreshNanos;
+  private long rowsSpilled;
+  private long spillBytes;
+  private long spillNanos;
+
+  RunTracker(Path file, String shorthand) {
+    this.fileName = String.valueOf(file.getFileName());
+    this.shorthand = shorthand;
+    this.startedAt = Instant.now();
+  }
+
+  void institution(String institution) {
+    this.institution = institution;
+  }
+
+  void account(ResolvedAccount account) {
+    this.accountId = account.id();
+  }
+
+  void read(long bytes, long nanos) {
+    this.bytes = bytes;
+    this.readNanos = nanos;
+  }
+
+  void parsed(long rows, long nanos) {
+    this.rowsRead = rows;
+    this.parseNanos = nanos;
+  }
+
+  void persisted(long inserted, long duplicates, long nanos) {
+    this.rowsInserted = inserted;
+    this.rowsDuplicate = duplicates;
+    this.persistNanos = nanos;
+  }
+
+  void spilled(long rows, long bytes, long nanos) {
+    this.rowsSpilled = rows;
+    this.spillBytes = bytes;
+    this.spillNanos = nanos;
+  }
+
+  void refreshed(long nanos) {
+    this.refreshNanos = nanos;
+  }
+
+  long rowsRead() {
+    return rowsRead;
+  }
+
+  long bytes() {
+    return bytes;
+  }
+
+  IngestRun finish(String outcome, Throwable error) {
+    boolean success = error == null;
+    long rejected = Math.max(0, rowsRead - rowsInserted - rowsDuplicate);
+    return new IngestRun(
+        fileName,
+        shorthand,
+        institution,
+        success ? accountId : null,
+        rowsRead,
+        rowsInserted,
+        rowsDuplicate,
+        rejected,
+        bytes,
+        Duration.ofNanos(readNanos),
+        Duration.ofNanos(parseNanos),
+        Duration.ofNanos(persistNanos),
+        Duration.ofNanos(refreshNanos),
+        rowsSpilled,
+        spillBytes,
+        Duration.ofNanos(spillNanos),
+        startedAt,
+        Instant.now(),
+        outcome,
+        success ? null : String.valueOf(error.getMessage()));
+  }
+}
@@ -0,0 +1,73 @@
+package org.artificers.ingest.service;
+
+import java.util.List;
+import org.artificers.jooq.tables.SourceSchemas;
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.Record1;
+import org.jooq.impl.DSL;
+import org.jooq.impl.SQLDataType;
+
+/**
+ * Ids of the distinct raw header lists in {@code source_schemas} (migration V15). Transactions
+ * reference a list by id and store only their values.
+ */
+public class SourceSchemaRepository {
+  /**
+   * Returns the id of {@code headers}, inserting the list if it is new. Runs in the caller's
+   * transaction, so a list first seen by a rolled-back ingest disappears with it; concurrent
+   * inserts of the same list resolve to one row.
+   */
+  public long resolve(DSLContext ctx, List<String> headers) {
+    SourceSchemas s = SourceSchemas.SOURCE_SCHEMAS;
+    Long id = find(ctx, headers);
+    if (id != null) {
+      return id;
+    }
+    ctx.insertInto(s)
+        .set(s.HEADERS, textArray(headers))
+        .onConflict(s.HEADERS)
+        .doNothing()
+        .execute();
+    return find(ctx, headers);
+  }
+
+  /**
+   * {@code values} as a {@code text[]} bind. The generated model types the array columns as {@code
+   * varchar(255)[]}, a cast PostgreSQL would truncate long values to.
+   */
+  static Field<String[]> textArray(List<String> values) {
+    return DSL.val(values.toArray(String[]::new), SQLDataType.CLOB.array());
+  }
+
+  private static Long find(DSLContext ctx, List<String> headers) {
+    SourceSchemas s = SourceSchemas.SOURCE_SCHEMAS;
+    Record1<Long> r = ctx.select(s.ID).from(s).where(s.HEADERS.eq(textArray(headers))).fetchOne();
+    return r == null ? null : r.value1();
+  }
+
+  /** PostgreSQL array literal of {@code values}: every element quoted, nulls as {@code NULL}. */
+  static String arrayLiteral(List<String> values) {
+    StringBuilder sb = new StringBuilder().append('{');
+    for (int i = 0; i < values.size(); i++) {
+      if (i > 0) {
+        sb.append(',');
+      }
+      String v = values.get(i);
+      if (v == null) {
+        sb.append("NULL");
+        continue;
+      }
+      sb.append('"');
+      for (int j = 0; j < v.length(); j++) {
+        char c = v.charAt(j);
+        if (c == '"' || c == '\\') {
+          sb.append('\\');
+        }
+        sb.append(c);
+      }
+      sb.append('"');
+    }
+    return sb.append('}').toString();
+  }
+}
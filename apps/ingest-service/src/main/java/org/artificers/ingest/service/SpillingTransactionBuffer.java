@@ -0,0 +1,162 @@
+package org.artificers.ingest.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+import org.artificers.ingest.model.TransactionBatch;
+import org.artificers.ingest.model.TransactionRecord;
+
+/**
+ * Parsed rows of one file, held within a heap budget. Rows accumulate in a {@link
+ * TransactionBatch}; whenever its estimated size reaches the budget the batch is appended to a
+ * deflated temp file and a new one started, so files of any size parse in bounded memory. {@link
+ * #forEachBatch(Consumer)} replays the batches in file order, reading one spilled batch at a time.
+ */
+final class SpillingTransactionBuffer implements Consumer<TransactionRecord>, AutoCloseable {
+  private final String accountId;
+  private final long budgetBytes;
+  private final Path spillDir;
+  private final Consumer<TransactionBatch> onBatch;
+  private TransactionBatch.Builder current;
+  private TransactionBatch tail;
+  private Path spillFile;
+  private Deflater deflater;
+  private DataOutputStream spillOut;
+  private int spilledBatches;
+  private long rows;
+  private long spilledRows;
+  private long spillNanos;
+
+  /**
+   * @param onBatch called with every batch as it is sealed, before it is spilled or replayed
+   */
+  SpillingTransactionBuffer(
+      String accountId, long budgetBytes, Path spillDir, Consumer<TransactionBatch> onBatch) {
+    if (budgetBytes < 1) {
+      throw new IllegalArgumentException("budgetBytes must be positive");
+    }
+    this.accountId = accountId;
+    this.budgetBytes = budgetBytes;
+    this.spillDir = spillDir;
+    this.onBatch = onBatch;
+    this.current = TransactionBatch.builder(accountId);
+  }
+
+  @Override
+  public void accept(TransactionRecord t) {
+    current.add(t);
+    rows++;
+    if (current.estimatedBytes() >= budgetBytes) {
+      spill(seal());
+    }
+  }
+
+  /** Seals the rows still in memory; call once parsing is done and before replaying. */
+  void finish() {
+    tail = seal();
+    if (spillOut != null) {
+      long start = System.nanoTime();
+      try {
+        spillOut.close();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      } finally {
+        spillNanos += System.nanoTime() - start;
+      }
+    }
+  }
+
+  long rows() {
+    return rows;
+  }
+
+  long spilledRows() {
+    return spilledRows;
+  }
+
+  long spilledBytes() throws IOException {
+    return spillFile == null ? 0 : Files.size(spillFile);
+  }
+
+  /** Time spent writing and re-reading the spill file. */
+  long spillNanos() {
+    return spillNanos;
+  }
+
+  /** Hands every batch, spilled ones first, to {@code handler} in the order rows were parsed. */
+  void forEachBatch(Consumer<? super TransactionBatch> handler) throws IOException {
+    if (tail == null) {
+      throw new IllegalStateException("finish() has not been called");
+    }
+    if (spilledBatches > 0) {
+      try (DataInputStream in =
+          new DataInputStream(
+              new BufferedInputStream(new InflaterInputStream(Files.newInputStream(spillFile))))) {
+        for (int i = 0; i < spilledBatches; i++) {
+          long start = System.nanoTime();
+          TransactionBatch batch = TransactionBatch.readFrom(in);
+          spillNanos += System.nanoTime() - start;
+          handler.accept(batch);
+        }
+      }
+    }
+    if (!tail.isEmpty()) {
+      handler.accept(tail);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      if (spillOut != null) {
+        spillOut.close();
+      }
+    } finally {
+      if (deflater != null) {
+        deflater.end();
+      }
+      if (spillFile != null) {
+        Files.deleteIfExists(spillFile);
+      }
+    }
+  }
+
+  private TransactionBatch seal() {
+    TransactionBatch batch = current.build();
+    current = TransactionBatch.builder(accountId);
+    if (!batch.isEmpty()) {
+      onBatch.accept(batch);
+    }
+    return batch;
+  }
+
+  private void spill(TransactionBatch batch) {
+    long start = System.nanoTime();
+    try {
+      if (spillOut == null) {
+        spillFile = Files.createTempFile(spillDir, "ingest-spill-", ".bin");
+        deflater = new Deflater(Deflater.BEST_SPEED);
+        spillOut =
+            new DataOutputStream(
+                new BufferedOutputStream(
+                    new DeflaterOutputStream(Files.newOutputStream(spillFile), deflater)));
+      }
+      batch.writeTo(spillOut);
+      spilledBatches++;
+      spilledRows += batch.size();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    } finally {
+      spillNanos += System.nanoTime() - start;
+    }
+  }
+}
@@ -0,0 +1,333 @@
+package org.artificers.ingest.service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.artificers.ingest.csv.TransactionCsvReader;
+import org.artificers.ingest.model.TransactionRecord;
+import org.artificers.jooq.tables.Accounts;
+import org.artificers.jooq.tables.TransactionChecksums;
+import org.artificers.jooq.tables.Transactions;
+import org.jooq.Cursor;
+import org.jooq.DSLContext;
+import org.jooq.Record3;
+import org.jooq.impl.DSL;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reconciles archived statement files with {@code transactions} through one Merkle-style tree per
+ * account: row hashes are the leaves, UTC months of {@code occurred_at} the interior nodes (count,
+ * amount sum and hash XOR, as in {@code transaction_checksums}) and a SHA-256 over the months the
+ * root. The file tree is built by re-parsing every file with the current readers, deduplicated by
+ * hash as ingest does. The database tree's months are the stored checksums, one primary-key read
+ * per account, so matching accounts cost no {@code transactions} reads at all; rows are fetched
+ * only for months whose nodes differ. Stored checksums only see edits made through ingest, so
+ * {@code deep} recomputes the database months from {@code transactions} instead.
+ */
+public class StatementReconciler {
+  private static final Logger log = LoggerFactory.getLogger(StatementReconciler.class);
+  private static final HexFormat HEX = HexFormat.of();
+
+  /** A leaf: one row, from a file ({@code source} is its name) or the database ({@code id=N}). */
+  public record Row(
+      String hash, Instant occurredAt, long amountCents, String merchant, String source) {
+    static final Comparator<Row> ORDER =
+        Comparator.comparing(Row::occurredAt, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(Row::hash);
+  }
+
+  /**
+   * A month whose nodes differ. Rows are matched by hash, which covers the amount, so empty row
+   * lists mean the stored checksum is stale or, when recomputed, a row was edited outside ingest.
+   */
+  public record MonthDiff(
+      LocalDate month,
+      ChecksumVerifier.Checksum files,
+      ChecksumVerifier.Checksum db,
+      List<Row> missingInDb,
+      List<Row> extraInDb) {
+    public boolean sameRows() {
+      return missingInDb.isEmpty() && extraInDb.isEmpty();
+    }
+  }
+
+  /**
+   * One account's comparison; {@code accountId} is null when the account is not in the database.
+   */
+  public record AccountResult(
+      String shorthand,
+      Long accountId,
+      String filesRoot,
+      String dbRoot,
+      int months,
+      List<MonthDiff> diffs) {
+    public boolean matches() {
+      return filesRoot.equals(dbRoot);
+    }
+  }
+
+  /** A file left out of the file tree and why. */
+  public record Skipped(Path file, String reason) {}
+
+  /**
+   * Outcome of {@link #reconcile}; {@code monthsRead} counts the months whose rows were fetched.
+   */
+  public record Result(
+      List<AccountResult> accounts, List<Skipped> skipped, int files, long rows, int monthsRead) {
+    public boolean matches() {
+      return accounts.stream().allMatch(AccountResult::matches);
+    }
+  }
+
+  private final DSLContext dsl;
+  private final AccountShorthandParser shorthandParser;
+  private final Map<String, TransactionCsvReader> readers;
+
+  public StatementReconciler(
+      DSLContext dsl, AccountShorthandParser shorthandParser, Set<TransactionCsvReader> readers) {
+    this.dsl = dsl;
+    this.shorthandParser = shorthandParser;
+    this.readers =
+        readers.stream().collect(Collectors.toMap(TransactionCsvReader::institution, r -> r));
+  }
+
+  /**
+   * Reconciles every {@code *.csv} in {@code dir} whose shorthand {@code accounts} accepts.
+   *
+   * @param deep recompute database months from {@code transactions} rather than trusting {@code
+   *     transaction_checksums}, reading every row of the accounts involved
+   */
+  public Result reconcile(Path dir, Predicate<String> accounts, boolean deep) throws IOException {
+    Map<String, SortedMap<LocalDate, Map<String, Row>>> trees = new TreeMap<>();
+    List<Skipped> skipped = new ArrayList<>();
+    int files = 0;
+    long rows = 0;
+    List<Path> paths = new ArrayList<>();
+    try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*.csv")) {
+      stream.forEach(paths::add);
+    }
+    paths.sort(null);
+    for (Path file : paths) {
+      String shorthand = shorthandParser.extract(file);
+      if (shorthand == null) {
+        skipped.add(new Skipped(file, "unrecognized file name"));
+        continue;
+      }
+      if (!accounts.test(shorthand)) {
+        continue;
+      }
+      AccountShorthandParser.ParsedShorthand ids = shorthandParser.parse(shorthand);
+      TransactionCsvReader reader = readers.get(ids.institution());
+      if (reader == null) {
+        skipped.add(new Skipped(file, "no reader for institution " + ids.institution()));
+        continue;
+      }
+      List<TransactionRecord> txs;
+      try (Reader r = Files.newBufferedReader(file)) {
+        txs = reader.read(file, r, ids.externalId());
+      } catch (RuntimeException e) {
+        log.warn("Could not re-parse {}", file, e);
+        skipped.add(new Skipped(file, String.valueOf(e.getMessage())));
+        continue;
+      }
+      SortedMap<LocalDate, Map<String, Row>> tree =
+          trees.computeIfAbsent(shorthand, s -> new TreeMap<>());
+      String source = file.getFileName().toString();
+      for (TransactionRecord t : txs) {
+        tree.computeIfAbsent(RollupRepository.checksumMonth(t.occurredAt()), m -> new HashMap<>())
+            .putIfAbsent(t.hash(), row(t, source));
+      }
+      files++;
+      rows += txs.size();
+    }
+    List<AccountResult> results = new ArrayList<>();
+    int monthsRead = 0;
+    for (Map.Entry<String, SortedMap<LocalDate, Map<String, Row>>> e : trees.entrySet()) {
+      AccountResult result = compare(e.getKey(), e.getValue(), deep);
+      if (result.accountId() != null) {
+        monthsRead += result.diffs().size();
+      }
+      results.add(result);
+    }
+    return new Result(List.copyOf(results), List.copyOf(skipped), files, rows, monthsRead);
+  }
+
+  private AccountResult compare(
+      String shorthand, SortedMap<LocalDate, Map<String, Row>> fileTree, boolean deep) {
+    SortedMap<LocalDate, ChecksumVerifier.Checksum> fileMonths = new TreeMap<>();
+    fileTree.forEach((month, leaves) -> fileMonths.put(month, checksum(leaves.values())));
+    Long accountId = accountId(shorthand);
+    SortedMap<LocalDate, ChecksumVerifier.Checksum> dbMonths =
+        accountId == null
+            ? new TreeMap<>()
+            : deep ? recomputedMonths(accountId) : storedMonths(accountId);
+    String filesRoot = root(fileMonths);
+    String dbRoot = root(dbMonths);
+    List<MonthDiff> diffs = new ArrayList<>();
+    if (!filesRoot.equals(dbRoot)) {
+      Set<LocalDate> months = new TreeSet<>(fileMonths.keySet());
+      months.addAll(dbMonths.keySet());
+      for (LocalDate month : months) {
+        ChecksumVerifier.Checksum files =
+            fileMonths.getOrDefault(month, ChecksumVerifier.Checksum.EMPTY);
+        ChecksumVerifier.Checksum db =
+            dbMonths.getOrDefault(month, ChecksumVerifier.Checksum.EMPTY);
+        if (!files.equals(db)) {
+          Map<String, Row> dbRows = accountId == null ? Map.of() : dbRows(accountId, month);
+          diffs.add(diff(month, files, db, fileTree.getOrDefault(month, Map.of()), dbRows));
+        }
+      }
+    }
+    return new AccountResult(
+        shorthand,
+        accountId,
+        filesRoot,
+        dbRoot,
+        Math.max(fileMonths.size(), dbMonths.size()),
+        List.copyOf(diffs));
+  }
+
+  private static MonthDiff diff(
+      LocalDate month,
+      ChecksumVerifier.Checksum files,
+      ChecksumVerifier.Checksum db,
+      Map<String, Row> fileRows,
+      Map<String, Row> dbRows) {
+    return new MonthDiff(
+        month,
+        files,
+        db,
+        fileRows.values().stream()
+            .filter(f -> !dbRows.containsKey(f.hash()))
+            .sorted(Row.ORDER)
+            .toList(),
+        dbRows.values().stream()
+            .filter(d -> !fileRows.containsKey(d.hash()))
+            .sorted(Row.ORDER)
+            .toList());
+  }
+
+  private Long accountId(String shorthand) {
+    AccountShorthandParser.ParsedShorthand ids = shorthandParser.parse(shorthand);
+    Accounts a = Accounts.ACCOUNTS;
+    return dsl.select(a.ID)
+        .from(a)
+        .where(a.INSTITUTION.eq(ids.institution()), a.EXTERNAL_ID.eq(ids.externalId()))
+        .fetchOne(a.ID);
+  }
+
+  private SortedMap<LocalDate, ChecksumVerifier.Checksum> storedMonths(long accountId) {
+    TransactionChecksums c = TransactionChecksums.TRANSACTION_CHECKSUMS;
+    SortedMap<LocalDate, ChecksumVerifier.Checksum> months = new TreeMap<>();
+    dsl.select(c.TXN_MONTH, c.TXN_COUNT, c.AMOUNT_CENTS, c.HASH_XOR)
+        .from(c)
+        .where(c.ACCOUNT_ID.eq(accountId), c.TXN_COUNT.gt(0L))
+        .forEach(
+            r ->
+                months.put(
+                    r.value1(), new ChecksumVerifier.Checksum(r.value2(), r.value3(), r.value4())));
+    return months;
+  }
+
+  private SortedMap<LocalDate, ChecksumVerifier.Checksum> recomputedMonths(long accountId) {
+    Transactions t = Transactions.TRANSACTIONS;
+    Map<LocalDate, long[]> sums = new HashMap<>();
+    dsl.transaction(
+        conf -> {
+          try (Cursor<Record3<OffsetDateTime, Long, byte[]>> cursor =
+              DSL.using(conf)
+                  .select(t.OCCURRED_AT, t.AMOUNT_CENTS, t.HASH)
+                  .from(t)
+                  .where(t.ACCOUNT_ID.eq(accountId))
+                  .fetchSize(ChecksumVerifier.FETCH_SIZE)
+                  .fetchLazy()) {
+            for (Record3<OffsetDateTime, Long, byte[]> r : cursor) {
+              long[] s =
+                  sums.computeIfAbsent(
+                      RollupRepository.checksumMonth(
+                          r.value1() == null ? null : r.value1().toInstant()),
+                      m -> new long[3]);
+              s[0]++;
+              s[1] += r.value2();
+              s[2] ^= RollupRepository.hashFold(r.value3());
+            }
+          }
+        });
+    SortedMap<LocalDate, ChecksumVerifier.Checksum> months = new TreeMap<>();
+    sums.forEach((m, s) -> months.put(m, new ChecksumVerifier.Checksum(s[0], s[1], s[2])));
+    return months;
+  }
+
+  private Map<String, Row> dbRows(long accountId, LocalDate month) {
+    Transactions t = Transactions.TRANSACTIONS;
+    Map<String, Row> rows = new LinkedHashMap<>();
+    dsl.select(t.ID, t.HASH, t.OCCURRED_AT, t.AMOUNT_CENTS, t.MERCHANT)
+        .from(t)
+        .where(t.ACCOUNT_ID.eq(accountId), ChecksumVerifier.inMonth(month))
+        .forEach(
+            r -> {
+              String hash = HEX.formatHex(r.value2());
+              rows.put(
+                  hash,
+                  new Row(
+                      hash,
+                      r.value3() == null ? null : r.value3().toInstant(),
+                      r.value4(),
+                      r.value5(),
+                      "id=" + r.value1()));
+            });
+    return rows;
+  }
+
+  private static Row row(TransactionRecord t, String source) {
+    return new Row(t.hash(), t.occurredAt(), t.amount().cents(), t.merchant(), source);
+  }
+
+  private static ChecksumVerifier.Checksum checksum(Iterable<Row> rows) {
+    long count = 0;
+    long cents = 0;
+    long xor = 0;
+    for (Row r : rows) {
+      count++;
+      cents += r.amountCents();
+      xor ^= RollupRepository.hashFold(HashGenerator.digest(r.hash()));
+    }
+    return new ChecksumVerifier.Checksum(count, cents, xor);
+  }
+
+  /** SHA-256 over the months in order; equal roots mean every month node is equal. */
+  static String root(SortedMap<LocalDate, ChecksumVerifier.Checksum> months) {
+    StringBuilder sb = new StringBuilder();
+    months.forEach(
+        (m, c) ->
+            sb.append(m)
+                .append(':')
+                .append(c.count())
+                .append(':')
+                .append(c.amountCents())
+                .append(':')
+                .append(c.hashXor())
+                .append('\n'));
+    return DigestUtils.sha256Hex(sb.toString());
+  }
+}
@@ -0,0 +1,292 @@
+package org.artificers.ingest.service;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.artificers.ingest.metrics.Counter;
+import org.artificers.ingest.metrics.MetricsRegistry;
+import org.jooq.DSLContext;
+import org.jooq.Name;
+import org.jooq.impl.DSL;
+import org.jooq.impl.SQLDataType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the monthly range partitions of {@code transactions} (migration V14) in shape. {@link
+ * #maintain()} creates partitions for the current month and {@code monthsAhead} months after it,
+ * gives months whose rows sit in {@code transactions_default} their own partition, and, when {@code
+ * retainMonths} is positive, detaches partitions older than that many months. Detached partitions
+ * stay behind as plain tables and can be {@linkplain #attach(YearMonth) attached} again; until then
+ * maintenance leaves them alone, and rows later ingested for their months stay in {@code
+ * transactions_default}. Against an unpartitioned {@code transactions}, or a database without the
+ * PostgreSQL catalogs, every operation is a no-op.
+ */
+public class TransactionPartitionManager implements AutoCloseable {
+  private static final Logger log = LoggerFactory.getLogger(TransactionPartitionManager.class);
+
+  public static final int DEFAULT_MONTHS_AHEAD = 3;
+  public static final Duration DEFAULT_INTERVAL = Duration.ofHours(12);
+
+  static final String PARENT = "transactions";
+  static final String DEFAULT_PARTITION = "transactions_default";
+  private static final Pattern PARTITION_NAME = Pattern.compile("transactions_p(\\d{4})_(\\d{2})");
+  private static final DateTimeFormatter SUFFIX = DateTimeFormatter.ofPattern("yyyy_MM");
+
+  /** Partitions created and detached by one {@link #maintain()} pass. */
+  public record Maintenance(List<YearMonth> created, List<YearMonth> detached) {
+    static final Maintenance NONE = new Maintenance(List.of(), List.of());
+  }
+
+  private final DSLContext dsl;
+  private final int monthsAhead;
+  private final int retainMonths;
+  private final Clock clock;
+  private final Counter creates;
+  private final Counter detaches;
+  private final Counter failures;
+  private ScheduledExecutorService executor;
+
+  public TransactionPartitionManager(DSLContext dsl) {
+    this(dsl, DEFAULT_MONTHS_AHEAD, 0, Clock.systemUTC(), new MetricsRegistry());
+  }
+
+  /**
+   * @param retainMonths months, counting the current one, whose partitions stay attached; 0 never
+   *     detaches
+   */
+  public TransactionPartitionManager(
+      DSLContext dsl, int monthsAhead, int retainMonths, Clock clock, MetricsRegistry registry) {
+    if (monthsAhead < 0 || retainMonths < 0) {
+      throw new IllegalArgumentException("monthsAhead and retainMonths must not be negative");
+    }
+    this.dsl = dsl;
+    this.monthsAhead = monthsAhead;
+    this.retainMonths = retainMonths;
+    this.clock = clock;
+    this.creates =
+        registry.counter(
+            "ingest_partition_changes", "Transaction partitions changed", "action", "create");
+    this.detaches =
+        registry.counter(
+            "ingest_partition_changes", "Transaction partitions changed", "action", "detach");
+    this.failures =
+        registry.counter(
+            "ingest_partition_maintenance_failures", "Failed partition maintenance passes");
+  }
+
+  /** Runs {@link #maintain()} now and then every {@code interval} on a background thread. */
+  public synchronized void start(Duration interval) {
+    if (executor != null) {
+      return;
+    }
+    executor =
+        Executors.newSingleThreadScheduledExecutor(
+            r -> {
+              Thread t = new Thread(r);
+              t.setDaemon(true);
+              t.setName("partition-maintenance");
+              return t;
+            });
+    executor.scheduleWithFixedDelay(
+        () -> {
+          try {
+            maintain();
+          } catch (RuntimeException e) {
+            failures.increment();
+            log.warn("Partition maintenance failed", e);
+          }
+        },
+        0,
+        interval.toNanos(),
+        TimeUnit.NANOSECONDS);
+  }
+
+  /** Stops the background thread, letting a running pass finish. */
+  @Override
+  public void close() {
+    ScheduledExecutorService running;
+    synchronized (this) {
+      running = executor;
+      executor = null;
+    }
+    if (running == null) {
+      return;
+    }
+    running.shutdown();
+    try {
+      if (!running.awaitTermination(30, TimeUnit.SECONDS)) {
+        log.warn("Partition maintenance still running at shutdown");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /** Creates missing and detaches expired partitions; see the class comment. */
+  public synchronized Maintenance maintain() {
+    if (!partitioned()) {
+      return Maintenance.NONE;
+    }
+    YearMonth current = YearMonth.now(clock.withZone(ZoneOffset.UTC));
+    Set<YearMonth> attached = new TreeSet<>(attached());
+    Set<YearMonth> wanted = new TreeSet<>(monthsInDefault());
+    for (int i = 0; i <= monthsAhead; i++) {
+      wanted.add(current.plusMonths(i));
+    }
+    Set<YearMonth> backfilled = new TreeSet<>(wanted);
+    backfilled.retainAll(detached());
+    if (!backfilled.isEmpty()) {
+      wanted.removeAll(backfilled);
+      log.warn(
+          "Rows for detached months {} stay in {}; attach those months by hand to move them",
+          backfilled,
+          DEFAULT_PARTITION);
+    }
+    List<YearMonth> added = new ArrayList<>();
+    for (YearMonth month : wanted) {
+      if (!attached.contains(month)) {
+        attach(month);
+        attached.add(month);
+        added.add(month);
+      }
+    }
+    List<YearMonth> removed = new ArrayList<>();
+    if (retainMonths > 0) {
+      YearMonth oldest = current.minusMonths(retainMonths - 1);
+      for (YearMonth month : attached) {
+        if (month.isBefore(oldest)) {
+          detach(month);
+          removed.add(month);
+        }
+      }
+    }
+    if (!added.isEmpty() || !removed.isEmpty()) {
+      log.info("Partition maintenance created {} and detached {}", added, removed);
+    }
+    return new Maintenance(List.copyOf(added), List.copyOf(removed));
+  }
+
+  /** Months with a partition attached to {@code transactions}, oldest first. */
+  public List<YearMonth> attached() {
+    return months(
+        dsl.fetch(
+                "select c.relname from pg_inherits i join pg_class c on c.oid = i.inhrelid"
+                    + " where i.inhparent = to_regclass({0})",
+                DSL.inline(PARENT))
+            .getValues(0, String.class));
+  }
+
+  /** Months whose partition exists as a detached, standalone table. */
+  public List<YearMonth> detached() {
+    if (!partitioned()) {
+      return List.of();
+    }
+    return months(
+        dsl.fetch(
+                "select c.relname from pg_class c join pg_namespace n on n.oid = c.relnamespace"
+                    + " where n.nspname = current_schema() and c.relkind = 'r' and not"
+                    + " c.relispartition and c.relname like 'transactions_p%'")
+            .getValues(0, String.class));
+  }
+
+  /**
+   * Attaches the partition for {@code month}, creating its table if needed, after moving that
+   * month's rows out of {@code transactions_default}. Runs in one transaction and does nothing when
+   * the month is already attached.
+   */
+  public synchronized void attach(YearMonth month) {
+    if (attached().contains(month)) {
+      return;
+    }
+    Name table = DSL.name(partitionName(month));
+    String from = bound(month);
+    String to = bound(month.plusMonths(1));
+    dsl.transaction(
+        conf -> {
+          DSLContext tx = DSL.using(conf);
+          // ATTACH requires the parent's CHECK constraints (V16's hash length) on the partition.
+          tx.execute(
+              "create table if not exists {0} (like {1} including defaults including"
+                  + " constraints)",
+              table, DSL.name(PARENT));
+          tx.execute(
+              "with moved as (delete from {0} where occurred_at >= {2}::timestamptz and"
+                  + " occurred_at < {3}::timestamptz returning *) insert into {1} select * from"
+                  + " moved",
+              DSL.name(DEFAULT_PARTITION), table, DSL.inline(from), DSL.inline(to));
+          tx.execute(
+              "alter table {0} attach partition {1} for values from ({2}) to ({3})",
+              DSL.name(PARENT), table, DSL.inline(from), DSL.inline(to));
+        });
+    creates.increment();
+    log.debug("Attached partition {}", table);
+  }
+
+  /** Detaches the partition for {@code month}; its table and rows are kept. */
+  public synchronized void detach(YearMonth month) {
+    Name table = DSL.name(partitionName(month));
+    dsl.execute("alter table {0} detach partition {1}", DSL.name(PARENT), table);
+    detaches.increment();
+    log.debug("Detached partition {}", table);
+  }
+
+  static String partitionName(YearMonth month) {
+    return "transactions_p" + SUFFIX.format(month);
+  }
+
+  private boolean partitioned() {
+    try {
+      return Boolean.TRUE.equals(
+          dsl.select(
+                  DSL.field(
+                      "exists (select 1 from pg_partitioned_table where partrelid ="
+                          + " to_regclass({0}))",
+                      SQLDataType.BOOLEAN, DSL.inline(PARENT)))
+              .fetchOne(0, Boolean.class));
+    } catch (RuntimeException e) {
+      log.debug(
+          "Cannot read pg_partitioned_table, skipping partition maintenance: {}", e.getMessage());
+      return false;
+    }
+  }
+
+  private List<YearMonth> monthsInDefault() {
+    return dsl
+        .fetch(
+            "select distinct to_char(occurred_at at time zone 'UTC', 'YYYY-MM') from {0} where"
+                + " occurred_at is not null",
+            DSL.name(DEFAULT_PARTITION))
+        .getValues(0, String.class)
+        .stream()
+        .map(YearMonth::parse)
+        .toList();
+  }
+
+  private static List<YearMonth> months(List<String> tables) {
+    List<YearMonth> months = new ArrayList<>();
+    for (String table : tables) {
+      Matcher m = PARTITION_NAME.matcher(table);
+      if (m.matches()) {
+        months.add(YearMonth.of(Integer.parseInt(m.group(1)), Integer.parseInt(m.group(2))));
+      }
+    }
+    months.sort(null);
+    return months;
+  }
+
+  private static String bound(YearMonth month) {
+    return month.atDay(1) + " 00:00:00+00";
+  }
+}
@@ -1,42 +1,592 @@
 package org.artificers.ingest.service;
 
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.time.Instant;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Predicate;
 import org.artificers.ingest.error.TransactionIngestException;
 import org.artificers.ingest.model.ResolvedAccount;
+import org.artificers.ingest.model.TransactionBatch;
 import org.artificers.ingest.model.TransactionRecord;
+import org.artificers.ingest.rules.Categorizer;
+import org.artificers.ingest.rules.CategoryRules;
+import org.artificers.ingest.rules.MerchantNormalizer;
+import org.artificers.ingest.rules.MerchantRules;
+import org.artificers.jooq.tables.Accounts;
+import org.artificers.jooq.tables.CategoryRuleDigests;
 import org.artificers.jooq.tables.Transactions;
+import org.artificers.jooq.tables.records.TransactionsRecord;
+import org.jooq.Cursor;
 import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.InsertSetMoreStep;
+import org.jooq.InsertValuesStep14;
+import org.jooq.Record7;
+import org.jooq.SQLDialect;
 import org.jooq.exception.DataAccessException;
 import org.jooq.impl.DSL;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
 
 /** Repository for transaction persistence. */
 public class TransactionRepository {
-  public void upsert(DSLContext ctx, TransactionRecord t, ResolvedAccount account) {
+  /** Keeps multi-row inserts under PostgreSQL's 32767 bind parameter limit. */
+  public static final int MAX_BATCH_ROWS = 2_000;
+
+  /** Merchants per {@link #renormalizeMerchants} statement, three bind values each. */
+  static final int NORMALIZE_CHUNK = 1_000;
+
+  /** Rows fetched per round trip while {@link #recategorize} reads an account. */
+  static final int RECATEGORIZE_FETCH = 5_000;
+
+  /**
+   * What {@link #recategorize} did for one institution.
+   *
+   * @param skipped whether its rules were unchanged since they were last applied, so no rows were
+   *     read
+   */
+  public record Recategorized(
+      String institution, boolean skipped, long rowsRead, int rowsChanged) {}
+
+  private static final String STAGE_COLUMNS =
+      "account_id, occurred_at, posted_at, amount_cents, currency, merchant, merchant_canonical,"
+          + " category, unified_category, txn_type, memo, hash, source_schema_id, raw_values";
+
+  private final SourceSchemaRepository schemas;
+  private final MerchantNormalizer merchants;
+  private final Categorizer categories;
+
+  public TransactionRepository() {
+    this(new SourceSchemaRepository());
+  }
+
+  public TransactionRepository(SourceSchemaRepository schemas) {
+    this(schemas, MerchantNormalizer.none(), Categorizer.none());
+  }
+
+  public TransactionRepository(SourceSchemaRepository schemas, MerchantNormalizer merchants) {
+    this(schemas, merchants, Categorizer.none());
+  }
+
+  /**
+   * @param merchants fills {@code merchant_canonical} (V19) for every row written
+   * @param categories fills {@code unified_category} (V20) for every row written, after the
+   *     canonical merchant so rules can match on it
+   */
+  public TransactionRepository(
+      SourceSchemaRepository schemas, MerchantNormalizer merchants, Categorizer categories) {
+    this.schemas = schemas;
+    this.merchants = merchants;
+    this.categories = categories;
+  }
+
+  /**
+   * Id of the {@code source_schemas} row for {@code headers}; see {@link
+   * SourceSchemaRepository#resolve(DSLContext, List)}. Callers writing many rows can resolve each
+   * header list once and use {@link #upsert(DSLContext, TransactionRecord, ResolvedAccount, long)}.
+   */
+  public long sourceSchema(DSLContext ctx, List<String> headers) {
+    return schemas.resolve(ctx, headers);
+  }
+
+  /**
+   * {@link #upsert(DSLContext, TransactionRecord, ResolvedAccount, long)} resolving the headers.
+   */
+  public boolean upsert(DSLContext ctx, TransactionRecord t, ResolvedAccount account) {
+    return upsert(ctx, t, account, sourceSchema(ctx, t.rawHeaders(), t));
+  }
+
+  /**
+   * Inserts the transaction unless one with the same account and hash exists. On PostgreSQL the
+   * conflict target is left out: since V14 the unique index is {@code (account_id, hash,
+   * occurred_at)}, which the hash determines. Other dialects emulate the statement with a {@code
+   * MERGE} on {@code (account_id, hash)}. The raw values are stored against {@code sourceSchemaId},
+   * the id of {@code t}'s header list.
+   *
+   * @return {@code true} if a row was written, {@code false} if it was skipped as a duplicate
+   */
+  public boolean upsert(
+      DSLContext ctx, TransactionRecord t, ResolvedAccount account, long sourceSchemaId) {
+    String canonical = merchants.normalize(t.merchant());
     try {
-      ctx.insertInto(Transactions.TRANSACTIONS)
-          .set(Transactions.TRANSACTIONS.ACCOUNT_ID, account.id())
-          .set(Transactions.TRANSACTIONS.OCCURRED_AT, toOffsetDateTime(t.occurredAt()))
-          .set(Transactions.TRANSACTIONS.POSTED_AT, toOffsetDateTime(t.postedAt()))
-          .set(Transactions.TRANSACTIONS.AMOUNT_CENTS, t.amount().cents())
-          .set(Transactions.TRANSACTIONS.CURRENCY, t.amount().currency())
-          .set(Transactions.TRANSACTIONS.MERCHANT, t.merchant())
-          .set(Transactions.TRANSACTIONS.CATEGORY, t.category())
-          .set(Transactions.TRANSACTIONS.TXN_TYPE, t.type())
-          .set(Transactions.TRANSACTIONS.MEMO, t.memo())
-          .set(Transactions.TRANSACTIONS.HASH, t.hash())
-          .set(
-              Transactions.TRANSACTIONS.RAW_JSON,
-              DSL.field("cast(? as jsonb)", String.class, t.rawJson()))
-          .onConflict(Transactions.TRANSACTIONS.ACCOUNT_ID, Transactions.TRANSACTIONS.HASH)
-          .doNothing()
-          .execute();
+      InsertSetMoreStep<TransactionsRecord> insert =
+          ctx.insertInto(Transactions.TRANSACTIONS)
+              .set(Transactions.TRANSACTIONS.ACCOUNT_ID, account.id())
+              .set(Transactions.TRANSACTIONS.OCCURRED_AT, toOffsetDateTime(t.occurredAt()))
+              .set(Transactions.TRANSACTIONS.POSTED_AT, toOffsetDateTime(t.postedAt()))
+              .set(Transactions.TRANSACTIONS.AMOUNT_CENTS, t.amount().cents())
+              .set(Transactions.TRANSACTIONS.CURRENCY, t.amount().currency())
+              .set(Transactions.TRANSACTIONS.MERCHANT, t.merchant())
+              .set(Transactions.TRANSACTIONS.MERCHANT_CANONICAL, canonical)
+              .set(Transactions.TRANSACTIONS.CATEGORY, t.category())
+              .set(
+                  Transactions.TRANSACTIONS.UNIFIED_CATEGORY,
+                  categorize(categories.rules(), account, t, canonical))
+              .set(Transactions.TRANSACTIONS.TXN_TYPE, t.type())
+              .set(Transactions.TRANSACTIONS.MEMO, t.memo())
+              .set(Transactions.TRANSACTIONS.HASH, t.hashBytes())
+              .set(Transactions.TRANSACTIONS.SOURCE_SCHEMA_ID, sourceSchemaId)
+              .set(
+                  Transactions.TRANSACTIONS.RAW_VALUES,
+                  SourceSchemaRepository.textArray(t.rawValues()));
+      return (ctx.family() == SQLDialect.POSTGRES
+                  ? insert.onConflictDoNothing()
+                  : insert
+                      .onConflict(
+                          Transactions.TRANSACTIONS.ACCOUNT_ID, Transactions.TRANSACTIONS.HASH)
+                      .doNothing())
+              .execute()
+          > 0;
     } catch (DataAccessException e) {
       throw new TransactionIngestException(t, e);
     }
   }
 
+  /**
+   * Rewrites {@code merchant_canonical} wherever it differs from what the current merchant rules
+   * give the row's merchant, in one transaction. Distinct merchants are mapped in Java and written
+   * {@value #NORMALIZE_CHUNK} at a time with a {@code CASE} over the merchant, so each chunk costs
+   * one pass over {@code transactions} rather than one per canonical name.
+   *
+   * @return number of rows changed
+   */
+  public int renormalizeMerchants(DSLContext ctx) {
+    MerchantRules rules = merchants.rules();
+    return ctx.transactionResult(
+        conf -> {
+          DSLContext tx = DSL.using(conf);
+          Transactions t = Transactions.TRANSACTIONS;
+          List<String> distinct =
+              tx.selectDistinct(t.MERCHANT)
+                  .from(t)
+                  .where(t.MERCHANT.isNotNull())
+                  .orderBy(t.MERCHANT)
+                  .fetch(t.MERCHANT);
+          int changed = 0;
+          for (int from = 0; from < distinct.size(); from += NORMALIZE_CHUNK) {
+            Map<String, String> canonical = new LinkedHashMap<>();
+            for (String m :
+                distinct.subList(from, Math.min(distinct.size(), from + NORMALIZE_CHUNK))) {
+              canonical.put(m, rules.normalize(m));
+            }
+            Field<String> value = DSL.case_(t.MERCHANT).mapValues(canonical);
+            changed +=
+                tx.update(t)
+                    .set(t.MERCHANT_CANONICAL, value)
+                    .where(
+                        t.MERCHANT.in(canonical.keySet()),
+                        t.MERCHANT_CANONICAL.isDistinctFrom(value))
+                    .execute();
+          }
+          return changed;
+        });
+  }
+
+  /**
+   * Re-applies the current category rules to {@code unified_category} for the accounts of each
+   * institution {@code institutions} accepts. Merchant conditions see the canonical merchant the
+   * current merchant rules give, as on insert, rather than the stored one. An institution whose
+   * rules digest, which covers the merchant rules when its category rules match on the merchant,
+   * matches the one recorded in {@code category_rule_digests} when its rows were last recategorized
+   * is skipped unless {@code all} is set, so after editing one institution's rules only its rows
+   * are read, and after editing {@code merchants.json} the institutions that depend on it are. Each
+   * institution runs in its own transaction: its accounts' rows are streamed {@value
+   * #RECATEGORIZE_FETCH} at a time, the changed ones are updated by id grouped by their new
+   * category, and the digest is recorded.
+   */
+  public List<Recategorized> recategorize(
+      DSLContext ctx, Predicate<String> institutions, boolean all) {
+    CategoryRules rules = categories.rules();
+    MerchantRules merchantRules = merchants.rules();
+    Map<String, String> canonical = new HashMap<>();
+    Accounts a = Accounts.ACCOUNTS;
+    CategoryRuleDigests d = CategoryRuleDigests.CATEGORY_RULE_DIGESTS;
+    Map<String, List<Long>> accounts =
+        ctx.select(a.INSTITUTION, a.ID)
+            .from(a)
+            .orderBy(a.INSTITUTION, a.ID)
+            .fetchGroups(a.INSTITUTION, a.ID);
+    List<Recategorized> results = new ArrayList<>();
+    for (var e : accounts.entrySet()) {
+      String institution = e.getKey();
+      if (!institutions.test(institution)) {
+        continue;
+      }
+      byte[] digest = rules.digest(institution, merchantRules);
+      byte[] applied =
+          ctx.select(d.DIGEST).from(d).where(d.INSTITUTION.eq(institution)).fetchOne(d.DIGEST);
+      if (!all && Arrays.equals(digest, applied)) {
+        results.add(new Recategorized(institution, true, 0, 0));
+        continue;
+      }
+      results.add(
+          ctx.transactionResult(
+              conf -> {
+                DSLContext tx = DSL.using(conf);
+                Transactions t = Transactions.TRANSACTIONS;
+                long read = 0;
+                Map<String, List<Long>> changes = new HashMap<>();
+                for (long accountId : e.getValue()) {
+                  try (Cursor<Record7<Long, Long, String, String, String, String, String>> cursor =
+                      tx.select(
+                              t.ID,
+                              t.AMOUNT_CENTS,
+                              t.MERCHANT,
+                              t.CATEGORY,
+                              t.TXN_TYPE,
+                              t.MEMO,
+                              t.UNIFIED_CATEGORY)
+                          .from(t)
+                          .where(t.ACCOUNT_ID.eq(accountId))
+                          .fetchSize(RECATEGORIZE_FETCH)
+                          .fetchLazy()) {
+                    for (var r : cursor) {
+                      read++;
+                      String merchant = r.value3();
+                      String category =
+                          rules.categorize(
+                              institution,
+                              r.value2(),
+                              merchant,
+                              merchant == null
+                                  ? null
+                                  : canonical.computeIfAbsent(merchant, merchantRules::normalize),
+                              r.value4(),
+                              r.value5(),
+                              r.value6());
+                      if (!Objects.equals(category, r.value7())) {
+                        changes.computeIfAbsent(category, c -> new ArrayList<>()).add(r.value1());
+                      }
+                    }
+                  }
+                }
+                int changed = 0;
+                for (var c : changes.entrySet()) {
+                  List<Long> ids = c.getValue();
+                  for (int from = 0; from < ids.size(); from += NORMALIZE_CHUNK) {
+                    changed +=
+                        tx.update(t)
+                            .set(t.UNIFIED_CATEGORY, c.getKey())
+                            .where(
+                                t.ID.in(
+                                    ids.subList(
+                                        from, Math.min(ids.size(), from + NORMALIZE_CHUNK))))
+                            .execute();
+                  }
+                }
+                tx.insertInto(d)
+                    .set(d.INSTITUTION, institution)
+                    .set(d.DIGEST, digest)
+                    .set(d.APPLIED_AT, DSL.currentOffsetDateTime())
+                    .onConflict(d.INSTITUTION)
+                    .doUpdate()
+                    .set(d.DIGEST, digest)
+                    .set(d.APPLIED_AT, DSL.currentOffsetDateTime())
+                    .execute();
+                return new Recategorized(institution, false, read, changed);
+              }));
+    }
+    return results;
+  }
+
+  /**
+   * Inserts transactions with multi-row {@code INSERT ... ON CONFLICT DO NOTHING} statements of at
+   * most {@code batchSize} rows (capped at {@link #MAX_BATCH_ROWS}). On PostgreSQL the conflict
+   * target is left out so it matches the partitioned table's {@code (account_id, hash,
+   * occurred_at)} index, the only unique key a new row can hit; other dialects emulate the
+   * statement on {@code (account_id, hash)} as {@link #upsert} does. A failing statement is
+   * reported against the first record of its chunk.
+   *
+   * @return number of rows written; the rest were duplicates
+   */
+  public int insertBatch(
+      DSLContext ctx,
+      List<? extends TransactionRecord> txs,
+      ResolvedAccount account,
+      int batchSize) {
+    int size = Math.max(1, Math.min(batchSize, MAX_BATCH_ROWS));
+    Map<List<String>, Long> schemaIds = new HashMap<>();
+    MerchantRules merchantRules = merchants.rules();
+    CategoryRules categoryRules = categories.rules();
+    int written = 0;
+    for (int from = 0; from < txs.size(); from += size) {
+      List<? extends TransactionRecord> chunk =
+          txs.subList(from, Math.min(txs.size(), from + size));
+      Transactions tx = Transactions.TRANSACTIONS;
+      InsertValuesStep14<
+              ?,
+              Long,
+              OffsetDateTime,
+              OffsetDateTime,
+              Long,
+              String,
+              String,
+              String,
+              String,
+              String,
+              String,
+              String,
+              byte[],
+              Long,
+              String[]>
+          insert =
+              ctx.insertInto(
+                  tx,
+                  tx.ACCOUNT_ID,
+                  tx.OCCURRED_AT,
+                  tx.POSTED_AT,
+                  tx.AMOUNT_CENTS,
+                  tx.CURRENCY,
+                  tx.MERCHANT,
+                  tx.MERCHANT_CANONICAL,
+                  tx.CATEGORY,
+                  tx.UNIFIED_CATEGORY,
+                  tx.TXN_TYPE,
+                  tx.MEMO,
+                  tx.HASH,
+                  tx.SOURCE_SCHEMA_ID,
+                  tx.RAW_VALUES);
+      for (TransactionRecord t : chunk) {
+        long schema = schemaIds.computeIfAbsent(t.rawHeaders(), h -> sourceSchema(ctx, h, t));
+        String canonical = merchantRules.normalize(t.merchant());
+        insert =
+            insert.values(
+                DSL.val(account.id(), tx.ACCOUNT_ID),
+                DSL.val(toOffsetDateTime(t.occurredAt()), tx.OCCURRED_AT),
+                DSL.val(toOffsetDateTime(t.postedAt()), tx.POSTED_AT),
+                DSL.val(t.amount().cents(), tx.AMOUNT_CENTS),
+                DSL.val(t.amount().currency(), tx.CURRENCY),
+                DSL.val(t.merchant(), tx.MERCHANT),
+                DSL.val(canonical, tx.MERCHANT_CANONICAL),
+                DSL.val(t.category(), tx.CATEGORY),
+                DSL.val(categorize(categoryRules, account, t, canonical), tx.UNIFIED_CATEGORY),
+                DSL.val(t.type(), tx.TXN_TYPE),
+                DSL.val(t.memo(), tx.MEMO),
+                DSL.val(t.hashBytes(), tx.HASH),
+                DSL.val(schema, tx.SOURCE_SCHEMA_ID),
+                SourceSchemaRepository.textArray(t.rawValues()));
+      }
+      try {
+        written +=
+            (ctx.family() == SQLDialect.POSTGRES
+                    ? insert.onConflictDoNothing()
+                    : insert.onConflict(tx.ACCOUNT_ID, tx.HASH).doNothing())
+                .execute();
+      } catch (DataAccessException e) {
+        throw new TransactionIngestException(chunk.get(0), e);
+      }
+    }
+    return written;
+  }
+
+  /**
+   * PostgreSQL only: streams transactions with {@code COPY} into a temporary staging table, then
+   * moves them into {@code transactions} with one {@code INSERT ... SELECT ... ON CONFLICT DO
+   * NOTHING}. Must run inside a transaction, as the staging table is emptied on commit. A {@link
+   * TransactionBatch} is copied straight from its columns.
+   *
+   * @return number of rows written; the rest were duplicates
+   */
+  public int copyInsert(
+      DSLContext ctx, List<? extends TransactionRecord> txs, ResolvedAccount account) {
+    if (txs instanceof TransactionBatch batch) {
+      return copyInsert(ctx, batch, account);
+    }
+    if (txs.isEmpty()) {
+      return 0;
+    }
+    Map<List<String>, Long> schemaIds = new HashMap<>();
+    for (TransactionRecord t : txs) {
+      schemaIds.computeIfAbsent(t.rawHeaders(), h -> sourceSchema(ctx, h, t));
+    }
+    MerchantRules merchantRules = merchants.rules();
+    CategoryRules categoryRules = categories.rules();
+    return copy(
+        ctx,
+        txs.get(0),
+        txs.size(),
+        (line, i) -> {
+          TransactionRecord t = txs.get(i);
+          String canonical = merchantRules.normalize(t.merchant());
+          line.append(account.id()).append(',');
+          micros(line, t.occurredAt()).append(',');
+          micros(line, t.postedAt()).append(',');
+          line.append(t.amount().cents()).append(',');
+          csv(line, t.amount().currency()).append(',');
+          csv(line, t.merchant()).append(',');
+          csv(line, canonical).append(',');
+          csv(line, t.category()).append(',');
+          csv(line, categorize(categoryRules, account, t, canonical)).append(',');
+          csv(line, t.type()).append(',');
+          csv(line, t.memo()).append(',');
+          csv(line, t.hash()).append(',');
+          line.append(schemaIds.get(t.rawHeaders())).append(',');
+          csv(line, SourceSchemaRepository.arrayLiteral(t.rawValues())).append('\n');
+        });
+  }
+
+  /** {@link #copyInsert(DSLContext, List, ResolvedAccount)} reading the batch's columns. */
+  public int copyInsert(DSLContext ctx, TransactionBatch batch, ResolvedAccount account) {
+    if (batch.isEmpty()) {
+      return 0;
+    }
+    List<List<String>> rawSchemas = batch.rawSchemas();
+    long[] schemaIds = new long[rawSchemas.size()];
+    for (int i = 0; i < schemaIds.length; i++) {
+      schemaIds[i] = sourceSchema(ctx, rawSchemas.get(i), batch.get(0));
+    }
+    MerchantRules merchantRules = merchants.rules();
+    CategoryRules categoryRules = categories.rules();
+    return copy(
+        ctx,
+        batch.get(0),
+        batch.size(),
+        (line, i) -> {
+          String canonical = merchantRules.normalize(batch.merchant(i));
+          line.append(account.id()).append(',');
+          micros(line, batch.occurredAtMicros(i)).append(',');
+          micros(line, batch.postedAtMicros(i)).append(',');
+          line.append(batch.amountCents(i)).append(',');
+          csv(line, batch.currency(i)).append(',');
+          csv(line, batch.merchant(i)).append(',');
+          csv(line, canonical).append(',');
+          csv(line, batch.category(i)).append(',');
+          csv(
+                  line,
+                  categoryRules.categorize(
+                      account.institution(),
+                      batch.amountCents(i),
+                      batch.merchant(i),
+                      canonical,
+                      batch.category(i),
+                      batch.type(i),
+                      batch.memo(i)))
+              .append(',');
+          csv(line, batch.type(i)).append(',');
+          csv(line, batch.memo(i)).append(',');
+          csv(line, batch.hash(i)).append(',');
+          line.append(schemaIds[batch.rawSchema(i)]).append(',');
+          csv(line, SourceSchemaRepository.arrayLiteral(batch.rawValues(i))).append('\n');
+        });
+  }
+
+  /**
+   * Runs the staging {@code COPY} for {@code rows} rows encoded by {@code encoder}; timestamps are
+   * staged as epoch microseconds and hashes as hex, both converted on the way into {@code
+   * transactions}.
+   */
+  private int copy(DSLContext ctx, TransactionRecord first, int rows, RowEncoder encoder) {
+    return ctx.connectionResult(
+        conn -> {
+          try (Statement st = conn.createStatement()) {
+            st.execute(
+                "create temp table if not exists transactions_copy_stage (account_id bigint,"
+                    + " occurred_us bigint, posted_us bigint, amount_cents bigint, currency text,"
+                    + " merchant text, merchant_canonical text, category text, unified_category"
+                    + " text, txn_type text, memo text, hash text,"
+                    + " source_schema_id bigint, raw_values text[]) on commit delete rows");
+            st.execute("truncate transactions_copy_stage");
+            CopyIn copy =
+                conn.unwrap(PGConnection.class)
+                    .getCopyAPI()
+                    .copyIn(
+                        "COPY transactions_copy_stage (account_id, occurred_us, posted_us,"
+                            + " amount_cents, currency, merchant, merchant_canonical, category,"
+                            + " unified_category, txn_type, memo, hash, source_schema_id,"
+                            + " raw_values) FROM STDIN"
+                            + " (FORMAT csv)");
+            try {
+              StringBuilder line = new StringBuilder(512);
+              for (int i = 0; i < rows; i++) {
+                line.setLength(0);
+                encoder.encode(line, i);
+                byte[] bytes = line.toString().getBytes(StandardCharsets.UTF_8);
+                copy.writeToCopy(bytes, 0, bytes.length);
+              }
+              copy.endCopy();
+            } catch (SQLException | RuntimeException e) {
+              if (copy.isActive()) {
+                copy.cancelCopy();
+              }
+              throw e;
+            }
+            return st.executeUpdate(
+                "insert into transactions ("
+                    + STAGE_COLUMNS
+                    + ") select account_id, timestamptz 'epoch' + occurred_us * interval '1"
+                    + " microsecond', timestamptz 'epoch' + posted_us * interval '1 microsecond',"
+                    + " amount_cents, currency, merchant, merchant_canonical, category,"
+                    + " unified_category, txn_type, memo, decode(hash,"
+                    + " 'hex'), source_schema_id, raw_values from transactions_copy_stage on"
+                    + " conflict do nothing");
+          } catch (SQLException e) {
+            throw new TransactionIngestException(first, e);
+          }
+        });
+  }
+
+  /** Appends row {@code i} of a {@code COPY} as one CSV line. */
+  @FunctionalInterface
+  private interface RowEncoder {
+    void encode(StringBuilder line, int i);
+  }
+
+  private static String categorize(
+      CategoryRules rules, ResolvedAccount account, TransactionRecord t, String canonical) {
+    return rules.categorize(
+        account.institution(),
+        t.amount().cents(),
+        t.merchant(),
+        canonical,
+        t.category(),
+        t.type(),
+        t.memo());
+  }
+
+  private long sourceSchema(DSLContext ctx, List<String> headers, TransactionRecord t) {
+    try {
+      return schemas.resolve(ctx, headers);
+    } catch (DataAccessException e) {
+      throw new TransactionIngestException(t, e);
+    }
+  }
+
+  private static StringBuilder micros(StringBuilder line, Instant i) {
+    return i == null ? line : line.append(ChronoUnit.MICROS.between(Instant.EPOCH, i));
+  }
+
+  private static StringBuilder micros(StringBuilder line, long micros) {
+    return micros == TransactionBatch.NO_TIME ? line : line.append(micros);
+  }
+
+  /** Appends a CSV field: null stays unquoted-empty (COPY's NULL), everything else is quoted. */
+  private static StringBuilder csv(StringBuilder line, Object value) {
+    if (value == null) {
+      return line;
+    }
+    String s = value.toString();
+    line.append('"');
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (c == '"') {
+        line.append('"');
+      }
+      line.append(c);
+    }
+    return line.append('"');
+  }
+
   private OffsetDateTime toOffsetDateTime(Instant i) {
     return i == null ? null : OffsetDateTime.ofInstant(i, ZoneOffset.UTC);
   }
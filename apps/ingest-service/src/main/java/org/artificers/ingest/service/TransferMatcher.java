@@ -0,0 +1,270 @@
+package org.artificers.ingest.service;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+import org.artificers.ingest.model.IngestRun;
+import org.artificers.jooq.tables.Transactions;
+import org.artificers.jooq.tables.TransferLinks;
+import org.artificers.jooq.tables.TransferMatchState;
+import org.jooq.Condition;
+import org.jooq.Cursor;
+import org.jooq.DSLContext;
+import org.jooq.InsertValuesStep8;
+import org.jooq.Record4;
+import org.jooq.Record5;
+import org.jooq.impl.DSL;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Links transactions that are one transfer seen from two accounts, such as a card payment that
+ * appears on the card as "Payment Thank You-Mobile" and on the paying account as "CAPITAL ONE
+ * MOBILE PYMT", into {@code transfer_links}. A debit and a credit pair up when they have the same
+ * absolute amount and currency, belong to different accounts and occurred at most {@code window}
+ * apart; each transaction joins at most one pair.
+ *
+ * <p>Matching is a sort-merge: unlinked transactions are read once, sorted by the database on
+ * {@code (currency, |amount|, occurred_at)}, and swept in that order. Within one amount only the
+ * unpaired rows of the last {@code window} are kept, and each row takes the earliest of them with
+ * the opposite sign and another account, so memory is bounded by the rows of one amount within the
+ * window however many rows are read. Runs are incremental: {@code transfer_match_state} holds the
+ * highest transaction id already matched, and a run only reads the dates within {@code window} of
+ * the rows after it. Undated and zero-amount rows are never linked.
+ *
+ * <p>Registered as an {@link IngestRunListener}, it matches after every ingest that inserted rows.
+ * Ids are assumed to commit in order, which holds for the single ingest thread; rows committed by a
+ * concurrent writer with a lower id than one already matched are only picked up by a rebuild.
+ */
+public class TransferMatcher implements IngestRunListener {
+  private static final Logger log = LoggerFactory.getLogger(TransferMatcher.class);
+
+  public static final Duration DEFAULT_WINDOW = Duration.ofDays(3);
+
+  /** Rows fetched per round trip while sweeping. */
+  static final int FETCH_SIZE = 5_000;
+
+  /** Links per insert statement. */
+  static final int INSERT_CHUNK = 1_000;
+
+  /** One side of a possible transfer, as read in sweep order. */
+  record Row(
+      long id, long accountId, long amountCents, String currency, OffsetDateTime occurredAt) {}
+
+  /** A debit and credit paired by the sweep. */
+  record Link(Row debit, Row credit) {}
+
+  /**
+   * What one run did.
+   *
+   * @param newRows transactions after the previous watermark
+   * @param rowsRead unlinked transactions swept
+   * @param linked pairs written to {@code transfer_links}
+   */
+  public record Result(long newRows, long rowsRead, int linked) {}
+
+  private final DSLContext dsl;
+  private final Duration window;
+
+  public TransferMatcher(DSLContext dsl, Duration window) {
+    if (window.isNegative()) {
+      throw new IllegalArgumentException("window must not be negative");
+    }
+    this.dsl = dsl;
+    this.window = window;
+  }
+
+  @Override
+  public void onRunCompleted(IngestRun run) {
+    if (!run.succeeded() || run.rowsInserted() == 0) {
+      return;
+    }
+    long start = System.nanoTime();
+    Result result = match(dsl);
+    log.info(
+        "Matched {} new rows of {}: {} rows swept, {} transfers linked in {} ms",
+        result.newRows(),
+        run.fileName(),
+        result.rowsRead(),
+        result.linked(),
+        (System.nanoTime() - start) / 1_000_000);
+  }
+
+  /**
+   * Matches the transactions added since the last run against every unlinked transaction within the
+   * window of them, in one transaction that also advances the watermark.
+   */
+  public Result match(DSLContext ctx) {
+    return ctx.transactionResult(conf -> match(DSL.using(conf), false));
+  }
+
+  /** Deletes every link and matches all transactions again from scratch. */
+  public Result rebuild(DSLContext ctx) {
+    return ctx.transactionResult(conf -> match(DSL.using(conf), true));
+  }
+
+  private Result match(DSLContext tx, boolean rebuild) {
+    Transactions t = Transactions.TRANSACTIONS;
+    TransferLinks l = TransferLinks.TRANSFER_LINKS;
+    TransferMatchState s = TransferMatchState.TRANSFER_MATCH_STATE;
+    Long stored =
+        tx.select(s.LAST_TRANSACTION_ID)
+            .from(s)
+            .where(s.ID.eq(1))
+            .forUpdate()
+            .fetchOne(s.LAST_TRANSACTION_ID);
+    if (stored == null) {
+      tx.insertInto(s).set(s.ID, 1).set(s.LAST_TRANSACTION_ID, 0L).onConflictDoNothing().execute();
+    }
+    long after = rebuild || stored == null ? 0 : stored;
+    if (rebuild) {
+      tx.deleteFrom(l).execute();
+    }
+    Record4<Integer, Long, OffsetDateTime, OffsetDateTime> added =
+        tx.select(DSL.count(), DSL.max(t.ID), DSL.min(t.OCCURRED_AT), DSL.max(t.OCCURRED_AT))
+            .from(t)
+            .where(t.ID.gt(after))
+            .fetchOne();
+    long newRows = added.value1();
+    if (newRows == 0) {
+      return new Result(0, 0, 0);
+    }
+    long read = 0;
+    List<Link> pending = new ArrayList<>();
+    int[] linked = {0};
+    if (added.value3() != null) {
+      Condition unlinked =
+          DSL.notExists(DSL.selectOne().from(l).where(l.DEBIT_TRANSACTION_ID.eq(t.ID)))
+              .and(DSL.notExists(DSL.selectOne().from(l).where(l.CREDIT_TRANSACTION_ID.eq(t.ID))));
+      try (Cursor<Record5<Long, Long, Long, String, OffsetDateTime>> cursor =
+          tx.select(t.ID, t.ACCOUNT_ID, t.AMOUNT_CENTS, t.CURRENCY, t.OCCURRED_AT)
+              .from(t)
+              .where(
+                  t.OCCURRED_AT.between(added.value3().minus(window), added.value4().plus(window)),
+                  t.AMOUNT_CENTS.ne(0L),
+                  unlinked)
+              .orderBy(t.CURRENCY, DSL.abs(t.AMOUNT_CENTS), t.OCCURRED_AT, t.ID)
+              .fetchSize(FETCH_SIZE)
+              .fetchLazy()) {
+        long[] count = {0};
+        Iterator<Row> rows =
+            new Iterator<>() {
+              @Override
+              public boolean hasNext() {
+                return cursor.hasNext();
+              }
+
+              @Override
+              public Row next() {
+                var r = cursor.fetchNext();
+                count[0]++;
+                return new Row(r.value1(), r.value2(), r.value3(), r.value4(), r.value5());
+              }
+            };
+        merge(
+            rows,
+            window,
+            link -> {
+              pending.add(link);
+              if (pending.size() == INSERT_CHUNK) {
+                linked[0] += insert(tx, pending);
+                pending.clear();
+              }
+            });
+        read = count[0];
+      }
+      linked[0] += insert(tx, pending);
+    }
+    tx.update(s)
+        .set(s.LAST_TRANSACTION_ID, added.value2())
+        .set(s.UPDATED_AT, DSL.currentOffsetDateTime())
+        .where(s.ID.eq(1))
+        .execute();
+    return new Result(newRows, read, linked[0]);
+  }
+
+  private static int insert(DSLContext tx, List<Link> links) {
+    if (links.isEmpty()) {
+      return 0;
+    }
+    TransferLinks l = TransferLinks.TRANSFER_LINKS;
+    InsertValuesStep8<?, Long, Long, Long, Long, Long, String, OffsetDateTime, OffsetDateTime>
+        insert =
+            tx.insertInto(
+                l,
+                l.DEBIT_TRANSACTION_ID,
+                l.CREDIT_TRANSACTION_ID,
+                l.DEBIT_ACCOUNT_ID,
+                l.CREDIT_ACCOUNT_ID,
+                l.AMOUNT_CENTS,
+                l.CURRENCY,
+                l.DEBIT_OCCURRED_AT,
+                l.CREDIT_OCCURRED_AT);
+    for (Link link : links) {
+      insert =
+          insert.values(
+              link.debit().id(),
+              link.credit().id(),
+              link.debit().accountId(),
+              link.credit().accountId(),
+              link.credit().amountCents(),
+              link.credit().currency(),
+              link.debit().occurredAt(),
+              link.credit().occurredAt());
+    }
+    return insert.execute();
+  }
+
+  /**
+   * The sweep: {@code rows} must come sorted by currency, absolute amount and time. Each row is
+   * paired with the earliest unpaired row before it that has the same currency and absolute amount,
+   * the opposite sign and another account, and occurred at most {@code window} earlier; rows left
+   * unpaired wait for a later partner until they fall out of the window.
+   */
+  static void merge(Iterator<Row> rows, Duration window, Consumer<Link> links) {
+    ArrayDeque<Row> debits = new ArrayDeque<>();
+    ArrayDeque<Row> credits = new ArrayDeque<>();
+    Row group = null;
+    while (rows.hasNext()) {
+      Row row = rows.next();
+      if (group == null
+          || Math.abs(row.amountCents()) != Math.abs(group.amountCents())
+          || !row.currency().equals(group.currency())) {
+        debits.clear();
+        credits.clear();
+        group = row;
+      }
+      OffsetDateTime earliest = row.occurredAt().minus(window);
+      evict(debits, earliest);
+      evict(credits, earliest);
+      boolean debit = row.amountCents() < 0;
+      Row partner = takeOtherAccount(debit ? credits : debits, row.accountId());
+      if (partner == null) {
+        (debit ? debits : credits).addLast(row);
+      } else {
+        links.accept(debit ? new Link(row, partner) : new Link(partner, row));
+      }
+    }
+  }
+
+  private static void evict(ArrayDeque<Row> waiting, OffsetDateTime earliest) {
+    while (!waiting.isEmpty() && waiting.peekFirst().occurredAt().isBefore(earliest)) {
+      waiting.removeFirst();
+    }
+  }
+
+  private static Row takeOtherAccount(ArrayDeque<Row> waiting, long accountId) {
+    for (Iterator<Row> it = waiting.iterator(); it.hasNext(); ) {
+      Row candidate = it.next();
+      if (candidate.accountId() != accountId) {
+        it.remove();
+        return candidate;
+      }
+    }
+    return null;
+  }
+}
@@ -1,19 +1,85 @@
 package org.artificers.ingest.tools;
 
+import java.io.PrintStream;
+import java.math.BigDecimal;
 import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.YearMonth;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.concurrent.Callable;
 import org.artificers.ingest.app.IngestApp;
 import org.artificers.ingest.config.DbConfig;
 import org.artificers.ingest.config.IngestConfig;
 import org.artificers.ingest.di.DaggerIngestComponent;
 import org.artificers.ingest.di.IngestComponent;
+import org.artificers.ingest.service.ChecksumVerifier;
+import org.artificers.ingest.service.TransactionPartitionManager;
+import org.artificers.jooq.tables.IngestRuns;
+import org.artificers.jooq.tables.TransactionChecksums;
 import org.artificers.jooq.tables.Transactions;
+import org.jooq.Condition;
 import org.jooq.DSLContext;
+import org.jooq.Field;
 import org.jooq.Record2;
 import org.jooq.impl.DSL;
+import org.jooq.impl.SQLDataType;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+/**
+ * Validates the database state with summary queries using jOOQ. The default run scans {@code
+ * transactions} several times; {@code --fast} reads only catalog estimates and {@code
+ * transaction_checksums}, and {@code --verify} recomputes the checksums of months changed since
+ * their last verification. Both leave out the checksums of months whose partition is detached.
+ */
+@Command(
+    name = "db-validate",
+    description =
+        "Print database summaries, verify transaction checksums or report ingest throughput",
+    mixinStandardHelpOptions = true)
+public final class DbValidator implements Callable<Integer> {
+  @Option(names = "--report", description = "Report ingest throughput from the ingest_runs ledger")
+  boolean report;
+
+  @Option(
+      names = "--fast",
+      description = "Summarise from catalog row estimates and transaction_checksums, without scans")
+  boolean fast;
+
+  @Option(
+      names = "--verify",
+      description = "Recompute transaction_checksums of months changed since their last check")
+  boolean verify;
+
+  @Option(names = "--all", description = "With --verify, recompute every month")
+  boolean all;
+
+  @Option(names = "--repair", description = "With --verify, overwrite mismatched checksums")
+  boolean repair;
+
+  @Option(
+      names = "--days",
+      defaultValue = "14",
+      description = "Days of ingest runs to include in the report (default: ${DEFAULT-VALUE})")
+  int days;
+
+  @Option(
+      names = "--limit",
+      defaultValue = "10",
+      description = "Number of slowest files to list in the report (default: ${DEFAULT-VALUE})")
+  int limit;
+
+  private final DSLContext ctx;
+  private final PrintStream out;
+
+  public DbValidator(DSLContext ctx, PrintStream out) {
+    this.ctx = ctx;
+    this.out = out;
+  }
 
-/** Validates the database state with summary queries using jOOQ. */
-public final class DbValidator {
   public static void main(String[] args) throws Exception {
     String rawUrl = System.getenv("DB_URL");
     String user = System.getenv("DB_USER");
@@ -33,70 +99,252 @@ public final class DbValidator {
     IngestConfig cfg = new IngestConfig(ingestDir, configDir);
     IngestComponent component =
         DaggerIngestComponent.builder().dbConfig(dbCfg).ingestConfig(cfg).build();
+    int code;
     try (var ignore = component.dataSourceCloseable()) {
-      DSLContext ctx = component.dslContext();
-
-      long accounts = ctx.fetchCount(DSL.table("accounts"));
-      long tx = ctx.fetchCount(Transactions.TRANSACTIONS);
-      long vw = ctx.fetchCount(DSL.table("transactions_view"));
-
-      System.out.println("== Row counts ==");
-      System.out.printf(
-          "accounts: %d%stransactions: %d%stransactions_view: %d%n",
-          accounts, System.lineSeparator(), tx, System.lineSeparator(), vw);
-
-      Long total =
-          ctx.select(DSL.coalesce(DSL.sum(Transactions.TRANSACTIONS.AMOUNT_CENTS), 0L))
-              .from(Transactions.TRANSACTIONS)
-              .fetchOne(0, Long.class);
-      System.out.println("== Amount totals ==");
-      System.out.printf("total_cents: %d%n", total);
-
-      System.out.println("== Per-account counts ==");
-      List<Record2<Long, Integer>> perAcct =
-          ctx.select(Transactions.TRANSACTIONS.ACCOUNT_ID, DSL.count())
-              .from(Transactions.TRANSACTIONS)
-              .groupBy(Transactions.TRANSACTIONS.ACCOUNT_ID)
-              .orderBy(Transactions.TRANSACTIONS.ACCOUNT_ID)
-              .fetch();
-      for (Record2<Long, Integer> r : perAcct) {
-        System.out.printf("account_id=%d count=%d%n", r.value1(), r.value2());
-      }
-
-      System.out.println("== Duplicate (account_id, hash) check ==");
-      var dups =
-          ctx.select(
-                  Transactions.TRANSACTIONS.ACCOUNT_ID,
-                  Transactions.TRANSACTIONS.HASH,
-                  DSL.count().as("c"))
-              .from(Transactions.TRANSACTIONS)
-              .groupBy(Transactions.TRANSACTIONS.ACCOUNT_ID, Transactions.TRANSACTIONS.HASH)
-              .having(DSL.count().gt(1))
-              .fetch();
-      if (dups.isEmpty()) {
-        System.out.println("no duplicates");
-      } else {
-        dups.forEach(
+      code = new CommandLine(new DbValidator(component.dslContext(), System.out)).execute(args);
+    }
+    System.exit(code);
+  }
+
+  @Override
+  public Integer call() {
+    if (report) {
+      report();
+    } else if (verify) {
+      return verifyChecksums() || repair ? 0 : 1;
+    } else if (fast) {
+      fastValidate();
+    } else {
+      validate();
+    }
+    return 0;
+  }
+
+  void validate() {
+    long accounts = ctx.fetchCount(DSL.table("accounts"));
+    long tx = ctx.fetchCount(Transactions.TRANSACTIONS);
+    long vw = ctx.fetchCount(DSL.table("transactions_view"));
+
+    out.println("== Row counts ==");
+    out.printf(
+        "accounts: %d%stransactions: %d%stransactions_view: %d%n",
+        accounts, System.lineSeparator(), tx, System.lineSeparator(), vw);
+
+    Long total =
+        ctx.select(DSL.coalesce(DSL.sum(Transactions.TRANSACTIONS.AMOUNT_CENTS), 0L))
+            .from(Transactions.TRANSACTIONS)
+            .fetchOne(0, Long.class);
+    out.println("== Amount totals ==");
+    out.printf("total_cents: %d%n", total);
+
+    out.println("== Per-account counts ==");
+    List<Record2<Long, Integer>> perAcct =
+        ctx.select(Transactions.TRANSACTIONS.ACCOUNT_ID, DSL.count())
+            .from(Transactions.TRANSACTIONS)
+            .groupBy(Transactions.TRANSACTIONS.ACCOUNT_ID)
+            .orderBy(Transactions.TRANSACTIONS.ACCOUNT_ID)
+            .fetch();
+    for (Record2<Long, Integer> r : perAcct) {
+      out.printf("account_id=%d count=%d%n", r.value1(), r.value2());
+    }
+
+    out.println("== Duplicate (account_id, hash) check ==");
+    var dups =
+        ctx.select(
+                Transactions.TRANSACTIONS.ACCOUNT_ID,
+                Transactions.TRANSACTIONS.HASH,
+                DSL.count().as("c"))
+            .from(Transactions.TRANSACTIONS)
+            .groupBy(Transactions.TRANSACTIONS.ACCOUNT_ID, Transactions.TRANSACTIONS.HASH)
+            .having(DSL.count().gt(1))
+            .fetch();
+    if (dups.isEmpty()) {
+      out.println("no duplicates");
+    } else {
+      dups.forEach(
+          r ->
+              out.printf(
+                  "dup account_id=%s hash=%s c=%s%n",
+                  r.value1(), HexFormat.of().formatHex(r.value2()), r.value3()));
+    }
+
+    out.println("== Sample rows ==");
+    ctx.select(
+            Transactions.TRANSACTIONS.ID,
+            Transactions.TRANSACTIONS.ACCOUNT_ID,
+            Transactions.TRANSACTIONS.AMOUNT_CENTS,
+            Transactions.TRANSACTIONS.MERCHANT)
+        .from(Transactions.TRANSACTIONS)
+        .orderBy(Transactions.TRANSACTIONS.ID)
+        .limit(10)
+        .fetch()
+        .forEach(
             r ->
-                System.out.printf(
-                    "dup account_id=%s hash=%s c=%s%n", r.value1(), r.value2(), r.value3()));
-      }
-
-      System.out.println("== Sample rows ==");
-      ctx.select(
-              Transactions.TRANSACTIONS.ID,
-              Transactions.TRANSACTIONS.ACCOUNT_ID,
-              Transactions.TRANSACTIONS.AMOUNT_CENTS,
-              Transactions.TRANSACTIONS.MERCHANT)
-          .from(Transactions.TRANSACTIONS)
-          .orderBy(Transactions.TRANSACTIONS.ID)
-          .limit(10)
-          .fetch()
-          .forEach(
-              r ->
-                  System.out.printf(
-                      "id=%s account_id=%s amount_cents=%s merchant=%s%n",
-                      r.value1(), r.value2(), r.value3(), r.value4()));
+                out.printf(
+                    "id=%s account_id=%s amount_cents=%s merchant=%s%n",
+                    r.value1(), r.value2(), r.value3(), r.value4()));
+  }
+
+  /**
+   * {@link #validate()} without scanning {@code transactions}: row counts are the planner's
+   * estimates, totals come from {@code transaction_checksums}, and duplicates are left to the
+   * unique index, whose presence is checked. PostgreSQL only.
+   */
+  void fastValidate() {
+    out.println("== Row estimates ==");
+    for (String table : List.of("accounts", "transactions")) {
+      Record2<Long, Long> r =
+          ctx.select(
+                  DSL.field("coalesce(sum(greatest(c.reltuples, 0)), 0)", SQLDataType.BIGINT),
+                  DSL.field("coalesce(sum(s.n_live_tup), 0)", SQLDataType.BIGINT))
+              .from("pg_class c left join pg_stat_user_tables s on s.relid = c.oid")
+              .where(
+                  "c.oid = to_regclass({0}) or c.oid in (select inhrelid from pg_inherits where"
+                      + " inhparent = to_regclass({0}))",
+                  DSL.inline(table))
+              .fetchOne();
+      out.printf("%s: ~%d (pg_class) ~%d live (pg_stat)%n", table, r.value1(), r.value2());
+    }
+
+    TransactionChecksums c = TransactionChecksums.TRANSACTION_CHECKSUMS;
+    List<YearMonth> detached = new TransactionPartitionManager(ctx).detached();
+    Condition attached = ChecksumVerifier.attached(detached);
+    out.println("== Amount totals (transaction_checksums) ==");
+    if (!detached.isEmpty()) {
+      out.printf("excluding detached months %s%n", detached);
+    }
+    out.printf(
+        "total_cents: %d%n",
+        ctx.select(DSL.coalesce(DSL.sum(c.AMOUNT_CENTS), BigDecimal.ZERO))
+            .from(c)
+            .where(attached)
+            .fetchOne(0, Long.class));
+
+    out.println("== Per-account counts (transaction_checksums) ==");
+    ctx.select(c.ACCOUNT_ID, DSL.sum(c.TXN_COUNT))
+        .from(c)
+        .where(attached)
+        .groupBy(c.ACCOUNT_ID)
+        .orderBy(c.ACCOUNT_ID)
+        .fetch()
+        .forEach(r -> out.printf("account_id=%d count=%d%n", r.value1(), longValue(r.value2())));
+
+    out.println("== Duplicate (account_id, hash) check ==");
+    boolean unique =
+        ctx.fetchExists(
+            DSL.selectOne()
+                .from("pg_index i")
+                .where(
+                    "i.indrelid = to_regclass('transactions') and i.indisunique and i.indisvalid"));
+    out.println(
+        unique ? "enforced by a valid unique index" : "MISSING unique index on transactions");
+
+    out.println("== Checksums ==");
+    Record2<Integer, Integer> months =
+        ctx.select(
+                DSL.count(),
+                DSL.count().filterWhere(c.VERIFIED_AT.isNull().or(c.UPDATED_AT.gt(c.VERIFIED_AT))))
+            .from(c)
+            .where(attached)
+            .fetchOne();
+    out.printf("months=%d pending_verification=%d%n", months.value1(), months.value2());
+  }
+
+  /** Prints the outcome of {@link ChecksumVerifier#verify}; returns whether every month matched. */
+  boolean verifyChecksums() {
+    long start = System.nanoTime();
+    List<YearMonth> detached = new TransactionPartitionManager(ctx).detached();
+    ChecksumVerifier.Result result = new ChecksumVerifier(detached).verify(ctx, all, repair);
+    out.printf("== Checksum verification (%s) ==%n", all ? "all months" : "changed months");
+    if (!detached.isEmpty()) {
+      out.printf("skipped detached months %s%n", detached);
+    }
+    for (ChecksumVerifier.Mismatch m : result.mismatches()) {
+      out.printf(
+          "%s account_id=%d month=%s stored=%s actual=%s%n",
+          repair ? "repaired" : "MISMATCH", m.accountId(), m.month(), m.stored(), m.actual());
     }
+    out.printf(
+        "checked=%d mismatched=%d in %d ms%n",
+        result.checked(), result.mismatches().size(), (System.nanoTime() - start) / 1_000_000);
+    return result.mismatches().isEmpty();
+  }
+
+  /** Summarises the {@code ingest_runs} ledger: daily throughput and the slowest files. */
+  void report() {
+    IngestRuns r = IngestRuns.INGEST_RUNS;
+    Condition window = r.STARTED_AT.ge(OffsetDateTime.now().minusDays(days));
+
+    out.printf("== Daily ingest throughput (last %d days) ==%n", days);
+    Field<LocalDate> day = r.STARTED_AT.cast(SQLDataType.LOCALDATE).as("day");
+    Field<Integer> failed = DSL.count().filterWhere(r.OUTCOME.eq("failure"));
+    ctx.select(
+            day,
+            r.INSTITUTION,
+            DSL.count(),
+            failed,
+            DSL.sum(r.ROWS_READ),
+            DSL.sum(r.ROWS_INSERTED),
+            DSL.sum(r.ROWS_DUPLICATE),
+            DSL.sum(r.TOTAL_MICROS))
+        .from(r)
+        .where(window)
+        .groupBy(day, r.INSTITUTION)
+        .orderBy(day, r.INSTITUTION)
+        .fetch()
+        .forEach(
+            row -> {
+              long rows = longValue(row.value5());
+              long micros = longValue(row.value8());
+              out.printf(
+                  "day=%s institution=%s runs=%d failed=%d rows=%d inserted=%d duplicates=%d"
+                      + " rows_per_sec=%.1f%n",
+                  row.value1(),
+                  row.value2(),
+                  row.value3(),
+                  row.value4(),
+                  rows,
+                  longValue(row.value6()),
+                  longValue(row.value7()),
+                  rowsPerSecond(rows, micros));
+            });
+
+    out.printf("== Slowest files (top %d) ==%n", limit);
+    ctx.select(
+            r.FILE_NAME,
+            r.INSTITUTION,
+            r.OUTCOME,
+            r.ROWS_READ,
+            r.TOTAL_MICROS,
+            r.PARSE_MICROS,
+            r.PERSIST_MICROS,
+            r.REFRESH_MICROS)
+        .from(r)
+        .where(window)
+        .orderBy(r.TOTAL_MICROS.desc(), r.ID)
+        .limit(limit)
+        .fetch()
+        .forEach(
+            row ->
+                out.printf(
+                    "file=%s institution=%s outcome=%s rows=%d total_ms=%.1f parse_ms=%.1f"
+                        + " persist_ms=%.1f refresh_ms=%.1f rows_per_sec=%.1f%n",
+                    row.value1(),
+                    row.value2(),
+                    row.value3(),
+                    row.value4(),
+                    row.value5() / 1_000.0,
+                    row.value6() / 1_000.0,
+                    row.value7() / 1_000.0,
+                    row.value8() / 1_000.0,
+                    rowsPerSecond(row.value4(), row.value5())));
+  }
+
+  private static long longValue(BigDecimal value) {
+    return value == null ? 0 : value.longValue();
+  }
+
+  private static double rowsPerSecond(long rows, long micros) {
+    return micros <= 0 ? 0 : rows * 1_000_000.0 / micros;
   }
 }
@@ -0,0 +1,88 @@
+package org.artificers.ingest.tools;
+
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import org.artificers.ingest.app.IngestApp;
+import org.artificers.ingest.config.DbConfig;
+import org.artificers.ingest.config.IngestConfig;
+import org.artificers.ingest.di.DaggerIngestComponent;
+import org.artificers.ingest.di.IngestComponent;
+import org.artificers.ingest.service.DuplicateDetector;
+import org.jooq.DSLContext;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+/** Runs the {@link DuplicateDetector} outside ingest, incrementally or over the full history. */
+@Command(
+    name = "duplicate-scan",
+    description = "Flag likely duplicate transactions for review in duplicate_candidates",
+    mixinStandardHelpOptions = true)
+public final class DuplicateScanTool implements Callable<Integer> {
+  @Option(
+      names = "--window-days",
+      description = "Days two rows of one purchase may be apart (default: 3)")
+  long windowDays = DuplicateDetector.DEFAULT_WINDOW.toDays();
+
+  @Option(
+      names = "--min-similarity",
+      description = "Lowest merchant similarity, above 0 and at most 1, flagged (default: 0.3)")
+  double minSimilarity = DuplicateDetector.DEFAULT_MIN_SIMILARITY;
+
+  @Option(
+      names = "--all",
+      description = "Scan every transaction, not just those added since the last scan")
+  boolean all;
+
+  private final DSLContext ctx;
+  private final PrintStream out;
+
+  public DuplicateScanTool(DSLContext ctx, PrintStream out) {
+    this.ctx = ctx;
+    this.out = out;
+  }
+
+  public static void main(String[] args) throws Exception {
+    String rawUrl = System.getenv("DB_URL");
+    String user = System.getenv("DB_USER");
+    String password = System.getenv("DB_PASSWORD");
+
+    Path ingestDir = Path.of(System.getenv().getOrDefault("INGEST_DIR", "storage/incoming"));
+    Path configDir =
+        Path.of(
+            System.getenv()
+                .getOrDefault(
+                    "INGEST_CONFIG_DIR", System.getProperty("user.home") + "/.config/ingest"));
+
+    System.out.printf("Scanning for duplicates in %s as %s%n", IngestApp.sanitize(rawUrl), user);
+
+    DbConfig dbCfg = new DbConfig(rawUrl, user, password);
+    IngestConfig cfg = new IngestConfig(ingestDir, configDir);
+    IngestComponent component =
+        DaggerIngestComponent.builder().dbConfig(dbCfg).ingestConfig(cfg).build();
+    int code;
+    try (var ignore = component.dataSourceCloseable()) {
+      code =
+          new CommandLine(new DuplicateScanTool(component.dslContext(), System.out)).execute(args);
+    }
+    System.exit(code);
+  }
+
+  @Override
+  public Integer call() {
+    DuplicateDetector detector =
+        new DuplicateDetector(ctx, Duration.ofDays(windowDays), minSimilarity);
+    long start = System.nanoTime();
+    DuplicateDetector.Result result = all ? detector.scanAll(ctx) : detector.scan(ctx);
+    out.printf(
+        "duplicate_candidates: %d new rows, %d rows scanned, %d flagged within %d days in %d ms%n",
+        result.newRows(),
+        result.rowsRead(),
+        result.flagged(),
+        windowDays,
+        (System.nanoTime() - start) / 1_000_000);
+    return 0;
+  }
+}
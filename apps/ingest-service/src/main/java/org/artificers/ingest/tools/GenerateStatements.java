@@ -0,0 +1,184 @@
+package org.artificers.ingest.tools;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.opencsv.CSVReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.concurrent.Callable;
+import org.artificers.ingest.csv.ConfigurableCsvReader;
+import org.artificers.ingest.csv.MappingFileLocator;
+import picocli.CommandLine;
+import picocli.CommandLine.ArgGroup;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+/** Writes synthetic statement files for load tests with {@link StatementGenerator}. */
+@Command(
+    name = "generate-statements",
+    description = "Write deterministic synthetic statement CSVs for any mapping",
+    mixinStandardHelpOptions = true)
+public final class GenerateStatements implements Callable<Integer> {
+  @ArgGroup(multiplicity = "1")
+  MappingSource source;
+
+  static class MappingSource {
+    @Option(names = "--mapping", description = "Mapping JSON file to generate for")
+    Path mapping;
+
+    @Option(names = "--institution", description = "Bundled mapping to generate for, e.g. ch")
+    String institution;
+  }
+
+  @Option(
+      names = "--account",
+      defaultValue = "1234",
+      description = "Last four digits used in file names (default: ${DEFAULT-VALUE})")
+  String account;
+
+  @Option(
+      names = "--rows",
+      defaultValue = "10000",
+      description = "Rows per file (default: ${DEFAULT-VALUE})")
+  long rows;
+
+  @Option(names = "--files", defaultValue = "1", description = "Number of files to write")
+  int files;
+
+  @Option(
+      names = "--file-overlap",
+      defaultValue = "0",
+      description = "Share of each file's rows repeated from the end of the previous file")
+  double fileOverlap;
+
+  @Option(
+      names = "--first-index",
+      defaultValue = "0",
+      description =
+          "Global row index of the first row; reuse a seed with an earlier range to"
+              + " overlap files from a previous run")
+  long firstIndex;
+
+  @Option(names = "--seed", defaultValue = "42", description = "Seed (default: ${DEFAULT-VALUE})")
+  long seed;
+
+  @Option(
+      names = "--start-date",
+      defaultValue = "2020-01-01",
+      description = "Date of global row 0 (default: ${DEFAULT-VALUE})")
+  LocalDate startDate;
+
+  @Option(
+      names = "--rows-per-day",
+      defaultValue = "5",
+      description = "Average rows per day, which sets each file's date range")
+  double rowsPerDay;
+
+  @Option(
+      names = "--credit-ratio",
+      defaultValue = "0.1",
+      description = "Share of payments and returns (default: ${DEFAULT-VALUE})")
+  double creditRatio;
+
+  @Option(
+      names = "--duplicate-ratio",
+      defaultValue = "0",
+      description = "Share of rows repeating a recent row verbatim (default: ${DEFAULT-VALUE})")
+  double duplicateRatio;
+
+  @Option(
+      names = "--date-pattern",
+      defaultValue = "yyyy-MM-dd",
+      description = "Pattern for date columns whose mapping has no format")
+  String datePattern;
+
+  @Option(
+      names = "--existing",
+      description = "Existing statement whose rows are copied into the first file")
+  Path existing;
+
+  @Option(
+      names = "--existing-ratio",
+      defaultValue = "0",
+      description = "Share of the first file's rows copied from --existing")
+  double existingRatio;
+
+  @Option(
+      names = "--out-dir",
+      defaultValue = ".",
+      description = "Directory for the generated files (default: ${DEFAULT-VALUE})")
+  Path outDir;
+
+  private final ObjectMapper mapper;
+  private final PrintStream out;
+
+  public GenerateStatements(ObjectMapper mapper, PrintStream out) {
+    this.mapper = mapper;
+    this.out = out;
+  }
+
+  public static void main(String[] args) {
+    System.exit(
+        new CommandLine(new GenerateStatements(new ObjectMapper(), System.out)).execute(args));
+  }
+
+  @Override
+  public Integer call() throws IOException {
+    if (!account.matches("\\d{4}")) {
+      throw new IllegalArgumentException("--account must be four digits");
+    }
+    if (fileOverlap < 0 || fileOverlap >= 1) {
+      throw new IllegalArgumentException("--file-overlap must be in [0, 1)");
+    }
+    ConfigurableCsvReader.Mapping mapping = mapping();
+    StatementGenerator generator =
+        new StatementGenerator(
+            mapping,
+            new StatementGenerator.Settings(
+                seed, startDate, rowsPerDay, creditRatio, duplicateRatio, datePattern));
+    Files.createDirectories(outDir);
+    long step = Math.max(1, Math.round(rows * (1 - fileOverlap)));
+    long start = System.nanoTime();
+    long bytes = 0;
+    for (int f = 0; f < files; f++) {
+      long first = firstIndex + f * step;
+      Path file =
+          outDir.resolve(
+              String.format("%s%s-synthetic-%d-%04d.csv", mapping.institution(), account, seed, f));
+      try (BufferedWriter w = Files.newBufferedWriter(file)) {
+        if (f == 0 && existing != null) {
+          try (CSVReader r = new CSVReader(Files.newBufferedReader(existing))) {
+            generator.write(w, first, rows, r, existingRatio);
+          }
+        } else {
+          generator.write(w, first, rows);
+        }
+      }
+      bytes += Files.size(file);
+      out.printf("file=%s rows=%d index_range=[%d,%d)%n", file, rows, first, first + rows);
+    }
+    double seconds = (System.nanoTime() - start) / 1e9;
+    out.printf(
+        "files=%d rows=%d bytes=%d seconds=%.1f rows_per_sec=%.0f%n",
+        files, rows * files, bytes, seconds, seconds == 0 ? 0 : rows * files / seconds);
+    return 0;
+  }
+
+  private ConfigurableCsvReader.Mapping mapping() throws IOException {
+    if (source.mapping != null) {
+      try (InputStream in = Files.newInputStream(source.mapping)) {
+        return mapper.readValue(in, ConfigurableCsvReader.Mapping.class);
+      }
+    }
+    return new MappingFileLocator(mapper)
+        .locate().stream()
+            .filter(m -> m.institution().equals(source.institution))
+            .findFirst()
+            .orElseThrow(
+                () -> new IllegalArgumentException("No bundled mapping for " + source.institution));
+  }
+}
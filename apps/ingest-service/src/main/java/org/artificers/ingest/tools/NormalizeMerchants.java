@@ -0,0 +1,76 @@
+package org.artificers.ingest.tools;
+
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+import org.artificers.ingest.app.IngestApp;
+import org.artificers.ingest.config.DbConfig;
+import org.artificers.ingest.config.IngestConfig;
+import org.artificers.ingest.di.DaggerIngestComponent;
+import org.artificers.ingest.di.IngestComponent;
+import org.artificers.ingest.rules.MerchantNormalizer;
+import org.artificers.ingest.service.TransactionRepository;
+import org.jooq.DSLContext;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+
+/** Re-applies the merchant rules to {@code merchant_canonical} of every existing transaction. */
+@Command(
+    name = "merchant-normalize",
+    description =
+        "Rewrite transactions.merchant_canonical from the current "
+            + MerchantNormalizer.FILE_NAME
+            + " rules",
+    mixinStandardHelpOptions = true)
+public final class NormalizeMerchants implements Callable<Integer> {
+  private final DSLContext ctx;
+  private final TransactionRepository repository;
+  private final PrintStream out;
+
+  public NormalizeMerchants(DSLContext ctx, TransactionRepository repository, PrintStream out) {
+    this.ctx = ctx;
+    this.repository = repository;
+    this.out = out;
+  }
+
+  public static void main(String[] args) throws Exception {
+    String rawUrl = System.getenv("DB_URL");
+    String user = System.getenv("DB_USER");
+    String password = System.getenv("DB_PASSWORD");
+
+    Path ingestDir = Path.of(System.getenv().getOrDefault("INGEST_DIR", "storage/incoming"));
+    Path configDir =
+        Path.of(
+            System.getenv()
+                .getOrDefault(
+                    "INGEST_CONFIG_DIR", System.getProperty("user.home") + "/.config/ingest"));
+
+    System.out.printf(
+        "Normalizing merchants in %s as %s with %s%n",
+        IngestApp.sanitize(rawUrl), user, configDir.resolve(MerchantNormalizer.FILE_NAME));
+
+    DbConfig dbCfg = new DbConfig(rawUrl, user, password);
+    IngestConfig cfg = new IngestConfig(ingestDir, configDir);
+    IngestComponent component =
+        DaggerIngestComponent.builder().dbConfig(dbCfg).ingestConfig(cfg).build();
+    int code;
+    try (var ignore = component.dataSourceCloseable()) {
+      code =
+          new CommandLine(
+                  new NormalizeMerchants(
+                      component.dslContext(), component.transactionRepository(), System.out))
+              .execute(args);
+    }
+    System.exit(code);
+  }
+
+  @Override
+  public Integer call() {
+    long start = System.nanoTime();
+    int changed = repository.renormalizeMerchants(ctx);
+    out.printf(
+        "merchant_canonical: %d rows changed in %d ms%n",
+        changed, (System.nanoTime() - start) / 1_000_000);
+    return 0;
+  }
+}
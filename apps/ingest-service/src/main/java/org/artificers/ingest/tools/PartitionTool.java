@@ -0,0 +1,110 @@
+package org.artificers.ingest.tools;
+
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.concurrent.Callable;
+import org.artificers.ingest.app.IngestApp;
+import org.artificers.ingest.config.DbConfig;
+import org.artificers.ingest.config.IngestConfig;
+import org.artificers.ingest.di.DaggerIngestComponent;
+import org.artificers.ingest.di.IngestComponent;
+import org.artificers.ingest.metrics.MetricsRegistry;
+import org.artificers.ingest.service.TransactionPartitionManager;
+import org.jooq.DSLContext;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+/** Lists, maintains, attaches and detaches the monthly partitions of {@code transactions}. */
+@Command(
+    name = "partition-manager",
+    description =
+        "Run one partition maintenance pass, or list, attach or detach transactions partitions",
+    mixinStandardHelpOptions = true)
+public final class PartitionTool implements Callable<Integer> {
+  @Option(names = "--list", description = "List attached and detached partitions")
+  boolean list;
+
+  @Option(names = "--attach", paramLabel = "YYYY-MM", description = "Attach (or create) a month")
+  List<YearMonth> attach = List.of();
+
+  @Option(names = "--detach", paramLabel = "YYYY-MM", description = "Detach a month, keeping rows")
+  List<YearMonth> detach = List.of();
+
+  @Option(
+      names = "--months-ahead",
+      defaultValue = "${env:INGEST_PARTITION_MONTHS_AHEAD:-3}",
+      description = "Months to create ahead of the current one (default: ${DEFAULT-VALUE})")
+  int monthsAhead;
+
+  @Option(
+      names = "--retain-months",
+      defaultValue = "${env:INGEST_PARTITION_RETAIN_MONTHS:-0}",
+      description = "Months kept attached, 0 for all (default: ${DEFAULT-VALUE})")
+  int retainMonths;
+
+  private final DSLContext ctx;
+  private final PrintStream out;
+
+  public PartitionTool(DSLContext ctx, PrintStream out) {
+    this.ctx = ctx;
+    this.out = out;
+  }
+
+  public static void main(String[] args) throws Exception {
+    String rawUrl = System.getenv("DB_URL");
+    String user = System.getenv("DB_USER");
+    String password = System.getenv("DB_PASSWORD");
+
+    // IngestConfig not used here beyond DI requirements
+    Path ingestDir = Path.of(System.getenv().getOrDefault("INGEST_DIR", "storage/incoming"));
+    Path configDir =
+        Path.of(
+            System.getenv()
+                .getOrDefault(
+                    "INGEST_CONFIG_DIR", System.getProperty("user.home") + "/.config/ingest"));
+
+    System.out.printf("Managing partitions in %s as %s%n", IngestApp.sanitize(rawUrl), user);
+
+    DbConfig dbCfg = new DbConfig(rawUrl, user, password);
+    IngestConfig cfg = new IngestConfig(ingestDir, configDir);
+    IngestComponent component =
+        DaggerIngestComponent.builder().dbConfig(dbCfg).ingestConfig(cfg).build();
+    int code;
+    try (var ignore = component.dataSourceCloseable()) {
+      CommandLine cmd = new CommandLine(new PartitionTool(component.dslContext(), System.out));
+      cmd.registerConverter(YearMonth.class, YearMonth::parse);
+      code = cmd.execute(args);
+    }
+    System.exit(code);
+  }
+
+  @Override
+  public Integer call() {
+    TransactionPartitionManager manager =
+        new TransactionPartitionManager(
+            ctx, monthsAhead, retainMonths, Clock.systemUTC(), new MetricsRegistry());
+    if (list) {
+      out.println("attached: " + manager.attached());
+      out.println("detached: " + manager.detached());
+      return 0;
+    }
+    if (attach.isEmpty() && detach.isEmpty()) {
+      TransactionPartitionManager.Maintenance done = manager.maintain();
+      out.printf("created: %s%ndetached: %s%n", done.created(), done.detached());
+      return 0;
+    }
+    for (YearMonth month : detach) {
+      manager.detach(month);
+      out.println("detached " + month);
+    }
+    for (YearMonth month : attach) {
+      manager.attach(month);
+      out.println("attached " + month);
+    }
+    return 0;
+  }
+}
@@ -0,0 +1,72 @@
+package org.artificers.ingest.tools;
+
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+import org.artificers.ingest.app.IngestApp;
+import org.artificers.ingest.config.DbConfig;
+import org.artificers.ingest.config.IngestConfig;
+import org.artificers.ingest.di.DaggerIngestComponent;
+import org.artificers.ingest.di.IngestComponent;
+import org.artificers.ingest.service.RollupRepository;
+import org.jooq.DSLContext;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+
+/** Recomputes the daily and monthly rollup tables from {@code transactions}. */
+@Command(
+    name = "rollup-rebuild",
+    description =
+        "Recompute daily_account_totals and monthly_category_totals from transactions in one"
+            + " transaction",
+    mixinStandardHelpOptions = true)
+public final class RebuildRollups implements Callable<Integer> {
+  private final DSLContext ctx;
+  private final RollupRepository rollups;
+  private final PrintStream out;
+
+  public RebuildRollups(DSLContext ctx, RollupRepository rollups, PrintStream out) {
+    this.ctx = ctx;
+    this.rollups = rollups;
+    this.out = out;
+  }
+
+  public static void main(String[] args) throws Exception {
+    String rawUrl = System.getenv("DB_URL");
+    String user = System.getenv("DB_USER");
+    String password = System.getenv("DB_PASSWORD");
+
+    // IngestConfig not used here beyond DI requirements
+    Path ingestDir = Path.of(System.getenv().getOrDefault("INGEST_DIR", "storage/incoming"));
+    Path configDir =
+        Path.of(
+            System.getenv()
+                .getOrDefault(
+                    "INGEST_CONFIG_DIR", System.getProperty("user.home") + "/.config/ingest"));
+
+    System.out.printf("Rebuilding rollups in %s as %s%n", IngestApp.sanitize(rawUrl), user);
+
+    DbConfig dbCfg = new DbConfig(rawUrl, user, password);
+    IngestConfig cfg = new IngestConfig(ingestDir, configDir);
+    IngestComponent component =
+        DaggerIngestComponent.builder().dbConfig(dbCfg).ingestConfig(cfg).build();
+    int code;
+    try (var ignore = component.dataSourceCloseable()) {
+      code =
+          new CommandLine(
+                  new RebuildRollups(component.dslContext(), new RollupRepository(), System.out))
+              .execute(args);
+    }
+    System.exit(code);
+  }
+
+  @Override
+  public Integer call() {
+    long start = System.nanoTime();
+    RollupRepository.Rebuilt rebuilt = rollups.rebuild(ctx);
+    out.printf(
+        "daily_account_totals: %d rows%nmonthly_category_totals: %d rows%nrebuilt in %d ms%n",
+        rebuilt.dailyRows(), rebuilt.monthlyRows(), (System.nanoTime() - start) / 1_000_000);
+    return 0;
+  }
+}
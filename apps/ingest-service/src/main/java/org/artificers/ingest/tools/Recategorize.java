@@ -0,0 +1,101 @@
+package org.artificers.ingest.tools;
+
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Callable;
+import org.artificers.ingest.app.IngestApp;
+import org.artificers.ingest.config.DbConfig;
+import org.artificers.ingest.config.IngestConfig;
+import org.artificers.ingest.di.DaggerIngestComponent;
+import org.artificers.ingest.di.IngestComponent;
+import org.artificers.ingest.rules.Categorizer;
+import org.artificers.ingest.service.TransactionRepository;
+import org.jooq.DSLContext;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+/**
+ * Re-applies the category rules to {@code unified_category} of existing transactions, for the
+ * institutions whose rules changed since they were last applied.
+ */
+@Command(
+    name = "recategorize",
+    description =
+        "Rewrite transactions.unified_category from the current "
+            + Categorizer.FILE_NAME
+            + " rules for institutions whose rules changed",
+    mixinStandardHelpOptions = true)
+public final class Recategorize implements Callable<Integer> {
+  @Option(
+      names = "--institution",
+      paramLabel = "CODE",
+      description = "Only recategorize these institutions, e.g. ch (default: all)")
+  List<String> institutions = List.of();
+
+  @Option(names = "--all", description = "Recategorize even institutions whose rules are unchanged")
+  boolean all;
+
+  private final DSLContext ctx;
+  private final TransactionRepository repository;
+  private final PrintStream out;
+
+  public Recategorize(DSLContext ctx, TransactionRepository repository, PrintStream out) {
+    this.ctx = ctx;
+    this.repository = repository;
+    this.out = out;
+  }
+
+  public static void main(String[] args) throws Exception {
+    String rawUrl = System.getenv("DB_URL");
+    String user = System.getenv("DB_USER");
+    String password = System.getenv("DB_PASSWORD");
+
+    Path ingestDir = Path.of(System.getenv().getOrDefault("INGEST_DIR", "storage/incoming"));
+    Path configDir =
+        Path.of(
+            System.getenv()
+                .getOrDefault(
+                    "INGEST_CONFIG_DIR", System.getProperty("user.home") + "/.config/ingest"));
+
+    System.out.printf(
+        "Recategorizing %s as %s with %s%n",
+        IngestApp.sanitize(rawUrl), user, configDir.resolve(Categorizer.FILE_NAME));
+
+    DbConfig dbCfg = new DbConfig(rawUrl, user, password);
+    IngestConfig cfg = new IngestConfig(ingestDir, configDir);
+    IngestComponent component =
+        DaggerIngestComponent.builder().dbConfig(dbCfg).ingestConfig(cfg).build();
+    int code;
+    try (var ignore = component.dataSourceCloseable()) {
+      code =
+          new CommandLine(
+                  new Recategorize(
+                      component.dslContext(), component.transactionRepository(), System.out))
+              .execute(args);
+    }
+    System.exit(code);
+  }
+
+  @Override
+  public Integer call() {
+    long start = System.nanoTime();
+    List<TransactionRepository.Recategorized> results =
+        repository.recategorize(
+            ctx, i -> institutions.isEmpty() || institutions.contains(i.toLowerCase()), all);
+    for (TransactionRepository.Recategorized r : results) {
+      if (r.skipped()) {
+        out.printf("%s: rules unchanged, skipped%n", r.institution());
+      } else {
+        out.printf(
+            "%s: %d rows read, %d changed%n", r.institution(), r.rowsRead(), r.rowsChanged());
+      }
+    }
+    out.printf(
+        "unified_category: %d rows changed in %d ms%n",
+        results.stream().mapToInt(TransactionRepository.Recategorized::rowsChanged).sum(),
+        (System.nanoTime() - start) / 1_000_000);
+    return 0;
+  }
+}
@@ -0,0 +1,87 @@
+package org.artificers.ingest.tools;
+
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import org.artificers.ingest.app.IngestApp;
+import org.artificers.ingest.config.DbConfig;
+import org.artificers.ingest.config.IngestConfig;
+import org.artificers.ingest.di.DaggerIngestComponent;
+import org.artificers.ingest.di.IngestComponent;
+import org.artificers.ingest.service.ReceiptMatcher;
+import org.jooq.DSLContext;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+/** Runs the {@link ReceiptMatcher} outside ingest, e.g. after receipts are captured. */
+@Command(
+    name = "receipt-match",
+    description = "Link captured receipts to the card transactions they paid for",
+    mixinStandardHelpOptions = true)
+public final class ReceiptMatchTool implements Callable<Integer> {
+  @Option(
+      names = "--tolerance-days",
+      description = "Days a receipt and its transaction may be apart (default: 2)")
+  long toleranceDays = ReceiptMatcher.DEFAULT_TOLERANCE.toDays();
+
+  @Option(
+      names = "--min-score",
+      description = "Lowest merchant similarity, 0 to 1, that links a receipt (default: 0.3)")
+  double minScore = ReceiptMatcher.DEFAULT_MIN_SCORE;
+
+  private final DSLContext ctx;
+  private final PrintStream out;
+
+  public ReceiptMatchTool(DSLContext ctx, PrintStream out) {
+    this.ctx = ctx;
+    this.out = out;
+  }
+
+  public static void main(String[] args) throws Exception {
+    String rawUrl = System.getenv("DB_URL");
+    String user = System.getenv("DB_USER");
+    String password = System.getenv("DB_PASSWORD");
+
+    Path ingestDir = Path.of(System.getenv().getOrDefault("INGEST_DIR", "storage/incoming"));
+    Path configDir =
+        Path.of(
+            System.getenv()
+                .getOrDefault(
+                    "INGEST_CONFIG_DIR", System.getProperty("user.home") + "/.config/ingest"));
+
+    System.out.printf("Matching receipts in %s as %s%n", IngestApp.sanitize(rawUrl), user);
+
+    DbConfig dbCfg = new DbConfig(rawUrl, user, password);
+    IngestConfig cfg = new IngestConfig(ingestDir, configDir);
+    IngestComponent component =
+        DaggerIngestComponent.builder().dbConfig(dbCfg).ingestConfig(cfg).build();
+    int code;
+    try (var ignore = component.dataSourceCloseable()) {
+      code =
+          new CommandLine(new ReceiptMatchTool(component.dslContext(), System.out)).execute(args);
+    }
+    System.exit(code);
+  }
+
+  @Override
+  public Integer call() {
+    ReceiptMatcher matcher = new ReceiptMatcher(ctx, Duration.ofDays(toleranceDays), minScore);
+    long start = System.nanoTime();
+    ReceiptMatcher.Result result = matcher.match(ctx);
+    if (!result.available()) {
+      out.println("receipt_transactions not found; apply the plutary migrations first");
+      return 1;
+    }
+    out.printf(
+        "receipt_links: %d unlinked receipts, %d transactions indexed, %d candidates scored, %d"
+            + " linked in %d ms%n",
+        result.receipts(),
+        result.transactions(),
+        result.candidates(),
+        result.linked(),
+        (System.nanoTime() - start) / 1_000_000);
+    return 0;
+  }
+}
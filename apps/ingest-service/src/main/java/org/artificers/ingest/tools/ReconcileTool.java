@@ -0,0 +1,155 @@
+package org.artificers.ingest.tools;
+
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Callable;
+import org.artificers.ingest.app.IngestApp;
+import org.artificers.ingest.config.DbConfig;
+import org.artificers.ingest.config.IngestConfig;
+import org.artificers.ingest.di.DaggerIngestComponent;
+import org.artificers.ingest.di.IngestComponent;
+import org.artificers.ingest.service.RollupRepository;
+import org.artificers.ingest.service.StatementReconciler;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+/**
+ * Compares archived statement files with {@code transactions} using a {@link StatementReconciler}.
+ */
+@Command(
+    name = "reconcile",
+    description =
+        "Re-parse archived CSVs and report the months and rows where they and transactions differ",
+    mixinStandardHelpOptions = true)
+public final class ReconcileTool implements Callable<Integer> {
+  @Option(
+      names = "--dir",
+      defaultValue = "${env:INGEST_DIR:-storage/incoming}/processed",
+      description = "Archived statements (default: ${DEFAULT-VALUE})")
+  Path dir;
+
+  @Option(
+      names = "--account",
+      paramLabel = "SHORTHAND",
+      description = "Only reconcile these accounts, e.g. ch1234 (default: all)")
+  List<String> accounts = List.of();
+
+  @Option(
+      names = "--deep",
+      description = "Recompute months from transactions instead of trusting transaction_checksums")
+  boolean deep;
+
+  @Option(
+      names = "--limit",
+      defaultValue = "20",
+      description = "Rows printed per differing month and kind (default: ${DEFAULT-VALUE})")
+  int limit;
+
+  private final StatementReconciler reconciler;
+  private final PrintStream out;
+
+  public ReconcileTool(StatementReconciler reconciler, PrintStream out) {
+    this.reconciler = reconciler;
+    this.out = out;
+  }
+
+  public static void main(String[] args) throws Exception {
+    String rawUrl = System.getenv("DB_URL");
+    String user = System.getenv("DB_USER");
+    String password = System.getenv("DB_PASSWORD");
+
+    Path ingestDir = Path.of(System.getenv().getOrDefault("INGEST_DIR", "storage/incoming"));
+    Path configDir =
+        Path.of(
+            System.getenv()
+                .getOrDefault(
+                    "INGEST_CONFIG_DIR", System.getProperty("user.home") + "/.config/ingest"));
+
+    System.out.printf("Reconciling against %s as %s%n", IngestApp.sanitize(rawUrl), user);
+
+    DbConfig dbCfg = new DbConfig(rawUrl, user, password);
+    IngestConfig cfg = new IngestConfig(ingestDir, configDir);
+    IngestComponent component =
+        DaggerIngestComponent.builder().dbConfig(dbCfg).ingestConfig(cfg).build();
+    int code;
+    try (var ignore = component.dataSourceCloseable()) {
+      StatementReconciler reconciler =
+          new StatementReconciler(
+              component.dslContext(), component.accountShorthandParser(), component.csvReaders());
+      code = new CommandLine(new ReconcileTool(reconciler, System.out)).execute(args);
+    }
+    System.exit(code);
+  }
+
+  @Override
+  public Integer call() throws Exception {
+    long start = System.nanoTime();
+    StatementReconciler.Result result =
+        reconciler.reconcile(
+            dir, s -> accounts.isEmpty() || accounts.contains(s.toLowerCase()), deep);
+    for (StatementReconciler.Skipped s : result.skipped()) {
+      out.printf("skipped %s: %s%n", s.file(), s.reason());
+    }
+    for (StatementReconciler.AccountResult a : result.accounts()) {
+      out.printf(
+          "%s account_id=%s months=%d root files=%.12s db=%.12s %s%n",
+          a.shorthand(),
+          a.accountId() == null ? "none" : a.accountId(),
+          a.months(),
+          a.filesRoot(),
+          a.dbRoot(),
+          a.matches() ? "match" : a.diffs().size() + " month(s) differ");
+      for (StatementReconciler.MonthDiff d : a.diffs()) {
+        out.printf(
+            "  %s files=%s db=%s%n",
+            d.month().equals(RollupRepository.UNDATED) ? "undated" : d.month(),
+            node(d.files().count(), d.files().amountCents()),
+            node(d.db().count(), d.db().amountCents()));
+        if (d.sameRows()) {
+          out.println(
+              deep
+                  ? "    rows match by hash; a row was edited outside ingest"
+                  : "    rows match; transaction_checksums is stale (db_validate --verify --all"
+                      + " --repair)");
+        }
+        rows("missing in db", d.missingInDb());
+        rows("extra in db", d.extraInDb());
+      }
+    }
+    out.printf(
+        "reconciled %d files, %d rows, %d accounts (%d differ), read rows of %d months in %d ms%n",
+        result.files(),
+        result.rows(),
+        result.accounts().size(),
+        result.accounts().stream().filter(a -> !a.matches()).count(),
+        result.monthsRead(),
+        (System.nanoTime() - start) / 1_000_000);
+    return result.matches() ? 0 : 1;
+  }
+
+  private void rows(String label, List<StatementReconciler.Row> rows) {
+    rows.stream()
+        .limit(limit)
+        .forEach(
+            r ->
+                out.printf(
+                    "    %s: %s %d (%s)%n", label, describe(r), r.amountCents(), r.source()));
+    if (rows.size() > limit) {
+      out.printf("    %s: %d more%n", label, rows.size() - limit);
+    }
+  }
+
+  private static String node(long count, long cents) {
+    return count + " rows/" + cents + " cents";
+  }
+
+  private static String describe(StatementReconciler.Row r) {
+    return (r.occurredAt() == null ? "undated" : r.occurredAt().toString())
+        + " "
+        + r.merchant()
+        + " hash="
+        + r.hash().substring(0, 12);
+  }
+}
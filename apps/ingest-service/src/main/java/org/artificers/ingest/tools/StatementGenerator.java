@@ -0,0 +1,352 @@
+package org.artificers.ingest.tools;
+
+import com.opencsv.CSVReader;
+import com.opencsv.CSVWriter;
+import com.opencsv.exceptions.CsvValidationException;
+import java.io.IOException;
+import java.io.Writer;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import org.artificers.ingest.csv.ConfigurableCsvReader;
+import org.artificers.ingest.csv.FieldTarget;
+
+/**
+ * Deterministic statement rows in the column layout of any {@link ConfigurableCsvReader.Mapping}.
+ *
+ * <p>Every row is a pure function of the seed and its global row index, so files stream in constant
+ * memory and two files generated with the same seed share exactly the rows of their overlapping
+ * index ranges. Dates advance with the index at {@link Settings#rowsPerDay()}; merchants follow a
+ * Zipf distribution over a fixed catalog with log-normal amounts. A {@link
+ * Settings#duplicateRatio()} share of rows repeats one of the preceding {@value #DUPLICATE_WINDOW}
+ * rows verbatim.
+ */
+public final class StatementGenerator {
+  /** How far back a duplicate row may reach. */
+  public static final int DUPLICATE_WINDOW = 256;
+
+  private static final long DUPLICATE_SALT = 0x6A09E667F3BCC909L;
+  private static final long EXISTING_SALT = 0xBB67AE8584CAA73BL;
+  private static final double ZIPF_EXPONENT = 1.1;
+
+  private static final Merchant[] CATALOG = {
+    new Merchant("AMAZON MKTPL*%s", "Shopping", 3_200, 0.9, true),
+    new Merchant("SAFEWAY #%s", "Groceries", 6_500, 0.6, true),
+    new Merchant("SQ *BLUE BOTTLE COFFEE", "Food & Drink", 650, 0.3, false),
+    new Merchant("UBER   *TRIP", "Travel", 1_900, 0.5, false),
+    new Merchant("SHELL OIL %s", "Gas", 4_800, 0.4, true),
+    new Merchant("TRADER JOE'S #%s", "Groceries", 5_400, 0.5, true),
+    new Merchant("STARBUCKS STORE %s", "Food & Drink", 720, 0.3, true),
+    new Merchant("TARGET        %s", "Shopping", 4_100, 0.8, true),
+    new Merchant("DOORDASH*%s", "Food & Drink", 3_300, 0.4, true),
+    new Merchant("TST*ROYAL BAKEHOUSE", "Food & Drink", 1_400, 0.4, false),
+    new Merchant("COSTCO WHSE #%s", "Groceries", 14_000, 0.6, true),
+    new Merchant("NETFLIX.COM", "Entertainment", 1_549, 0.05, false),
+    new Merchant("SPOTIFY USA", "Entertainment", 1_199, 0.05, false),
+    new Merchant("CHEVRON %s", "Gas", 5_100, 0.4, true),
+    new Merchant("WALGREENS #%s", "Health & Wellness", 2_300, 0.7, true),
+    new Merchant("LYFT   *RIDE", "Travel", 2_100, 0.5, false),
+    new Merchant("HOME DEPOT #%s", "Home", 8_800, 0.9, true),
+    new Merchant("JetBrains Americas INC", "Shopping", 2_490, 0.1, false),
+    new Merchant("PG&E WEB ONLINE", "Bills & Utilities", 11_500, 0.3, false),
+    new Merchant("COMCAST CABLE COMM", "Bills & Utilities", 8_999, 0.1, false),
+    new Merchant("DELTA AIR %s", "Travel", 38_000, 0.5, true),
+    new Merchant("MARRIOTT %s", "Travel", 42_000, 0.6, true),
+    new Merchant("CVS/PHARMACY #%s", "Health & Wellness", 1_800, 0.7, true),
+    new Merchant("APPLE.COM/BILL", "Shopping", 299, 1.0, false),
+    new Merchant("CHIPOTLE %s", "Food & Drink", 1_350, 0.3, true),
+    new Merchant("IKEA %s", "Home", 16_000, 0.8, true),
+    new Merchant("PLANET FITNESS", "Health & Wellness", 2_499, 0.05, false),
+    new Merchant("BEST BUY %s", "Shopping", 21_000, 0.9, true),
+    new Merchant("ALASKA AIR %s", "Travel", 29_000, 0.5, true),
+    new Merchant("REI #%s", "Shopping", 9_500, 0.7, true),
+  };
+
+  private static final double[] CUMULATIVE_WEIGHTS = zipf(CATALOG.length);
+
+  private static final String[] PAYMENTS = {
+    "Payment Thank You-Mobile", "AUTOPAY PAYMENT - THANK YOU"
+  };
+
+  private final Settings settings;
+  private final String[] header;
+  private final Column[] columns;
+  private final String currency = "USD";
+
+  public StatementGenerator(ConfigurableCsvReader.Mapping mapping, Settings settings) {
+    this.settings = settings;
+    List<Column> cols = new ArrayList<>();
+    boolean splitAmounts =
+        mapping.fields().entrySet().stream()
+                .filter(e -> e.getValue().target() == FieldTarget.AMOUNT_CENTS)
+                .count()
+            > 1;
+    for (Map.Entry<String, ConfigurableCsvReader.FieldSpec> e : mapping.fields().entrySet()) {
+      ConfigurableCsvReader.FieldSpec spec = e.getValue();
+      String pattern =
+          spec.format() == null || spec.format().isBlank() ? settings.datePattern() : spec.format();
+      cols.add(
+          new Column(
+              label(e.getKey()),
+              spec.target(),
+              "int".equals(spec.type()),
+              !splitAmounts
+                  ? AmountSide.SIGNED
+                  : e.getKey().contains("debit") ? AmountSide.DEBIT : AmountSide.CREDIT,
+              DateTimeFormatter.ofPattern(pattern, Locale.US).withZone(ZoneOffset.UTC)));
+    }
+    this.columns = cols.toArray(Column[]::new);
+    this.header = Arrays.stream(columns).map(Column::label).toArray(String[]::new);
+  }
+
+  /** Header row: mapping keys in title case, which the readers normalise back to the keys. */
+  public String[] header() {
+    return header.clone();
+  }
+
+  /** The row at {@code index}, after duplicate substitution. */
+  public String[] row(long index) {
+    return render(source(index));
+  }
+
+  /**
+   * Writes the header and rows {@code [firstIndex, firstIndex + rows)}.
+   *
+   * @return number of data rows written
+   */
+  public long write(Writer out, long firstIndex, long rows) throws IOException {
+    return write(out, firstIndex, rows, null, 0);
+  }
+
+  /**
+   * Like {@link #write(Writer, long, long)}, but about {@code existingRatio} of the rows are copied
+   * in order from {@code existing}, another statement for the same mapping, to overlap with it. Its
+   * columns are matched to this header by normalised name; once it runs out the remaining rows are
+   * generated.
+   */
+  public long write(
+      Writer out, long firstIndex, long rows, CSVReader existing, double existingRatio)
+      throws IOException {
+    if (existingRatio < 0 || existingRatio > 1) {
+      throw new IllegalArgumentException("existing ratio must be between 0 and 1");
+    }
+    int[] existingColumns = existing == null ? null : alignColumns(readRow(existing));
+    CSVWriter csv = new CSVWriter(out);
+    csv.writeNext(header, false);
+    for (long i = firstIndex; i < firstIndex + rows; i++) {
+      String[] row = null;
+      if (existingColumns != null && random(i, EXISTING_SALT).nextDouble() < existingRatio) {
+        String[] copied = readRow(existing);
+        if (copied == null) {
+          existingColumns = null;
+        } else {
+          row = new String[columns.length];
+          for (int c = 0; c < row.length; c++) {
+            int from = existingColumns[c];
+            row[c] = from >= 0 && from < copied.length ? copied[from] : "";
+          }
+        }
+      }
+      csv.writeNext(row == null ? row(i) : row, false);
+    }
+    csv.flush();
+    if (csv.checkError()) {
+      throw new IOException("Failed to write statement rows");
+    }
+    return rows;
+  }
+
+  private long source(long index) {
+    long i = index;
+    while (i > 0) {
+      SplittableRandom r = random(i, DUPLICATE_SALT);
+      if (r.nextDouble() >= settings.duplicateRatio()) {
+        break;
+      }
+      i -= 1 + r.nextLong(Math.min(DUPLICATE_WINDOW, i));
+    }
+    return i;
+  }
+
+  private String[] render(long index) {
+    SplittableRandom r = random(index, 0);
+    LocalDate day = settings.startDate().plusDays((long) (index / settings.rowsPerDay()));
+    var occurred = day.atStartOfDay(ZoneOffset.UTC).plusSeconds(r.nextInt(86_400)).toInstant();
+    double p = r.nextDouble();
+    int postedLag = p < 0.2 ? 0 : p < 0.7 ? 1 : p < 0.9 ? 2 : 3;
+    var posted = occurred.plusSeconds(postedLag * 86_400L);
+
+    boolean credit = r.nextDouble() < settings.creditRatio();
+    boolean payment = credit && r.nextDouble() < 0.7;
+    Merchant m = CATALOG[pick(r.nextDouble())];
+    String merchant;
+    String category;
+    String type;
+    long cents;
+    if (payment) {
+      merchant = PAYMENTS[r.nextInt(PAYMENTS.length)];
+      category = "Payment/Credit";
+      type = "Payment";
+      cents = Math.round(50_000 * Math.exp(0.8 * r.nextGaussian()));
+    } else {
+      merchant = m.name(r);
+      category = m.category();
+      type = credit ? "Return" : "Sale";
+      cents = Math.round(m.medianCents() * Math.exp(m.sigma() * r.nextGaussian()));
+    }
+    cents = Math.max(1, cents);
+    String memo = r.nextInt(20) == 0 ? "Recurring" : "";
+
+    String[] row = new String[columns.length];
+    for (int c = 0; c < columns.length; c++) {
+      Column col = columns[c];
+      row[c] =
+          switch (col.target()) {
+            case OCCURRED_AT -> col.dates().format(occurred);
+            case POSTED_AT -> col.dates().format(posted);
+            case AMOUNT_CENTS ->
+                switch (col.side()) {
+                  case SIGNED -> amount(col, credit ? cents : -cents);
+                  case DEBIT -> credit ? "" : amount(col, cents);
+                  case CREDIT -> credit ? amount(col, cents) : "";
+                };
+            case CURRENCY -> currency;
+            case MERCHANT -> merchant;
+            case CATEGORY -> category;
+            case TYPE -> type;
+            case MEMO -> memo;
+            case RAW -> "REF" + index;
+          };
+    }
+    return row;
+  }
+
+  private int[] alignColumns(String[] existingHeader) {
+    int[] map = new int[columns.length];
+    Arrays.fill(map, -1);
+    if (existingHeader == null) {
+      return map;
+    }
+    for (int c = 0; c < columns.length; c++) {
+      String key = normalize(columns[c].label());
+      for (int e = 0; e < existingHeader.length; e++) {
+        if (normalize(existingHeader[e]).equals(key)) {
+          map[c] = e;
+          break;
+        }
+      }
+    }
+    return map;
+  }
+
+  private static String[] readRow(CSVReader reader) throws IOException {
+    try {
+      return reader.readNext();
+    } catch (CsvValidationException e) {
+      throw new IOException(e);
+    }
+  }
+
+  private static String amount(Column col, long cents) {
+    if (col.integer()) {
+      return Long.toString(cents);
+    }
+    long abs = Math.abs(cents);
+    return (cents < 0 ? "-" : "") + abs / 100 + "." + (abs % 100 < 10 ? "0" : "") + abs % 100;
+  }
+
+  private SplittableRandom random(long index, long salt) {
+    return new SplittableRandom(settings.seed() * 0x9E3779B97F4A7C15L + (index ^ salt));
+  }
+
+  private static int pick(double u) {
+    int i = Arrays.binarySearch(CUMULATIVE_WEIGHTS, u);
+    return Math.min(CATALOG.length - 1, i >= 0 ? i : -i - 1);
+  }
+
+  private static double[] zipf(int n) {
+    double[] cumulative = new double[n];
+    double total = 0;
+    for (int i = 0; i < n; i++) {
+      total += 1 / Math.pow(i + 1, ZIPF_EXPONENT);
+      cumulative[i] = total;
+    }
+    for (int i = 0; i < n; i++) {
+      cumulative[i] /= total;
+    }
+    return cumulative;
+  }
+
+  private static String label(String key) {
+    StringBuilder b = new StringBuilder(key.length());
+    for (String word : key.split("_")) {
+      if (word.isEmpty()) continue;
+      if (b.length() > 0) b.append(' ');
+      b.append(Character.toUpperCase(word.charAt(0))).append(word.substring(1));
+    }
+    return b.toString();
+  }
+
+  /** Same normalisation as the CSV readers apply to headers. */
+  private static String normalize(String h) {
+    return h.toLowerCase().replaceAll("[. ]", "_").replaceAll("_+", "_").replaceAll("^_|_$", "");
+  }
+
+  /**
+   * Generation parameters.
+   *
+   * @param seed seed every row is derived from
+   * @param startDate date of row 0
+   * @param rowsPerDay average rows per calendar day
+   * @param creditRatio share of payments and returns among the rows
+   * @param duplicateRatio share of rows repeating a recent row verbatim
+   * @param datePattern pattern for date columns whose mapping gives no format
+   */
+  public record Settings(
+      long seed,
+      LocalDate startDate,
+      double rowsPerDay,
+      double creditRatio,
+      double duplicateRatio,
+      String datePattern) {
+    public Settings {
+      if (rowsPerDay <= 0) throw new IllegalArgumentException("rowsPerDay must be positive");
+      if (creditRatio < 0 || creditRatio > 1) {
+        throw new IllegalArgumentException("creditRatio must be between 0 and 1");
+      }
+      if (duplicateRatio < 0 || duplicateRatio >= 1) {
+        throw new IllegalArgumentException("duplicateRatio must be in [0, 1)");
+      }
+    }
+
+    public Settings(long seed) {
+      this(seed, LocalDate.of(2020, 1, 1), 5, 0.1, 0, "yyyy-MM-dd");
+    }
+  }
+
+  private enum AmountSide {
+    SIGNED,
+    DEBIT,
+    CREDIT
+  }
+
+  private record Column(
+      String label,
+      FieldTarget target,
+      boolean integer,
+      AmountSide side,
+      DateTimeFormatter dates) {}
+
+  private record Merchant(
+      String pattern, String category, long medianCents, double sigma, boolean numbered) {
+    String name(SplittableRandom r) {
+      return numbered ? pattern.replace("%s", Integer.toString(1000 + r.nextInt(40))) : pattern;
+    }
+  }
+}
@@ -0,0 +1,91 @@
+package org.artificers.ingest.tools;
+
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import org.artificers.ingest.app.IngestApp;
+import org.artificers.ingest.config.DbConfig;
+import org.artificers.ingest.config.IngestConfig;
+import org.artificers.ingest.di.DaggerIngestComponent;
+import org.artificers.ingest.di.IngestComponent;
+import org.artificers.ingest.service.TransferMatcher;
+import org.jooq.DSLContext;
+import picocli.CommandLine;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+/** Runs the {@link TransferMatcher} outside ingest, incrementally or from scratch. */
+@Command(
+    name = "transfer-match",
+    description = "Link opposite-signed, equal-amount transactions across accounts",
+    mixinStandardHelpOptions = true)
+public final class TransferMatchTool implements Callable<Integer> {
+  @Option(
+      names = "--window-days",
+      description = "Days the two sides may be apart (default: INGEST_TRANSFER_WINDOW_DAYS or 3)")
+  Long windowDays;
+
+  @Option(names = "--rebuild", description = "Delete every link and match all transactions again")
+  boolean rebuild;
+
+  private final DSLContext ctx;
+  private final Duration defaultWindow;
+  private final PrintStream out;
+
+  public TransferMatchTool(DSLContext ctx, Duration defaultWindow, PrintStream out) {
+    this.ctx = ctx;
+    this.defaultWindow = defaultWindow;
+    this.out = out;
+  }
+
+  public static void main(String[] args) throws Exception {
+    String rawUrl = System.getenv("DB_URL");
+    String user = System.getenv("DB_USER");
+    String password = System.getenv("DB_PASSWORD");
+
+    Path ingestDir = Path.of(System.getenv().getOrDefault("INGEST_DIR", "storage/incoming"));
+    Path configDir =
+        Path.of(
+            System.getenv()
+                .getOrDefault(
+                    "INGEST_CONFIG_DIR", System.getProperty("user.home") + "/.config/ingest"));
+    Duration window =
+        Duration.ofDays(
+            Long.parseLong(
+                System.getenv()
+                    .getOrDefault(
+                        "INGEST_TRANSFER_WINDOW_DAYS",
+                        Long.toString(TransferMatcher.DEFAULT_WINDOW.toDays()))));
+
+    System.out.printf("Matching transfers in %s as %s%n", IngestApp.sanitize(rawUrl), user);
+
+    DbConfig dbCfg = new DbConfig(rawUrl, user, password);
+    IngestConfig cfg = new IngestConfig(ingestDir, configDir);
+    IngestComponent component =
+        DaggerIngestComponent.builder().dbConfig(dbCfg).ingestConfig(cfg).build();
+    int code;
+    try (var ignore = component.dataSourceCloseable()) {
+      code =
+          new CommandLine(new TransferMatchTool(component.dslContext(), window, System.out))
+              .execute(args);
+    }
+    System.exit(code);
+  }
+
+  @Override
+  public Integer call() {
+    Duration window = windowDays == null ? defaultWindow : Duration.ofDays(windowDays);
+    TransferMatcher matcher = new TransferMatcher(ctx, window);
+    long start = System.nanoTime();
+    TransferMatcher.Result result = rebuild ? matcher.rebuild(ctx) : matcher.match(ctx);
+    out.printf(
+        "transfer_links: %d new rows, %d rows swept, %d linked within %d days in %d ms%n",
+        result.newRows(),
+        result.rowsRead(),
+        result.linked(),
+        window.toDays(),
+        (System.nanoTime() - start) / 1_000_000);
+    return 0;
+  }
+}
@@ -16,11 +16,17 @@ public class RunAllTests {
     DiscoverySelector[] selectors =
         new DiscoverySelector[] {
           DiscoverySelectors.selectPackage("org.artificers.ingest.app"),
+          DiscoverySelectors.selectPackage("org.artificers.ingest.audit"),
           DiscoverySelectors.selectPackage("org.artificers.ingest.cli"),
           DiscoverySelectors.selectPackage("org.artificers.ingest.csv"),
           DiscoverySelectors.selectPackage("org.artificers.ingest.di"),
+          DiscoverySelectors.selectPackage("org.artificers.ingest.jfr"),
+          DiscoverySelectors.selectPackage("org.artificers.ingest.metrics"),
           DiscoverySelectors.selectPackage("org.artificers.ingest.model"),
+          DiscoverySelectors.selectPackage("org.artificers.ingest.query"),
+          DiscoverySelectors.selectPackage("org.artificers.ingest.rules"),
           DiscoverySelectors.selectPackage("org.artificers.ingest.service"),
+          DiscoverySelectors.selectPackage("org.artificers.ingest.tools"),
           DiscoverySelectors.selectPackage("org.artificers.jooq")
         };
     LauncherDiscoveryRequest request =
@@ -4,13 +4,16 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 
+import java.nio.file.Files;
 import java.nio.file.Path;
 import org.artificers.ingest.config.IngestConfig;
 import org.artificers.ingest.service.AccountShorthandParser;
 import org.artificers.ingest.service.DirectoryWatchService;
 import org.artificers.ingest.service.FileIngestionService;
 import org.artificers.ingest.service.IngestService;
+import org.artificers.ingest.service.TransactionPartitionManager;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import picocli.CommandLine;
 
 class IngestAppTest {
@@ -22,12 +25,15 @@ class IngestAppTest {
     DirectoryWatchService watch = mock(DirectoryWatchService.class);
     IngestConfig cfg = new IngestConfig(Path.of("storage/incoming"), Path.of("cfg"));
     AccountShorthandParser parser = new AccountShorthandParser();
+    TransactionPartitionManager partitions = mock(TransactionPartitionManager.class);
 
-    CommandLine cmd = new CommandLine(new IngestApp(service, fileService, watch, cfg, parser));
+    CommandLine cmd =
+        new CommandLine(new IngestApp(service, fileService, watch, cfg, parser, partitions));
     cmd.setCaseInsensitiveEnumValuesAllowed(true);
     int code = cmd.execute("--file=/tmp/ch1234.csv");
 
     verify(service).ingestFile(Path.of("/tmp/ch1234.csv"), "ch1234");
+    verifyNoInteractions(partitions);
     assertThat(code).isZero();
   }
 
@@ -38,12 +44,15 @@ class IngestAppTest {
     DirectoryWatchService watch = mock(DirectoryWatchService.class);
     IngestConfig cfg = new IngestConfig(Path.of("storage/incoming"), Path.of("cfg"));
     AccountShorthandParser parser = new AccountShorthandParser();
+    TransactionPartitionManager partitions = mock(TransactionPartitionManager.class);
 
-    CommandLine cmd = new CommandLine(new IngestApp(service, fileService, watch, cfg, parser));
+    CommandLine cmd =
+        new CommandLine(new IngestApp(service, fileService, watch, cfg, parser, partitions));
     cmd.setCaseInsensitiveEnumValuesAllowed(true);
     int code = cmd.execute("--mode=scan", "--input=/tmp/in");
 
     verify(fileService).scanAndIngest(Path.of("/tmp/in"));
+    verifyNoInteractions(partitions);
     assertThat(code).isZero();
   }
 
@@ -54,12 +63,34 @@ class IngestAppTest {
     DirectoryWatchService watch = mock(DirectoryWatchService.class);
     IngestConfig cfg = new IngestConfig(Path.of("storage/incoming"), Path.of("cfg"));
     AccountShorthandParser parser = new AccountShorthandParser();
+    TransactionPartitionManager partitions = mock(TransactionPartitionManager.class);
 
-    CommandLine cmd = new CommandLine(new IngestApp(service, fileService, watch, cfg, parser));
+    CommandLine cmd =
+        new CommandLine(new IngestApp(service, fileService, watch, cfg, parser, partitions));
     cmd.setCaseInsensitiveEnumValuesAllowed(true);
     int code = cmd.execute("--mode=scan");
 
     verify(fileService).scanAndIngest(Path.of("storage/incoming"));
     assertThat(code).isZero();
   }
+
+  @Test
+  void writesFlightRecordingWhenJfrOptionPresent(@TempDir Path dir) throws Exception {
+    IngestService service = mock(IngestService.class);
+    FileIngestionService fileService = mock(FileIngestionService.class);
+    DirectoryWatchService watch = mock(DirectoryWatchService.class);
+    IngestConfig cfg = new IngestConfig(Path.of("storage/incoming"), Path.of("cfg"));
+    AccountShorthandParser parser = new AccountShorthandParser();
+    TransactionPartitionManager partitions = mock(TransactionPartitionManager.class);
+    Path recording = dir.resolve("ingest.jfr");
+
+    CommandLine cmd =
+        new CommandLine(new IngestApp(service, fileService, watch, cfg, parser, partitions));
+    cmd.setCaseInsensitiveEnumValuesAllowed(true);
+    int code = cmd.execute("--jfr=" + recording, "--file=/tmp/ch1234.csv");
+
+    verify(service).ingestFile(Path.of("/tmp/ch1234.csv"), "ch1234");
+    assertThat(code).isZero();
+    assertThat(Files.size(recording)).isPositive();
+  }
 }
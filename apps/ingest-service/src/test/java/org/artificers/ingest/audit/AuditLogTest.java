@@ -0,0 +1,131 @@
+package org.artificers.ingest.audit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import org.artificers.ingest.metrics.MetricsRegistry;
+import org.artificers.ingest.model.GenericTransaction;
+import org.artificers.ingest.model.IngestRun;
+import org.artificers.ingest.model.Money;
+import org.artificers.ingest.model.TransactionRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+
+class AuditLogTest {
+  private final Logger logger = (Logger) LoggerFactory.getLogger(AuditLog.LOGGER);
+  private final ListAppender<ILoggingEvent> appender = new ListAppender<>();
+  private final AuditJsonLayout layout = new AuditJsonLayout();
+  private final ObjectMapper mapper = new ObjectMapper();
+  private Level previous;
+
+  @BeforeEach
+  void attach() {
+    previous = logger.getLevel();
+    logger.setLevel(Level.INFO);
+    appender.start();
+    logger.addAppender(appender);
+    layout.start();
+  }
+
+  @AfterEach
+  void detach() {
+    logger.detachAppender(appender);
+    logger.setLevel(previous);
+  }
+
+  @Test
+  void samplesRowsByHash() {
+    List<TransactionRecord> txs = new ArrayList<>();
+    for (int i = 0; i < 1_000; i++) {
+      txs.add(tx("h" + i));
+    }
+    Path file = Path.of("ch1234-jan.csv");
+
+    new AuditLog(0, new MetricsRegistry()).onTransactionsParsed(file, "ch1234", txs);
+    assertThat(appender.list).isEmpty();
+
+    MetricsRegistry registry = new MetricsRegistry();
+    AuditLog half = new AuditLog(0.5, registry);
+    half.onTransactionsParsed(file, "ch1234", txs);
+    int sampled = appender.list.size();
+    assertThat(sampled).isBetween(400, 600);
+    assertThat(registry.samples()).containsEntry("ingest_audit_rows_total", (double) sampled);
+    half.onTransactionsParsed(file, "ch1234", txs);
+    assertThat(appender.list).hasSize(2 * sampled);
+
+    appender.list.clear();
+    new AuditLog(1, new MetricsRegistry()).onTransactionsParsed(file, "ch1234", txs);
+    assertThat(appender.list).hasSize(1_000);
+  }
+
+  @Test
+  void rendersRowsAndFileSummariesAsJson() throws Exception {
+    AuditLog audit = new AuditLog(1, new MetricsRegistry());
+    audit.onTransactionsParsed(Path.of("/in/ch1234-jan.csv"), "ch1234", List.of(tx("abc")));
+    Instant start = Instant.parse("2024-01-01T00:00:00Z");
+    audit.onRunCompleted(
+        new IngestRun(
+            "ch1234-jan.csv",
+            "ch1234",
+            "ch",
+            7L,
+            1,
+            1,
+            0,
+            0,
+            42,
+            Duration.ZERO,
+            Duration.ZERO,
+            Duration.ZERO,
+            Duration.ZERO,
+            0,
+            0,
+            Duration.ZERO,
+            start,
+            start.plusMillis(250),
+            "success",
+            null));
+
+    assertThat(appender.list).hasSize(2);
+    JsonNode row = mapper.readTree(layout.doLayout(appender.list.get(0)));
+    assertThat(row.get("event").asText()).isEqualTo("transaction");
+    assertThat(row.get("file").asText()).isEqualTo("ch1234-jan.csv");
+    assertThat(row.get("hash").asText()).isEqualTo("abc");
+    assertThat(row.get("amount_cents").asLong()).isEqualTo(1250);
+    assertThat(row.get("raw").get("Description").asText()).isEqualTo("Coffee");
+
+    JsonNode summary = mapper.readTree(layout.doLayout(appender.list.get(1)));
+    assertThat(summary.get("event").asText()).isEqualTo("file");
+    assertThat(summary.get("account_id").asLong()).isEqualTo(7);
+    assertThat(summary.get("rows_inserted").asLong()).isEqualTo(1);
+    assertThat(summary.get("total_ms").asLong()).isEqualTo(250);
+    assertThat(summary.get("outcome").asText()).isEqualTo("success");
+  }
+
+  private static TransactionRecord tx(String hash) {
+    return new GenericTransaction(
+        "1234",
+        Instant.parse("2024-01-02T00:00:00Z"),
+        null,
+        new Money(1250, "USD"),
+        "Coffee",
+        "Food",
+        null,
+        null,
+        hash,
+        List.of("Description"),
+        List.of("Coffee"));
+  }
+}
@@ -7,16 +7,19 @@ import java.io.InputStream;
 import java.io.StringReader;
 import java.time.Instant;
 import java.util.List;
+import java.util.Map;
+import org.artificers.ingest.metrics.IngestMetrics;
+import org.artificers.ingest.metrics.MetricsRegistry;
 import org.artificers.ingest.model.TransactionRecord;
 import org.artificers.ingest.validation.BasicTransactionValidator;
 import org.junit.jupiter.api.Test;
 
 class ConfigurableCsvReaderTest {
-  private ConfigurableCsvReader reader(String name, ObjectMapper mapper) throws Exception {
+  private ConfigurableCsvReader reader(String name) throws Exception {
     try (InputStream in = getClass().getResourceAsStream("/mappings/" + name + ".json")) {
       ConfigurableCsvReader.Mapping mapping =
           new ObjectMapper().readValue(in, ConfigurableCsvReader.Mapping.class);
-      return new ConfigurableCsvReader(mapper, new BasicTransactionValidator(), mapping);
+      return new ConfigurableCsvReader(new BasicTransactionValidator(), mapping);
     }
   }
 
@@ -26,7 +29,7 @@ class ConfigurableCsvReaderTest {
         "Transaction Date,Post Date,Description,Category,Type,Amount,Memo\n"
             + "04/30/2025,04/30/2025,Payment Thank You-Mobile,,Payment,18.62,\n"
             + "04/27/2025,04/29/2025,JetBrains Americas INC,Shopping,Sale,-18.62,\n";
-    ConfigurableCsvReader reader = reader("ch", new ObjectMapper());
+    ConfigurableCsvReader reader = reader("ch");
     List<TransactionRecord> txs = reader.read(null, new StringReader(csv), "1234");
     assertEquals(2, txs.size());
     TransactionRecord t0 = txs.get(0);
@@ -48,7 +51,7 @@ class ConfigurableCsvReaderTest {
         "Transaction Date,Posted Date,Card No.,Description,Category,Debit,Credit\n"
             + "2025-04-30,2025-04-30,1828,CAPITAL ONE MOBILE PYMT,Payment/Credit,,600.00\n"
             + "2025-04-28,2025-04-30,1828,TST*ROYAL BAKEHOUSE,Dining,14.12,\n";
-    ConfigurableCsvReader reader = reader("co", new ObjectMapper());
+    ConfigurableCsvReader reader = reader("co");
     List<TransactionRecord> txs = reader.read(null, new StringReader(csv), "1828");
     assertEquals(2, txs.size());
     TransactionRecord t0 = txs.get(0);
@@ -76,8 +79,7 @@ class ConfigurableCsvReaderTest {
             + "}}";
     ConfigurableCsvReader.Mapping m =
         new ObjectMapper().readValue(mapping, ConfigurableCsvReader.Mapping.class);
-    ConfigurableCsvReader reader =
-        new ConfigurableCsvReader(new ObjectMapper(), new BasicTransactionValidator(), m);
+    ConfigurableCsvReader reader = new ConfigurableCsvReader(new BasicTransactionValidator(), m);
     String csv = "date,debit,credit\n" + "2025-04-30,100,0\n" + "2025-04-29,0,200\n";
     List<TransactionRecord> txs = reader.read(null, new StringReader(csv), "1");
     assertEquals(2, txs.size());
@@ -86,23 +88,22 @@ class ConfigurableCsvReaderTest {
   }
 
   @Test
-  void usesInjectedMapper() throws Exception {
-    class CountingMapper extends ObjectMapper {
-      int calls = 0;
-
-      @Override
-      public com.fasterxml.jackson.databind.JsonNode valueToTree(Object fromValue) {
-        calls++;
-        return super.valueToTree(fromValue);
-      }
-    }
-    CountingMapper mapper = new CountingMapper();
-    ConfigurableCsvReader reader = reader("ch", mapper);
+  void keepsRawValuesInHeaderOrder() throws Exception {
+    ConfigurableCsvReader reader = reader("ch");
     String csv =
         "Transaction Date,Post Date,Description,Category,Type,Amount,Memo\n"
-            + "04/30/2025,04/30/2025,Payment Thank You-Mobile,,Payment,18.62,\n";
-    reader.read(null, new StringReader(csv), "1234");
-    assertTrue(mapper.calls > 0);
+            + "04/30/2025,04/30/2025,Payment Thank You-Mobile,,Payment,18.62,\n"
+            + "04/27/2025,04/29/2025,JetBrains Americas INC,Shopping,Sale,-18.62,\n";
+    List<TransactionRecord> txs = reader.read(null, new StringReader(csv), "1234");
+    assertEquals(
+        List.of(
+            "transaction_date", "post_date", "description", "category", "type", "amount", "memo"),
+        txs.get(0).rawHeaders());
+    assertEquals(txs.get(0).rawHeaders(), txs.get(1).rawHeaders());
+    assertEquals(
+        List.of(
+            "04/27/2025", "04/29/2025", "JetBrains Americas INC", "Shopping", "Sale", "-18.62", ""),
+        txs.get(1).rawValues());
   }
 
   @Test
@@ -110,17 +111,49 @@ class ConfigurableCsvReaderTest {
     String csv =
         "Transaction Date,Post Date,Description,Category,Type,Amount,Memo,Extra\n"
             + "04/30/2025,04/30/2025,Payment Thank You-Mobile,,Payment,18.62,,note\n";
-    ConfigurableCsvReader reader = reader("ch", new ObjectMapper());
+    ConfigurableCsvReader reader = reader("ch");
     TransactionRecord tx = reader.read(null, new StringReader(csv), "1234").get(0);
     assertTrue(tx.rawJson().contains("\"extra\":\"note\""));
   }
 
+  @Test
+  void canonicalizesRepeatedValuesPerFile() throws Exception {
+    String csv =
+        "Transaction Date,Post Date,Description,Category,Type,Amount,Memo\n"
+            + "04/27/2025,04/29/2025,JetBrains Americas INC,Shopping,Sale,-18.62,\n"
+            + "04/28/2025,04/29/2025,JetBrains Americas INC,Shopping,Sale,-20.00,\n";
+    MetricsRegistry registry = new MetricsRegistry();
+    ConfigurableCsvReader.Mapping mapping;
+    try (InputStream in = getClass().getResourceAsStream("/mappings/ch.json")) {
+      mapping = new ObjectMapper().readValue(in, ConfigurableCsvReader.Mapping.class);
+    }
+    ConfigurableCsvReader reader =
+        new ConfigurableCsvReader(
+            new BasicTransactionValidator(),
+            mapping,
+            new IngestMetrics(registry),
+            StringDictionary.Scope.FILE,
+            StringDictionary.DEFAULT_MAX_ENTRIES);
+    List<TransactionRecord> txs = reader.read(null, new StringReader(csv), "1234");
+    List<TransactionRecord> again = reader.read(null, new StringReader(csv), "1234");
+
+    assertSame(txs.get(0).merchant(), txs.get(1).merchant());
+    assertSame(txs.get(0).category(), txs.get(1).category());
+    assertSame(txs.get(0).type(), txs.get(1).type());
+    assertNotSame(txs.get(0).merchant(), again.get(0).merchant());
+    Map<String, Double> samples = registry.samples();
+    assertEquals(
+        2.0, samples.get("ingest_dictionary_lookups_total{column=\"merchant\",result=\"hit\"}"));
+    assertEquals(
+        2.0, samples.get("ingest_dictionary_lookups_total{column=\"merchant\",result=\"miss\"}"));
+  }
+
   @Test
   void capturesMappedColumns() throws Exception {
     String csv =
         "Transaction Date,Post Date,Description,Category,Type,Amount,Memo\n"
             + "04/30/2025,04/30/2025,Payment Thank You-Mobile,,Payment,18.62,\n";
-    ConfigurableCsvReader reader = reader("ch", new ObjectMapper());
+    ConfigurableCsvReader reader = reader("ch");
     TransactionRecord tx = reader.read(null, new StringReader(csv), "1234").get(0);
     assertTrue(tx.rawJson().contains("\"transaction_date\":\"04/30/2025\""));
     assertTrue(tx.rawJson().contains("\"description\":\"Payment Thank You-Mobile\""));
@@ -0,0 +1,37 @@
+package org.artificers.ingest.csv;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.artificers.ingest.metrics.Counter;
+import org.junit.jupiter.api.Test;
+
+class StringDictionaryTest {
+  @Test
+  void sharesEqualValuesAndCountsHits() {
+    Counter hits = new Counter();
+    Counter misses = new Counter();
+    StringDictionary dict = new StringDictionary(10, hits, misses);
+
+    String first = dict.canonical(new String("Shopping"));
+    String second = dict.canonical(new String("Shopping"));
+
+    assertThat(second).isSameAs(first);
+    assertThat(dict.canonical(null)).isNull();
+    assertThat(hits.value()).isEqualTo(1);
+    assertThat(misses.value()).isEqualTo(1);
+  }
+
+  @Test
+  void stopsGrowingAtTheBound() {
+    Counter misses = new Counter();
+    StringDictionary dict = new StringDictionary(2, new Counter(), misses);
+    dict.canonical("a");
+    dict.canonical("b");
+
+    String c = new String("c");
+    assertThat(dict.canonical(c)).isSameAs(c);
+    assertThat(dict.canonical(new String("c"))).isNotSameAs(c);
+    assertThat(dict.size()).isEqualTo(2);
+    assertThat(misses.value()).isEqualTo(4);
+  }
+}
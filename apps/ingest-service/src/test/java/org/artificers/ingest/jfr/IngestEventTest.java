@@ -0,0 +1,106 @@
+package org.artificers.ingest.jfr;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.artificers.ingest.csv.TransactionCsvReader;
+import org.artificers.ingest.model.GenericTransaction;
+import org.artificers.ingest.model.Money;
+import org.artificers.ingest.model.ResolvedAccount;
+import org.artificers.ingest.service.AccountResolver;
+import org.artificers.ingest.service.AccountShorthandParser;
+import org.artificers.ingest.service.IngestService;
+import org.artificers.ingest.service.MaterializedViewRefresher;
+import org.artificers.ingest.service.TestIngestServices;
+import org.artificers.ingest.service.TransactionRepository;
+import org.jooq.DSLContext;
+import org.jooq.SQLDialect;
+import org.jooq.impl.DSL;
+import org.jooq.tools.jdbc.MockConnection;
+import org.jooq.tools.jdbc.MockResult;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class IngestEventTest {
+  @Test
+  void emitsStageEventsWithFileDetails(@TempDir Path dir) throws Exception {
+    DSLContext dsl = DSL.using(new MockConnection(ctx -> new MockResult[0]), SQLDialect.POSTGRES);
+    AccountResolver resolver = mock(AccountResolver.class);
+    when(resolver.resolve(any(DSLContext.class), eq("ch1234")))
+        .thenReturn(new ResolvedAccount(1L, "ch", "1234"));
+    TransactionCsvReader reader = mock(TransactionCsvReader.class);
+    when(reader.institution()).thenReturn("ch");
+    when(reader.read(any(), any(), eq("1234")))
+        .thenReturn(
+            List.of(
+                new GenericTransaction(
+                    "1234",
+                    null,
+                    null,
+                    new Money(1, "USD"),
+                    "m",
+                    "c",
+                    null,
+                    null,
+                    String.format("%064x", 1),
+                    List.of(),
+                    List.of())));
+    IngestService service =
+        TestIngestServices.create(
+            dsl,
+            resolver,
+            new AccountShorthandParser(),
+            Set.of(reader),
+            new TransactionRepository(),
+            new MaterializedViewRefresher(dsl));
+    Path file = dir.resolve("ch1234-jan.csv");
+    Files.writeString(file, "id,amount\n1,10");
+
+    Path out = dir.resolve("events.jfr");
+    try (Recording recording = new Recording()) {
+      recording.enable(IngestFileEvent.class);
+      recording.enable(ParseTransactionsEvent.class);
+      recording.enable(PersistTransactionsEvent.class);
+      recording.enable(ViewRefreshEvent.class);
+      recording.start();
+      service.ingestFile(file, "ch1234");
+      recording.stop();
+      recording.dump(out);
+    }
+
+    List<RecordedEvent> events = RecordingFile.readAllEvents(out);
+    assertThat(events)
+        .extracting(e -> e.getEventType().getName())
+        .contains(
+            "org.artificers.ingest.IngestFile",
+            "org.artificers.ingest.ParseTransactions",
+            "org.artificers.ingest.PersistTransactions",
+            "org.artificers.ingest.ViewRefresh");
+    RecordedEvent ingest =
+        events.stream()
+            .filter(e -> e.getEventType().getName().equals("org.artificers.ingest.IngestFile"))
+            .findFirst()
+            .orElseThrow();
+    assertThat(ingest.getString("fileName")).isEqualTo("ch1234-jan.csv");
+    assertThat(ingest.getString("shorthand")).isEqualTo("ch1234");
+    assertThat(ingest.getLong("rowCount")).isEqualTo(1);
+    assertThat(ingest.getLong("bytes")).isEqualTo(Files.size(file));
+    assertThat(ingest.getString("outcome")).isEqualTo(IngestEvent.SUCCESS);
+  }
+
+  @Test
+  void shippedProfileEnablesIngestEvents() throws Exception {
+    assertThat(JfrRecording.settings())
+        .containsEntry("org.artificers.ingest.IngestFile#enabled", "true")
+        .containsEntry("org.artificers.ingest.WatchDispatch#enabled", "true")
+        .containsKey("jdk.GarbageCollection#enabled");
+  }
+}
@@ -0,0 +1,31 @@
+package org.artificers.ingest.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import org.junit.jupiter.api.Test;
+
+class MetricsHttpServerTest {
+  @Test
+  void servesPrometheusText() throws Exception {
+    MetricsRegistry registry = new MetricsRegistry();
+    registry.counter("ingest_duplicates", "Duplicates").add(4);
+    try (MetricsHttpServer server = MetricsHttpServer.start(0, registry)) {
+      HttpResponse<String> response =
+          HttpClient.newHttpClient()
+              .send(
+                  HttpRequest.newBuilder(
+                          URI.create("http://localhost:" + server.port() + "/metrics"))
+                      .build(),
+                  HttpResponse.BodyHandlers.ofString());
+
+      assertThat(response.statusCode()).isEqualTo(200);
+      assertThat(response.headers().firstValue("Content-Type"))
+          .contains(MetricsHttpServer.CONTENT_TYPE);
+      assertThat(response.body()).contains("ingest_duplicates_total 4");
+    }
+  }
+}
@@ -0,0 +1,35 @@
+package org.artificers.ingest.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+import org.junit.jupiter.api.Test;
+
+class MetricsMBeanTest {
+  @Test
+  void exposesSamplesReadOnlyThroughAnMBeanServer() throws Exception {
+    MetricsRegistry registry = new MetricsRegistry();
+    registry.counter("ingest_files", "Files", "outcome", "success").add(3);
+    MBeanServer server = MBeanServerFactory.newMBeanServer();
+    ObjectName name = new ObjectName(MetricsMBean.OBJECT_NAME);
+    server.registerMBean(new MetricsMBean(registry), name);
+    String attribute = "ingest_files_total{outcome=\"success\"}";
+
+    assertThat(server.getAttribute(name, attribute)).isEqualTo(3.0);
+    assertThatThrownBy(() -> server.setAttribute(name, new Attribute(attribute, 1.0)))
+        .isInstanceOf(AttributeNotFoundException.class);
+    AttributeList writes = new AttributeList();
+    writes.add(new Attribute(attribute, 1.0));
+    assertThat(server.setAttributes(name, writes)).isEmpty();
+    assertThatThrownBy(() -> server.invoke(name, "reset", null, null))
+        .isInstanceOf(ReflectionException.class)
+        .hasCauseInstanceOf(NoSuchMethodException.class);
+  }
+}
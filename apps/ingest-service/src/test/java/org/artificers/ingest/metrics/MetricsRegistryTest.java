@@ -0,0 +1,61 @@
+package org.artificers.ingest.metrics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.StringWriter;
+import org.junit.jupiter.api.Test;
+
+class MetricsRegistryTest {
+  @Test
+  void writesCountersGaugesAndHistogramsInPrometheusFormat() throws Exception {
+    MetricsRegistry registry = new MetricsRegistry();
+    registry.counter("ingest_files", "Files", "outcome", "success").add(3);
+    registry.gauge("pool_active", "Active", () -> 2);
+    Histogram h = registry.histogram("latency_seconds", "Latency", new double[] {0.1, 1});
+    h.observe(0.05);
+    h.observe(0.5);
+    h.observe(5);
+
+    StringWriter out = new StringWriter();
+    registry.writePrometheus(out);
+
+    assertThat(out.toString())
+        .contains("# TYPE ingest_files counter\n")
+        .contains("ingest_files_total{outcome=\"success\"} 3\n")
+        .contains("# TYPE pool_active gauge\npool_active 2\n")
+        .contains("latency_seconds_bucket{le=\"0.1\"} 1\n")
+        .contains("latency_seconds_bucket{le=\"1\"} 2\n")
+        .contains("latency_seconds_bucket{le=\"+Inf\"} 3\n")
+        .contains("latency_seconds_sum 5.55\n")
+        .contains("latency_seconds_count 3\n");
+  }
+
+  @Test
+  void returnsExistingChildForSameLabels() {
+    MetricsRegistry registry = new MetricsRegistry();
+    Counter a = registry.counter("c", "help", "k", "v");
+    Counter b = registry.counter("c", "help", "k", "v");
+    assertSame(a, b);
+    assertThrows(
+        IllegalArgumentException.class, () -> registry.histogram("c", "help", new double[] {1}));
+  }
+
+  @Test
+  void ingestMetricsRecordsStageTimingsAndSamples() {
+    MetricsRegistry registry = new MetricsRegistry();
+    IngestMetrics metrics = new IngestMetrics(registry);
+    try (StageTimer ignored = metrics.start(IngestStage.HASH)) {
+      // timed body
+    }
+    metrics.recordFile(10, 2048);
+    metrics.recordWrites(7, 3);
+
+    assertThat(registry.samples())
+        .containsEntry("ingest_stage_duration_seconds_count{stage=\"hash\"}", 1.0)
+        .containsEntry("ingest_rows_total", 10.0)
+        .containsEntry("ingest_bytes_total", 2048.0)
+        .containsEntry("ingest_duplicates_total", 3.0);
+  }
+}
@@ -0,0 +1,126 @@
+package org.artificers.ingest.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class TransactionBatchTest {
+  private static final String HASH_A = "00ff" + "ab".repeat(30);
+  private static final String HASH_B = "1234" + "cd".repeat(30);
+
+  @Test
+  void rowsReadBackAsRecords() {
+    GenericTransaction first =
+        new GenericTransaction(
+            "1234",
+            Instant.parse("2024-03-01T10:15:30.123456Z"),
+            Instant.parse("2024-03-02T00:00:00Z"),
+            new Money(-1299, "USD"),
+            "Café Ünïcode",
+            "Dining",
+            "Sale",
+            "memo",
+            HASH_A,
+            List.of("a", "b"),
+            Arrays.asList("1", null));
+    GenericTransaction second =
+        new GenericTransaction(
+            "1234",
+            Instant.parse("2024-03-03T00:00:00Z"),
+            null,
+            new Money(500, "USD"),
+            "Café Ünïcode",
+            null,
+            null,
+            null,
+            HASH_B,
+            List.of(),
+            List.of());
+
+    TransactionBatch batch = TransactionBatch.of("1234", List.of(first, second));
+
+    assertThat(batch).hasSize(2);
+    assertThat(copy(batch.get(0))).isEqualTo(first);
+    assertThat(copy(batch.get(1))).isEqualTo(second);
+    assertThat(batch.postedAtMicros(1)).isEqualTo(TransactionBatch.NO_TIME);
+    assertThat(batch.merchant(1)).isSameAs(batch.merchant(0));
+    assertThat(batch.rawSchemas()).containsExactly(List.of("a", "b"), List.of());
+    assertThat(batch.get(0).rawJson()).isEqualTo("{\"a\":\"1\",\"b\":null}");
+  }
+
+  @Test
+  void roundTripsThroughBinaryForm() throws Exception {
+    TransactionBatch batch =
+        TransactionBatch.of("1234", List.of(tx("1234", HASH_A), tx("1234", HASH_B)));
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    batch.writeTo(new DataOutputStream(bytes));
+
+    TransactionBatch read =
+        TransactionBatch.readFrom(
+            new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+    assertThat(read.accountId()).isEqualTo("1234");
+    assertThat(read.stream().map(TransactionBatchTest::copy))
+        .containsExactlyElementsOf(batch.stream().map(TransactionBatchTest::copy).toList());
+  }
+
+  @Test
+  void exposesHashBytes() {
+    TransactionBatch batch = TransactionBatch.of("1234", List.of(tx("1234", HASH_A)));
+    byte[] dst = new byte[TransactionBatch.HASH_BYTES + 1];
+
+    batch.hashBytes(0, dst, 1);
+
+    assertThat(dst[1]).isEqualTo((byte) 0x00);
+    assertThat(dst[2]).isEqualTo((byte) 0xff);
+    assertThat(batch.hash(0)).isEqualTo(HASH_A);
+  }
+
+  @Test
+  void rejectsForeignAccountsAndMalformedHashes() {
+    TransactionBatch.Builder builder = TransactionBatch.builder("1234");
+
+    assertThatThrownBy(() -> builder.add(tx("9999", HASH_A)))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> builder.add(tx("1234", "abc")))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  private static GenericTransaction copy(TransactionRecord t) {
+    return new GenericTransaction(
+        t.accountId(),
+        t.occurredAt(),
+        t.postedAt(),
+        t.amount(),
+        t.merchant(),
+        t.category(),
+        t.type(),
+        t.memo(),
+        t.hash(),
+        t.rawHeaders(),
+        t.rawValues());
+  }
+
+  private static GenericTransaction tx(String accountId, String hash) {
+    return new GenericTransaction(
+        accountId,
+        Instant.parse("2024-01-01T00:00:00Z"),
+        null,
+        new Money(100, "USD"),
+        "m",
+        null,
+        null,
+        null,
+        hash,
+        List.of("date", "amount"),
+        List.of("2024-01-01", "1.00"));
+  }
+}
@@ -0,0 +1,78 @@
+package org.artificers.ingest.query;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Instant;
+import org.artificers.ingest.service.HashGenerator;
+import org.jooq.DSLContext;
+import org.jooq.impl.DSL;
+import org.junit.jupiter.api.Test;
+
+class QueryHttpServerTest {
+  @Test
+  void streamsMatchingRowsAsNdjson() throws Exception {
+    DSLContext dsl =
+        DSL.using("jdbc:h2:mem:query_http;MODE=PostgreSQL;DB_CLOSE_DELAY=-1", "sa", "");
+    dsl.execute("drop table if exists transactions");
+    dsl.execute(
+        "create table transactions (id bigint primary key, account_id bigint not null, occurred_at"
+            + " timestamp with time zone, posted_at timestamp with time zone, amount_cents bigint"
+            + " not null, currency varchar not null, merchant varchar, merchant_canonical varchar,"
+            + " unified_category varchar, category varchar, memo varchar, txn_type varchar, hash"
+            + " bytea not null)");
+    for (int i = 1; i <= 3; i++) {
+      dsl.execute(
+          "insert into transactions (id, account_id, occurred_at, amount_cents, currency, hash)"
+              + " values (?, 1, timestamp with time zone '2024-03-0"
+              + i
+              + " 00:00:00+00', ?, 'USD', ?)",
+          i,
+          -100L * i,
+          HashGenerator.digest(String.format("%064x", i)));
+    }
+
+    try (QueryHttpServer server = QueryHttpServer.start(0, new TransactionQueryService(dsl))) {
+      HttpResponse<String> page =
+          get(server, "/transactions?account=1&from=2024-03-01&after=2024-03-01T00:00:00Z,1");
+      HttpResponse<String> bad = get(server, "/transactions?limit=-1");
+
+      assertThat(server.address().getAddress().isLoopbackAddress()).isTrue();
+      assertThat(page.statusCode()).isEqualTo(200);
+      assertThat(page.headers().firstValue("Content-Type")).contains(QueryHttpServer.CONTENT_TYPE);
+      assertThat(page.body().lines()).hasSize(2);
+      assertThat(page.body().lines().findFirst().orElseThrow()).startsWith("{\"id\":2,");
+      assertThat(bad.statusCode()).isEqualTo(400);
+      assertThat(bad.body()).contains("limit");
+    }
+  }
+
+  @Test
+  void parsesDatesAsUtcMidnightAndKeysAsInstantAndId() {
+    TransactionQuery query =
+        QueryHttpServer.parse(
+            "from=2024-01-31&to=2024-02-01T12%3A00%3A00Z&merchant_prefix=Caf%C3%A9"
+                + "&after=2024-01-31T10:00:00Z,42&limit=0");
+
+    assertThat(query.from()).isEqualTo(Instant.parse("2024-01-31T00:00:00Z"));
+    assertThat(query.to()).isEqualTo(Instant.parse("2024-02-01T12:00:00Z"));
+    assertThat(query.merchantPrefix()).isEqualTo("Café");
+    assertThat(query.after())
+        .isEqualTo(new TransactionQuery.Key(Instant.parse("2024-01-31T10:00:00Z"), 42));
+    assertThat(query.limit()).isZero();
+    assertThat(QueryHttpServer.parse(null).limit()).isEqualTo(TransactionQuery.DEFAULT_LIMIT);
+    assertThatThrownBy(() -> QueryHttpServer.parse("after=42"))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  private static HttpResponse<String> get(QueryHttpServer server, String path) throws Exception {
+    return HttpClient.newHttpClient()
+        .send(
+            HttpRequest.newBuilder(URI.create("http://localhost:" + server.port() + path)).build(),
+            HttpResponse.BodyHandlers.ofString());
+  }
+}
@@ -0,0 +1,117 @@
+package org.artificers.ingest.query;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import org.h2.jdbcx.JdbcDataSource;
+import org.jooq.DSLContext;
+import org.jooq.SQLDialect;
+import org.jooq.impl.DSL;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TransactionExporterTest {
+  @TempDir Path dir;
+
+  private DSLContext dsl;
+
+  @BeforeEach
+  void setup() {
+    // A data source rather than one connection, so parallel workers each get their own
+    JdbcDataSource ds = new JdbcDataSource();
+    ds.setURL("jdbc:h2:mem:transaction_export;MODE=PostgreSQL;DB_CLOSE_DELAY=-1");
+    ds.setUser("sa");
+    dsl = DSL.using(ds, SQLDialect.H2);
+    dsl.execute("drop table if exists transactions_view");
+    dsl.execute("drop table if exists accounts");
+    dsl.execute("create table accounts (id bigint primary key)");
+    dsl.execute("insert into accounts values (1), (2), (3)");
+    dsl.execute(
+        "create table transactions_view (id bigint primary key, account_id bigint not null,"
+            + " institution varchar, occurred_at timestamp with time zone, posted_at timestamp"
+            + " with time zone, amount_cents bigint not null, currency varchar, merchant varchar,"
+            + " category varchar, txn_type varchar, memo varchar, hash varchar, raw_json varchar,"
+            + " created_at timestamp with time zone)");
+    insert(1, 1, "'2024-01-31 23:59:59+00'", "Coffee, \"the good one\"");
+    insert(2, 1, "'2024-02-01 00:00:00+00'", "Rent");
+    insert(3, 1, "'2024-01-02 00:00:00+00'", "Lunch");
+    insert(4, 1, "null", "Undated");
+    insert(5, 2, "'2024-01-15 12:00:00-05'", "Books");
+  }
+
+  @Test
+  void writesOneGzipFilePerAccountAndMonth() throws Exception {
+    Map<Long, TransactionExporter.Summary> perAccount = new ConcurrentHashMap<>();
+
+    TransactionExporter.Summary total =
+        new TransactionExporter(dsl, 2)
+            .export(dir, TransactionExporter.Format.CSV, 2, perAccount::put);
+
+    assertThat(total.rows()).isEqualTo(5);
+    assertThat(total.files()).isEqualTo(4);
+    assertThat(total.rawBytes()).isGreaterThan(0);
+    assertThat(total.bytes())
+        .isEqualTo(
+            size("1/2024-01.csv.gz")
+                + size("1/2024-02.csv.gz")
+                + size("1/undated.csv.gz")
+                + size("2/2024-01.csv.gz"));
+    assertThat(perAccount.get(1L).rows()).isEqualTo(4);
+    assertThat(perAccount.get(3L)).isEqualTo(new TransactionExporter.Summary(0, 0, 0, 0));
+    assertThat(Files.exists(dir.resolve("3"))).isFalse();
+
+    List<String> january = read("1/2024-01.csv.gz").lines().toList();
+    assertThat(january.get(0)).startsWith("id,account_id,institution,occurred_at,");
+    assertThat(january).hasSize(3);
+    assertThat(january.get(1)).startsWith("3,1,co,2024-01-02T00:00:00Z,");
+    assertThat(january.get(2)).contains("\"Coffee, \"\"the good one\"\"\"");
+    assertThat(read("2/2024-01.csv.gz")).contains("2024-01-15T17:00:00Z");
+  }
+
+  @Test
+  void writesNdjsonWithRawJsonEmbedded() throws Exception {
+    new TransactionExporter(dsl).export(dir, TransactionExporter.Format.NDJSON, 1, (a, s) -> {});
+
+    List<String> lines = read("1/2024-02.ndjson.gz").lines().toList();
+    assertThat(lines).hasSize(1);
+    JsonNode row = new ObjectMapper().readTree(lines.get(0));
+    assertThat(row.get("id").asLong()).isEqualTo(2);
+    assertThat(row.get("merchant").asText()).isEqualTo("Rent");
+    assertThat(row.get("posted_at").isNull()).isTrue();
+    assertThat(row.get("raw_json").get("Description").asText()).isEqualTo("Rent");
+  }
+
+  private void insert(long id, long account, String occurredAt, String merchant) {
+    dsl.execute(
+        "insert into transactions_view (id, account_id, institution, occurred_at, amount_cents,"
+            + " currency, merchant, hash, raw_json) values (?, ?, 'co', "
+            + occurredAt
+            + ", -100, 'USD', ?, ?, ?)",
+        id,
+        account,
+        merchant,
+        String.format("%064x", id),
+        "{\"Description\": \"" + merchant.replace("\"", "\\\"") + "\"}");
+  }
+
+  private long size(String file) throws IOException {
+    return Files.size(dir.resolve(file));
+  }
+
+  private String read(String file) throws IOException {
+    try (InputStream in = new GZIPInputStream(Files.newInputStream(dir.resolve(file)))) {
+      return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    }
+  }
+}
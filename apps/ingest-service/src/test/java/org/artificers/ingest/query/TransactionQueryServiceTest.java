@@ -0,0 +1,125 @@
+package org.artificers.ingest.query;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayOutputStream;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import org.artificers.ingest.service.HashGenerator;
+import org.jooq.DSLContext;
+import org.jooq.impl.DSL;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TransactionQueryServiceTest {
+  private static final Instant JAN = Instant.parse("2024-01-01T00:00:00Z");
+
+  private final ObjectMapper mapper = new ObjectMapper();
+  private DSLContext dsl;
+
+  @BeforeEach
+  void setup() {
+    dsl = DSL.using("jdbc:h2:mem:transaction_query;MODE=PostgreSQL;DB_CLOSE_DELAY=-1", "sa", "");
+    dsl.execute("drop table if exists transactions");
+    dsl.execute(
+        "create table transactions (id bigint primary key, account_id bigint not null, occurred_at"
+            + " timestamp with time zone, posted_at timestamp with time zone, amount_cents bigint"
+            + " not null, currency varchar not null, merchant varchar, merchant_canonical varchar,"
+            + " unified_category varchar, category varchar, memo varchar, txn_type varchar, hash"
+            + " bytea not null, source_schema_id bigint, raw_values varchar array, created_at"
+            + " timestamp with time zone)");
+    // ids 1..6 share one timestamp so pages must break ties on id
+    for (int i = 1; i <= 12; i++) {
+      Instant at = i <= 6 ? JAN : JAN.plusSeconds(86_400L * i);
+      insert(
+          i, i % 2 == 0 ? 2 : 1, at, i * -100L, i % 3 == 0 ? "Groceries" : "Dining", "Shop " + i);
+    }
+    insert(13, 1, null, -1300, "Dining", "Undated");
+  }
+
+  @Test
+  void pagesResumeAfterTheLastKeyWithoutGapsOrRepeats() throws Exception {
+    TransactionQueryService service = new TransactionQueryService(dsl, 2);
+    TransactionQuery query =
+        new TransactionQuery(null, null, null, null, null, null, null, null, 4);
+    List<Long> ids = new ArrayList<>();
+    List<Integer> pageSizes = new ArrayList<>();
+    while (true) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      TransactionQueryService.Page page = service.stream(query, out);
+      List<JsonNode> rows = lines(out);
+      assertThat(rows).hasSize((int) page.rows());
+      if (page.rows() == 0) {
+        assertThat(page.last()).isNull();
+        break;
+      }
+      rows.forEach(r -> ids.add(r.get("id").asLong()));
+      pageSizes.add(rows.size());
+      query = query.after(TransactionQuery.Key.parse(page.last().toString()));
+    }
+
+    assertThat(ids).containsExactly(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L, 11L, 12L);
+    assertThat(pageSizes).containsExactly(4, 4, 4);
+  }
+
+  @Test
+  void appliesEveryFilter() throws Exception {
+    TransactionQuery query =
+        new TransactionQuery(
+            2L, JAN, JAN.plusSeconds(86_400L * 12), -1100L, -200L, "Groceries", "Shop", null, 0);
+
+    assertThat(ids(query)).containsExactly(6L);
+    assertThat(ids(new TransactionQuery(null, null, null, null, null, null, "Shop 1", null, 0)))
+        .containsExactly(1L, 10L, 11L, 12L);
+  }
+
+  @Test
+  void writesOneJsonObjectPerLine() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new TransactionQueryService(dsl)
+        .stream(new TransactionQuery(null, null, null, null, null, null, null, null, 1), out);
+
+    String body = out.toString();
+    assertThat(body).endsWith("\n").doesNotContain("\n ");
+    JsonNode row = lines(out).get(0);
+    assertThat(row.get("occurred_at").asText()).isEqualTo("2024-01-01T00:00:00Z");
+    assertThat(row.get("amount_cents").asLong()).isEqualTo(-100);
+    assertThat(row.get("merchant").asText()).isEqualTo("Shop 1");
+    assertThat(row.get("posted_at").isNull()).isTrue();
+    assertThat(row.get("hash").asText()).isEqualTo(String.format("%064x", 1));
+  }
+
+  private List<Long> ids(TransactionQuery query) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    new TransactionQueryService(dsl).stream(query, out);
+    return lines(out).stream().map(r -> r.get("id").asLong()).toList();
+  }
+
+  private List<JsonNode> lines(ByteArrayOutputStream out) throws Exception {
+    List<JsonNode> rows = new ArrayList<>();
+    for (String line : out.toString().split("\n")) {
+      if (!line.isEmpty()) {
+        rows.add(mapper.readTree(line));
+      }
+    }
+    return rows;
+  }
+
+  private void insert(
+      long id, long account, Instant at, long cents, String category, String merchant) {
+    dsl.execute(
+        "insert into transactions (id, account_id, occurred_at, amount_cents, currency, merchant,"
+            + " category, hash) values (?, ?, ?, ?, 'USD', ?, ?, ?)",
+        id,
+        account,
+        at == null ? null : at.atOffset(ZoneOffset.UTC),
+        cents,
+        merchant,
+        category,
+        HashGenerator.digest(String.format("%064x", id)));
+  }
+}
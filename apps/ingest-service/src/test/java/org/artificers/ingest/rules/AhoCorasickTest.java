@@ -0,0 +1,39 @@
+package org.artificers.ingest.rules;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class AhoCorasickTest {
+  @Test
+  void reportsOverlappingAndNestedKeywordsByEndPosition() {
+    AhoCorasick ac = AhoCorasick.compile(List.of("he", "she", "his", "hers"));
+
+    assertThat(hits(ac, "ushers")).containsExactly("she@4", "he@4", "hers@6");
+    assertThat(hits(ac, "ahishers")).containsExactly("his@4", "she@6", "he@6", "hers@8");
+    assertThat(hits(ac, "xyz")).isEmpty();
+  }
+
+  @Test
+  void reportsDuplicateKeywordsAsTheFirstAndSkipsEmptyOnes() {
+    AhoCorasick ac = AhoCorasick.compile(List.of("", "ab", "ab", "b"));
+
+    assertThat(hits(ac, "abab")).containsExactly("ab@2", "b@2", "ab@4", "b@4");
+    assertThat(ac.length(1)).isEqualTo(2);
+  }
+
+  @Test
+  void followsFailureLinksAcrossRepeatedPrefixes() {
+    AhoCorasick ac = AhoCorasick.compile(List.of("aab", "aaab", "ab"));
+
+    assertThat(hits(ac, "aaaab")).containsExactly("aaab@5", "aab@5", "ab@5");
+  }
+
+  private static List<String> hits(AhoCorasick ac, String text) {
+    List<String> hits = new ArrayList<>();
+    ac.match(text, (k, end) -> hits.add(text.substring(end - ac.length(k), end) + "@" + end));
+    return hits;
+  }
+}
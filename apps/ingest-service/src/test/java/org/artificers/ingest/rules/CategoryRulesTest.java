@@ -0,0 +1,107 @@
+package org.artificers.ingest.rules;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class CategoryRulesTest {
+  private static CategoryRules.Rule rule(
+      String category,
+      List<String> institution,
+      List<String> merchant,
+      List<String> bankCategory,
+      Long minCents,
+      Long maxCents) {
+    return new CategoryRules.Rule(
+        category, institution, merchant, null, bankCategory, null, minCents, maxCents);
+  }
+
+  private final CategoryRules rules =
+      CategoryRules.compile(
+          List.of(
+              rule("Income", null, null, null, 100_000L, null),
+              rule("Shopping", List.of("ch"), null, List.of("shopping"), null, null),
+              rule("Shopping", List.of("co"), null, List.of("Merchandise"), null, null),
+              rule("Coffee", null, List.of("BLUE BOTTLE"), null, -2_000L, -1L),
+              rule("Dining", null, List.of("BLUE BOTTLE", "Royal Bakehouse"), null, null, -1L),
+              new CategoryRules.Rule(
+                  "Transfers",
+                  null,
+                  null,
+                  List.of("THANK YOU"),
+                  null,
+                  List.of("Payment"),
+                  0L,
+                  null)));
+
+  @Test
+  void mapsEachInstitutionsBankCategories() {
+    assertThat(categorize("ch", -500, "AMZN", null, "Shopping")).isEqualTo("Shopping");
+    assertThat(categorize("CO", -500, "AMZN", null, "merchandise")).isEqualTo("Shopping");
+    assertThat(categorize("co", -500, "AMZN", null, "Shopping")).isNull();
+    assertThat(categorize("wf", -500, "AMZN", null, "Shopping")).isNull();
+    assertThat(categorize(null, -500, null, null, null)).isNull();
+  }
+
+  @Test
+  void bandsAmountsWithInclusiveBounds() {
+    assertThat(categorize("ch", -1, "SQ *BLUE BOTTLE COFFEE", null, null)).isEqualTo("Coffee");
+    assertThat(categorize("ch", -2_000, "SQ *BLUE BOTTLE COFFEE", null, null)).isEqualTo("Coffee");
+    assertThat(categorize("ch", -2_001, "SQ *BLUE  bottle", null, null)).isEqualTo("Dining");
+    assertThat(categorize("ch", 0, "SQ *BLUE BOTTLE COFFEE", null, null)).isNull();
+    assertThat(categorize("co", 99_999, "ACME PAYROLL", null, null)).isNull();
+    assertThat(categorize("co", 100_000, "ACME PAYROLL", null, null)).isEqualTo("Income");
+    assertThat(categorize("co", Long.MAX_VALUE, null, null, null)).isEqualTo("Income");
+  }
+
+  @Test
+  void firstMatchingRuleWinsAndEveryConditionMustHold() {
+    assertThat(categorize("ch", 250_000, "BLUE BOTTLE", null, "Shopping")).isEqualTo("Income");
+    assertThat(categorize("ch", -500, "TST*ROYAL BAKEHOUSE", "Royal Bakehouse", null))
+        .isEqualTo("Dining");
+    assertThat(categorize("ch", -500, "TST* ROYAL", "Royal Bakehouse", null)).isEqualTo("Dining");
+    assertThat(
+            rules.categorize("ch", 5_000, "AUTOPAY", null, null, "payment", "Payment - thank you"))
+        .isEqualTo("Transfers");
+    assertThat(rules.categorize("ch", 5_000, "AUTOPAY", null, null, "Sale", "THANK YOU")).isNull();
+    assertThat(rules.categorize("ch", -5_000, "AUTOPAY", null, null, "Payment", "THANK YOU"))
+        .isNull();
+  }
+
+  @Test
+  void digestsChangeOnlyForInstitutionsWhoseRulesChange() {
+    CategoryRules edited =
+        CategoryRules.compile(
+            List.of(
+                rule("Income", null, null, null, 100_000L, null),
+                rule("Shopping", List.of("ch"), null, List.of("shopping"), null, null),
+                rule("Retail", List.of("co"), null, List.of("Merchandise"), null, null)));
+    CategoryRules same =
+        CategoryRules.compile(
+            List.of(
+                rule("Income", null, null, null, 100_000L, null),
+                rule("Shopping", List.of("ch"), null, List.of("shopping"), null, null),
+                rule("Shopping", List.of("co"), null, List.of("Merchandise"), null, null)));
+
+    assertThat(edited.digest("co")).isNotEqualTo(same.digest("co"));
+    assertThat(edited.digest("ch")).isEqualTo(same.digest("ch"));
+    assertThat(edited.digest("wf")).isEqualTo(same.digest("wf"));
+    assertThat(CategoryRules.EMPTY.digest("ch")).isNotEqualTo(same.digest("ch"));
+  }
+
+  @Test
+  void rejectsBadRules() {
+    assertThatThrownBy(() -> rule(" ", null, null, null, null, null))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> rule("X", null, null, null, 5L, 4L))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("minCents");
+  }
+
+  private String categorize(
+      String institution, long cents, String merchant, String canonical, String bankCategory) {
+    return rules.categorize(institution, cents, merchant, canonical, bankCategory, null, null);
+  }
+}
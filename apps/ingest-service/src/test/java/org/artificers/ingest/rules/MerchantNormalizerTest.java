@@ -0,0 +1,59 @@
+package org.artificers.ingest.rules;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MerchantNormalizerTest {
+  @TempDir Path dir;
+
+  @Test
+  void reloadsTheRuleFileWhenItChanges() throws Exception {
+    Path file = dir.resolve(MerchantNormalizer.FILE_NAME);
+    MerchantNormalizer normalizer = new MerchantNormalizer(file, new ObjectMapper(), Duration.ZERO);
+
+    assertThat(normalizer.normalize("FRED-MEYER #0023")).isNull();
+
+    Files.writeString(
+        file, "{\"rules\": [{\"merchant\": \"Fred Meyer\", \"prefix\": [\"FRED-MEYER\"]}]}");
+    assertThat(normalizer.normalize("FRED-MEYER #0023")).isEqualTo("Fred Meyer");
+
+    Files.writeString(
+        file, "{\"rules\": [{\"merchant\": \"Fred Meyer Stores\", \"prefix\": [\"FRED-MEYER\"]}]}");
+    assertThat(normalizer.normalize("FRED-MEYER #0023")).isEqualTo("Fred Meyer Stores");
+
+    Files.delete(file);
+    assertThat(normalizer.normalize("FRED-MEYER #0023")).isNull();
+  }
+
+  @Test
+  void keepsThePreviousRulesWhenTheFileIsInvalid() throws Exception {
+    Path file = dir.resolve(MerchantNormalizer.FILE_NAME);
+    Files.writeString(file, "{\"rules\": [{\"merchant\": \"Amazon\", \"contains\": [\"AMZN\"]}]}");
+    MerchantNormalizer normalizer = new MerchantNormalizer(file, new ObjectMapper(), Duration.ZERO);
+    assertThat(normalizer.normalize("AMZN MKTP US")).isEqualTo("Amazon");
+
+    Files.writeString(file, "{\"rules\": [{\"merchant\": \"Amazon\", \"regex\": [\"(\"]}]}");
+    assertThat(normalizer.reload()).isFalse();
+    assertThat(normalizer.normalize("AMZN MKTP US")).isEqualTo("Amazon");
+  }
+
+  @Test
+  void checksTheFileAtMostOncePerInterval() throws Exception {
+    Path file = dir.resolve(MerchantNormalizer.FILE_NAME);
+    MerchantNormalizer normalizer =
+        new MerchantNormalizer(file, new ObjectMapper(), Duration.ofHours(1));
+    assertThat(normalizer.normalize("AMZN")).isNull();
+
+    Files.writeString(file, "{\"rules\": [{\"merchant\": \"Amazon\", \"contains\": [\"AMZN\"]}]}");
+    assertThat(normalizer.normalize("AMZN")).isNull();
+    assertThat(normalizer.reload()).isTrue();
+    assertThat(normalizer.normalize("AMZN")).isEqualTo("Amazon");
+    assertThat(MerchantNormalizer.none().normalize("AMZN")).isNull();
+  }
+}
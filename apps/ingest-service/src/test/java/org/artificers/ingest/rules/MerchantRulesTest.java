@@ -0,0 +1,62 @@
+package org.artificers.ingest.rules;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class MerchantRulesTest {
+  private final MerchantRules rules =
+      MerchantRules.compile(
+          List.of(
+              new MerchantRules.Rule("Amazon", List.of("amazon mktpl", "amzn mktp"), null, null),
+              new MerchantRules.Rule(
+                  "Amazon Web Services", List.of("AMAZON WEB SERVICES"), null, null),
+              new MerchantRules.Rule("Uber", null, List.of("UBER"), null),
+              new MerchantRules.Rule("Uber Eats", List.of("UBER EATS"), null, null),
+              new MerchantRules.Rule("Apple", List.of("APPLE.COM"), null, null),
+              new MerchantRules.Rule("iCloud", List.of("APPLE.COM"), null, null),
+              new MerchantRules.Rule("Fred Meyer", null, null, List.of("FRED[- ]?MEYER\\b"))));
+
+  @Test
+  void matchesKeywordsAnywhereIgnoringCaseAndSpacing() {
+    assertThat(rules.normalize("AMAZON MKTPL*KU5TN4KN3")).isEqualTo("Amazon");
+    assertThat(rules.normalize("Amzn  Mktp US*2K3")).isEqualTo("Amazon");
+    assertThat(rules.normalize("SQ *CHI CHI KOREAN")).isNull();
+    assertThat(rules.normalize(null)).isNull();
+  }
+
+  @Test
+  void prefersTheLongestKeywordThenTheEarlierRule() {
+    assertThat(rules.normalize("AMAZON WEB SERVICES AWS.AMAZON.CO"))
+        .isEqualTo("Amazon Web Services");
+    assertThat(rules.normalize("UBER   EATS PENDING")).isEqualTo("Uber Eats");
+    assertThat(rules.normalize("APPLE.COM/BILL")).isEqualTo("Apple");
+  }
+
+  @Test
+  void anchorsPrefixKeywordsAtTheStart() {
+    assertThat(rules.normalize("UBER   *TRIP")).isEqualTo("Uber");
+    assertThat(rules.normalize("PAYMENT TO UBER")).isNull();
+  }
+
+  @Test
+  void triesAnchoredRegexesOnlyWithoutAKeywordMatch() {
+    assertThat(rules.normalize("FRED-MEYER #0023")).isEqualTo("Fred Meyer");
+    assertThat(rules.normalize("fredmeyer fuel")).isEqualTo("Fred Meyer");
+    assertThat(rules.normalize("THE FRED MEYER")).isNull();
+  }
+
+  @Test
+  void rejectsBadRules() {
+    assertThatThrownBy(
+            () ->
+                MerchantRules.compile(
+                    List.of(new MerchantRules.Rule("X", null, null, List.of("(")))))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("merchant X");
+    assertThatThrownBy(() -> new MerchantRules.Rule(" ", List.of("A"), null, null))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+}
@@ -50,10 +50,7 @@ public class AccountCreationIntegrationTest {
       ConfigurableCsvReader.Mapping mapping =
           new com.fasterxml.jackson.databind.ObjectMapper()
               .readValue(in, ConfigurableCsvReader.Mapping.class);
-      return new ConfigurableCsvReader(
-          new com.fasterxml.jackson.databind.ObjectMapper(),
-          new BasicTransactionValidator(),
-          mapping);
+      return new ConfigurableCsvReader(new BasicTransactionValidator(), mapping);
     }
   }
 
@@ -0,0 +1,149 @@
+package org.artificers.ingest.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import org.artificers.ingest.model.GenericTransaction;
+import org.artificers.ingest.model.Money;
+import org.artificers.ingest.model.ResolvedAccount;
+import org.artificers.ingest.model.TransactionRecord;
+import org.artificers.jooq.tables.TransactionChecksums;
+import org.jooq.DSLContext;
+import org.jooq.impl.DSL;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ChecksumVerifierTest {
+  private static final ResolvedAccount ACCOUNT = new ResolvedAccount(1L, "co", "1234");
+
+  private final ChecksumVerifier verifier = new ChecksumVerifier(List.of());
+  private DSLContext dsl;
+
+  @BeforeEach
+  void setup() {
+    dsl = DSL.using("jdbc:h2:mem:checksums;MODE=PostgreSQL", "sa", "");
+    dsl.execute("drop table if exists daily_account_totals");
+    dsl.execute("drop table if exists monthly_category_totals");
+    dsl.execute("drop table if exists transaction_checksums");
+    dsl.execute("drop table if exists transactions");
+    dsl.execute("drop table if exists source_schemas");
+    dsl.execute(
+        "create table source_schemas (id bigserial primary key, headers varchar array not null"
+            + " unique, created_at timestamp with time zone)");
+    dsl.execute(
+        "create table transactions (id bigserial primary key, account_id bigint not null,"
+            + " occurred_at timestamp with time zone, posted_at timestamp with time zone,"
+            + " amount_cents bigint not null, currency varchar not null, merchant varchar,"
+            + " merchant_canonical varchar, unified_category varchar, category varchar, memo"
+            + " varchar, txn_type varchar, hash bytea not null, source_schema_id bigint not null,"
+            + " raw_values varchar array not null, created_at timestamp with time zone,"
+            + " unique(account_id, hash))");
+    dsl.execute(
+        "create table daily_account_totals (account_id bigint not null, txn_date date not null,"
+            + " currency varchar not null, txn_count bigint not null, inflow_cents bigint not null,"
+            + " outflow_cents bigint not null, primary key (account_id, txn_date, currency))");
+    dsl.execute(
+        "create table monthly_category_totals (account_id bigint not null, txn_month date not"
+            + " null, category varchar not null, currency varchar not null, txn_count bigint not"
+            + " null, inflow_cents bigint not null, outflow_cents bigint not null, primary key"
+            + " (account_id, txn_month, category, currency))");
+    dsl.execute(
+        "create table transaction_checksums (account_id bigint not null, txn_month date not null,"
+            + " txn_count bigint not null, amount_cents bigint not null, hash_xor bigint not null,"
+            + " updated_at timestamp with time zone default current_timestamp not null,"
+            + " verified_at timestamp with time zone, primary key (account_id, txn_month))");
+    ingest(
+        tx("a", "2024-01-31T23:30:00Z", -1250),
+        tx("b", "2024-01-02T08:00:00Z", 5000),
+        tx("c", "2024-02-01T00:00:00Z", -300),
+        tx("d", null, -1));
+  }
+
+  @Test
+  void checksOnlyMonthsChangedSinceTheLastVerification() {
+    assertThat(verifier.verify(dsl, false, false))
+        .isEqualTo(new ChecksumVerifier.Result(3, List.of()));
+    assertThat(verifier.verify(dsl, false, false).checked()).isZero();
+
+    ingest(tx("e", "2024-02-10T00:00:00Z", 700));
+
+    assertThat(verifier.verify(dsl, false, false))
+        .isEqualTo(new ChecksumVerifier.Result(1, List.of()));
+  }
+
+  @Test
+  void findsAndRepairsMonthsChangedOutsideIngest() {
+    verifier.verify(dsl, false, false);
+    dsl.execute("delete from transactions where amount_cents = -300");
+    dsl.execute("update transactions set amount_cents = 4999 where amount_cents = 5000");
+
+    assertThat(verifier.verify(dsl, false, false).mismatches()).isEmpty();
+    ChecksumVerifier.Result all = verifier.verify(dsl, true, true);
+
+    assertThat(all.checked()).isEqualTo(3);
+    assertThat(all.mismatches())
+        .extracting(ChecksumVerifier.Mismatch::month, m -> m.actual().count())
+        .containsExactly(
+            tuple(LocalDate.parse("2024-01-01"), 2L), tuple(LocalDate.parse("2024-02-01"), 0L));
+    TransactionChecksums c = TransactionChecksums.TRANSACTION_CHECKSUMS;
+    assertThat(dsl.fetchCount(c)).isEqualTo(2);
+    assertThat(verifier.verify(dsl, true, false).mismatches()).isEmpty();
+  }
+
+  @Test
+  void skipsMonthsWhosePartitionIsDetached() {
+    verifier.verify(dsl, false, false);
+    // Detaching takes January's rows out of transactions but leaves its checksum behind
+    dsl.execute(
+        "delete from transactions where occurred_at < timestamp with time zone '2024-02-01"
+            + " 00:00:00+00'");
+    ingest(tx("e", "2024-01-15T00:00:00Z", 700));
+    ChecksumVerifier detached = new ChecksumVerifier(List.of(YearMonth.of(2024, 1)));
+
+    assertThat(detached.verify(dsl, false, false).checked()).isZero();
+    ChecksumVerifier.Result all = detached.verify(dsl, true, true);
+
+    assertThat(all).isEqualTo(new ChecksumVerifier.Result(2, List.of()));
+    TransactionChecksums c = TransactionChecksums.TRANSACTION_CHECKSUMS;
+    assertThat(
+            dsl.select(c.TXN_COUNT)
+                .from(c)
+                .where(c.TXN_MONTH.eq(LocalDate.parse("2024-01-01")))
+                .fetchOne(c.TXN_COUNT))
+        .isEqualTo(3L);
+    assertThat(verifier.verify(dsl, true, false).mismatches())
+        .extracting(ChecksumVerifier.Mismatch::month)
+        .containsExactly(LocalDate.parse("2024-01-01"));
+  }
+
+  private void ingest(TransactionRecord... txs) {
+    TransactionRepository repository = new TransactionRepository();
+    RollupRepository.Deltas deltas = new RollupRepository.Deltas();
+    for (TransactionRecord t : txs) {
+      if (repository.upsert(dsl, t, ACCOUNT)) {
+        deltas.add(ACCOUNT.id(), t);
+      }
+    }
+    new RollupRepository().apply(dsl, deltas);
+  }
+
+  /** {@code hash} is one hex digit, repeated into a full SHA-256 hash. */
+  private static TransactionRecord tx(String hash, String occurredAt, long cents) {
+    return new GenericTransaction(
+        "1234",
+        occurredAt == null ? null : Instant.parse(occurredAt),
+        null,
+        new Money(cents, "USD"),
+        "Merchant",
+        null,
+        null,
+        null,
+        hash.repeat(64),
+        List.of(),
+        List.of());
+  }
+}
@@ -0,0 +1,160 @@
+package org.artificers.ingest.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.assertj.core.api.Assertions.within;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import org.artificers.ingest.model.GenericTransaction;
+import org.artificers.ingest.model.Money;
+import org.artificers.ingest.model.ResolvedAccount;
+import org.artificers.ingest.model.TransactionRecord;
+import org.artificers.jooq.tables.DuplicateCandidates;
+import org.artificers.jooq.tables.DuplicateScanState;
+import org.jooq.DSLContext;
+import org.jooq.impl.DSL;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class DuplicateDetectorTest {
+  private static final ResolvedAccount CARD = new ResolvedAccount(1L, "ch", "1234");
+  private static final Duration WINDOW = Duration.ofDays(3);
+
+  private DSLContext dsl;
+  private DuplicateDetector detector;
+
+  @BeforeEach
+  void setup() {
+    dsl = DSL.using("jdbc:h2:mem:duplicates;MODE=PostgreSQL", "sa", "");
+    dsl.execute("drop table if exists duplicate_candidates");
+    dsl.execute("drop table if exists duplicate_scan_state");
+    dsl.execute("drop table if exists transactions");
+    dsl.execute("drop table if exists source_schemas");
+    dsl.execute(
+        "create table source_schemas (id bigserial primary key, headers varchar array not null"
+            + " unique, created_at timestamp with time zone)");
+    dsl.execute(
+        "create table transactions (id bigserial primary key, account_id bigint not null,"
+            + " occurred_at timestamp with time zone, posted_at timestamp with time zone,"
+            + " amount_cents bigint not null, currency varchar not null, merchant varchar,"
+            + " merchant_canonical varchar, unified_category varchar, category varchar, memo"
+            + " varchar, txn_type varchar, hash bytea not null, source_schema_id bigint not null,"
+            + " raw_values varchar array not null, created_at timestamp with time zone,"
+            + " unique(account_id, hash))");
+    dsl.execute(
+        "create table duplicate_candidates (id bigserial primary key, account_id bigint not null,"
+            + " duplicate_of_id bigint not null, transaction_id bigint not null, amount_cents"
+            + " bigint not null, currency varchar not null, similarity real not null,"
+            + " seconds_apart bigint not null, status varchar default 'pending' not null,"
+            + " created_at timestamp with time zone default current_timestamp not null,"
+            + " reviewed_at timestamp with time zone, unique (duplicate_of_id, transaction_id))");
+    dsl.execute(
+        "create table duplicate_scan_state (id integer primary key, last_transaction_id bigint"
+            + " not null, updated_at timestamp with time zone default current_timestamp not"
+            + " null)");
+    detector = new DuplicateDetector(dsl, WINDOW, DuplicateDetector.DEFAULT_MIN_SIMILARITY);
+  }
+
+  @Test
+  void scanFlagsRenamedMerchantsOfOneAccountAndAmountWithinTheWindow() {
+    List<DuplicateDetector.Row> rows =
+        List.of(
+            row(1, 1, -650, "2024-03-01", "SQ *BLUE BOTTLE"),
+            row(4, 1, -650, "2024-03-02", "BLUE BOTTLE COFFEE SF"),
+            row(6, 1, -650, "2024-03-02", "SHELL OIL 5744"),
+            row(7, 1, -650, "2024-03-09", "SQ *BLUE BOTTLE"),
+            row(8, 1, -700, "2024-03-01", "BLUE BOTTLE COFFEE"),
+            row(5, 2, -650, "2024-03-01", "SQ *BLUE BOTTLE"));
+    List<DuplicateDetector.Candidate> candidates = new ArrayList<>();
+
+    DuplicateDetector.detect(rows.iterator(), WINDOW, 0.3, 0, candidates::add);
+
+    assertThat(candidates)
+        .extracting(c -> c.original().id(), c -> c.duplicate().id())
+        .containsExactly(tuple(1L, 4L));
+    assertThat(candidates.get(0).similarity()).isBetween(0.4, 0.5);
+
+    candidates.clear();
+    DuplicateDetector.detect(rows.iterator(), WINDOW, 0.3, 4, candidates::add);
+    assertThat(candidates).isEmpty();
+  }
+
+  @Test
+  void signaturesAgreeAboutAsOftenAsTheShinglesOverlap() {
+    long[] a = ReceiptMatcher.trigrams("AMAZON MKTPLACE PMTS AMZN COM BILL WA");
+    long[] b = ReceiptMatcher.trigrams("AMAZON MARKETPLACE AMZN COM BILL WA");
+    long[] sa = DuplicateDetector.signature(a);
+    long[] sb = DuplicateDetector.signature(b);
+    int agree = 0;
+    for (int i = 0; i < sa.length; i++) {
+      agree += sa[i] == sb[i] ? 1 : 0;
+    }
+
+    assertThat((double) agree / sa.length).isCloseTo(DuplicateDetector.jaccard(a, b), within(0.25));
+    assertThat(DuplicateDetector.signature(a)).isEqualTo(sa);
+    assertThat(DuplicateDetector.jaccard(a, a)).isEqualTo(1.0);
+  }
+
+  @Test
+  void scansIncrementallyAndKeepsReviews() {
+    ingest(
+        tx("a", "2024-03-01T12:00:00Z", -650, "SQ *BLUE BOTTLE"),
+        tx("b", "2024-03-01T18:00:00Z", -4213, "TRADER JOE S #552"));
+
+    assertThat(detector.scan(dsl)).isEqualTo(new DuplicateDetector.Result(2, 2, 0));
+
+    ingest(
+        tx("c", "2024-03-02T00:00:00Z", -650, "BLUE BOTTLE COFFEE SF"),
+        tx("d", null, -650, "BLUE BOTTLE COFFEE SF"));
+    DuplicateDetector.Result second = detector.scan(dsl);
+
+    assertThat(second.newRows()).isEqualTo(2);
+    assertThat(second.flagged()).isEqualTo(1);
+    DuplicateCandidates d = DuplicateCandidates.DUPLICATE_CANDIDATES;
+    assertThat(
+            dsl.select(d.DUPLICATE_OF_ID, d.TRANSACTION_ID, d.SECONDS_APART, d.STATUS)
+                .from(d)
+                .fetch(r -> tuple(r.value1(), r.value2(), r.value3(), r.value4())))
+        .containsExactly(tuple(1L, 3L, 43_200L, "pending"));
+    DuplicateScanState s = DuplicateScanState.DUPLICATE_SCAN_STATE;
+    assertThat(dsl.select(s.LAST_TRANSACTION_ID).from(s).fetchOne(s.LAST_TRANSACTION_ID))
+        .isEqualTo(4L);
+
+    dsl.update(d).set(d.STATUS, "distinct").execute();
+    assertThat(detector.scanAll(dsl)).isEqualTo(new DuplicateDetector.Result(4, 3, 0));
+    assertThat(dsl.select(d.STATUS).from(d).fetch(d.STATUS)).containsExactly("distinct");
+  }
+
+  private void ingest(TransactionRecord... txs) {
+    TransactionRepository repository = new TransactionRepository();
+    for (TransactionRecord t : txs) {
+      repository.upsert(dsl, t, CARD);
+    }
+  }
+
+  private static DuplicateDetector.Row row(
+      long id, long account, long cents, String date, String merchant) {
+    return new DuplicateDetector.Row(
+        id, account, cents, "USD", OffsetDateTime.parse(date + "T00:00:00Z"), merchant);
+  }
+
+  /** {@code hash} is one hex digit, repeated into a full SHA-256 hash. */
+  private static TransactionRecord tx(String hash, String occurredAt, long cents, String merchant) {
+    return new GenericTransaction(
+        "1234",
+        occurredAt == null ? null : Instant.parse(occurredAt),
+        null,
+        new Money(cents, "USD"),
+        merchant,
+        null,
+        null,
+        null,
+        hash.repeat(64),
+        List.of(),
+        List.of());
+  }
+}
@@ -38,7 +38,7 @@ class FileIngestionServiceTest {
     when(coReader.institution()).thenReturn("co");
     TransactionRecord dummy =
         new GenericTransaction(
-            "id", null, null, new Money(1, "USD"), "m", "c", null, null, "h", "{}");
+            "id", null, null, new Money(1, "USD"), "m", "c", null, null, "h", List.of(), List.of());
     when(chReader.read(any(), any(), eq("1234"))).thenReturn(List.of(dummy));
     when(coReader.read(any(), any(), eq("1828"))).thenReturn(List.of(dummy));
     when(resolver.resolve(any(DSLContext.class), eq("ch1234")))
@@ -52,7 +52,8 @@ class FileIngestionServiceTest {
     TransactionRepository repo = new TransactionRepository();
     MaterializedViewRefresher refresher = new MaterializedViewRefresher(dsl);
     IngestService service =
-        new IngestService(dsl, resolver, parser, Set.of(chReader, coReader), repo, refresher);
+        TestIngestServices.create(
+            dsl, resolver, parser, Set.of(chReader, coReader), repo, refresher);
     FileIngestionService fileService = new FileIngestionService(service, parser);
     fileService.scanAndIngest(dir);
 
@@ -1,6 +1,8 @@
 package org.artificers.ingest.service;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import java.time.Instant;
 import org.artificers.ingest.model.Money;
@@ -23,4 +25,17 @@ class HashGeneratorTest {
 
     assertEquals(nullHash1, nullHash2);
   }
+
+  @Test
+  void hexHashParsesBackToItsDigest() {
+    Money amount = new Money(123L, "USD");
+    Instant occurred = Instant.parse("2024-01-01T00:00:00Z");
+
+    byte[] digest = HashGenerator.sha256Bytes("acct", amount, occurred, "merchant");
+
+    assertEquals(HashGenerator.DIGEST_BYTES, digest.length);
+    assertArrayEquals(
+        digest, HashGenerator.digest(HashGenerator.sha256("acct", amount, occurred, "merchant")));
+    assertThrows(IllegalArgumentException.class, () -> HashGenerator.digest("abc"));
+  }
 }
@@ -0,0 +1,128 @@
+package org.artificers.ingest.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import org.artificers.ingest.csv.TransactionCsvReader;
+import org.artificers.ingest.error.IngestException;
+import org.artificers.ingest.model.GenericTransaction;
+import org.artificers.ingest.model.Money;
+import org.artificers.ingest.model.TransactionRecord;
+import org.jooq.DSLContext;
+import org.jooq.Record;
+import org.jooq.impl.DSL;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class IngestRunRepositoryTest {
+  @Test
+  void recordsSuccessfulAndFailedRuns(@TempDir Path dir) throws Exception {
+    DSLContext dsl = DSL.using("jdbc:h2:mem:ingest_runs;MODE=PostgreSQL", "sa", "");
+    dsl.execute("drop table if exists ingest_runs");
+    dsl.execute("drop table if exists transaction_checksums");
+    dsl.execute("drop table if exists transactions");
+    dsl.execute("drop table if exists source_schemas");
+    dsl.execute("drop table if exists accounts");
+    dsl.execute(
+        "create table accounts (id serial primary key, institution varchar not null, external_id"
+            + " varchar not null, display_name varchar not null, created_at timestamp, updated_at"
+            + " timestamp)");
+    dsl.execute("create unique index on accounts(institution, external_id)");
+    dsl.execute(
+        "create table source_schemas (id bigserial primary key, headers varchar array not null"
+            + " unique, created_at timestamp with time zone)");
+    dsl.execute(
+        "create table transactions (id serial primary key, account_id bigint not null references"
+            + " accounts(id), occurred_at timestamp, posted_at timestamp, amount_cents bigint not"
+            + " null, currency varchar not null, merchant varchar, merchant_canonical varchar,"
+            + " unified_category varchar, category varchar, txn_type varchar, memo varchar, hash"
+            + " bytea not null, source_schema_id bigint not null, raw_values varchar array not"
+            + " null)");
+    dsl.execute("create unique index on transactions(account_id, hash)");
+    dsl.execute(
+        "create table transaction_checksums (account_id bigint not null, txn_month date not null,"
+            + " txn_count bigint not null, amount_cents bigint not null, hash_xor bigint not null,"
+            + " updated_at timestamp with time zone default current_timestamp not null,"
+            + " verified_at timestamp with time zone, primary key (account_id, txn_month))");
+    dsl.execute(
+        "create table ingest_runs (id bigserial primary key, file_name varchar not null,"
+            + " shorthand varchar not null, institution varchar, account_id bigint, rows_read"
+            + " bigint not null, rows_inserted bigint not null, rows_duplicate bigint not null,"
+            + " rows_rejected bigint not null, bytes bigint not null, read_micros bigint not null,"
+            + " parse_micros bigint not null, persist_micros bigint not null, refresh_micros"
+            + " bigint not null, rows_spilled bigint not null, spill_bytes bigint not null,"
+            + " spill_micros bigint not null, total_micros bigint not null, outcome varchar not"
+            + " null, error varchar, started_at timestamp with time zone not null, finished_at"
+            + " timestamp with time zone not null)");
+
+    AccountShorthandParser parser = new AccountShorthandParser();
+    TransactionCsvReader reader = mock(TransactionCsvReader.class);
+    when(reader.institution()).thenReturn("ch");
+    TransactionRecord t1 =
+        new GenericTransaction(
+            "a",
+            null,
+            null,
+            new Money(100, "USD"),
+            "m",
+            "c",
+            null,
+            null,
+            String.format("%064x", 1),
+            List.of(),
+            List.of());
+    TransactionRecord t2 =
+        new GenericTransaction(
+            "a",
+            null,
+            null,
+            new Money(200, "USD"),
+            "m",
+            "c",
+            null,
+            null,
+            String.format("%064x", 1),
+            List.of(),
+            List.of());
+    when(reader.read(any(), any(), eq("1234"))).thenReturn(List.of(t1, t2), List.of());
+    IngestService service =
+        TestIngestServices.create(
+            dsl,
+            new AccountResolver(dsl, parser),
+            parser,
+            Set.of(reader),
+            new TransactionRepository(),
+            new MaterializedViewRefresher(dsl),
+            Set.of(new IngestRunRepository(dsl)));
+
+    Path file = dir.resolve("ch1234-jan.csv");
+    Files.writeString(file, "id,amount\n1,10");
+    service.ingestFile(file, "ch1234");
+    assertThatThrownBy(() -> service.ingestFile(file, "ch1234"))
+        .isInstanceOf(IngestException.class);
+
+    List<Record> runs = dsl.resultQuery("select * from ingest_runs order by id").fetch();
+    assertThat(runs).hasSize(2);
+    Record ok = runs.get(0);
+    assertThat(ok.get("FILE_NAME", String.class)).isEqualTo("ch1234-jan.csv");
+    assertThat(ok.get("INSTITUTION", String.class)).isEqualTo("ch");
+    assertThat(ok.get("ACCOUNT_ID", Long.class)).isNotNull();
+    assertThat(ok.get("ROWS_READ", Long.class)).isEqualTo(2);
+    assertThat(ok.get("ROWS_INSERTED", Long.class)).isEqualTo(1);
+    assertThat(ok.get("ROWS_DUPLICATE", Long.class)).isEqualTo(1);
+    assertThat(ok.get("BYTES", Long.class)).isEqualTo(14);
+    assertThat(ok.get("OUTCOME", String.class)).isEqualTo("success");
+    assertThat(ok.get("ERROR", String.class)).isNull();
+
+    Record failed = runs.get(1);
+    assertThat(failed.get("OUTCOME", String.class)).isEqualTo("failure");
+    assertThat(failed.get("ACCOUNT_ID", Long.class)).isNull();
+    assertThat(failed.get("ERROR", String.class)).contains("No transactions found");
+  }
+}
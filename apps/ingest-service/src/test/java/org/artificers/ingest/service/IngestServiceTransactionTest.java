@@ -24,19 +24,31 @@ class IngestServiceTransactionTest {
   void ignoresDuplicateTransactions(String institution, @TempDir Path dir) throws Exception {
     DSLContext dsl = DSL.using("jdbc:h2:mem:test;MODE=PostgreSQL", "sa", "");
     dsl.execute("drop view if exists transactions_view");
+    dsl.execute("drop table if exists transaction_checksums");
     dsl.execute("drop table if exists transactions");
+    dsl.execute("drop table if exists source_schemas");
     dsl.execute("drop table if exists accounts");
     dsl.execute(
         "create table accounts (id serial primary key, institution varchar not null, external_id"
             + " varchar not null, display_name varchar not null, created_at timestamp, updated_at"
             + " timestamp)");
     dsl.execute("create unique index on accounts(institution, external_id)");
+    dsl.execute(
+        "create table source_schemas (id bigserial primary key, headers varchar array not null"
+            + " unique, created_at timestamp with time zone)");
     dsl.execute(
         "create table transactions (id serial primary key, account_id bigint not null references"
             + " accounts(id), occurred_at timestamp, posted_at timestamp, amount_cents bigint not"
-            + " null, currency varchar not null, merchant varchar, category varchar, txn_type"
-            + " varchar, memo varchar, hash varchar not null, raw_json clob)");
+            + " null, currency varchar not null, merchant varchar, merchant_canonical varchar,"
+            + " unified_category varchar, category varchar, txn_type varchar, memo varchar, hash"
+            + " bytea not null, source_schema_id bigint not null, raw_values varchar array not"
+            + " null)");
     dsl.execute("create unique index on transactions(account_id, hash)");
+    dsl.execute(
+        "create table transaction_checksums (account_id bigint not null, txn_month date not null,"
+            + " txn_count bigint not null, amount_cents bigint not null, hash_xor bigint not null,"
+            + " updated_at timestamp with time zone default current_timestamp not null,"
+            + " verified_at timestamp with time zone, primary key (account_id, txn_month))");
 
     AccountShorthandParser parser = new AccountShorthandParser();
     AccountResolver resolver = new AccountResolver(dsl, parser);
@@ -44,17 +56,37 @@ class IngestServiceTransactionTest {
     when(reader.institution()).thenReturn(institution);
     TransactionRecord t1 =
         new GenericTransaction(
-            "a", null, null, new Money(100, "USD"), "m", "c", null, null, "h1", "{}");
+            "a",
+            null,
+            null,
+            new Money(100, "USD"),
+            "m",
+            "c",
+            null,
+            null,
+            String.format("%064x", 1),
+            List.of(),
+            List.of());
     TransactionRecord t2 =
         new GenericTransaction(
-            "a", null, null, new Money(200, "USD"), "m", "c", null, null, "h1", "{}");
+            "a",
+            null,
+            null,
+            new Money(200, "USD"),
+            "m",
+            "c",
+            null,
+            null,
+            String.format("%064x", 1),
+            List.of(),
+            List.of());
     when(reader.read(any(), any(), eq("1234"))).thenReturn(List.of(t1, t2));
 
     Files.writeString(dir.resolve(institution + "1234.csv"), "id,amount\n1,10");
     TransactionRepository repo = new TransactionRepository();
     MaterializedViewRefresher refresher = new MaterializedViewRefresher(dsl);
     IngestService service =
-        new IngestService(dsl, resolver, parser, Set.of(reader), repo, refresher);
+        TestIngestServices.create(dsl, resolver, parser, Set.of(reader), repo, refresher);
     service.ingestFile(dir.resolve(institution + "1234.csv"), institution + "1234");
     assertThat(dsl.fetchCount(DSL.table("transactions"))).isEqualTo(1);
   }
@@ -21,8 +21,7 @@ class IngestServiceViewTest {
     try (InputStream in = getClass().getResourceAsStream("/mappings/" + institution + ".json")) {
       ConfigurableCsvReader.Mapping mapping =
           new ObjectMapper().readValue(in, ConfigurableCsvReader.Mapping.class);
-      return new ConfigurableCsvReader(
-          new ObjectMapper(), new BasicTransactionValidator(), mapping);
+      return new ConfigurableCsvReader(new BasicTransactionValidator(), mapping);
     }
   }
 
@@ -42,7 +41,11 @@ class IngestServiceViewTest {
     DSLContext dsl = DSL.using("jdbc:h2:mem:test;MODE=PostgreSQL", "sa", "");
 
     dsl.execute("drop view if exists transactions_view");
+    dsl.execute("drop table if exists daily_account_totals");
+    dsl.execute("drop table if exists monthly_category_totals");
+    dsl.execute("drop table if exists transaction_checksums");
     dsl.execute("drop table if exists transactions");
+    dsl.execute("drop table if exists source_schemas");
     dsl.execute("drop table if exists accounts");
 
     dsl.execute(
@@ -50,12 +53,31 @@ class IngestServiceViewTest {
             + " varchar not null, display_name varchar not null, created_at timestamp, updated_at"
             + " timestamp)");
     dsl.execute("create unique index on accounts(institution, external_id)");
+    dsl.execute(
+        "create table source_schemas (id bigserial primary key, headers varchar array not null"
+            + " unique, created_at timestamp with time zone)");
     dsl.execute(
         "create table transactions (id serial primary key, account_id bigint not null references"
             + " accounts(id), occurred_at timestamp, posted_at timestamp, amount_cents bigint not"
-            + " null, currency varchar not null, merchant varchar, category varchar, txn_type"
-            + " varchar, memo varchar, hash varchar not null, raw_json clob)");
+            + " null, currency varchar not null, merchant varchar, merchant_canonical varchar,"
+            + " unified_category varchar, category varchar, txn_type varchar, memo varchar, hash"
+            + " bytea not null, source_schema_id bigint not null, raw_values varchar array not"
+            + " null)");
     dsl.execute("create unique index on transactions(account_id, hash)");
+    dsl.execute(
+        "create table daily_account_totals (account_id bigint not null, txn_date date not null,"
+            + " currency varchar not null, txn_count bigint not null, inflow_cents bigint not null,"
+            + " outflow_cents bigint not null, primary key (account_id, txn_date, currency))");
+    dsl.execute(
+        "create table monthly_category_totals (account_id bigint not null, txn_month date not"
+            + " null, category varchar not null, currency varchar not null, txn_count bigint not"
+            + " null, inflow_cents bigint not null, outflow_cents bigint not null, primary key"
+            + " (account_id, txn_month, category, currency))");
+    dsl.execute(
+        "create table transaction_checksums (account_id bigint not null, txn_month date not null,"
+            + " txn_count bigint not null, amount_cents bigint not null, hash_xor bigint not null,"
+            + " updated_at timestamp with time zone default current_timestamp not null,"
+            + " verified_at timestamp with time zone, primary key (account_id, txn_month))");
 
     ConfigurableCsvReader reader = reader(institution);
     AccountShorthandParser parser = new AccountShorthandParser();
@@ -63,7 +85,7 @@ class IngestServiceViewTest {
     TransactionRepository repo = new TransactionRepository();
     MaterializedViewRefresher refresher = new MaterializedViewRefresher(dsl);
     IngestService service =
-        new IngestService(dsl, resolver, parser, Set.of(reader), repo, refresher);
+        TestIngestServices.create(dsl, resolver, parser, Set.of(reader), repo, refresher);
 
     Path file = copyResource("/examples/" + fileName, dir);
     service.ingestFile(file, institution + externalId);
@@ -77,6 +99,11 @@ class IngestServiceViewTest {
             .from("transactions")
             .fetchOne(0, Long.class);
     assertThat(total).isEqualTo(sum);
+    long rollupTotal =
+        dsl.select(DSL.coalesce(DSL.sum(DSL.field("inflow_cents - outflow_cents", Long.class)), 0L))
+            .from("daily_account_totals")
+            .fetchOne(0, Long.class);
+    assertThat(rollupTotal).isEqualTo(sum);
 
     dsl.execute(
         "create view transactions_view as select t.*, a.institution from transactions t "
@@ -0,0 +1,129 @@
+package org.artificers.ingest.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.artificers.ingest.metrics.MetricsRegistry;
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.Record2;
+import org.jooq.Result;
+import org.jooq.SQLDialect;
+import org.jooq.impl.DSL;
+import org.jooq.impl.SQLDataType;
+import org.jooq.tools.jdbc.MockConnection;
+import org.jooq.tools.jdbc.MockDataProvider;
+import org.jooq.tools.jdbc.MockResult;
+import org.junit.jupiter.api.Test;
+
+class MaterializedViewRefresherTest {
+  private final List<String> statements = new CopyOnWriteArrayList<>();
+  private final AtomicInteger failingLookups = new AtomicInteger();
+
+  /**
+   * Answers catalog lookups, after failing the first {@link #failingLookups}: {@code daily} has a
+   * unique index, {@code summary} does not.
+   */
+  private DSLContext dsl() {
+    DSLContext create = DSL.using(SQLDialect.POSTGRES);
+    Field<Boolean> populated = DSL.field("ispopulated", SQLDataType.BOOLEAN);
+    Field<Boolean> unique = DSL.field("has_unique", SQLDataType.BOOLEAN);
+    MockDataProvider provider =
+        ctx -> {
+          String sql = ctx.sql();
+          if (sql.contains("pg_matviews")) {
+            if (failingLookups.getAndDecrement() > 0) {
+              throw new SQLException("connection reset");
+            }
+            Result<Record2<Boolean, Boolean>> result = create.newResult(populated, unique);
+            String view = String.valueOf(ctx.bindings()[0]);
+            if (!view.equals("plain_view")) {
+              result.add(create.newRecord(populated, unique).values(true, view.equals("daily")));
+            }
+            return new MockResult[] {new MockResult(result.size(), result)};
+          }
+          statements.add(sql);
+          return new MockResult[] {new MockResult(0)};
+        };
+    return DSL.using(new MockConnection(provider), SQLDialect.POSTGRES);
+  }
+
+  @Test
+  void coalescesBurstsIntoOneRefreshPerViewInDependencyOrder() throws Exception {
+    MetricsRegistry registry = new MetricsRegistry();
+    try (MaterializedViewRefresher refresher =
+        new MaterializedViewRefresher(
+            dsl(),
+            List.of(
+                new MaterializedViewRefresher.View("summary", Set.of("daily")),
+                new MaterializedViewRefresher.View("daily", Set.of("transactions")),
+                new MaterializedViewRefresher.View("plain_view", Set.of("transactions"))),
+            Duration.ofMillis(100),
+            registry)) {
+      for (int i = 0; i < 20; i++) {
+        refresher.requestRefresh("transactions");
+      }
+      assertThat(refresher.stalenessSeconds("summary")).isPositive();
+
+      long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+      while (statements.size() < 2 && System.nanoTime() < deadline) {
+        Thread.sleep(10);
+      }
+      Thread.sleep(300);
+
+      assertThat(statements)
+          .containsExactly(
+              "refresh materialized view concurrently \"daily\"",
+              "refresh materialized view \"summary\"");
+      assertThat(refresher.stalenessSeconds("summary")).isZero();
+      assertThat(registry.samples())
+          .containsEntry("ingest_view_refresh_requests_total", 20.0)
+          .containsEntry("ingest_view_refreshes_total{view=\"daily\",outcome=\"success\"}", 1.0);
+    }
+  }
+
+  @Test
+  void retriesViewsWhoseCatalogLookupFailed() throws Exception {
+    MetricsRegistry registry = new MetricsRegistry();
+    failingLookups.set(1);
+    try (MaterializedViewRefresher refresher =
+        new MaterializedViewRefresher(
+            dsl(),
+            List.of(new MaterializedViewRefresher.View("daily", Set.of("transactions"))),
+            Duration.ofMillis(20),
+            registry)) {
+      refresher.requestRefresh("transactions");
+
+      long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+      while (statements.isEmpty() && System.nanoTime() < deadline) {
+        Thread.sleep(10);
+      }
+
+      assertThat(statements).containsExactly("refresh materialized view concurrently \"daily\"");
+      assertThat(registry.samples())
+          .containsEntry("ingest_view_refreshes_total{view=\"daily\",outcome=\"failure\"}", 1.0)
+          .containsEntry("ingest_view_refreshes_total{view=\"daily\",outcome=\"success\"}", 1.0);
+    }
+  }
+
+  @Test
+  void closeFlushesPendingRefreshes() {
+    MaterializedViewRefresher refresher =
+        new MaterializedViewRefresher(
+            dsl(),
+            List.of(new MaterializedViewRefresher.View("daily", Set.of("transactions"))),
+            Duration.ofHours(1),
+            new MetricsRegistry());
+    refresher.requestRefresh("accounts");
+    refresher.requestRefresh("transactions");
+
+    refresher.close();
+
+    assertThat(statements).containsExactly("refresh materialized view concurrently \"daily\"");
+  }
+}
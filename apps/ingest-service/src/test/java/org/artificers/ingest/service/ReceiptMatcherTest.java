@@ -0,0 +1,176 @@
+package org.artificers.ingest.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import org.artificers.jooq.tables.ReceiptLinks;
+import org.jooq.DSLContext;
+import org.jooq.impl.DSL;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ReceiptMatcherTest {
+  private static final Duration TOLERANCE = Duration.ofDays(2);
+  private static final UUID GROCERIES = UUID.fromString("00000000-0000-0000-0000-000000000001");
+  private static final UUID COFFEE = UUID.fromString("00000000-0000-0000-0000-000000000002");
+  private static final UUID LATER = UUID.fromString("00000000-0000-0000-0000-000000000003");
+
+  private DSLContext dsl;
+  private ReceiptMatcher matcher;
+
+  @BeforeEach
+  void setup() {
+    dsl = DSL.using("jdbc:h2:mem:receipts;MODE=PostgreSQL", "sa", "");
+    dsl.execute("drop table if exists receipt_links");
+    dsl.execute("drop table if exists receipt_transactions");
+    dsl.execute("drop table if exists transactions");
+    dsl.execute(
+        "create table transactions (id bigserial primary key, account_id bigint not null,"
+            + " occurred_at timestamp with time zone, posted_at timestamp with time zone,"
+            + " amount_cents bigint not null, currency varchar not null, merchant varchar,"
+            + " merchant_canonical varchar, unified_category varchar, category varchar, memo"
+            + " varchar, txn_type varchar, hash bytea, source_schema_id bigint, raw_values varchar"
+            + " array, created_at timestamp with time zone)");
+    dsl.execute(
+        "create table receipt_links (receipt_id uuid primary key, transaction_id bigint not null"
+            + " unique, account_id bigint not null, amount_cents bigint not null, merchant_score"
+            + " real not null, seconds_apart bigint not null, created_at timestamp with time zone"
+            + " default current_timestamp not null)");
+    matcher = new ReceiptMatcher(dsl, TOLERANCE, ReceiptMatcher.DEFAULT_MIN_SCORE);
+  }
+
+  @Test
+  void similarityIgnoresCasePunctuationAndStoreNumbers() {
+    assertThat(ReceiptMatcher.similarity("Trader Joe's", "TRADER JOE S #552")).isGreaterThan(0.6);
+    assertThat(ReceiptMatcher.similarity("Costco Wholesale", "COSTCO WHSE #0123"))
+        .isGreaterThan(ReceiptMatcher.DEFAULT_MIN_SCORE);
+    assertThat(ReceiptMatcher.similarity("Blue Bottle Coffee", "SHELL OIL 5744"))
+        .isLessThan(ReceiptMatcher.DEFAULT_MIN_SCORE);
+    assertThat(ReceiptMatcher.similarity("Target", "target")).isEqualTo(1.0);
+    assertThat(ReceiptMatcher.similarity(null, "Target")).isZero();
+  }
+
+  @Test
+  void intervalIndexReportsOnlyCardsOfTheAmountWithinTheTolerance() {
+    List<ReceiptMatcher.Card> cards =
+        List.of(
+            card(1, 2500, "2024-05-01T12:00:00Z", "A"),
+            card(2, 2500, "2024-05-03T12:00:00Z", "A"),
+            card(3, 2500, "2024-05-06T12:00:00Z", "A"),
+            card(4, 2600, "2024-05-03T12:00:00Z", "A"),
+            card(5, 2500, "2024-05-02T00:00:00Z", "A"));
+    ReceiptMatcher.IntervalIndex index = new ReceiptMatcher.IntervalIndex(cards, TOLERANCE);
+    List<Long> hits = new ArrayList<>();
+
+    index.probe("USD", 2500, at("2024-05-03T12:00:00Z"), i -> hits.add(cards.get(i).id()));
+
+    assertThat(hits).containsExactly(1L, 5L, 2L);
+    hits.clear();
+    index.probe("EUR", 2500, at("2024-05-03T12:00:00Z"), i -> hits.add(cards.get(i).id()));
+    assertThat(hits).isEmpty();
+  }
+
+  @Test
+  void pairsBestScoresFirstAndUsesEachSideOnce() {
+    ReceiptMatcher.Receipt cafe =
+        receipt(COFFEE, "Blue Bottle Coffee", 650, "2024-05-02T08:00:00Z");
+    ReceiptMatcher.Receipt other =
+        receipt(LATER, "Blue Bottle Coffee", 650, "2024-05-02T09:30:00Z");
+    List<ReceiptMatcher.Card> cards =
+        List.of(
+            card(1, 650, "2024-05-02T08:30:00Z", "BLUE BOTTLE COFFEE"),
+            card(2, 650, "2024-05-02T08:05:00Z", "SHELL OIL 5744"),
+            card(3, 650, "2024-05-03T09:00:00Z", "BLUEBOTTLE CAFE"));
+
+    List<ReceiptMatcher.Match> matches =
+        ReceiptMatcher.pair(
+            List.of(cafe, other), cards, TOLERANCE, ReceiptMatcher.DEFAULT_MIN_SCORE, new int[1]);
+
+    assertThat(matches)
+        .extracting(m -> m.receipt().id(), m -> m.card().id())
+        .containsExactlyInAnyOrder(tuple(COFFEE, 1L), tuple(LATER, 3L));
+  }
+
+  @Test
+  void linksReceiptsIncrementallyAsTransactionsArrive() {
+    createReceipts();
+    insertReceipt(GROCERIES, "Trader Joe's", 4213, "2024-05-04T18:00:00Z");
+    insertReceipt(COFFEE, "Blue Bottle Coffee", 650, "2024-05-02T08:00:00Z");
+    insertTransaction(1, -4213, "2024-05-05T00:00:00Z", "TRADER JOE S #552");
+    insertTransaction(1, -650, "2024-05-09T00:00:00Z", "BLUE BOTTLE COFFEE");
+    insertTransaction(1, 4213, "2024-05-05T00:00:00Z", "TRADER JOE S #552");
+
+    ReceiptMatcher.Result first = matcher.match(dsl);
+
+    assertThat(first.available()).isTrue();
+    assertThat(first.receipts()).isEqualTo(2);
+    assertThat(first.linked()).isEqualTo(1);
+    ReceiptLinks l = ReceiptLinks.RECEIPT_LINKS;
+    assertThat(dsl.select(l.RECEIPT_ID, l.TRANSACTION_ID, l.AMOUNT_CENTS).from(l).fetch())
+        .extracting(r -> r.value1(), r -> r.value2(), r -> r.value3())
+        .containsExactly(tuple(GROCERIES, 1L, -4213L));
+
+    insertTransaction(2, -650, "2024-05-02T10:00:00Z", "BLUE BOTTLE COFFEE");
+    ReceiptMatcher.Result second = matcher.match(dsl);
+
+    assertThat(second.receipts()).isEqualTo(1);
+    assertThat(second.linked()).isEqualTo(1);
+    assertThat(dsl.fetchCount(l)).isEqualTo(2);
+    assertThat(matcher.match(dsl).receipts()).isZero();
+  }
+
+  @Test
+  void withoutThePlutaryTablesNothingIsMatched() {
+    insertTransaction(1, -650, "2024-05-02T10:00:00Z", "BLUE BOTTLE COFFEE");
+
+    ReceiptMatcher.Result result = matcher.match(dsl);
+
+    assertThat(result.available()).isFalse();
+    assertThat(result.linked()).isZero();
+  }
+
+  private void createReceipts() {
+    dsl.execute(
+        "create table receipt_transactions (receipt_ingestion_id uuid primary key, merchant"
+            + " varchar not null, total_amount_cents bigint not null, currency varchar not null,"
+            + " occurred_at timestamp with time zone, created_at timestamp with time zone)");
+  }
+
+  private void insertReceipt(UUID id, String merchant, long cents, String occurredAt) {
+    dsl.execute(
+        "insert into receipt_transactions (receipt_ingestion_id, merchant, total_amount_cents,"
+            + " currency, occurred_at) values (?, ?, ?, 'USD', ?)",
+        id,
+        merchant,
+        cents,
+        at(occurredAt));
+  }
+
+  private void insertTransaction(long accountId, long cents, String occurredAt, String merchant) {
+    dsl.execute(
+        "insert into transactions (account_id, amount_cents, currency, occurred_at, merchant)"
+            + " values (?, ?, 'USD', ?, ?)",
+        accountId,
+        cents,
+        at(occurredAt),
+        merchant);
+  }
+
+  private static ReceiptMatcher.Receipt receipt(
+      UUID id, String merchant, long cents, String occurredAt) {
+    return new ReceiptMatcher.Receipt(id, merchant, cents, "USD", at(occurredAt));
+  }
+
+  private static ReceiptMatcher.Card card(long id, long cents, String occurredAt, String merchant) {
+    return new ReceiptMatcher.Card(id, 1L, cents, "USD", at(occurredAt), merchant, null);
+  }
+
+  private static OffsetDateTime at(String instant) {
+    return OffsetDateTime.parse(instant);
+  }
+}
@@ -0,0 +1,166 @@
+package org.artificers.ingest.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import org.artificers.ingest.model.GenericTransaction;
+import org.artificers.ingest.model.Money;
+import org.artificers.ingest.model.ResolvedAccount;
+import org.artificers.ingest.model.TransactionRecord;
+import org.artificers.jooq.tables.DailyAccountTotals;
+import org.artificers.jooq.tables.MonthlyCategoryTotals;
+import org.artificers.jooq.tables.TransactionChecksums;
+import org.jooq.DSLContext;
+import org.jooq.Record;
+import org.jooq.impl.DSL;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class RollupRepositoryTest {
+  private static final ResolvedAccount ACCOUNT = new ResolvedAccount(1L, "co", "1234");
+
+  private final RollupRepository rollups = new RollupRepository();
+  private DSLContext dsl;
+
+  @BeforeEach
+  void setup() {
+    dsl = DSL.using("jdbc:h2:mem:rollups;MODE=PostgreSQL", "sa", "");
+    dsl.execute("drop table if exists daily_account_totals");
+    dsl.execute("drop table if exists monthly_category_totals");
+    dsl.execute("drop table if exists transaction_checksums");
+    dsl.execute("drop table if exists transactions");
+    dsl.execute("drop table if exists source_schemas");
+    dsl.execute(
+        "create table source_schemas (id bigserial primary key, headers varchar array not null"
+            + " unique, created_at timestamp with time zone)");
+    dsl.execute(
+        "create table transactions (id bigserial primary key, account_id bigint not null,"
+            + " occurred_at timestamp with time zone, posted_at timestamp with time zone,"
+            + " amount_cents bigint not null, currency varchar not null, merchant varchar,"
+            + " merchant_canonical varchar, unified_category varchar, category varchar, memo"
+            + " varchar, txn_type varchar, hash bytea not null, source_schema_id bigint not null,"
+            + " raw_values varchar array not null, created_at timestamp with time zone,"
+            + " unique(account_id, hash))");
+    dsl.execute(
+        "create table daily_account_totals (account_id bigint not null, txn_date date not null,"
+            + " currency varchar not null, txn_count bigint not null, inflow_cents bigint not null,"
+            + " outflow_cents bigint not null, primary key (account_id, txn_date, currency))");
+    dsl.execute(
+        "create table monthly_category_totals (account_id bigint not null, txn_month date not"
+            + " null, category varchar not null, currency varchar not null, txn_count bigint not"
+            + " null, inflow_cents bigint not null, outflow_cents bigint not null, primary key"
+            + " (account_id, txn_month, category, currency))");
+    dsl.execute(
+        "create table transaction_checksums (account_id bigint not null, txn_month date not null,"
+            + " txn_count bigint not null, amount_cents bigint not null, hash_xor bigint not null,"
+            + " updated_at timestamp with time zone default current_timestamp not null,"
+            + " verified_at timestamp with time zone, primary key (account_id, txn_month))");
+  }
+
+  @Test
+  void applyAddsToExistingTotals() {
+    RollupRepository.Deltas deltas = new RollupRepository.Deltas();
+    deltas.add(1L, tx("a", "2024-01-31T23:30:00Z", -1250, "Dining"));
+    deltas.add(1L, tx("b", "2024-01-31T08:00:00Z", 5000, null));
+    deltas.add(1L, tx("c", "2024-02-01T00:30:00Z", -300, "Dining"));
+    deltas.add(1L, tx("d", null, -1, "Dining"));
+
+    rollups.apply(dsl, deltas);
+    rollups.apply(dsl, deltas);
+
+    assertThat(deltas.rows()).isEqualTo(3);
+    DailyAccountTotals d = DailyAccountTotals.DAILY_ACCOUNT_TOTALS;
+    Record jan31 = dsl.selectFrom(d).where(d.TXN_DATE.eq(LocalDate.parse("2024-01-31"))).fetchOne();
+    assertThat(jan31.get(d.TXN_COUNT)).isEqualTo(4L);
+    assertThat(jan31.get(d.INFLOW_CENTS)).isEqualTo(10_000L);
+    assertThat(jan31.get(d.OUTFLOW_CENTS)).isEqualTo(2_500L);
+    MonthlyCategoryTotals m = MonthlyCategoryTotals.MONTHLY_CATEGORY_TOTALS;
+    assertThat(
+            dsl.select(m.TXN_MONTH, m.CATEGORY, m.TXN_COUNT)
+                .from(m)
+                .orderBy(m.TXN_MONTH, m.CATEGORY)
+                .fetch(r -> r.value1() + " " + r.value2() + " " + r.value3()))
+        .containsExactly("2024-01-01  2", "2024-01-01 Dining 2", "2024-02-01 Dining 2");
+  }
+
+  @Test
+  void applyXorsHashesIntoMonthlyChecksumsIncludingUndatedRows() {
+    RollupRepository.Deltas deltas = new RollupRepository.Deltas();
+    deltas.add(1L, tx("a", "2024-01-31T23:30:00Z", -1250, "Dining"));
+    deltas.add(1L, tx("b", "2024-01-02T08:00:00Z", 5000, null));
+    deltas.add(1L, tx("c", null, -1, "Dining"));
+    rollups.apply(dsl, deltas);
+    RollupRepository.Deltas more = new RollupRepository.Deltas();
+    more.add(1L, tx("d", "2024-01-15T00:00:00Z", 100, null));
+    rollups.apply(dsl, more);
+
+    TransactionChecksums c = TransactionChecksums.TRANSACTION_CHECKSUMS;
+    assertThat(
+            dsl.select(c.TXN_MONTH, c.TXN_COUNT, c.AMOUNT_CENTS, c.HASH_XOR)
+                .from(c)
+                .orderBy(c.TXN_MONTH)
+                .fetch(r -> List.of(r.value1(), r.value2(), r.value3(), r.value4())))
+        .containsExactly(
+            List.of(RollupRepository.UNDATED, 1L, -1L, 0xccccccccccccccccL),
+            List.of(
+                LocalDate.parse("2024-01-01"),
+                3L,
+                3850L,
+                0xaaaaaaaaaaaaaaaaL ^ 0xbbbbbbbbbbbbbbbbL ^ 0xddddddddddddddddL));
+  }
+
+  @Test
+  void rebuildMatchesIncrementalTotals() {
+    TransactionRepository repository = new TransactionRepository();
+    RollupRepository.Deltas deltas = new RollupRepository.Deltas();
+    List<TransactionRecord> txs =
+        List.of(
+            tx("a", "2024-01-31T23:30:00Z", -1250, "Dining"),
+            tx("b", "2024-01-31T08:00:00Z", 5000, null),
+            tx("a", "2024-01-31T23:30:00Z", -1250, "Dining"),
+            tx("c", "2024-03-15T12:00:00Z", -300, "Groceries"),
+            tx("d", null, -1, "Dining"));
+    for (TransactionRecord t : txs) {
+      if (repository.upsert(dsl, t, ACCOUNT)) {
+        deltas.add(ACCOUNT.id(), t);
+      }
+    }
+    rollups.apply(dsl, deltas);
+    List<Record> daily = snapshot(DailyAccountTotals.DAILY_ACCOUNT_TOTALS);
+    List<Record> monthly = snapshot(MonthlyCategoryTotals.MONTHLY_CATEGORY_TOTALS);
+
+    RollupRepository.Rebuilt rebuilt = rollups.rebuild(dsl);
+
+    assertThat(rebuilt).isEqualTo(new RollupRepository.Rebuilt(2, 3));
+    assertThat(snapshot(DailyAccountTotals.DAILY_ACCOUNT_TOTALS)).isEqualTo(daily);
+    assertThat(snapshot(MonthlyCategoryTotals.MONTHLY_CATEGORY_TOTALS)).isEqualTo(monthly);
+  }
+
+  private List<Record> snapshot(org.jooq.Table<?> table) {
+    return dsl
+        .selectFrom(table)
+        .orderBy(DSL.inline(1), DSL.inline(2), DSL.inline(3))
+        .fetch()
+        .stream()
+        .map(r -> (Record) r)
+        .toList();
+  }
+
+  /** {@code hash} is one hex digit, repeated into a full SHA-256 hash. */
+  private static TransactionRecord tx(String hash, String occurredAt, long cents, String category) {
+    return new GenericTransaction(
+        "1234",
+        occurredAt == null ? null : Instant.parse(occurredAt),
+        null,
+        new Money(cents, "USD"),
+        "Merchant",
+        category,
+        null,
+        null,
+        hash.repeat(64),
+        List.of(),
+        List.of());
+  }
+}
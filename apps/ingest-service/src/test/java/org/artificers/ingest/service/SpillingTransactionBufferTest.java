@@ -0,0 +1,165 @@
+package org.artificers.ingest.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.BufferedWriter;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import org.artificers.ingest.csv.ConfigurableCsvReader;
+import org.artificers.ingest.metrics.IngestMetrics;
+import org.artificers.ingest.metrics.MetricsRegistry;
+import org.artificers.ingest.model.GenericTransaction;
+import org.artificers.ingest.model.IngestRun;
+import org.artificers.ingest.model.Money;
+import org.artificers.ingest.model.TransactionBatch;
+import org.artificers.ingest.model.TransactionRecord;
+import org.artificers.ingest.tools.StatementGenerator;
+import org.artificers.ingest.validation.BasicTransactionValidator;
+import org.jooq.DSLContext;
+import org.jooq.impl.DSL;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SpillingTransactionBufferTest {
+
+  @Test
+  void replaysSpilledBatchesInOrderAndDeletesTheFile(@TempDir Path dir) throws Exception {
+    List<TransactionBatch> sealed = new ArrayList<>();
+    List<String> replayed = new ArrayList<>();
+    try (SpillingTransactionBuffer buffer =
+        new SpillingTransactionBuffer("1234", 1_000, dir, sealed::add)) {
+      for (int i = 0; i < 50; i++) {
+        buffer.accept(tx(i));
+      }
+      buffer.finish();
+
+      assertThat(buffer.rows()).isEqualTo(50);
+      assertThat(buffer.spilledRows()).isPositive().isLessThan(50);
+      assertThat(buffer.spilledBytes()).isPositive();
+      buffer.forEachBatch(batch -> batch.forEach(t -> replayed.add(t.memo())));
+    }
+
+    assertThat(replayed).hasSize(50);
+    for (int i = 0; i < 50; i++) {
+      assertThat(replayed.get(i)).isEqualTo("row " + i);
+    }
+    assertThat(sealed.stream().mapToInt(List::size).sum()).isEqualTo(50);
+    try (var files = Files.list(dir)) {
+      assertThat(files).isEmpty();
+    }
+  }
+
+  @Test
+  void keepsSmallFilesInMemory(@TempDir Path dir) throws Exception {
+    try (SpillingTransactionBuffer buffer =
+        new SpillingTransactionBuffer("1234", 1 << 20, dir, b -> {})) {
+      buffer.accept(tx(0));
+      buffer.finish();
+
+      assertThat(buffer.spilledRows()).isZero();
+      assertThat(buffer.spilledBytes()).isZero();
+      try (var files = Files.list(dir)) {
+        assertThat(files).isEmpty();
+      }
+    }
+  }
+
+  @Test
+  void ingestServicePersistsSpilledFilesAndReportsSpill(@TempDir Path dir) throws Exception {
+    DSLContext dsl = DSL.using("jdbc:h2:mem:spill;MODE=PostgreSQL", "sa", "");
+    dsl.execute("drop table if exists daily_account_totals");
+    dsl.execute("drop table if exists monthly_category_totals");
+    dsl.execute("drop table if exists transaction_checksums");
+    dsl.execute("drop table if exists transactions");
+    dsl.execute("drop table if exists source_schemas");
+    dsl.execute("drop table if exists accounts");
+    dsl.execute(
+        "create table accounts (id serial primary key, institution varchar not null, external_id"
+            + " varchar not null, display_name varchar not null, created_at timestamp, updated_at"
+            + " timestamp)");
+    dsl.execute("create unique index on accounts(institution, external_id)");
+    dsl.execute(
+        "create table source_schemas (id bigserial primary key, headers varchar array not null"
+            + " unique, created_at timestamp with time zone)");
+    dsl.execute(
+        "create table transactions (id serial primary key, account_id bigint not null references"
+            + " accounts(id), occurred_at timestamp, posted_at timestamp, amount_cents bigint not"
+            + " null, currency varchar not null, merchant varchar, merchant_canonical varchar,"
+            + " unified_category varchar, category varchar, txn_type varchar, memo varchar, hash"
+            + " bytea not null, source_schema_id bigint not null, raw_values varchar array not"
+            + " null)");
+    dsl.execute("create unique index on transactions(account_id, hash)");
+    dsl.execute(
+        "create table daily_account_totals (account_id bigint not null, txn_date date not null,"
+            + " currency varchar not null, txn_count bigint not null, inflow_cents bigint not null,"
+            + " outflow_cents bigint not null, primary key (account_id, txn_date, currency))");
+    dsl.execute(
+        "create table monthly_category_totals (account_id bigint not null, txn_month date not"
+            + " null, category varchar not null, currency varchar not null, txn_count bigint not"
+            + " null, inflow_cents bigint not null, outflow_cents bigint not null, primary key"
+            + " (account_id, txn_month, category, currency))");
+    dsl.execute(
+        "create table transaction_checksums (account_id bigint not null, txn_month date not null,"
+            + " txn_count bigint not null, amount_cents bigint not null, hash_xor bigint not null,"
+            + " updated_at timestamp with time zone default current_timestamp not null,"
+            + " verified_at timestamp with time zone, primary key (account_id, txn_month))");
+
+    ConfigurableCsvReader.Mapping mapping;
+    try (InputStream in = getClass().getResourceAsStream("/mappings/ch.json")) {
+      mapping = new ObjectMapper().readValue(in, ConfigurableCsvReader.Mapping.class);
+    }
+    Path file = dir.resolve("ch1234-big.csv");
+    try (BufferedWriter w = Files.newBufferedWriter(file)) {
+      new StatementGenerator(mapping, new StatementGenerator.Settings(7)).write(w, 0, 500);
+    }
+    Path spillDir = Files.createDirectory(dir.resolve("spill"));
+    List<IngestRun> runs = new ArrayList<>();
+    AccountShorthandParser parser = new AccountShorthandParser();
+    IngestService service =
+        new IngestService(
+            dsl,
+            new AccountResolver(dsl, parser),
+            parser,
+            Set.of(new ConfigurableCsvReader(new BasicTransactionValidator(), mapping)),
+            new TransactionRepository(),
+            new RollupRepository(),
+            new MaterializedViewRefresher(dsl),
+            new IngestMetrics(new MetricsRegistry()),
+            Set.of(runs::add),
+            16 * 1024,
+            spillDir);
+
+    service.ingestFile(file, "ch1234");
+
+    assertThat(dsl.fetchCount(DSL.table("transactions"))).isEqualTo(500);
+    IngestRun run = runs.get(0);
+    assertThat(run.rowsRead()).isEqualTo(500);
+    assertThat(run.rowsInserted()).isEqualTo(500);
+    assertThat(run.rowsSpilled()).isPositive().isLessThan(500);
+    assertThat(run.spillBytes()).isPositive();
+    try (var files = Files.list(spillDir)) {
+      assertThat(files).isEmpty();
+    }
+  }
+
+  private static TransactionRecord tx(int i) {
+    return new GenericTransaction(
+        "1234",
+        Instant.parse("2024-01-01T00:00:00Z").plusSeconds(i),
+        null,
+        new Money(i, "USD"),
+        "Merchant",
+        "Shopping",
+        "Sale",
+        "row " + i,
+        String.format("%064x", i),
+        List.of("i"),
+        List.of(String.valueOf(i)));
+  }
+}
@@ -0,0 +1,187 @@
+package org.artificers.ingest.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+import org.artificers.ingest.csv.TransactionCsvReader;
+import org.artificers.ingest.model.GenericTransaction;
+import org.artificers.ingest.model.Money;
+import org.artificers.ingest.model.ResolvedAccount;
+import org.artificers.ingest.model.TransactionRecord;
+import org.jooq.DSLContext;
+import org.jooq.impl.DSL;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class StatementReconcilerTest {
+  private static final ResolvedAccount ACCOUNT = new ResolvedAccount(1L, "ch", "1234");
+  private static final TransactionRecord A = tx("a", "2024-01-31T23:30:00Z", -1250);
+  private static final TransactionRecord B = tx("b", "2024-01-02T08:00:00Z", 5000);
+  private static final TransactionRecord C = tx("c", "2024-02-01T00:00:00Z", -300);
+
+  @TempDir Path dir;
+
+  private DSLContext dsl;
+  private TransactionCsvReader reader;
+  private StatementReconciler reconciler;
+
+  @BeforeEach
+  void setup() {
+    dsl = DSL.using("jdbc:h2:mem:reconcile;MODE=PostgreSQL", "sa", "");
+    dsl.execute("drop table if exists daily_account_totals");
+    dsl.execute("drop table if exists monthly_category_totals");
+    dsl.execute("drop table if exists transaction_checksums");
+    dsl.execute("drop table if exists transactions");
+    dsl.execute("drop table if exists source_schemas");
+    dsl.execute("drop table if exists accounts");
+    dsl.execute(
+        "create table accounts (id bigint primary key, institution varchar not null, external_id"
+            + " varchar not null)");
+    dsl.execute("insert into accounts values (1, 'ch', '1234')");
+    dsl.execute(
+        "create table source_schemas (id bigserial primary key, headers varchar array not null"
+            + " unique, created_at timestamp with time zone)");
+    dsl.execute(
+        "create table transactions (id bigserial primary key, account_id bigint not null,"
+            + " occurred_at timestamp with time zone, posted_at timestamp with time zone,"
+            + " amount_cents bigint not null, currency varchar not null, merchant varchar,"
+            + " merchant_canonical varchar, unified_category varchar, category varchar, memo"
+            + " varchar, txn_type varchar, hash bytea not null, source_schema_id bigint not null,"
+            + " raw_values varchar array not null, created_at timestamp with time zone,"
+            + " unique(account_id, hash))");
+    dsl.execute(
+        "create table daily_account_totals (account_id bigint not null, txn_date date not null,"
+            + " currency varchar not null, txn_count bigint not null, inflow_cents bigint not null,"
+            + " outflow_cents bigint not null, primary key (account_id, txn_date, currency))");
+    dsl.execute(
+        "create table monthly_category_totals (account_id bigint not null, txn_month date not"
+            + " null, category varchar not null, currency varchar not null, txn_count bigint not"
+            + " null, inflow_cents bigint not null, outflow_cents bigint not null, primary key"
+            + " (account_id, txn_month, category, currency))");
+    dsl.execute(
+        "create table transaction_checksums (account_id bigint not null, txn_month date not null,"
+            + " txn_count bigint not null, amount_cents bigint not null, hash_xor bigint not null,"
+            + " updated_at timestamp with time zone default current_timestamp not null,"
+            + " verified_at timestamp with time zone, primary key (account_id, txn_month))");
+    reader = mock(TransactionCsvReader.class);
+    when(reader.institution()).thenReturn("ch");
+    reconciler = new StatementReconciler(dsl, new AccountShorthandParser(), Set.of(reader));
+  }
+
+  @Test
+  void matchingArchiveReadsNoTransactionRows() throws Exception {
+    TransactionRecord undated = tx("d", null, -1);
+    ingest(A, B, C, undated);
+    archive("ch1234-jan.csv", A, B);
+    archive("ch1234-feb.csv", B, C, undated);
+
+    StatementReconciler.Result result = reconciler.reconcile(dir, s -> true, false);
+
+    assertThat(result.matches()).isTrue();
+    assertThat(result.files()).isEqualTo(2);
+    assertThat(result.rows()).isEqualTo(5);
+    assertThat(result.monthsRead()).isZero();
+    StatementReconciler.AccountResult account = result.accounts().get(0);
+    assertThat(account.accountId()).isEqualTo(1L);
+    assertThat(account.months()).isEqualTo(3);
+    assertThat(account.diffs()).isEmpty();
+  }
+
+  @Test
+  void reportsOnlyTheDifferingMonthsAndRows() throws Exception {
+    TransactionRecord notIngested = tx("e", "2024-02-10T00:00:00Z", 700);
+    TransactionRecord notArchived = tx("f", "2024-03-05T00:00:00Z", -42);
+    ingest(A, B, C, notArchived);
+    archive("ch1234-q1.csv", A, B, C, notIngested);
+    archive("ch9999-q1.csv", A);
+    Files.writeString(dir.resolve("notes.csv"), "");
+
+    StatementReconciler.Result result = reconciler.reconcile(dir, s -> true, false);
+
+    assertThat(result.matches()).isFalse();
+    assertThat(result.skipped())
+        .extracting(s -> s.file().getFileName().toString())
+        .containsExactly("notes.csv");
+    assertThat(result.monthsRead()).isEqualTo(2);
+    StatementReconciler.AccountResult known = result.accounts().get(0);
+    assertThat(known.shorthand()).isEqualTo("ch1234");
+    assertThat(known.diffs())
+        .extracting(StatementReconciler.MonthDiff::month)
+        .containsExactly(LocalDate.parse("2024-02-01"), LocalDate.parse("2024-03-01"));
+    StatementReconciler.MonthDiff feb = known.diffs().get(0);
+    assertThat(feb.missingInDb())
+        .extracting(StatementReconciler.Row::hash, StatementReconciler.Row::source)
+        .containsExactly(tuple("e".repeat(64), "ch1234-q1.csv"));
+    assertThat(feb.extraInDb()).isEmpty();
+    StatementReconciler.MonthDiff mar = known.diffs().get(1);
+    assertThat(mar.extraInDb())
+        .extracting(StatementReconciler.Row::hash)
+        .containsExactly("f".repeat(64));
+    StatementReconciler.AccountResult unknown = result.accounts().get(1);
+    assertThat(unknown.accountId()).isNull();
+    assertThat(unknown.diffs())
+        .singleElement()
+        .satisfies(d -> assertThat(d.missingInDb()).hasSize(1));
+  }
+
+  @Test
+  void deepRecountCatchesEditsThatBypassIngest() throws Exception {
+    ingest(A, B, C);
+    archive("ch1234-q1.csv", A, B, C);
+    dsl.execute("update transactions set amount_cents = -1251 where amount_cents = -1250");
+
+    assertThat(reconciler.reconcile(dir, s -> true, false).matches()).isTrue();
+    StatementReconciler.Result deep = reconciler.reconcile(dir, s -> true, true);
+
+    assertThat(deep.matches()).isFalse();
+    StatementReconciler.MonthDiff jan = deep.accounts().get(0).diffs().get(0);
+    assertThat(jan.month()).isEqualTo(LocalDate.parse("2024-01-01"));
+    assertThat(jan.sameRows()).isTrue();
+    assertThat(jan.db().amountCents()).isEqualTo(jan.files().amountCents() - 1);
+  }
+
+  private void ingest(TransactionRecord... txs) {
+    TransactionRepository repository = new TransactionRepository();
+    RollupRepository.Deltas deltas = new RollupRepository.Deltas();
+    for (TransactionRecord t : txs) {
+      if (repository.upsert(dsl, t, ACCOUNT)) {
+        deltas.add(ACCOUNT.id(), t);
+      }
+    }
+    new RollupRepository().apply(dsl, deltas);
+  }
+
+  private void archive(String name, TransactionRecord... txs) throws IOException {
+    Path file = Files.writeString(dir.resolve(name), "");
+    when(reader.read(eq(file), any(Reader.class), any(String.class))).thenReturn(List.of(txs));
+  }
+
+  /** {@code hash} is one hex digit, repeated into a full SHA-256 hash. */
+  private static TransactionRecord tx(String hash, String occurredAt, long cents) {
+    return new GenericTransaction(
+        "1234",
+        occurredAt == null ? null : Instant.parse(occurredAt),
+        null,
+        new Money(cents, "USD"),
+        "Merchant",
+        null,
+        null,
+        null,
+        hash.repeat(64),
+        List.of(),
+        List.of());
+  }
+}
@@ -0,0 +1,45 @@
+package org.artificers.ingest.service;
+
+import java.nio.file.Path;
+import java.util.Set;
+import org.artificers.ingest.csv.TransactionCsvReader;
+import org.artificers.ingest.metrics.IngestMetrics;
+import org.artificers.ingest.metrics.MetricsRegistry;
+import org.jooq.DSLContext;
+
+/** Builds an {@link IngestService} with fresh rollups and metrics and no spill buffer. */
+public final class TestIngestServices {
+  private TestIngestServices() {}
+
+  public static IngestService create(
+      DSLContext dsl,
+      AccountResolver resolver,
+      AccountShorthandParser parser,
+      Set<TransactionCsvReader> readers,
+      TransactionRepository repository,
+      MaterializedViewRefresher refresher) {
+    return create(dsl, resolver, parser, readers, repository, refresher, Set.of());
+  }
+
+  public static IngestService create(
+      DSLContext dsl,
+      AccountResolver resolver,
+      AccountShorthandParser parser,
+      Set<TransactionCsvReader> readers,
+      TransactionRepository repository,
+      MaterializedViewRefresher refresher,
+      Set<IngestRunListener> runListeners) {
+    return new IngestService(
+        dsl,
+        resolver,
+        parser,
+        readers,
+        repository,
+        new RollupRepository(),
+        refresher,
+        new IngestMetrics(new MetricsRegistry()),
+        runListeners,
+        0,
+        Path.of(System.getProperty("java.io.tmpdir")));
+  }
+}
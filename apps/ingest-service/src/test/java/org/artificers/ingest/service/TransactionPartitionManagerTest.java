@@ -0,0 +1,156 @@
+package org.artificers.ingest.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.artificers.ingest.metrics.MetricsRegistry;
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.Record1;
+import org.jooq.Result;
+import org.jooq.SQLDialect;
+import org.jooq.impl.DSL;
+import org.jooq.impl.SQLDataType;
+import org.jooq.tools.jdbc.MockConnection;
+import org.jooq.tools.jdbc.MockDataProvider;
+import org.jooq.tools.jdbc.MockResult;
+import org.junit.jupiter.api.Test;
+
+class TransactionPartitionManagerTest {
+  private static final Clock CLOCK =
+      Clock.fixed(Instant.parse("2024-05-20T10:00:00Z"), ZoneOffset.UTC);
+
+  private final List<String> statements = new CopyOnWriteArrayList<>();
+
+  /**
+   * Answers catalog lookups with {@code attached} and {@code detached} partitions and {@code
+   * defaultMonths} rows in the default partition; every other statement is recorded.
+   */
+  private DSLContext dsl(
+      boolean partitioned,
+      List<String> attached,
+      List<String> detached,
+      List<String> defaultMonths) {
+    DSLContext create = DSL.using(SQLDialect.POSTGRES);
+    Field<Boolean> exists = DSL.field("exists", SQLDataType.BOOLEAN);
+    Field<String> text = DSL.field("name", SQLDataType.VARCHAR);
+    MockDataProvider provider =
+        ctx -> {
+          String sql = ctx.sql();
+          if (sql.contains("pg_partitioned_table")) {
+            Result<Record1<Boolean>> result = create.newResult(exists);
+            result.add(create.newRecord(exists).values(partitioned));
+            return new MockResult[] {new MockResult(1, result)};
+          }
+          List<String> values =
+              sql.contains("pg_inherits")
+                  ? attached
+                  : sql.contains("relispartition")
+                      ? detached
+                      : sql.startsWith("select distinct to_char") ? defaultMonths : null;
+          if (values != null) {
+            Result<Record1<String>> result = create.newResult(text);
+            values.forEach(v -> result.add(create.newRecord(text).values(v)));
+            return new MockResult[] {new MockResult(result.size(), result)};
+          }
+          statements.add(sql);
+          return new MockResult[] {new MockResult(0)};
+        };
+    return DSL.using(new MockConnection(provider), SQLDialect.POSTGRES);
+  }
+
+  @Test
+  void createsMissingMonthsAndDetachesExpiredOnes() {
+    MetricsRegistry registry = new MetricsRegistry();
+    TransactionPartitionManager manager =
+        new TransactionPartitionManager(
+            dsl(
+                true,
+                List.of(
+                    "transactions_default",
+                    "transactions_p2024_01",
+                    "transactions_p2024_04",
+                    "transactions_p2024_05",
+                    "transactions_p2024_06"),
+                List.of(),
+                List.of("2023-12")),
+            2,
+            2,
+            CLOCK,
+            registry);
+
+    TransactionPartitionManager.Maintenance done = manager.maintain();
+
+    assertThat(done.created()).containsExactly(YearMonth.of(2023, 12), YearMonth.of(2024, 7));
+    assertThat(done.detached()).containsExactly(YearMonth.of(2023, 12), YearMonth.of(2024, 1));
+    assertThat(statements)
+        .contains(
+            "create table if not exists \"transactions_p2024_07\" (like \"transactions\" including"
+                + " defaults including constraints)",
+            "with moved as (delete from \"transactions_default\" where occurred_at >="
+                + " '2023-12-01 00:00:00+00'::timestamptz and occurred_at < '2024-01-01"
+                + " 00:00:00+00'::timestamptz returning *) insert into \"transactions_p2023_12\""
+                + " select * from moved",
+            "alter table \"transactions\" attach partition \"transactions_p2024_07\" for values"
+                + " from ('2024-07-01 00:00:00+00') to ('2024-08-01 00:00:00+00')",
+            "alter table \"transactions\" detach partition \"transactions_p2024_01\"")
+        .doesNotContain("alter table \"transactions\" detach partition \"transactions_p2024_04\"");
+    assertThat(registry.samples())
+        .containsEntry("ingest_partition_changes_total{action=\"create\"}", 2.0)
+        .containsEntry("ingest_partition_changes_total{action=\"detach\"}", 2.0);
+  }
+
+  @Test
+  void leavesRowsBackfilledIntoDetachedMonthsInTheDefaultPartition() {
+    MetricsRegistry registry = new MetricsRegistry();
+    TransactionPartitionManager manager =
+        new TransactionPartitionManager(
+            dsl(
+                true,
+                List.of(
+                    "transactions_default",
+                    "transactions_p2024_04",
+                    "transactions_p2024_05",
+                    "transactions_p2024_06"),
+                List.of("transactions_p2024_01"),
+                List.of("2024-01", "2024-03")),
+            1,
+            3,
+            CLOCK,
+            registry);
+
+    TransactionPartitionManager.Maintenance done = manager.maintain();
+
+    assertThat(done.created()).containsExactly(YearMonth.of(2024, 3));
+    assertThat(done.detached()).isEmpty();
+    assertThat(statements)
+        .noneMatch(sql -> sql.contains("transactions_p2024_01"))
+        .contains(
+            "alter table \"transactions\" attach partition \"transactions_p2024_03\" for values"
+                + " from ('2024-03-01 00:00:00+00') to ('2024-04-01 00:00:00+00')");
+    assertThat(registry.samples())
+        .containsEntry("ingest_partition_changes_total{action=\"create\"}", 1.0)
+        .containsEntry("ingest_partition_changes_total{action=\"detach\"}", 0.0);
+  }
+
+  @Test
+  void skipsUnpartitionedTable() {
+    TransactionPartitionManager manager =
+        new TransactionPartitionManager(
+            dsl(false, List.of(), List.of(), List.of()), 3, 1, CLOCK, new MetricsRegistry());
+
+    assertThat(manager.maintain()).isEqualTo(TransactionPartitionManager.Maintenance.NONE);
+    assertThat(statements).isEmpty();
+  }
+
+  @Test
+  void namesPartitionsByMonth() {
+    assertThat(TransactionPartitionManager.partitionName(YearMonth.of(2024, 3)))
+        .isEqualTo("transactions_p2024_03");
+  }
+}
@@ -0,0 +1,70 @@
+package org.artificers.ingest.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import org.artificers.ingest.model.GenericTransaction;
+import org.artificers.ingest.model.Money;
+import org.artificers.ingest.model.ResolvedAccount;
+import org.artificers.ingest.model.TransactionRecord;
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.Record1;
+import org.jooq.Result;
+import org.jooq.SQLDialect;
+import org.jooq.impl.DSL;
+import org.jooq.impl.SQLDataType;
+import org.jooq.tools.jdbc.MockConnection;
+import org.jooq.tools.jdbc.MockDataProvider;
+import org.jooq.tools.jdbc.MockResult;
+import org.junit.jupiter.api.Test;
+
+class TransactionRepositoryRawValuesTest {
+  @Test
+  void upsertStoresValuesAgainstTheHeaderListId() {
+    List<String> statements = new CopyOnWriteArrayList<>();
+    List<Object[]> bindings = new CopyOnWriteArrayList<>();
+    DSLContext create = DSL.using(SQLDialect.POSTGRES);
+    Field<Long> id = DSL.field("id", SQLDataType.BIGINT);
+    MockDataProvider provider =
+        ctx -> {
+          statements.add(ctx.sql());
+          bindings.add(ctx.bindings());
+          if (ctx.sql().startsWith("select")) {
+            Result<Record1<Long>> result = create.newResult(id);
+            result.add(create.newRecord(id).values(7L));
+            return new MockResult[] {new MockResult(1, result)};
+          }
+          return new MockResult[] {new MockResult(1)};
+        };
+    DSLContext dsl = DSL.using(new MockConnection(provider), SQLDialect.POSTGRES);
+    TransactionRepository repo = new TransactionRepository();
+    TransactionRecord tx =
+        new GenericTransaction(
+            "a",
+            null,
+            null,
+            new Money(100, "USD"),
+            "m",
+            "c",
+            null,
+            null,
+            String.format("%064x", 1),
+            List.of("description", "amount"),
+            List.of("Coffee", "1.00"));
+    ResolvedAccount account = new ResolvedAccount(1, "co", "a");
+
+    repo.upsert(dsl, tx, account);
+
+    assertThat(statements).hasSize(2);
+    assertThat(statements.get(0).toLowerCase()).contains("source_schemas");
+    assertThat(statements.get(1).toLowerCase())
+        .contains("insert into")
+        .contains("source_schema_id")
+        .contains("raw_values")
+        .doesNotContain("raw_json");
+    assertThat(statements.get(1)).contains("cast(? as text[])");
+    assertThat(bindings.get(1)).contains(7L, "{\"Coffee\",\"1.00\"}");
+  }
+}
@@ -2,17 +2,28 @@ package org.artificers.ingest.service;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import org.artificers.ingest.model.GenericTransaction;
 import org.artificers.ingest.model.Money;
 import org.artificers.ingest.model.ResolvedAccount;
 import org.artificers.ingest.model.TransactionRecord;
+import org.artificers.ingest.rules.Categorizer;
+import org.artificers.ingest.rules.MerchantNormalizer;
 import org.artificers.jooq.tables.Accounts;
+import org.artificers.jooq.tables.SourceSchemas;
 import org.artificers.jooq.tables.Transactions;
 import org.jooq.DSLContext;
 import org.jooq.impl.DSL;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 class TransactionRepositoryTest {
   private DSLContext dsl;
@@ -20,20 +31,29 @@ class TransactionRepositoryTest {
   @BeforeEach
   void setup() {
     dsl = DSL.using("jdbc:h2:mem:test;MODE=PostgreSQL", "sa", "");
-    dsl.execute("create domain if not exists jsonb as varchar");
     dsl.execute("drop view if exists transactions_view");
+    dsl.execute("drop table if exists category_rule_digests");
     dsl.execute("drop table if exists transactions");
+    dsl.execute("drop table if exists source_schemas");
     dsl.execute("drop table if exists accounts");
     dsl.execute(
         "create table accounts (id bigserial primary key, institution varchar not null, external_id"
             + " varchar not null, display_name varchar not null, created_at timestamp, updated_at"
             + " timestamp)");
+    dsl.execute(
+        "create table source_schemas (id bigserial primary key, headers varchar array not null"
+            + " unique, created_at timestamp with time zone)");
     dsl.execute(
         "create table transactions (id bigserial primary key, account_id bigint not null,"
             + " occurred_at timestamp with time zone, posted_at timestamp with time zone,"
-            + " amount_cents bigint not null, currency varchar not null, merchant varchar, category"
-            + " varchar, memo varchar, txn_type varchar, hash varchar not null, raw_json jsonb not"
-            + " null, created_at timestamp with time zone, unique(account_id, hash))");
+            + " amount_cents bigint not null, currency varchar not null, merchant varchar,"
+            + " merchant_canonical varchar, unified_category varchar, category varchar, memo"
+            + " varchar, txn_type varchar, hash bytea not null, source_schema_id bigint not null,"
+            + " raw_values varchar array not null, created_at timestamp with time zone,"
+            + " unique(account_id, hash))");
+    dsl.execute(
+        "create table category_rule_digests (institution varchar primary key, digest bytea not"
+            + " null, applied_at timestamp with time zone not null)");
     dsl.insertInto(Accounts.ACCOUNTS)
         .set(Accounts.ACCOUNTS.ID, 1L)
         .set(Accounts.ACCOUNTS.INSTITUTION, "co")
@@ -50,17 +70,299 @@ class TransactionRepositoryTest {
     ResolvedAccount account = new ResolvedAccount(1L, "co", "1234");
     TransactionRecord t1 =
         new GenericTransaction(
-            "1234", null, null, new Money(100, "USD"), "m", null, null, null, "h1", "{}");
+            "1234",
+            null,
+            null,
+            new Money(100, "USD"),
+            "m",
+            null,
+            null,
+            null,
+            hash(1),
+            List.of(),
+            List.of());
     TransactionRecord t2 =
         new GenericTransaction(
-            "1234", null, null, new Money(200, "USD"), "m", null, null, null, "h1", "{}");
+            "1234",
+            null,
+            null,
+            new Money(200, "USD"),
+            "m",
+            null,
+            null,
+            null,
+            hash(1),
+            List.of(),
+            List.of());
     repo.upsert(dsl, t1, account);
     repo.upsert(dsl, t2, account);
     assertEquals(1, dsl.fetchCount(Transactions.TRANSACTIONS));
     TransactionRecord t3 =
         new GenericTransaction(
-            "1234", null, null, new Money(300, "USD"), "m", null, null, null, "h2", "{}");
+            "1234",
+            null,
+            null,
+            new Money(300, "USD"),
+            "m",
+            null,
+            null,
+            null,
+            hash(2),
+            List.of(),
+            List.of());
     repo.upsert(dsl, t3, account);
     assertEquals(2, dsl.fetchCount(Transactions.TRANSACTIONS));
   }
+
+  @Test
+  void insertBatchCountsOnlyNewRows() {
+    TransactionRepository repo = new TransactionRepository();
+    ResolvedAccount account = new ResolvedAccount(1L, "co", "1234");
+    List<TransactionRecord> first =
+        List.of(
+            tx(100, hash(1)),
+            tx(200, hash(2)),
+            tx(300, hash(1)),
+            tx(400, hash(3)),
+            tx(500, hash(4)));
+    assertEquals(4, repo.insertBatch(dsl, first, account, 2));
+    assertEquals(4, dsl.fetchCount(Transactions.TRANSACTIONS));
+
+    List<TransactionRecord> second = List.of(tx(600, hash(4)), tx(700, hash(5)));
+    assertEquals(1, repo.insertBatch(dsl, second, account, 500));
+    assertEquals(5, dsl.fetchCount(Transactions.TRANSACTIONS));
+  }
+
+  @Test
+  void storesEachHeaderListOnce() {
+    TransactionRepository repo = new TransactionRepository();
+    ResolvedAccount account = new ResolvedAccount(1L, "co", "1234");
+    repo.upsert(dsl, tx(100, hash(1)), account);
+    repo.insertBatch(dsl, List.of(tx(200, hash(2)), tx(300, hash(3))), account, 10);
+    TransactionRecord other =
+        new GenericTransaction(
+            "1234",
+            null,
+            null,
+            new Money(400, "USD"),
+            "m",
+            null,
+            null,
+            null,
+            hash(4),
+            List.of("date"),
+            List.of("2024-01-01"));
+    repo.upsert(dsl, other, account);
+
+    assertEquals(2, dsl.fetchCount(SourceSchemas.SOURCE_SCHEMAS));
+    assertEquals(
+        List.of("2024-01-01", "1.00"),
+        List.of(
+            dsl.select(Transactions.TRANSACTIONS.RAW_VALUES)
+                .from(Transactions.TRANSACTIONS)
+                .where(Transactions.TRANSACTIONS.HASH.eq(HashGenerator.digest(hash(2))))
+                .fetchOne()
+                .value1()));
+    assertEquals(
+        repo.sourceSchema(dsl, List.of("date", "amount")),
+        dsl.select(Transactions.TRANSACTIONS.SOURCE_SCHEMA_ID)
+            .from(Transactions.TRANSACTIONS)
+            .where(Transactions.TRANSACTIONS.HASH.eq(HashGenerator.digest(hash(3))))
+            .fetchOne()
+            .value1());
+  }
+
+  @Test
+  void storesAndRenormalizesCanonicalMerchants(@TempDir Path dir) throws Exception {
+    Path rules = dir.resolve(MerchantNormalizer.FILE_NAME);
+    Files.writeString(rules, "{\"rules\": [{\"merchant\": \"Amazon\", \"contains\": [\"AMZN\"]}]}");
+    TransactionRepository repo =
+        new TransactionRepository(
+            new SourceSchemaRepository(),
+            new MerchantNormalizer(rules, new ObjectMapper(), Duration.ZERO));
+    ResolvedAccount account = new ResolvedAccount(1L, "co", "1234");
+    repo.upsert(dsl, tx(100, hash(1), "AMZN Mktp US*2K3"), account);
+    repo.insertBatch(
+        dsl,
+        List.of(tx(200, hash(2), "amzn digital"), tx(300, hash(3), "FRED-MEYER #0023")),
+        account,
+        10);
+    assertEquals(List.of("Amazon", "Amazon"), canonical(hash(1), hash(2)));
+    assertEquals(null, canonical(hash(3)).get(0));
+
+    Files.writeString(
+        rules,
+        "{\"rules\": [{\"merchant\": \"Amazon\", \"contains\": [\"AMZN\"]},"
+            + " {\"merchant\": \"Fred Meyer\", \"prefix\": [\"FRED-MEYER\"]}]}");
+    assertEquals(1, repo.renormalizeMerchants(dsl));
+    assertEquals(List.of("Amazon", "Amazon", "Fred Meyer"), canonical(hash(1), hash(2), hash(3)));
+    assertEquals(0, repo.renormalizeMerchants(dsl));
+  }
+
+  @Test
+  void categorizesRowsAndRecategorizesOnlyChangedInstitutions(@TempDir Path dir) throws Exception {
+    dsl.insertInto(Accounts.ACCOUNTS)
+        .set(Accounts.ACCOUNTS.ID, 2L)
+        .set(Accounts.ACCOUNTS.INSTITUTION, "ch")
+        .set(Accounts.ACCOUNTS.EXTERNAL_ID, "5678")
+        .set(Accounts.ACCOUNTS.DISPLAY_NAME, "5678")
+        .set(Accounts.ACCOUNTS.CREATED_AT, OffsetDateTime.now())
+        .set(Accounts.ACCOUNTS.UPDATED_AT, OffsetDateTime.now())
+        .execute();
+    Path rules = dir.resolve(Categorizer.FILE_NAME);
+    String shared =
+        "{\"category\": \"Shopping\", \"institution\": [\"ch\"], \"bankCategory\":"
+            + " [\"Shopping\"]}, {\"category\": \"Groceries\", \"merchant\": [\"FRED-MEYER\"]}";
+    Files.writeString(
+        rules,
+        "{\"rules\": [{\"category\": \"Shopping\", \"institution\": [\"co\"],"
+            + " \"bankCategory\": [\"Merchandise\"]}, "
+            + shared
+            + "]}");
+    TransactionRepository repo =
+        new TransactionRepository(
+            new SourceSchemaRepository(),
+            MerchantNormalizer.none(),
+            new Categorizer(rules, new ObjectMapper(), Duration.ZERO));
+    ResolvedAccount co = new ResolvedAccount(1L, "co", "1234");
+    ResolvedAccount ch = new ResolvedAccount(2L, "ch", "5678");
+    repo.upsert(dsl, tx(-100, hash(1), "AMZN Mktp", "Merchandise"), co);
+    repo.insertBatch(
+        dsl,
+        List.of(
+            tx(-200, hash(2), "AMZN Mktp", "Shopping"),
+            tx(-300, hash(3), "FRED-MEYER #0023", "Groceries"),
+            tx(-400, hash(4), "AMZN Mktp", "Merchandise")),
+        ch,
+        10);
+    assertEquals(
+        Arrays.asList("Shopping", "Shopping", "Groceries", null),
+        unified(hash(1), hash(2), hash(3), hash(4)));
+
+    assertEquals(
+        List.of(
+            new TransactionRepository.Recategorized("ch", false, 3, 0),
+            new TransactionRepository.Recategorized("co", false, 1, 0)),
+        repo.recategorize(dsl, i -> true, false));
+
+    Files.writeString(
+        rules,
+        "{\"rules\": [{\"category\": \"Retail\", \"institution\": [\"co\"],"
+            + " \"bankCategory\": [\"Merchandise\"]}, "
+            + shared
+            + "]}");
+    assertEquals(
+        List.of(
+            new TransactionRepository.Recategorized("ch", true, 0, 0),
+            new TransactionRepository.Recategorized("co", false, 1, 1)),
+        repo.recategorize(dsl, i -> true, false));
+    assertEquals(
+        Arrays.asList("Retail", "Shopping", "Groceries", null),
+        unified(hash(1), hash(2), hash(3), hash(4)));
+    assertEquals(
+        List.of(new TransactionRepository.Recategorized("co", true, 0, 0)),
+        repo.recategorize(dsl, "co"::equals, false));
+  }
+
+  @Test
+  void recategorizesInstitutionsWhoseMerchantConditionsSeeChangedMerchantRules(@TempDir Path dir)
+      throws Exception {
+    dsl.insertInto(Accounts.ACCOUNTS)
+        .set(Accounts.ACCOUNTS.ID, 2L)
+        .set(Accounts.ACCOUNTS.INSTITUTION, "ch")
+        .set(Accounts.ACCOUNTS.EXTERNAL_ID, "5678")
+        .set(Accounts.ACCOUNTS.DISPLAY_NAME, "5678")
+        .set(Accounts.ACCOUNTS.CREATED_AT, OffsetDateTime.now())
+        .set(Accounts.ACCOUNTS.UPDATED_AT, OffsetDateTime.now())
+        .execute();
+    Path merchants = dir.resolve(MerchantNormalizer.FILE_NAME);
+    Files.writeString(
+        merchants,
+        "{\"rules\": [{\"merchant\": \"Whole Foods\", \"contains\": [\"WHOLE FOODS\"]}]}");
+    Path categories = dir.resolve(Categorizer.FILE_NAME);
+    Files.writeString(
+        categories,
+        "{\"rules\": [{\"category\": \"Groceries\", \"institution\": [\"co\"], \"merchant\":"
+            + " [\"WHOLE FOODS\"]}, {\"category\": \"Shopping\", \"institution\": [\"ch\"],"
+            + " \"bankCategory\": [\"Shopping\"]}]}");
+    TransactionRepository repo =
+        new TransactionRepository(
+            new SourceSchemaRepository(),
+            new MerchantNormalizer(merchants, new ObjectMapper(), Duration.ZERO),
+            new Categorizer(categories, new ObjectMapper(), Duration.ZERO));
+    ResolvedAccount co = new ResolvedAccount(1L, "co", "1234");
+    ResolvedAccount ch = new ResolvedAccount(2L, "ch", "5678");
+    repo.upsert(dsl, tx(-100, hash(1), "WFM #10234 SEATTLE", "Groceries"), co);
+    repo.upsert(dsl, tx(-200, hash(2), "WFM #10234 SEATTLE", "Shopping"), ch);
+    repo.recategorize(dsl, i -> true, false);
+    assertEquals(Arrays.asList(null, "Shopping"), unified(hash(1), hash(2)));
+
+    Files.writeString(
+        merchants,
+        "{\"rules\": [{\"merchant\": \"Whole Foods\", \"contains\": [\"WHOLE FOODS\"],"
+            + " \"prefix\": [\"WFM\"]}]}");
+    assertEquals(2, repo.renormalizeMerchants(dsl));
+    assertEquals(
+        List.of(
+            new TransactionRepository.Recategorized("ch", true, 0, 0),
+            new TransactionRepository.Recategorized("co", false, 1, 1)),
+        repo.recategorize(dsl, i -> true, false));
+    assertEquals(Arrays.asList("Groceries", "Shopping"), unified(hash(1), hash(2)));
+    assertEquals(
+        List.of(new TransactionRepository.Recategorized("co", true, 0, 0)),
+        repo.recategorize(dsl, "co"::equals, false));
+  }
+
+  private List<String> unified(String... hashes) {
+    List<String> values = new ArrayList<>();
+    for (String h : hashes) {
+      values.add(
+          dsl.select(Transactions.TRANSACTIONS.UNIFIED_CATEGORY)
+              .from(Transactions.TRANSACTIONS)
+              .where(Transactions.TRANSACTIONS.HASH.eq(HashGenerator.digest(h)))
+              .fetchOne()
+              .value1());
+    }
+    return values;
+  }
+
+  private List<String> canonical(String... hashes) {
+    List<String> values = new ArrayList<>();
+    for (String h : hashes) {
+      values.add(
+          dsl.select(Transactions.TRANSACTIONS.MERCHANT_CANONICAL)
+              .from(Transactions.TRANSACTIONS)
+              .where(Transactions.TRANSACTIONS.HASH.eq(HashGenerator.digest(h)))
+              .fetchOne()
+              .value1());
+    }
+    return values;
+  }
+
+  private static TransactionRecord tx(long cents, String hash) {
+    return tx(cents, hash, "m");
+  }
+
+  private static TransactionRecord tx(long cents, String hash, String merchant) {
+    return tx(cents, hash, merchant, null);
+  }
+
+  private static TransactionRecord tx(long cents, String hash, String merchant, String category) {
+    return new GenericTransaction(
+        "1234",
+        null,
+        null,
+        new Money(cents, "USD"),
+        merchant,
+        category,
+        null,
+        null,
+        hash,
+        List.of("date", "amount"),
+        List.of("2024-01-01", "1.00"));
+  }
+
+  private static String hash(int i) {
+    return String.format("%064x", i);
+  }
 }
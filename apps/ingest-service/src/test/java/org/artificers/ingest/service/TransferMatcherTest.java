@@ -0,0 +1,173 @@
+package org.artificers.ingest.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import org.artificers.ingest.model.GenericTransaction;
+import org.artificers.ingest.model.Money;
+import org.artificers.ingest.model.ResolvedAccount;
+import org.artificers.ingest.model.TransactionRecord;
+import org.artificers.jooq.tables.TransferLinks;
+import org.artificers.jooq.tables.TransferMatchState;
+import org.jooq.DSLContext;
+import org.jooq.impl.DSL;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class TransferMatcherTest {
+  private static final ResolvedAccount CARD = new ResolvedAccount(1L, "ch", "1234");
+  private static final ResolvedAccount CHECKING = new ResolvedAccount(2L, "co", "5678");
+  private static final Duration WINDOW = Duration.ofDays(3);
+
+  private DSLContext dsl;
+  private TransferMatcher matcher;
+
+  @BeforeEach
+  void setup() {
+    dsl = DSL.using("jdbc:h2:mem:transfers;MODE=PostgreSQL", "sa", "");
+    dsl.execute("drop table if exists transfer_links");
+    dsl.execute("drop table if exists transfer_match_state");
+    dsl.execute("drop table if exists transactions");
+    dsl.execute("drop table if exists source_schemas");
+    dsl.execute(
+        "create table source_schemas (id bigserial primary key, headers varchar array not null"
+            + " unique, created_at timestamp with time zone)");
+    dsl.execute(
+        "create table transactions (id bigserial primary key, account_id bigint not null,"
+            + " occurred_at timestamp with time zone, posted_at timestamp with time zone,"
+            + " amount_cents bigint not null, currency varchar not null, merchant varchar,"
+            + " merchant_canonical varchar, unified_category varchar, category varchar, memo"
+            + " varchar, txn_type varchar, hash bytea not null, source_schema_id bigint not null,"
+            + " raw_values varchar array not null, created_at timestamp with time zone,"
+            + " unique(account_id, hash))");
+    dsl.execute(
+        "create table transfer_links (id bigserial primary key, debit_transaction_id bigint not"
+            + " null unique, credit_transaction_id bigint not null unique, debit_account_id bigint"
+            + " not null, credit_account_id bigint not null, amount_cents bigint not null,"
+            + " currency varchar not null, debit_occurred_at timestamp with time zone not null,"
+            + " credit_occurred_at timestamp with time zone not null, created_at timestamp with"
+            + " time zone default current_timestamp not null)");
+    dsl.execute(
+        "create table transfer_match_state (id integer primary key, last_transaction_id bigint"
+            + " not null, updated_at timestamp with time zone default current_timestamp not"
+            + " null)");
+    matcher = new TransferMatcher(dsl, WINDOW);
+  }
+
+  @Test
+  void sweepPairsTheEarliestOppositeRowOfAnotherAccountWithinTheWindow() {
+    List<TransferMatcher.Row> rows =
+        List.of(
+            row(1, 1, -5000, "2024-03-01"),
+            row(2, 1, 5000, "2024-03-01"),
+            row(3, 2, 5000, "2024-03-02"),
+            row(4, 2, -5000, "2024-03-03"),
+            row(5, 1, -5000, "2024-03-10"),
+            row(6, 2, 5000, "2024-03-14"),
+            row(7, 2, -7000, "2024-03-01"),
+            row(8, 2, 7000, "2024-03-02"),
+            row(9, 1, 7000, "2024-03-04"));
+    List<TransferMatcher.Link> links = new ArrayList<>();
+
+    TransferMatcher.merge(rows.iterator(), WINDOW, links::add);
+
+    assertThat(links)
+        .extracting(l -> l.debit().id(), l -> l.credit().id())
+        .containsExactly(tuple(1L, 3L), tuple(4L, 2L), tuple(7L, 9L));
+  }
+
+  @Test
+  void sweepKeepsCurrenciesApart() {
+    List<TransferMatcher.Link> links = new ArrayList<>();
+
+    TransferMatcher.merge(
+        List.of(
+                row(1, 1, -100, "2024-03-01", "CAD"),
+                row(2, 2, 100, "2024-03-01", "USD"),
+                row(3, 2, -100, "2024-03-01", "USD"),
+                row(4, 1, 100, "2024-03-02", "USD"))
+            .iterator(),
+        WINDOW,
+        links::add);
+
+    assertThat(links)
+        .extracting(l -> l.debit().id(), l -> l.credit().id())
+        .containsExactly(tuple(3L, 4L));
+  }
+
+  @Test
+  void matchesIncrementallyFromTheWatermark() {
+    ingest(CARD, tx("a", "2024-03-01T12:00:00Z", 15000), tx("b", "2024-03-05T00:00:00Z", -2500));
+    ingest(CHECKING, tx("c", "2024-03-02T08:00:00Z", -15000), tx("d", null, 2500));
+
+    TransferMatcher.Result first = matcher.match(dsl);
+
+    assertThat(first.newRows()).isEqualTo(4);
+    assertThat(first.linked()).isEqualTo(1);
+    assertThat(links()).containsExactly(tuple(2L, 1L, 15000L));
+    assertThat(watermark()).isEqualTo(4L);
+    assertThat(matcher.match(dsl)).isEqualTo(new TransferMatcher.Result(0, 0, 0));
+
+    ingest(CHECKING, tx("e", "2024-03-06T00:00:00Z", 2500), tx("f", "2024-03-06T00:00:00Z", -99));
+    TransferMatcher.Result second = matcher.match(dsl);
+
+    assertThat(second.newRows()).isEqualTo(2);
+    assertThat(second.rowsRead()).isEqualTo(3);
+    assertThat(links()).containsExactly(tuple(2L, 1L, 15000L), tuple(1L, 2L, 2500L));
+    assertThat(watermark()).isEqualTo(6L);
+
+    assertThat(matcher.rebuild(dsl)).isEqualTo(new TransferMatcher.Result(6, 5, 2));
+    assertThat(links()).containsExactly(tuple(2L, 1L, 15000L), tuple(1L, 2L, 2500L));
+  }
+
+  private void ingest(ResolvedAccount account, TransactionRecord... txs) {
+    TransactionRepository repository = new TransactionRepository();
+    for (TransactionRecord t : txs) {
+      repository.upsert(dsl, t, account);
+    }
+  }
+
+  private List<org.assertj.core.groups.Tuple> links() {
+    TransferLinks l = TransferLinks.TRANSFER_LINKS;
+    return dsl.select(l.DEBIT_ACCOUNT_ID, l.CREDIT_ACCOUNT_ID, l.AMOUNT_CENTS)
+        .from(l)
+        .orderBy(l.AMOUNT_CENTS.desc())
+        .fetch(r -> tuple(r.value1(), r.value2(), r.value3()));
+  }
+
+  private Long watermark() {
+    TransferMatchState s = TransferMatchState.TRANSFER_MATCH_STATE;
+    return dsl.select(s.LAST_TRANSACTION_ID).from(s).fetchOne(s.LAST_TRANSACTION_ID);
+  }
+
+  private static TransferMatcher.Row row(long id, long account, long cents, String date) {
+    return row(id, account, cents, date, "USD");
+  }
+
+  private static TransferMatcher.Row row(
+      long id, long account, long cents, String date, String currency) {
+    return new TransferMatcher.Row(
+        id, account, cents, currency, OffsetDateTime.parse(date + "T00:00:00Z"));
+  }
+
+  /** {@code hash} is one hex digit, repeated into a full SHA-256 hash. */
+  private static TransactionRecord tx(String hash, String occurredAt, long cents) {
+    return new GenericTransaction(
+        "1234",
+        occurredAt == null ? null : Instant.parse(occurredAt),
+        null,
+        new Money(cents, "USD"),
+        "Merchant",
+        null,
+        null,
+        null,
+        hash.repeat(64),
+        List.of(),
+        List.of());
+  }
+}
@@ -0,0 +1,87 @@
+package org.artificers.ingest.tools;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import org.artificers.ingest.service.HashGenerator;
+import org.jooq.DSLContext;
+import org.jooq.impl.DSL;
+import org.junit.jupiter.api.Test;
+import picocli.CommandLine;
+
+class DbValidatorTest {
+  @Test
+  void reportsThroughputAndSlowestFiles() {
+    DSLContext dsl = DSL.using("jdbc:h2:mem:db_validator;MODE=PostgreSQL", "sa", "");
+    dsl.execute("drop table if exists ingest_runs");
+    dsl.execute(
+        "create table ingest_runs (id bigserial primary key, file_name varchar not null,"
+            + " shorthand varchar not null, institution varchar, account_id bigint, rows_read"
+            + " bigint not null, rows_inserted bigint not null, rows_duplicate bigint not null,"
+            + " rows_rejected bigint not null, bytes bigint not null, read_micros bigint not null,"
+            + " parse_micros bigint not null, persist_micros bigint not null, refresh_micros"
+            + " bigint not null, total_micros bigint not null, outcome varchar not null, error"
+            + " varchar, started_at timestamp with time zone not null, finished_at timestamp with"
+            + " time zone not null)");
+    insert(dsl, "ch1234-jan.csv", 1_000, 500_000, "success");
+    insert(dsl, "ch1234-feb.csv", 3_000, 1_000_000, "success");
+    insert(dsl, "ch1234-bad.csv", 0, 2_000, "failure");
+
+    ByteArrayOutputStream buf = new ByteArrayOutputStream();
+    int code =
+        new CommandLine(new DbValidator(dsl, new PrintStream(buf, true, StandardCharsets.UTF_8)))
+            .execute("--report", "--limit", "2");
+
+    String out = buf.toString(StandardCharsets.UTF_8);
+    assertThat(code).isZero();
+    assertThat(out)
+        .contains("institution=ch runs=3 failed=1 rows=4000")
+        .contains("rows_per_sec=2663.1")
+        .contains("file=ch1234-feb.csv institution=ch outcome=success rows=3000 total_ms=1000.0")
+        .contains("file=ch1234-jan.csv")
+        .doesNotContain("file=ch1234-bad.csv");
+  }
+
+  @Test
+  void reportsDuplicateHashesAsHex() {
+    DSLContext dsl = DSL.using("jdbc:h2:mem:db_validator_dups;MODE=PostgreSQL", "sa", "");
+    dsl.execute("drop view if exists transactions_view");
+    dsl.execute("drop table if exists transactions");
+    dsl.execute("drop table if exists accounts");
+    dsl.execute("create table accounts (id bigserial primary key)");
+    dsl.execute(
+        "create table transactions (id bigserial primary key, account_id bigint not null,"
+            + " amount_cents bigint not null, merchant varchar, merchant_canonical varchar,"
+            + " unified_category varchar, hash bytea not null)");
+    dsl.execute("create view transactions_view as select * from transactions");
+    byte[] hash = HashGenerator.digest(String.format("%064x", 42));
+    for (int i = 0; i < 2; i++) {
+      dsl.execute(
+          "insert into transactions (account_id, amount_cents, merchant, hash) values (1, 100,"
+              + " 'm', ?)",
+          hash);
+    }
+
+    ByteArrayOutputStream buf = new ByteArrayOutputStream();
+    new DbValidator(dsl, new PrintStream(buf, true, StandardCharsets.UTF_8)).validate();
+
+    assertThat(buf.toString(StandardCharsets.UTF_8))
+        .contains("dup account_id=1 hash=" + String.format("%064x", 42) + " c=2");
+  }
+
+  private static void insert(DSLContext dsl, String file, long rows, long micros, String outcome) {
+    dsl.execute(
+        "insert into ingest_runs (file_name, shorthand, institution, rows_read, rows_inserted,"
+            + " rows_duplicate, rows_rejected, bytes, read_micros, parse_micros, persist_micros,"
+            + " refresh_micros, total_micros, outcome, started_at, finished_at) values (?,"
+            + " 'ch1234', 'ch', ?, ?, 0, 0, 0, 0, 0, 0, 0, ?, ?, current_timestamp,"
+            + " current_timestamp)",
+        file,
+        rows,
+        rows,
+        micros,
+        outcome);
+  }
+}
@@ -0,0 +1,95 @@
+package org.artificers.ingest.tools;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.opencsv.CSVReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.artificers.ingest.csv.ConfigurableCsvReader;
+import org.artificers.ingest.model.TransactionRecord;
+import org.artificers.ingest.validation.BasicTransactionValidator;
+import org.junit.jupiter.api.Test;
+
+class StatementGeneratorTest {
+  private final ObjectMapper mapper = new ObjectMapper();
+
+  @Test
+  void sameSeedWritesSameFile() throws IOException {
+    ConfigurableCsvReader.Mapping mapping = mapping("ch");
+    String a = write(new StatementGenerator(mapping, new StatementGenerator.Settings(7)), 0, 500);
+    String b = write(new StatementGenerator(mapping, new StatementGenerator.Settings(7)), 0, 500);
+    String c = write(new StatementGenerator(mapping, new StatementGenerator.Settings(8)), 0, 500);
+
+    assertThat(a).isEqualTo(b).isNotEqualTo(c);
+    assertThat(a).startsWith("Transaction Date,Post Date,Description,Category,Type,Amount,Memo");
+  }
+
+  @Test
+  void parsesBackWithRequestedDuplicatesAndCredits() throws IOException {
+    ConfigurableCsvReader.Mapping mapping = mapping("co");
+    StatementGenerator generator =
+        new StatementGenerator(
+            mapping,
+            new StatementGenerator.Settings(
+                42, LocalDate.of(2024, 1, 1), 20, 0.1, 0.2, "yyyy-MM-dd"));
+    List<TransactionRecord> txs = parse(mapping, write(generator, 0, 5_000));
+
+    Set<String> hashes = new HashSet<>();
+    txs.forEach(t -> hashes.add(t.hash()));
+    long credits = txs.stream().filter(t -> t.amount().cents() > 0).count();
+    assertThat(txs).hasSize(5_000);
+    assertThat(5_000 - hashes.size()).isBetween(850, 1_150);
+    assertThat(credits).isBetween(350L, 650L);
+    assertThat(txs.get(0).occurredAt()).isEqualTo("2024-01-01T00:00:00Z");
+  }
+
+  @Test
+  void overlappingIndexRangesShareRows() throws IOException {
+    ConfigurableCsvReader.Mapping mapping = mapping("ch");
+    StatementGenerator generator =
+        new StatementGenerator(
+            mapping,
+            new StatementGenerator.Settings(
+                3, LocalDate.of(2024, 1, 1), 5, 0.1, 0.05, "yyyy-MM-dd"));
+    List<String> first = write(generator, 0, 1_000).lines().skip(1).toList();
+    List<String> second = write(generator, 750, 1_000).lines().skip(1).toList();
+
+    assertThat(second.subList(0, 250)).isEqualTo(first.subList(750, 1_000));
+
+    String existing = write(generator, 0, 1_000);
+    StringWriter out = new StringWriter();
+    try (CSVReader r = new CSVReader(new StringReader(existing))) {
+      new StatementGenerator(mapping, new StatementGenerator.Settings(99))
+          .write(out, 0, 1_000, r, 0.3);
+    }
+    Set<String> shared = new HashSet<>(first);
+    long copied = out.toString().lines().skip(1).filter(shared::contains).count();
+    assertThat(copied).isBetween(240L, 360L);
+  }
+
+  private ConfigurableCsvReader.Mapping mapping(String institution) throws IOException {
+    try (InputStream in = getClass().getResourceAsStream("/mappings/" + institution + ".json")) {
+      return mapper.readValue(in, ConfigurableCsvReader.Mapping.class);
+    }
+  }
+
+  private List<TransactionRecord> parse(ConfigurableCsvReader.Mapping mapping, String csv) {
+    return new ConfigurableCsvReader(new BasicTransactionValidator(), mapping)
+        .read(Path.of("co1234-synthetic.csv"), new StringReader(csv), "1234");
+  }
+
+  private static String write(StatementGenerator generator, long first, long rows)
+      throws IOException {
+    StringWriter out = new StringWriter();
+    generator.write(out, first, rows);
+    return out.toString();
+  }
+}
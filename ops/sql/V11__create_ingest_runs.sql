@@ -0,0 +1,27 @@
+-- Ledger of every ingest attempt with row counts and per-stage timings.
+-- account_id is only populated for successful runs; failed runs may roll back a newly created account.
+CREATE TABLE IF NOT EXISTS ingest_runs (
+    id bigserial PRIMARY KEY,
+    file_name text NOT NULL,
+    shorthand text NOT NULL,
+    institution text,
+    account_id bigint REFERENCES accounts (id) ON DELETE SET NULL,
+    rows_read bigint NOT NULL DEFAULT 0,
+    rows_inserted bigint NOT NULL DEFAULT 0,
+    rows_duplicate bigint NOT NULL DEFAULT 0,
+    rows_rejected bigint NOT NULL DEFAULT 0,
+    bytes bigint NOT NULL DEFAULT 0,
+    read_micros bigint NOT NULL DEFAULT 0,
+    parse_micros bigint NOT NULL DEFAULT 0,
+    persist_micros bigint NOT NULL DEFAULT 0,
+    refresh_micros bigint NOT NULL DEFAULT 0,
+    total_micros bigint NOT NULL DEFAULT 0,
+    outcome text NOT NULL,
+    error text,
+    started_at timestamptz NOT NULL,
+    finished_at timestamptz NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS ingest_runs_started_at_idx ON ingest_runs (started_at);
+
+CREATE INDEX IF NOT EXISTS ingest_runs_institution_started_at_idx ON ingest_runs (institution, started_at);
@@ -0,0 +1,4 @@
+-- Rows, bytes and time spent spilling parsed rows to disk when a file exceeds INGEST_MAX_BUFFER_MB.
+ALTER TABLE ingest_runs ADD COLUMN IF NOT EXISTS rows_spilled bigint NOT NULL DEFAULT 0;
+ALTER TABLE ingest_runs ADD COLUMN IF NOT EXISTS spill_bytes bigint NOT NULL DEFAULT 0;
+ALTER TABLE ingest_runs ADD COLUMN IF NOT EXISTS spill_micros bigint NOT NULL DEFAULT 0;
@@ -0,0 +1,60 @@
+-- Rollups maintained by ingest: each run adds the totals of the rows it actually inserted, in the same
+-- transaction. Rows are bucketed by coalesce(occurred_at, posted_at) in UTC; rows with neither are left out.
+-- Outflows are stored as positive cents; net = inflow_cents - outflow_cents.
+-- Uncategorized rows are totalled under category ''.
+-- Rebuild: bazel run //apps/ingest-service:rollup_rebuild recomputes both tables from transactions.
+CREATE TABLE IF NOT EXISTS daily_account_totals (
+    account_id bigint NOT NULL REFERENCES accounts (id),
+    txn_date date NOT NULL,
+    currency text NOT NULL,
+    txn_count bigint NOT NULL DEFAULT 0,
+    inflow_cents bigint NOT NULL DEFAULT 0,
+    outflow_cents bigint NOT NULL DEFAULT 0,
+    PRIMARY KEY (account_id, txn_date, currency)
+);
+
+CREATE TABLE IF NOT EXISTS monthly_category_totals (
+    account_id bigint NOT NULL REFERENCES accounts (id),
+    txn_month date NOT NULL,
+    category text NOT NULL,
+    currency text NOT NULL,
+    txn_count bigint NOT NULL DEFAULT 0,
+    inflow_cents bigint NOT NULL DEFAULT 0,
+    outflow_cents bigint NOT NULL DEFAULT 0,
+    PRIMARY KEY (account_id, txn_month, category, currency)
+);
+
+CREATE INDEX IF NOT EXISTS monthly_category_totals_month_idx ON monthly_category_totals (txn_month, category);
+
+INSERT INTO daily_account_totals (account_id, txn_date, currency, txn_count, inflow_cents, outflow_cents)
+SELECT
+    account_id,
+    (coalesce(occurred_at, posted_at) AT TIME ZONE 'UTC')::date,
+    currency,
+    count(*),
+    coalesce(sum(amount_cents) FILTER (WHERE amount_cents > 0), 0),
+    coalesce(-sum(amount_cents) FILTER (WHERE amount_cents < 0), 0)
+FROM
+    transactions
+WHERE
+    coalesce(occurred_at, posted_at) IS NOT NULL
+GROUP BY
+    1, 2, 3
+ON CONFLICT DO NOTHING;
+
+INSERT INTO monthly_category_totals (account_id, txn_month, category, currency, txn_count, inflow_cents, outflow_cents)
+SELECT
+    account_id,
+    date_trunc('month', coalesce(occurred_at, posted_at) AT TIME ZONE 'UTC')::date,
+    coalesce(category, ''),
+    currency,
+    count(*),
+    coalesce(sum(amount_cents) FILTER (WHERE amount_cents > 0), 0),
+    coalesce(-sum(amount_cents) FILTER (WHERE amount_cents < 0), 0)
+FROM
+    transactions
+WHERE
+    coalesce(occurred_at, posted_at) IS NOT NULL
+GROUP BY
+    1, 2, 3, 4
+ON CONFLICT DO NOTHING;
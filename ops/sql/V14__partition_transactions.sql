@@ -0,0 +1,105 @@
+-- Convert transactions into a table range-partitioned by occurred_at month (UTC boundaries), named transactions_pYYYY_MM.
+-- Partitions are created for every month holding rows plus the current and next three months; the ingest service's
+-- TransactionPartitionManager keeps creating months ahead and can detach old ones. Rows without occurred_at, or for a
+-- month without a partition, land in transactions_default until the manager moves them into a new month partition.
+-- A partitioned table's unique indexes must contain the partition key: (account_id, hash) becomes
+-- (account_id, hash, occurred_at) NULLS NOT DISTINCT. The hash already covers occurred_at, so duplicates are unchanged.
+-- id keeps its sequence but is no longer a primary key, which would have to include the nullable occurred_at.
+-- Rollback: create an unpartitioned table with V10's definition, INSERT ... SELECT from transactions, swap the names.
+DROP VIEW IF EXISTS transactions_view;
+
+ALTER TABLE transactions RENAME TO transactions_unpartitioned;
+
+ALTER TABLE transactions_unpartitioned RENAME CONSTRAINT transactions_pkey TO transactions_unpartitioned_pkey;
+
+ALTER INDEX transactions_account_hash_idx RENAME TO transactions_unpartitioned_account_hash_idx;
+
+ALTER SEQUENCE transactions_id_seq OWNED BY NONE;
+
+CREATE TABLE transactions (
+    id bigint NOT NULL DEFAULT nextval('transactions_id_seq'),
+    account_id bigint NOT NULL REFERENCES accounts (id),
+    occurred_at timestamptz,
+    posted_at timestamptz,
+    amount_cents bigint NOT NULL,
+    currency text NOT NULL DEFAULT 'USD',
+    merchant text,
+    category text,
+    memo text,
+    txn_type text,
+    hash TEXT NOT NULL,
+    raw_json jsonb NOT NULL,
+    created_at timestamptz DEFAULT now()
+)
+PARTITION BY RANGE (occurred_at);
+
+ALTER SEQUENCE transactions_id_seq OWNED BY transactions.id;
+
+CREATE TABLE transactions_default PARTITION OF transactions DEFAULT;
+
+DO $$
+DECLARE
+    m date;
+BEGIN
+    FOR m IN
+    SELECT DISTINCT
+        date_trunc('month', occurred_at AT TIME ZONE 'UTC')::date
+    FROM
+        transactions_unpartitioned
+    WHERE
+        occurred_at IS NOT NULL
+    UNION
+    SELECT
+        (date_trunc('month', now() AT TIME ZONE 'UTC') + make_interval(months => n))::date
+    FROM
+        generate_series(0, 3) AS n
+    ORDER BY
+        1 LOOP
+            EXECUTE format('CREATE TABLE %I PARTITION OF transactions FOR VALUES FROM (%L) TO (%L)', 'transactions_p' || to_char(m, 'YYYY_MM'), m::timestamp AT TIME ZONE 'UTC', (m + interval '1 month')::timestamp AT TIME ZONE 'UTC');
+        END LOOP;
+END
+$$;
+
+INSERT INTO transactions (id, account_id, occurred_at, posted_at, amount_cents, currency, merchant, category, memo, txn_type, hash, raw_json, created_at)
+SELECT
+    id,
+    account_id,
+    occurred_at,
+    posted_at,
+    amount_cents,
+    currency,
+    merchant,
+    category,
+    memo,
+    txn_type,
+    hash,
+    raw_json,
+    created_at
+FROM
+    transactions_unpartitioned;
+
+CREATE UNIQUE INDEX IF NOT EXISTS transactions_account_hash_idx ON transactions (account_id, hash, occurred_at) NULLS NOT DISTINCT;
+
+CREATE INDEX IF NOT EXISTS transactions_id_idx ON transactions (id);
+
+DROP TABLE transactions_unpartitioned;
+
+CREATE OR REPLACE VIEW transactions_view AS
+SELECT
+    t.id,
+    t.occurred_at,
+    t.posted_at,
+    t.amount_cents,
+    t.currency,
+    t.merchant,
+    t.category,
+    t.txn_type,
+    t.memo,
+    t.hash,
+    t.raw_json,
+    t.created_at,
+    t.account_id,
+    a.institution
+FROM
+    transactions t
+    JOIN accounts a ON a.id = t.account_id;
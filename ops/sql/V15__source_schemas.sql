@@ -0,0 +1,87 @@
+-- Store each distinct normalized CSV header list once. A transaction keeps the id of its file's header list plus its
+-- values in header order (raw_values), instead of a raw_json object repeating every header name on every row.
+-- transactions_view still exposes raw_json, rebuilt with jsonb_object(headers, raw_values).
+-- Existing rows are converted using their jsonb key order; non-string JSON values become their text form.
+-- The space of the dropped raw_json is only returned by a rewrite (VACUUM FULL transactions), run outside migrations.
+-- Rollback: add raw_json jsonb, set it from transactions_view, drop source_schema_id, raw_values and source_schemas.
+CREATE TABLE IF NOT EXISTS source_schemas (
+    id bigserial PRIMARY KEY,
+    headers text[] NOT NULL UNIQUE,
+    created_at timestamptz DEFAULT now()
+);
+
+DROP VIEW IF EXISTS transactions_view;
+
+ALTER TABLE transactions
+    ADD COLUMN source_schema_id bigint REFERENCES source_schemas (id);
+
+ALTER TABLE transactions
+    ADD COLUMN raw_values text[];
+
+INSERT INTO source_schemas (headers)
+SELECT DISTINCT
+    ARRAY (
+        SELECT
+            k
+        FROM
+            jsonb_object_keys(raw_json)
+            WITH ORDINALITY AS e (k, n)
+        ORDER BY
+            n)
+FROM
+    transactions
+ON CONFLICT DO NOTHING;
+
+UPDATE
+    transactions t
+SET
+    source_schema_id = s.id,
+    raw_values = ARRAY (
+        SELECT
+            t.raw_json ->> h.k
+        FROM
+            unnest(s.headers)
+            WITH ORDINALITY AS h (k, n)
+        ORDER BY
+            h.n)
+FROM
+    source_schemas s
+WHERE
+    s.headers = ARRAY (
+        SELECT
+            k
+        FROM
+            jsonb_object_keys(t.raw_json)
+            WITH ORDINALITY AS e (k, n)
+        ORDER BY
+            n);
+
+ALTER TABLE transactions
+    ALTER COLUMN source_schema_id SET NOT NULL;
+
+ALTER TABLE transactions
+    ALTER COLUMN raw_values SET NOT NULL;
+
+ALTER TABLE transactions
+    DROP COLUMN raw_json;
+
+CREATE OR REPLACE VIEW transactions_view AS
+SELECT
+    t.id,
+    t.occurred_at,
+    t.posted_at,
+    t.amount_cents,
+    t.currency,
+    t.merchant,
+    t.category,
+    t.txn_type,
+    t.memo,
+    t.hash,
+    jsonb_object(s.headers, t.raw_values) AS raw_json,
+    t.created_at,
+    t.account_id,
+    a.institution
+FROM
+    transactions t
+    JOIN accounts a ON a.id = t.account_id
+    JOIN source_schemas s ON s.id = t.source_schema_id;
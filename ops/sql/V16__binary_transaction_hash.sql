@@ -0,0 +1,36 @@
+-- Store transactions.hash as its 32-byte SHA-256 digest instead of 64 hex characters. The digest is half the size,
+-- and so is its share of the (account_id, hash, occurred_at) unique index that every upsert probes.
+-- bytea has no length modifier; the CHECK constraint pins it to 32 bytes and is inherited by every partition.
+-- transactions_view keeps exposing hash as lower-case hex text.
+-- The type change rewrites all attached partitions and rebuilds their indexes; partitions detached before this
+-- migration keep text hashes and must be converted the same way before they are attached again.
+-- Rollback: drop the view and constraint, ALTER COLUMN hash TYPE text USING encode(hash, 'hex'), recreate the view.
+DROP VIEW IF EXISTS transactions_view;
+
+ALTER TABLE transactions
+    ALTER COLUMN hash TYPE bytea
+    USING decode(hash, 'hex');
+
+ALTER TABLE transactions
+    ADD CONSTRAINT transactions_hash_length CHECK (octet_length(hash) = 32);
+
+CREATE OR REPLACE VIEW transactions_view AS
+SELECT
+    t.id,
+    t.occurred_at,
+    t.posted_at,
+    t.amount_cents,
+    t.currency,
+    t.merchant,
+    t.category,
+    t.txn_type,
+    t.memo,
+    encode(t.hash, 'hex') AS hash,
+    jsonb_object(s.headers, t.raw_values) AS raw_json,
+    t.created_at,
+    t.account_id,
+    a.institution
+FROM
+    transactions t
+    JOIN accounts a ON a.id = t.account_id
+    JOIN source_schemas s ON s.id = t.source_schema_id;
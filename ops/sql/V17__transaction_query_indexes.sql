@@ -0,0 +1,9 @@
+-- Indexes for the read-side TransactionQueryService, which returns rows in (occurred_at, id) order and resumes each
+-- page with (occurred_at, id) > (last key) instead of OFFSET. Each index serves both the order and the resume
+-- predicate: the first for queries filtered by account, the second for queries across accounts. Other filters
+-- (amount, category, merchant prefix) are applied to the rows the index walks.
+-- Both are created on the partitioned parent and cascade to every partition, including ones attached later.
+-- Rollback: DROP INDEX transactions_account_occurred_id_idx, transactions_occurred_id_idx.
+CREATE INDEX IF NOT EXISTS transactions_account_occurred_id_idx ON transactions (account_id, occurred_at, id);
+
+CREATE INDEX IF NOT EXISTS transactions_occurred_id_idx ON transactions (occurred_at, id);
@@ -0,0 +1,34 @@
+-- Per-account, per-month checksums of transactions, maintained by ingest in the same transaction as the rows it inserts,
+-- so validation compares these small rows instead of scanning transactions. Months are UTC months of occurred_at, the
+-- partition key; undated rows are counted under 0001-01-01.
+-- hash_xor is the XOR of the first 8 bytes of every row's hash read as a big-endian bigint: order-independent and
+-- updatable by XOR-ing in new rows, and any added, lost or altered row changes it with near certainty.
+-- updated_at moves on every ingest into the month; db_validate --verify re-checks months whose updated_at is newer than
+-- verified_at and stamps verified_at when they match.
+-- Rebuild: bazel run //apps/ingest-service:db_validate -- --verify --all --repair recomputes every month.
+CREATE TABLE IF NOT EXISTS transaction_checksums (
+    account_id bigint NOT NULL REFERENCES accounts (id),
+    txn_month date NOT NULL,
+    txn_count bigint NOT NULL DEFAULT 0,
+    amount_cents bigint NOT NULL DEFAULT 0,
+    hash_xor bigint NOT NULL DEFAULT 0,
+    updated_at timestamptz NOT NULL DEFAULT now(),
+    verified_at timestamptz,
+    PRIMARY KEY (account_id, txn_month)
+);
+
+INSERT INTO transaction_checksums (account_id, txn_month, txn_count, amount_cents, hash_xor, updated_at, verified_at)
+SELECT
+    account_id,
+    coalesce(date_trunc('month', occurred_at AT TIME ZONE 'UTC')::date, DATE '0001-01-01'),
+    count(*),
+    sum(amount_cents),
+    bit_xor(('x' || encode(substring(hash FROM 1 FOR 8), 'hex'))::bit(64)::bigint),
+    now(),
+    now()
+FROM
+    transactions
+GROUP BY
+    1,
+    2
+ON CONFLICT DO NOTHING;
@@ -0,0 +1,34 @@
+-- Canonical merchant names, e.g. 'Amazon' for 'AMAZON MKTPL*KU5TN4KN3', so grouping queries can use equality instead
+-- of LIKE or regex on the statement text. Ingest fills merchant_canonical from the rules in
+-- $INGEST_CONFIG_DIR/merchants.json; it stays NULL when no rule matches. Existing rows, and rows ingested before a
+-- rule change, are rewritten with: bazel run //apps/ingest-service:merchant_normalize
+-- Adding a nullable column without a default is a catalog-only change on every partition.
+-- Rollback: drop the view, DROP COLUMN merchant_canonical, recreate the view as in V16.
+DROP VIEW IF EXISTS transactions_view;
+
+ALTER TABLE transactions
+    ADD COLUMN IF NOT EXISTS merchant_canonical text;
+
+CREATE INDEX IF NOT EXISTS transactions_account_merchant_canonical_idx ON transactions (account_id, merchant_canonical);
+
+CREATE OR REPLACE VIEW transactions_view AS
+SELECT
+    t.id,
+    t.occurred_at,
+    t.posted_at,
+    t.amount_cents,
+    t.currency,
+    t.merchant,
+    t.category,
+    t.txn_type,
+    t.memo,
+    encode(t.hash, 'hex') AS hash,
+    jsonb_object(s.headers, t.raw_values) AS raw_json,
+    t.created_at,
+    t.account_id,
+    a.institution,
+    t.merchant_canonical
+FROM
+    transactions t
+    JOIN accounts a ON a.id = t.account_id
+    JOIN source_schemas s ON s.id = t.source_schema_id;
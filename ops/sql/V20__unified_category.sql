@@ -0,0 +1,42 @@
+-- One category vocabulary across institutions: Chase's 'Shopping' and Capital One's 'Merchandise' can both become
+-- 'Shopping' in unified_category, while category keeps the statement's own value. Ingest fills unified_category from
+-- the rules in $INGEST_CONFIG_DIR/categories.json; it stays NULL when no rule matches.
+-- category_rule_digests records, per institution, the digest of the rules last applied to all of its rows by
+-- bazel run //apps/ingest-service:recategorize, which skips institutions whose rules are unchanged since.
+-- Adding a nullable column without a default is a catalog-only change on every partition.
+-- Rollback: drop the view, DROP TABLE category_rule_digests, DROP COLUMN unified_category, recreate the view as in V19.
+DROP VIEW IF EXISTS transactions_view;
+
+ALTER TABLE transactions
+    ADD COLUMN IF NOT EXISTS unified_category text;
+
+CREATE INDEX IF NOT EXISTS transactions_account_unified_category_idx ON transactions (account_id, unified_category);
+
+CREATE TABLE IF NOT EXISTS category_rule_digests (
+    institution text PRIMARY KEY,
+    digest bytea NOT NULL,
+    applied_at timestamptz NOT NULL DEFAULT now()
+);
+
+CREATE OR REPLACE VIEW transactions_view AS
+SELECT
+    t.id,
+    t.occurred_at,
+    t.posted_at,
+    t.amount_cents,
+    t.currency,
+    t.merchant,
+    t.category,
+    t.txn_type,
+    t.memo,
+    encode(t.hash, 'hex') AS hash,
+    jsonb_object(s.headers, t.raw_values) AS raw_json,
+    t.created_at,
+    t.account_id,
+    a.institution,
+    t.merchant_canonical,
+    t.unified_category
+FROM
+    transactions t
+    JOIN accounts a ON a.id = t.account_id
+    JOIN source_schemas s ON s.id = t.source_schema_id;
@@ -0,0 +1,29 @@
+-- Pairs of transactions that are one movement of money seen from two accounts, e.g. a card payment that is a credit
+-- on the card and a debit on the paying account, so cash-flow reports can leave both out. A pair has opposite-signed,
+-- equal amounts in one currency on different accounts, at most the configured window apart; each transaction is in at
+-- most one pair. transactions.id is not unique on the partitioned table, so the ids are not foreign keys.
+-- transfer_match_state holds the highest transactions.id the matcher has looked at; ingest matches the rows after it.
+-- Rebuild: bazel run //apps/ingest-service:transfer_match -- --rebuild
+-- Rollback: DROP TABLE transfer_links, transfer_match_state.
+CREATE TABLE IF NOT EXISTS transfer_links (
+    id bigserial PRIMARY KEY,
+    debit_transaction_id bigint NOT NULL UNIQUE,
+    credit_transaction_id bigint NOT NULL UNIQUE,
+    debit_account_id bigint NOT NULL REFERENCES accounts (id),
+    credit_account_id bigint NOT NULL REFERENCES accounts (id),
+    amount_cents bigint NOT NULL CHECK (amount_cents > 0),
+    currency text NOT NULL,
+    debit_occurred_at timestamptz NOT NULL,
+    credit_occurred_at timestamptz NOT NULL,
+    created_at timestamptz NOT NULL DEFAULT now()
+);
+
+CREATE TABLE IF NOT EXISTS transfer_match_state (
+    id integer PRIMARY KEY CHECK (id = 1),
+    last_transaction_id bigint NOT NULL,
+    updated_at timestamptz NOT NULL DEFAULT now()
+);
+
+INSERT INTO transfer_match_state (id, last_transaction_id)
+    VALUES (1, 0)
+ON CONFLICT DO NOTHING;
@@ -0,0 +1,16 @@
+-- Links receipts captured by plutary (receipt_transactions, ops/sql/plutary V3) to the card transactions they paid
+-- for. receipt_id is receipt_transactions.receipt_ingestion_id; it is not a foreign key because the plutary tables
+-- have their own migration history and may be applied later. Each receipt and each transaction is in at most one
+-- link. merchant_score is the trigram similarity (0..1) of the receipt merchant and the transaction's merchant or
+-- canonical merchant; seconds_apart is the signed gap from the receipt to the transaction.
+-- Fill: bazel run //apps/ingest-service:receipt_match (ingest also runs it after inserting rows).
+-- Rollback: DROP TABLE receipt_links.
+CREATE TABLE IF NOT EXISTS receipt_links (
+    receipt_id uuid PRIMARY KEY,
+    transaction_id bigint NOT NULL UNIQUE,
+    account_id bigint NOT NULL REFERENCES accounts (id),
+    amount_cents bigint NOT NULL,
+    merchant_score real NOT NULL,
+    seconds_apart bigint NOT NULL,
+    created_at timestamptz NOT NULL DEFAULT now()
+);
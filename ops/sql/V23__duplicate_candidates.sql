@@ -0,0 +1,38 @@
+-- Pairs of transactions on one account that may be the same purchase inserted twice, e.g. a pending row and its
+-- posted row whose merchant text or date changed between statements and so got different dedup hashes. A pair has
+-- equal amounts in one currency, at most the configured window apart, and similar merchant text; similarity is the
+-- Jaccard index (0..1) of the two merchants' character trigrams. duplicate_of_id is the older row, transaction_id the
+-- newer. Nothing is deleted automatically: status starts as pending and a reviewer sets it to duplicate or distinct;
+-- rescans keep existing pairs and their status. transactions.id is not unique on the partitioned table, so the ids
+-- are not foreign keys. duplicate_scan_state holds the highest transactions.id already scanned; ingest scans the rows
+-- after it.
+-- Full scan: bazel run //apps/ingest-service:duplicate_scan -- --all
+-- Rollback: DROP TABLE duplicate_candidates, duplicate_scan_state.
+CREATE TABLE IF NOT EXISTS duplicate_candidates (
+    id bigserial PRIMARY KEY,
+    account_id bigint NOT NULL REFERENCES accounts (id),
+    duplicate_of_id bigint NOT NULL,
+    transaction_id bigint NOT NULL,
+    amount_cents bigint NOT NULL,
+    currency text NOT NULL,
+    similarity real NOT NULL,
+    seconds_apart bigint NOT NULL,
+    status text NOT NULL DEFAULT 'pending' CHECK (status IN ('pending', 'duplicate', 'distinct')),
+    created_at timestamptz NOT NULL DEFAULT now(),
+    reviewed_at timestamptz,
+    UNIQUE (duplicate_of_id, transaction_id),
+    CHECK (duplicate_of_id < transaction_id)
+);
+
+CREATE INDEX IF NOT EXISTS duplicate_candidates_status_idx
+    ON duplicate_candidates (status, account_id);
+
+CREATE TABLE IF NOT EXISTS duplicate_scan_state (
+    id integer PRIMARY KEY CHECK (id = 1),
+    last_transaction_id bigint NOT NULL,
+    updated_at timestamptz NOT NULL DEFAULT now()
+);
+
+INSERT INTO duplicate_scan_state (id, last_transaction_id)
+    VALUES (1, 0)
+ON CONFLICT DO NOTHING;